@@ -68,6 +68,16 @@ public class TimedEventExecutor implements EventExecutor {
             "Event: " + id + " (" + eventName + ")", null);
     }
 
+    // CloudSpigot start - unwrapped by the event dispatcher
+    public EventExecutor getExecutor() {
+        return executor;
+    }
+
+    public Timing getTiming() {
+        return timings;
+    }
+    // CloudSpigot end
+
     @Override
     public void execute(Listener listener, Event event) throws EventException {
         if (event.isAsynchronous() || !Timings.timingsEnabled || !Bukkit.isPrimaryThread()) {
@@ -0,0 +1,217 @@
+package eu.minewars.cloudspigot.event.dispatch;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+
+import co.aikar.timings.TimedEventExecutor;
+import co.aikar.timings.Timing;
+import co.aikar.timings.Timings;
+
+/**
+ * Calls the listeners of a baked {@link org.bukkit.event.HandlerList}.
+ * <p>
+ * Lists with a reasonable number of listeners get a generated subclass whose
+ * dispatch method calls every listener in priority order with its
+ * ignoreCancelled check, instance check and timing inlined, instead of walking
+ * the array through {@link RegisteredListener#callEvent(Event)} and the
+ * executor wrappers. Timed and instance checked executors are unwrapped so the
+ * handler method is reached with a single interface call. Registrations of a
+ * custom {@link RegisteredListener} subclass are still called through
+ * {@link RegisteredListener#callEvent(Event)}.
+ * <p>
+ * Generated classes only depend on the shape of the list, the kind of every
+ * listener in order, so registering and unregistering at runtime reuses them
+ * instead of defining a new class each time. At most
+ * {@link #MAX_GENERATED_SHAPES} classes are defined, lists of any other shape
+ * and lists whose class could not be generated walk their listeners instead.
+ */
+public abstract class EventDispatcher {
+
+	/**
+	 * Above this many listeners the dispatch method would get too big to be
+	 * compiled by the JIT, the list is walked instead.
+	 */
+	static final int MAX_GENERATED_LISTENERS = 64;
+
+	/**
+	 * Defined classes are never unloaded, above this many shapes new lists are
+	 * walked instead of defining yet another class.
+	 */
+	static final int MAX_GENERATED_SHAPES = 256;
+
+	// listener kinds, the shape a generated class is made for
+	static final int GENERIC = 1;
+	static final int IGNORE_CANCELLED = 1 << 1;
+	static final int TIMED = 1 << 2;
+	static final int INSTANCE_CHECKED = 1 << 3;
+
+	private static final Logger LOGGER = Logger.getLogger(EventDispatcher.class.getName());
+	private static final ConcurrentMap<String, Constructor<? extends EventDispatcher>> GENERATED = new ConcurrentHashMap<String, Constructor<? extends EventDispatcher>>();
+	private static final Set<String> FAILED = ConcurrentHashMap.newKeySet();
+
+	protected final RegisteredListener[] registrations;
+	protected final Listener[] listeners;
+	protected final EventExecutor[] executors;
+	protected final Plugin[] plugins;
+	protected final Timing[] timings;
+	protected final Class<?>[] eventClasses;
+	final int[] kinds;
+
+	protected EventDispatcher(RegisteredListener[] registrations) {
+		int count = registrations.length;
+		this.registrations = registrations;
+		this.listeners = new Listener[count];
+		this.executors = new EventExecutor[count];
+		this.plugins = new Plugin[count];
+		this.timings = new Timing[count];
+		this.eventClasses = new Class<?>[count];
+		this.kinds = new int[count];
+
+		for (int i = 0; i < count; ++i) {
+			RegisteredListener registration = registrations[i];
+			this.listeners[i] = registration.getListener();
+			this.plugins[i] = registration.getPlugin();
+			int kind = registration.isIgnoringCancelled() ? IGNORE_CANCELLED : 0;
+
+			if (registration.getClass() != RegisteredListener.class) {
+				kind |= GENERIC;
+			} else {
+				EventExecutor executor = registration.getExecutor();
+				if (executor instanceof TimedEventExecutor) {
+					this.timings[i] = ((TimedEventExecutor) executor).getTiming();
+					executor = ((TimedEventExecutor) executor).getExecutor();
+					kind |= TIMED;
+				}
+				if (executor instanceof InstanceCheckedEventExecutor) {
+					this.eventClasses[i] = ((InstanceCheckedEventExecutor) executor).getEventClass();
+					executor = ((InstanceCheckedEventExecutor) executor).getExecutor();
+					kind |= INSTANCE_CHECKED;
+				}
+				this.executors[i] = executor;
+			}
+			this.kinds[i] = kind;
+		}
+	}
+
+	/**
+	 * Creates the dispatcher for the baked listeners of a handler list.
+	 *
+	 * @param registrations the listeners in the order they are called
+	 * @return the dispatcher
+	 */
+	public static EventDispatcher create(RegisteredListener[] registrations) {
+		EventDispatcher loop = new LoopEventDispatcher(registrations);
+		if (registrations.length == 0 || registrations.length > MAX_GENERATED_LISTENERS) {
+			return loop;
+		}
+
+		String shape = Arrays.toString(loop.kinds);
+		if (FAILED.contains(shape)) {
+			return loop;
+		}
+		try {
+			Constructor<? extends EventDispatcher> constructor = GENERATED.get(shape);
+			if (constructor == null) {
+				synchronized (GENERATED) {
+					constructor = GENERATED.get(shape);
+					if (constructor == null) {
+						if (GENERATED.size() >= MAX_GENERATED_SHAPES || FAILED.contains(shape)) {
+							return loop;
+						}
+						constructor = EventDispatcherGenerator.define(loop.kinds);
+						GENERATED.put(shape, constructor);
+					}
+				}
+			}
+			return constructor.newInstance((Object) registrations);
+		} catch (Throwable throwable) {
+			// only lists of this shape fall back, the shape is not retried
+			if (FAILED.size() < MAX_GENERATED_SHAPES && FAILED.add(shape)) {
+				LOGGER.log(Level.WARNING, "Could not generate an event dispatcher for " + registrations.length + " listeners, falling back to calling them in a loop", throwable);
+			}
+			return loop;
+		}
+	}
+
+	/**
+	 * Creates a dispatcher that walks the listeners in a loop, what
+	 * {@link #create(RegisteredListener[])} falls back to.
+	 *
+	 * @param registrations the listeners in the order they are called
+	 * @return the dispatcher
+	 */
+	public static EventDispatcher createLoop(RegisteredListener[] registrations) {
+		return new LoopEventDispatcher(registrations);
+	}
+
+	/**
+	 * Calls the event on every listener of enabled plugins, in priority order.
+	 *
+	 * @param event the event
+	 * @param handler gets the exceptions thrown by listeners, every listener is
+	 *            called regardless
+	 */
+	public final void callEvent(Event event, ExceptionHandler handler) {
+		Cancellable cancellable = event instanceof Cancellable ? (Cancellable) event : null;
+		boolean timed = Timings.isTimingsEnabled() && !event.isAsynchronous() && Bukkit.isPrimaryThread();
+		this.dispatch(event, cancellable, timed, handler);
+	}
+
+	/**
+	 * @param cancellable the event if it is cancellable, null otherwise
+	 * @param timed whether timed listeners are timed
+	 */
+	protected abstract void dispatch(Event event, Cancellable cancellable, boolean timed, ExceptionHandler handler);
+
+	/**
+	 * Reports an exception thrown by a listener, wrapped the same way as the
+	 * executor wrappers that were skipped would have.
+	 */
+	protected final void failed(int index, Event event, Throwable throwable, ExceptionHandler handler) {
+		if ((this.kinds[index] & INSTANCE_CHECKED) != 0 && throwable instanceof Exception) {
+			throwable = new EventException(throwable);
+		}
+		handler.handle(this.registrations[index], event, throwable);
+	}
+
+	public interface ExceptionHandler {
+
+		void handle(RegisteredListener registration, Event event, Throwable throwable);
+	}
+
+	private static final class LoopEventDispatcher extends EventDispatcher {
+
+		LoopEventDispatcher(RegisteredListener[] registrations) {
+			super(registrations);
+		}
+
+		@Override
+		protected void dispatch(Event event, Cancellable cancellable, boolean timed, ExceptionHandler handler) {
+			for (RegisteredListener registration : this.registrations) {
+				if (!registration.getPlugin().isEnabled()) {
+					continue;
+				}
+
+				try {
+					registration.callEvent(event);
+				} catch (Throwable throwable) {
+					handler.handle(registration, event, throwable);
+				}
+			}
+		}
+	}
+}
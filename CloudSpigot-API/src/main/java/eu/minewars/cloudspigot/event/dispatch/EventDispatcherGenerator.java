@@ -0,0 +1,186 @@
+package eu.minewars.cloudspigot.event.dispatch;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import com.destroystokyo.paper.event.executor.asm.ClassDefiner;
+
+import co.aikar.timings.Timing;
+
+/**
+ * Generates the {@link EventDispatcher} subclasses, one unrolled block per
+ * listener:
+ *
+ * <pre>
+ * if (plugins[i].isEnabled() &amp;&amp; !(ignoreCancelled &amp;&amp; cancellable != null &amp;&amp; cancellable.isCancelled())) {
+ *     if (timed) timings[i].startTiming();
+ *     try {
+ *         if (eventClasses[i].isInstance(event)) executors[i].execute(listeners[i], event);
+ *     } catch (Throwable t) {
+ *         failure = t;
+ *     }
+ *     if (timed) timings[i].stopTiming();
+ *     if (failure != null) failed(i, event, failure, handler);
+ * }
+ * </pre>
+ */
+final class EventDispatcherGenerator {
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+	private static final Type DISPATCHER = Type.getType(EventDispatcher.class);
+	private static final Type REGISTRATION = Type.getType(RegisteredListener.class);
+	private static final Type LISTENER = Type.getType(Listener.class);
+	private static final Type EXECUTOR = Type.getType(EventExecutor.class);
+	private static final Type PLUGIN = Type.getType(Plugin.class);
+	private static final Type TIMING = Type.getType(Timing.class);
+	private static final Type CLASS = Type.getType(Class.class);
+	private static final Type CANCELLABLE = Type.getType(Cancellable.class);
+	private static final Type THROWABLE = Type.getType(Throwable.class);
+
+	private static final Method CONSTRUCTOR = Method.getMethod("void <init> (org.bukkit.plugin.RegisteredListener[])");
+	private static final Method DISPATCH = Method.getMethod("void dispatch (org.bukkit.event.Event, org.bukkit.event.Cancellable, boolean, "
+			+ EventDispatcher.ExceptionHandler.class.getName() + ")");
+	private static final Method FAILED = Method.getMethod("void failed (int, org.bukkit.event.Event, java.lang.Throwable, "
+			+ EventDispatcher.ExceptionHandler.class.getName() + ")");
+	private static final Method IS_ENABLED = Method.getMethod("boolean isEnabled ()");
+	private static final Method IS_CANCELLED = Method.getMethod("boolean isCancelled ()");
+	private static final Method START_TIMING = Method.getMethod("co.aikar.timings.Timing startTiming ()");
+	private static final Method STOP_TIMING = Method.getMethod("void stopTiming ()");
+	private static final Method IS_INSTANCE = Method.getMethod("boolean isInstance (java.lang.Object)");
+	private static final Method EXECUTE = Method.getMethod("void execute (org.bukkit.event.Listener, org.bukkit.event.Event)");
+	private static final Method CALL_EVENT = Method.getMethod("void callEvent (org.bukkit.event.Event)");
+
+	private EventDispatcherGenerator() {
+	}
+
+	static Constructor<? extends EventDispatcher> define(int[] kinds) throws NoSuchMethodException {
+		String name = "eu.minewars.cloudspigot.event.dispatch.generated.GeneratedEventDispatcher" + NEXT_ID.getAndIncrement();
+		byte[] data = generate(name, kinds);
+		Class<? extends EventDispatcher> type = ClassDefiner.getInstance().defineClass(EventDispatcher.class.getClassLoader(), name, data).asSubclass(EventDispatcher.class);
+		return type.getConstructor(RegisteredListener[].class);
+	}
+
+	static byte[] generate(String name, int[] kinds) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+		writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name.replace('.', '/'), null, DISPATCHER.getInternalName(), null);
+
+		GeneratorAdapter generator = new GeneratorAdapter(ACC_PUBLIC, CONSTRUCTOR, null, null, writer);
+		generator.loadThis();
+		generator.loadArg(0);
+		generator.invokeConstructor(DISPATCHER, CONSTRUCTOR);
+		generator.returnValue();
+		generator.endMethod();
+
+		generator = new GeneratorAdapter(ACC_PROTECTED, DISPATCH, null, null, writer);
+		int failure = generator.newLocal(THROWABLE);
+		generator.visitInsn(ACONST_NULL);
+		generator.storeLocal(failure);
+
+		for (int i = 0; i < kinds.length; ++i) {
+			int kind = kinds[i];
+			boolean timed = (kind & EventDispatcher.TIMED) != 0;
+			Label next = generator.newLabel();
+
+			loadElement(generator, "plugins", PLUGIN, i);
+			generator.invokeInterface(PLUGIN, IS_ENABLED);
+			generator.ifZCmp(GeneratorAdapter.EQ, next);
+
+			if ((kind & EventDispatcher.IGNORE_CANCELLED) != 0) {
+				Label notCancelled = generator.newLabel();
+				generator.loadArg(1);
+				generator.ifNull(notCancelled);
+				generator.loadArg(1);
+				generator.invokeInterface(CANCELLABLE, IS_CANCELLED);
+				generator.ifZCmp(GeneratorAdapter.NE, next);
+				generator.mark(notCancelled);
+			}
+
+			if (timed) {
+				Label untimed = generator.newLabel();
+				generator.loadArg(2);
+				generator.ifZCmp(GeneratorAdapter.EQ, untimed);
+				loadElement(generator, "timings", TIMING, i);
+				generator.invokeInterface(TIMING, START_TIMING);
+				generator.pop();
+				generator.mark(untimed);
+			}
+
+			Label tryStart = generator.newLabel();
+			Label tryEnd = generator.newLabel();
+			Label catchStart = generator.newLabel();
+			Label afterCatch = generator.newLabel();
+			generator.visitTryCatchBlock(tryStart, tryEnd, catchStart, THROWABLE.getInternalName());
+
+			generator.mark(tryStart);
+			if ((kind & EventDispatcher.GENERIC) != 0) {
+				loadElement(generator, "registrations", REGISTRATION, i);
+				generator.loadArg(0);
+				generator.invokeVirtual(REGISTRATION, CALL_EVENT);
+			} else {
+				if ((kind & EventDispatcher.INSTANCE_CHECKED) != 0) {
+					loadElement(generator, "eventClasses", CLASS, i);
+					generator.loadArg(0);
+					generator.invokeVirtual(CLASS, IS_INSTANCE);
+					generator.ifZCmp(GeneratorAdapter.EQ, tryEnd);
+				}
+				loadElement(generator, "executors", EXECUTOR, i);
+				loadElement(generator, "listeners", LISTENER, i);
+				generator.loadArg(0);
+				generator.invokeInterface(EXECUTOR, EXECUTE);
+			}
+			generator.mark(tryEnd);
+			generator.goTo(afterCatch);
+			generator.mark(catchStart);
+			generator.storeLocal(failure);
+			generator.mark(afterCatch);
+
+			if (timed) {
+				Label untimed = generator.newLabel();
+				generator.loadArg(2);
+				generator.ifZCmp(GeneratorAdapter.EQ, untimed);
+				loadElement(generator, "timings", TIMING, i);
+				generator.invokeInterface(TIMING, STOP_TIMING);
+				generator.mark(untimed);
+			}
+
+			generator.loadLocal(failure);
+			generator.ifNull(next);
+			generator.loadThis();
+			generator.push(i);
+			generator.loadArg(0);
+			generator.loadLocal(failure);
+			generator.loadArg(3);
+			generator.invokeVirtual(DISPATCHER, FAILED);
+			generator.visitInsn(ACONST_NULL);
+			generator.storeLocal(failure);
+
+			generator.mark(next);
+		}
+
+		generator.returnValue();
+		generator.endMethod();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static void loadElement(GeneratorAdapter generator, String field, Type elementType, int index) {
+		generator.loadThis();
+		generator.getField(DISPATCHER, field, Type.getType("[" + elementType.getDescriptor()));
+		generator.push(index);
+		generator.arrayLoad(elementType);
+	}
+}
@@ -0,0 +1,42 @@
+package eu.minewars.cloudspigot.event.dispatch;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+
+/**
+ * Wraps a generated executor to conform to what bukkit expects of executors:
+ * events that don't match the handler are skipped and exceptions are wrapped
+ * in an {@link EventException}.
+ */
+public final class InstanceCheckedEventExecutor implements EventExecutor {
+
+	private final Class<? extends Event> eventClass;
+	private final EventExecutor executor;
+
+	public InstanceCheckedEventExecutor(Class<? extends Event> eventClass, EventExecutor executor) {
+		this.eventClass = eventClass;
+		this.executor = executor;
+	}
+
+	public Class<? extends Event> getEventClass() {
+		return this.eventClass;
+	}
+
+	public EventExecutor getExecutor() {
+		return this.executor;
+	}
+
+	@Override
+	public void execute(Listener listener, Event event) throws EventException {
+		if (!this.eventClass.isInstance(event)) {
+			return;
+		}
+		try {
+			this.executor.execute(listener, event);
+		} catch (Exception e) {
+			throw new EventException(e);
+		}
+	}
+}
@@ -3,6 +3,8 @@ package org.bukkit.event;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.RegisteredListener;
 
+import eu.minewars.cloudspigot.event.dispatch.EventDispatcher; // CloudSpigot
+
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -17,6 +19,18 @@ public class HandlerList {
      */
     private volatile RegisteredListener[] handlers = null;
 
+    // CloudSpigot start
+    /**
+     * Dispatcher for the handler array, baked together with it.
+     */
+    private volatile EventDispatcher dispatcher = null;
+
+    /**
+     * Whether the handler array has any listener, baked together with it.
+     */
+    private volatile boolean hasListeners = false;
+    // CloudSpigot end
+
     /**
      * Dynamic handler lists. These are changed using register() and
      * unregister() and are automatically baked to the handlers array any time
@@ -53,6 +67,7 @@ public class HandlerList {
                         list.clear();
                     }
                     h.handlers = null;
+                    h.dispatcher = null; // CloudSpigot
                 }
             }
         }
@@ -108,6 +123,7 @@ public class HandlerList {
         if (handlerslots.get(listener.getPriority()).contains(listener))
             throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
         handlers = null;
+        dispatcher = null; // CloudSpigot
         handlerslots.get(listener.getPriority()).add(listener);
     }
 
@@ -130,6 +146,7 @@ public class HandlerList {
     public synchronized void unregister(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).remove(listener)) {
             handlers = null;
+            dispatcher = null; // CloudSpigot
         }
     }
 
@@ -148,7 +165,10 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) {
+            handlers = null;
+            dispatcher = null; // CloudSpigot
+        }
     }
 
     /**
@@ -166,7 +186,10 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) {
+            handlers = null;
+            dispatcher = null; // CloudSpigot
+        }
     }
 
     /**
@@ -178,7 +201,12 @@ public class HandlerList {
         for (Entry<EventPriority, ArrayList<RegisteredListener>> entry : handlerslots.entrySet()) {
             entries.addAll(entry.getValue());
         }
-        handlers = entries.toArray(new RegisteredListener[entries.size()]);
+        // CloudSpigot start - bake the dispatcher first, it is valid once the handlers are
+        RegisteredListener[] baked = entries.toArray(new RegisteredListener[entries.size()]);
+        dispatcher = EventDispatcher.create(baked);
+        hasListeners = baked.length != 0;
+        handlers = baked;
+        // CloudSpigot end
     }
 
     /**
@@ -192,6 +220,31 @@ public class HandlerList {
         return handlers;
     }
 
+    // CloudSpigot start
+    /**
+     * Get the dispatcher calling the baked registered listeners of this
+     * handler list
+     *
+     * @return the dispatcher
+     */
+    public EventDispatcher getDispatcher() {
+        EventDispatcher dispatcher;
+        while ((dispatcher = this.dispatcher) == null) bake();
+        return dispatcher;
+    }
+
+    /**
+     * Check whether any listener is registered to this handler list, so
+     * callers can skip creating an event nobody listens to
+     *
+     * @return true if there are registered listeners
+     */
+    public boolean hasListeners() {
+        if (handlers == null) bake();
+        return hasListeners;
+    }
+    // CloudSpigot end
+
     /**
      * Get a specific plugin's registered listeners associated with this
      * handler list
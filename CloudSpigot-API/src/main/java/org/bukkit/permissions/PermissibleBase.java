@@ -6,6 +6,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
@@ -74,34 +75,30 @@ public class PermissibleBase implements Permissible {
 			throw new IllegalArgumentException("Permission name cannot be null");
 		}
 
-		String name = inName.toLowerCase();
-		PermissionCheckEvent event = new PermissionCheckEvent(this, opable, name, false); // CloudSpigot - add
-																							// PermissionCheckEvent
+		// CloudSpigot start - cached decisions, PermissionCheckEvent only if someone listens
+		Map<String, Boolean> decisions = getDecisions(); // taken first, a decision made while recalculating goes to the replaced map
+		Boolean decision = decisions.get(inName);
+		if (decision == null) {
+			String name = inName.toLowerCase();
 
-		if (isPermissionSet(name)) {
-			// return permissions.get(name).getValue(); // CloudSpigot
-			event = new PermissionCheckEvent(this, opable, name, permissions.get(name).getValue()); // CloudSpigot - add
-																									// PermissionCheckEvent
-		} else {
-			Permission perm = Bukkit.getServer().getPluginManager().getPermission(name);
-
-			if (perm != null) {
-				// return perm.getDefault().getValue(isOp()); // CloudSpigot
-				event = new PermissionCheckEvent(this, opable, name, perm.getDefault().getValue(isOp())); // CloudSpigot-
-																											// add
-																											// PermissionCheckEvent
+			if (isPermissionSet(name)) {
+				decision = permissions.get(name).getValue();
 			} else {
-				// return Permission.DEFAULT_PERMISSION.getValue(isOp()); // CloudSpigot
-				event = new PermissionCheckEvent(this, opable, name, Permission.DEFAULT_PERMISSION.getValue(isOp())); // CloudSpigot
-																														// -
-																														// add
-																														// PermissionCheckEvent
+				Permission perm = Bukkit.getServer().getPluginManager().getPermission(name);
+
+				if (perm != null) {
+					decision = perm.getDefault().getValue(isOp());
+				} else {
+					decision = Permission.DEFAULT_PERMISSION.getValue(isOp());
+				}
+			}
+			if (decisions.size() >= MAX_DECISIONS) {
+				decisions.clear(); // plugins checking generated names
 			}
+			decisions.put(inName, decision);
 		}
 
-		// CloudSpigot start - add PermissionCheckEvent
-		Bukkit.getPluginManager().callEvent(event);
-		return event.getHasPermission();
+		return callCheckEvent(inName, decision);
 		// CloudSpigot end
 	}
 
@@ -112,23 +109,69 @@ public class PermissibleBase implements Permissible {
 		}
 
 		String name = perm.getName().toLowerCase();
-		PermissionCheckEvent event = new PermissionCheckEvent(this, opable, name, false); // CloudSpigot - add
-																							// PermissionCheckEvent
+		// CloudSpigot start - PermissionCheckEvent only if someone listens
+		boolean value;
 
 		if (isPermissionSet(name)) {
-			// return permissions.get(name).getValue(); // CloudSpigot
-			event = new PermissionCheckEvent(this, opable, name, permissions.get(name).getValue()); // CloudSpigot - add
-																									// PermissionCheckEvent
+			value = permissions.get(name).getValue();
+		} else {
+			value = perm.getDefault().getValue(isOp());
+		}
+
+		return callCheckEvent(name, value);
+		// CloudSpigot end
+	}
+
+	// CloudSpigot start - PermissionCheckEvent fast path and decision cache
+	private static final int MAX_DECISIONS = 1024;
+	private static volatile int registeredPermissionsVersion;
+
+	private volatile Decisions decisions = new Decisions(registeredPermissionsVersion);
+
+	/**
+	 * The decisions made under one version of the permissions, replaced instead
+	 * of cleared so a check still running when they change cannot store its
+	 * decision in the new ones.
+	 */
+	private static final class Decisions {
+		private final int version;
+		// by op state, the op state can change before the permissions are recalculated
+		private final Map<String, Boolean> op = new ConcurrentHashMap<String, Boolean>();
+		private final Map<String, Boolean> notOp = new ConcurrentHashMap<String, Boolean>();
+
+		private Decisions(int version) {
+			this.version = version;
 		}
-		// return perm.getDefault().getValue(isOp()); // CloudSpigot
-		event = new PermissionCheckEvent(this, opable, name, perm.getDefault().getValue(isOp())); // CloudSpigot - add
-																									// PermissionCheckEvent
+	}
 
-		// CloudSpigot start - add PermissionCheckEvent
+	/**
+	 * Forgets the cached decisions of every permissible, called when the
+	 * registered permissions or their defaults change.
+	 */
+	public static void invalidateDecisions() {
+		++registeredPermissionsVersion;
+	}
+
+	private Map<String, Boolean> getDecisions() {
+		Decisions decisions = this.decisions;
+		int version = registeredPermissionsVersion;
+		if (decisions.version != version) {
+			decisions = new Decisions(version);
+			this.decisions = decisions;
+		}
+		return isOp() ? decisions.op : decisions.notOp;
+	}
+
+	private boolean callCheckEvent(String name, boolean value) {
+		if (!PermissionCheckEvent.getHandlerList().hasListeners()) {
+			return value;
+		}
+
+		PermissionCheckEvent event = new PermissionCheckEvent(this, opable, name.toLowerCase(), value);
 		Bukkit.getPluginManager().callEvent(event);
 		return event.getHasPermission();
-		// CloudSpigot end
 	}
+	// CloudSpigot end
 
 	@Override
 	public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value) {
@@ -212,6 +255,8 @@ public class PermissibleBase implements Permissible {
 		for (PermissionAttachment attachment : attachments) {
 			calculateChildPermissions(attachment.getPermissions(), false, attachment);
 		}
+
+		decisions = new Decisions(registeredPermissionsVersion); // CloudSpigot - drop what was decided before or while recalculating
 	}
 
 	public synchronized void clearPermissions() {
@@ -225,6 +270,10 @@ public class PermissibleBase implements Permissible {
 		Bukkit.getServer().getPluginManager().unsubscribeFromDefaultPerms(true, parent);
 
 		permissions.clear();
+		// CloudSpigot start
+		opDecisions.clear();
+		decisions.clear();
+		// CloudSpigot end
 	}
 
 	private void calculateChildPermissions(Map<String, Boolean> children, boolean invert,
@@ -17,6 +17,7 @@ import com.destroystokyo.paper.event.executor.StaticMethodHandleEventExecutor;
 import com.destroystokyo.paper.event.executor.asm.ASMEventExecutorGenerator;
 import com.destroystokyo.paper.event.executor.asm.ClassDefiner;
 import com.google.common.base.Preconditions;
+import eu.minewars.cloudspigot.event.dispatch.InstanceCheckedEventExecutor; // CloudSpigot
 // Paper end
 
 /**
@@ -62,17 +63,7 @@ public interface EventExecutor {
             try {
                 EventExecutor asmExecutor = executorClass.newInstance();
                 // Define a wrapper to conform to bukkit stupidity (passing in events that don't match and wrapper exception)
-                return new EventExecutor() {
-                    @Override
-                    public void execute(Listener listener, Event event) throws EventException {
-                        if (!eventClass.isInstance(event)) return;
-                        try {
-                            asmExecutor.execute(listener, event);
-                        } catch (Exception e) {
-                            throw new EventException(e);
-                        }
-                    }
-                };
+                return new InstanceCheckedEventExecutor(eventClass, asmExecutor); // CloudSpigot - named so the event dispatcher can unwrap it
             } catch (InstantiationException | IllegalAccessException e) {
                 throw new AssertionError("Unable to initialize generated event executor", e);
             }
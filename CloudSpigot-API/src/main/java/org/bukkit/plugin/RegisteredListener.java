@@ -47,6 +47,17 @@ public class RegisteredListener {
         return priority;
     }
 
+    // CloudSpigot start
+    /**
+     * Gets the executor for this registration
+     *
+     * @return Registered Executor
+     */
+    public EventExecutor getExecutor() {
+        return executor;
+    }
+    // CloudSpigot end
+
     /**
      * Calls the event executor
      *
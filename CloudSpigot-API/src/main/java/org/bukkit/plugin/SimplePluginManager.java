@@ -36,11 +36,12 @@ import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.util.FileUtil;
 
 import com.google.common.collect.ImmutableSet;
+import eu.minewars.cloudspigot.event.dispatch.EventDispatcher; // CloudSpigot
 
 /**
  * Handles all plugin management from the Server
  */
-public final class SimplePluginManager implements PluginManager {
+public class SimplePluginManager implements PluginManager { // CloudSpigot - not final, the server serializes events fired from world tick threads
     private final Server server;
     private final Map<Pattern, PluginLoader> fileAssociations = new HashMap<Pattern, PluginLoader>();
     private final List<Plugin> plugins = new ArrayList<Plugin>();
@@ -51,6 +52,7 @@ public final class SimplePluginManager implements PluginManager {
     private final Map<Boolean, Set<Permission>> defaultPerms = new LinkedHashMap<Boolean, Set<Permission>>();
     private final Map<String, Map<Permissible, Boolean>> permSubs = new HashMap<String, Map<Permissible, Boolean>>();
     private final Map<Boolean, Map<Permissible, Boolean>> defSubs = new HashMap<Boolean, Map<Permissible, Boolean>>();
+    private final EventDispatcher.ExceptionHandler listenerExceptionHandler = this::handleListenerException; // CloudSpigot
     public SimplePluginManager(Server instance, SimpleCommandMap commandMap) {
         server = instance;
         this.commandMap = commandMap;
@@ -501,40 +503,40 @@ public final class SimplePluginManager implements PluginManager {
      */
     public void callEvent(Event event) {
         // Paper - replace callEvent by merging to below method
-        HandlerList handlers = event.getHandlers();
-        RegisteredListener[] listeners = handlers.getRegisteredListeners();
+        // CloudSpigot start - call the listeners through the generated dispatcher
+        event.getHandlers().getDispatcher().callEvent(event, listenerExceptionHandler);
+    }
 
-        for (RegisteredListener registration : listeners) {
-            if (!registration.getPlugin().isEnabled()) {
-                continue;
+    /**
+     * Reports an exception thrown by a listener, every other listener is still
+     * called.
+     */
+    private void handleListenerException(RegisteredListener registration, Event event, Throwable ex) {
+        if (ex instanceof AuthorNagException) {
+            Plugin plugin = registration.getPlugin();
+
+            if (plugin.isNaggable()) {
+                plugin.setNaggable(false);
+
+                server.getLogger().log(Level.SEVERE, String.format(
+                        "Nag author(s): '%s' of '%s' about the following: %s",
+                        plugin.getDescription().getAuthors(),
+                        plugin.getDescription().getFullName(),
+                        ex.getMessage()
+                        ));
             }
+            return;
+        }
 
-            try {
-                registration.callEvent(event);
-            } catch (AuthorNagException ex) {
-                Plugin plugin = registration.getPlugin();
-
-                if (plugin.isNaggable()) {
-                    plugin.setNaggable(false);
-
-                    server.getLogger().log(Level.SEVERE, String.format(
-                            "Nag author(s): '%s' of '%s' about the following: %s",
-                            plugin.getDescription().getAuthors(),
-                            plugin.getDescription().getFullName(),
-                            ex.getMessage()
-                            ));
-                }
-            } catch (Throwable ex) {
-                // Paper start - error reporting
-                String msg = "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getDescription().getFullName();
-                server.getLogger().log(Level.SEVERE, msg, ex);
-                if (!(event instanceof ServerExceptionEvent)) { // We don't want to cause an endless event loop
-                    callEvent(new ServerExceptionEvent(new ServerEventException(msg, ex, registration.getPlugin(), registration.getListener(), event)));
-                }
-                // Paper end
-            }
+        // Paper start - error reporting
+        String msg = "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getDescription().getFullName();
+        server.getLogger().log(Level.SEVERE, msg, ex);
+        if (!(event instanceof ServerExceptionEvent)) { // We don't want to cause an endless event loop
+            callEvent(new ServerExceptionEvent(new ServerEventException(msg, ex, registration.getPlugin(), registration.getListener(), event)));
         }
+        // Paper end
     }
+    // CloudSpigot end
 
     public void registerEvents(Listener listener, Plugin plugin) {
         if (!plugin.isEnabled()) {
@@ -619,6 +621,7 @@ public final class SimplePluginManager implements PluginManager {
         }
 
         permissions.put(name, perm);
+        org.bukkit.permissions.PermissibleBase.invalidateDecisions(); // CloudSpigot
         calculatePermissionDefault(perm, dirty);
     }
 
@@ -632,12 +635,14 @@ public final class SimplePluginManager implements PluginManager {
 
     public void removePermission(String name) {
         permissions.remove(name.toLowerCase(java.util.Locale.ENGLISH));
+        org.bukkit.permissions.PermissibleBase.invalidateDecisions(); // CloudSpigot
     }
 
     public void recalculatePermissionDefaults(Permission perm) {
         if (perm != null && permissions.containsKey(perm.getName().toLowerCase(java.util.Locale.ENGLISH))) {
             defaultPerms.get(true).remove(perm);
             defaultPerms.get(false).remove(perm);
+            org.bukkit.permissions.PermissibleBase.invalidateDecisions(); // CloudSpigot
 
             calculatePermissionDefault(perm, true);
         }
@@ -763,6 +768,7 @@ public final class SimplePluginManager implements PluginManager {
         permissions.clear();
         defaultPerms.get(true).clear();
         defaultPerms.get(false).clear();
+        org.bukkit.permissions.PermissibleBase.invalidateDecisions(); // CloudSpigot
     }
     // Paper end
 
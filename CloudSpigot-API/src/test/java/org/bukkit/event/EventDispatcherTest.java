@@ -0,0 +1,182 @@
+package org.bukkit.event;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.plugin.TestPlugin;
+import org.junit.Test;
+
+import eu.minewars.cloudspigot.event.dispatch.EventDispatcher;
+
+public class EventDispatcherTest {
+
+    private static final EventDispatcher.ExceptionHandler RETHROW = new EventDispatcher.ExceptionHandler() {
+        @Override
+        public void handle(RegisteredListener registration, Event event, Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+    };
+
+    private final TestPlugin plugin = new TestPlugin(getClass().getName());
+
+    @Test
+    public void callsListenersInOrder() throws Exception {
+        List<Integer> calls = new ArrayList<Integer>();
+        RegisteredListener[] registrations = new RegisteredListener[5];
+        for (int i = 0; i < registrations.length; ++i) {
+            registrations[i] = register(new MoveListener(i, calls), false);
+        }
+
+        EventDispatcher.create(registrations).callEvent(newEvent(), RETHROW);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), calls);
+    }
+
+    @Test
+    public void skipsCancelledAndDisabled() throws Exception {
+        List<Integer> calls = new ArrayList<Integer>();
+        TestPlugin disabled = new TestPlugin("Disabled");
+        disabled.setEnabled(false);
+        MoveListener canceller = new MoveListener(0, calls);
+        canceller.cancel = true;
+
+        RegisteredListener[] registrations = {
+            register(canceller, false),
+            register(new MoveListener(1, calls), true),
+            register(new MoveListener(2, calls), false),
+            new RegisteredListener(new MoveListener(3, calls), executor(), EventPriority.NORMAL, disabled, false),
+        };
+
+        PlayerMoveEvent event = newEvent();
+        EventDispatcher.create(registrations).callEvent(event, RETHROW);
+        assertTrue(event.isCancelled());
+        assertEquals(Arrays.asList(0, 2), calls);
+    }
+
+    @Test
+    public void reportsExceptionsAndContinues() throws Exception {
+        List<Integer> calls = new ArrayList<Integer>();
+        MoveListener failing = new MoveListener(0, calls);
+        failing.fail = true;
+        RegisteredListener[] registrations = {
+            register(failing, false),
+            register(new MoveListener(1, calls), false),
+        };
+
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        EventDispatcher.create(registrations).callEvent(newEvent(), new EventDispatcher.ExceptionHandler() {
+            @Override
+            public void handle(RegisteredListener registration, Event event, Throwable throwable) {
+                failures.add(throwable);
+            }
+        });
+
+        assertEquals(Arrays.asList(0, 1), calls);
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof EventException);
+        assertTrue(failures.get(0).getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void skipsOtherEvents() throws Exception {
+        List<Integer> calls = new ArrayList<Integer>();
+        RegisteredListener[] registrations = { register(new MoveListener(0, calls), false) };
+
+        EventDispatcher.create(registrations).callEvent(new TestEvent(false), RETHROW);
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void rebakesOnUnregister() throws Exception {
+        List<Integer> calls = new ArrayList<Integer>();
+        HandlerList handlers = new HandlerList();
+        RegisteredListener first = register(new MoveListener(0, calls), false);
+        handlers.register(first);
+        handlers.register(register(new MoveListener(1, calls), false));
+
+        handlers.getDispatcher().callEvent(newEvent(), RETHROW);
+        handlers.unregister(first);
+        handlers.getDispatcher().callEvent(newEvent(), RETHROW);
+        assertEquals(Arrays.asList(0, 1, 1), calls);
+    }
+
+    @Test
+    public void hasListenersFollowsRegistrations() throws Exception {
+        HandlerList handlers = new HandlerList();
+        assertFalse(handlers.hasListeners());
+
+        RegisteredListener registration = register(new MoveListener(0, null), false);
+        handlers.register(registration);
+        assertTrue(handlers.hasListeners());
+
+        handlers.unregister(registration);
+        assertFalse(handlers.hasListeners());
+    }
+
+    @Test
+    public void generatedMatchesLoop() throws Exception {
+        List<Integer> loopCalls = new ArrayList<Integer>();
+        List<Integer> generatedCalls = new ArrayList<Integer>();
+        EventDispatcher loop = EventDispatcher.createLoop(listeners(loopCalls));
+        EventDispatcher generated = EventDispatcher.create(listeners(generatedCalls));
+
+        loop.callEvent(newEvent(), RETHROW);
+        generated.callEvent(newEvent(), RETHROW);
+        assertEquals(loopCalls, generatedCalls);
+        assertFalse(loopCalls.isEmpty());
+    }
+
+    // every other listener ignores cancelled events, the seventh cancels
+    private RegisteredListener[] listeners(List<Integer> calls) throws Exception {
+        RegisteredListener[] registrations = new RegisteredListener[20];
+        for (int i = 0; i < registrations.length; ++i) {
+            MoveListener listener = new MoveListener(i, calls);
+            listener.cancel = i == 7;
+            registrations[i] = register(listener, i % 2 == 0);
+        }
+        return registrations;
+    }
+
+    private RegisteredListener register(MoveListener listener, boolean ignoreCancelled) throws Exception {
+        return new RegisteredListener(listener, executor(), EventPriority.NORMAL, plugin, ignoreCancelled);
+    }
+
+    private static EventExecutor executor() throws Exception {
+        return EventExecutor.create(MoveListener.class.getMethod("onMove", PlayerMoveEvent.class), PlayerMoveEvent.class);
+    }
+
+    private static PlayerMoveEvent newEvent() {
+        return new PlayerMoveEvent(null, new Location(null, 0, 64, 0), new Location(null, 1, 64, 0));
+    }
+
+    public static class MoveListener implements Listener {
+        private final int id;
+        private final List<Integer> calls;
+        boolean cancel;
+        boolean fail;
+
+        public MoveListener(int id, List<Integer> calls) {
+            this.id = id;
+            this.calls = calls;
+        }
+
+        @EventHandler
+        public void onMove(PlayerMoveEvent event) {
+            if (calls != null) {
+                calls.add(id);
+            }
+            if (cancel) {
+                event.setCancelled(true);
+            }
+            if (fail) {
+                throw new IllegalStateException("listener failure");
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.bukkit.permissions;
+
+import static org.junit.Assert.*;
+
+import org.bukkit.TestServer;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.plugin.SimplePluginManager;
+import org.bukkit.plugin.TestPlugin;
+import org.junit.After;
+import org.junit.Test;
+
+import eu.minewars.cloudspigot.event.permission.PermissionCheckEvent;
+
+public class PermissibleBaseTest {
+    private static final PluginManager pm = TestServer.getInstance().getPluginManager();
+
+    private final TestPlugin plugin = new TestPlugin("PermissibleBaseTest");
+
+    private static class Operator implements ServerOperator {
+        private boolean op;
+
+        public boolean isOp() {
+            return op;
+        }
+
+        public void setOp(boolean value) {
+            op = value;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        PermissionCheckEvent.getHandlerList().unregister(plugin);
+        ((SimplePluginManager) pm).clearPermissions();
+    }
+
+    private void denyEverything() {
+        PermissionCheckEvent.getHandlerList().register(new RegisteredListener(new Listener() {}, new EventExecutor() {
+            public void execute(Listener listener, Event event) {
+                ((PermissionCheckEvent) event).setHasPermission(false);
+            }
+        }, EventPriority.NORMAL, plugin, false));
+    }
+
+    @Test
+    public void testCachedDecisionFollowsAttachments() {
+        PermissibleBase permissible = new PermissibleBase(new Operator());
+        assertFalse(permissible.hasPermission("test.node"));
+
+        PermissionAttachment attachment = permissible.addAttachment(plugin, "test.node", true);
+        assertTrue(permissible.hasPermission("test.node"));
+        assertTrue(permissible.hasPermission("TEST.Node"));
+
+        attachment.setPermission("test.node", false);
+        assertFalse(permissible.hasPermission("test.node"));
+
+        attachment.remove();
+        assertFalse(permissible.hasPermission("test.node"));
+    }
+
+    @Test
+    public void testCachedDecisionFollowsOpAndDefaults() {
+        Operator operator = new Operator();
+        PermissibleBase permissible = new PermissibleBase(operator);
+        assertFalse(permissible.hasPermission("test.op"));
+        operator.setOp(true);
+        assertTrue(permissible.hasPermission("test.op")); // unregistered permissions default to op
+
+        Permission permission = new Permission("test.op", PermissionDefault.FALSE);
+        pm.addPermission(permission);
+        assertFalse(permissible.hasPermission("test.op"));
+
+        permission.setDefault(PermissionDefault.TRUE);
+        assertTrue(permissible.hasPermission("test.op"));
+        operator.setOp(false);
+        assertTrue(permissible.hasPermission("test.op"));
+    }
+
+    @Test
+    public void testPermissionObjectUsesSetValue() {
+        PermissibleBase permissible = new PermissibleBase(new Operator());
+        permissible.addAttachment(plugin, "test.object", true);
+        assertTrue(permissible.hasPermission(new Permission("test.object", PermissionDefault.FALSE)));
+        assertFalse(permissible.hasPermission(new Permission("test.other", PermissionDefault.FALSE)));
+    }
+
+    @Test
+    public void testListenerStillDecides() {
+        PermissibleBase permissible = new PermissibleBase(new Operator());
+        permissible.addAttachment(plugin, "test.node", true);
+        assertTrue(permissible.hasPermission("test.node"));
+
+        denyEverything();
+        assertFalse(permissible.hasPermission("test.node"));
+        assertFalse(permissible.hasPermission(new Permission("test.node")));
+    }
+
+    @Test
+    public void testManyNodesStayCorrect() {
+        PermissibleBase permissible = new PermissibleBase(new Operator());
+        permissible.addAttachment(plugin, "test.node", true);
+
+        for (int i = 0; i < 5000; i++) {
+            assertFalse(permissible.hasPermission("test.generated." + i));
+            assertTrue(permissible.hasPermission("test.node"));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package co.aikar.timings;
 
 import com.google.common.collect.MapMaker;
 import net.minecraft.server.*;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitTask;
 
@@ -14,6 +15,7 @@ public final class MinecraftTimings {
     public static final Timing playerListTimer = Timings.ofSafe("Player List");
     public static final Timing commandFunctionsTimer = Timings.ofSafe("Command Functions");
     public static final Timing connectionTimer = Timings.ofSafe("Connection Handler");
+    public static final Timing connectionFlushTimer = Timings.ofSafe("Connection Handler - Flush"); // CloudSpigot
     public static final Timing tickablesTimer = Timings.ofSafe("Tickables");
     public static final Timing minecraftSchedulerTimer = Timings.ofSafe("Minecraft Scheduler");
     public static final Timing bukkitSchedulerTimer = Timings.ofSafe("Bukkit Scheduler");
@@ -38,6 +40,16 @@ public final class MinecraftTimings {
 
     public static final Timing antiXrayUpdateTimer = Timings.ofSafe("anti-xray - update");
     public static final Timing antiXrayObfuscateTimer = Timings.ofSafe("anti-xray - obfuscate");
+    public static final Timing antiXrayQueueWaitTimer = Timings.ofSafe("anti-xray - queue wait"); // CloudSpigot
+
+    public static final Timing parallelWorldTickTimer = Timings.ofSafe("Parallel World Tick"); // CloudSpigot
+    public static final Timing parallelWorldTickCriticalPathTimer = Timings.ofSafe("Parallel World Tick - Critical Path"); // CloudSpigot
+    public static final Timing parallelWorldTickHandoffTimer = Timings.ofSafe("Parallel World Tick - Handoff"); // CloudSpigot
+
+    public static final Timing chunkIOWriteTimer = Timings.ofSafe("Chunk I/O - Region Write"); // CloudSpigot
+    public static final Timing chunkIOQueueWaitTimer = Timings.ofSafe("Chunk I/O - Queue Wait"); // CloudSpigot
+
+    public static final Timing worldPregenTimer = Timings.ofSafe("World Pre-generation"); // CloudSpigot
 
     private static final Map<Class<? extends Runnable>, String> taskNameCache = new MapMaker().weakKeys().makeMap();
 
@@ -110,6 +122,20 @@ public final class MinecraftTimings {
         return Timings.ofSafe(plugin, "Cancel Tasks");
     }
 
+    // CloudSpigot start
+    /**
+     * Records a duration that was measured off the main thread, nested under the
+     * timer that is currently running on the main thread.
+     * @param timing
+     * @param nanos
+     */
+    public static void addTime(Timing timing, long nanos) {
+        if (Timings.timingsEnabled && timing instanceof TimingHandler && Bukkit.isPrimaryThread()) {
+            ((TimingHandler) timing).addDiff(nanos, TimingHandler.TIMING_STACK.peekLast());
+        }
+    }
+    // CloudSpigot end
+
     public static void stopServer() {
         TimingsManager.stopServer();
     }
@@ -122,6 +148,12 @@ public final class MinecraftTimings {
         return Timings.ofSafe("Structure Generator - " + structureGenerator.getName(), structureGenerationTimer);
     }
 
+    // CloudSpigot start
+    public static Timing getChunkIOWorkerTiming(int worker) {
+        return Timings.ofSafe("Chunk I/O - Region Write - Worker #" + (worker + 1), chunkIOWriteTimer);
+    }
+    // CloudSpigot end
+
     public static Timing getPacketTiming(Packet<?> packet) {
         return Timings.ofSafe("## Packet - " + packet.getClass().getSimpleName(), packetProcessTimer);
     }
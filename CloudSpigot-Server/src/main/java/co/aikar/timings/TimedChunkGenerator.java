@@ -47,6 +47,8 @@ public class TimedChunkGenerator extends InternalChunkGenerator {
         timedGenerator = gen;
     }
 
+    public InternalChunkGenerator getHandle() { return timedGenerator; } // CloudSpigot
+
     @Override
     @Deprecated
     public byte[] generate(org.bukkit.World world, Random random, int x, int z) {
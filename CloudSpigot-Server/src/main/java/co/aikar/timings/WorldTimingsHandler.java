@@ -32,8 +32,12 @@ public class WorldTimingsHandler {
     public final Timing tileEntityPending;
     public final Timing tracker1;
     public final Timing tracker2;
+    public final Timing trackerCompute; // CloudSpigot
+    public final Timing trackerSend; // CloudSpigot
+    public final Timing trackerFlush; // CloudSpigot
     public final Timing doTick;
     public final Timing tickEntities;
+    public final Timing parallelTick; // CloudSpigot
 
     public final Timing syncChunkLoadTimer;
     public final Timing syncChunkLoadDataTimer;
@@ -41,6 +45,8 @@ public class WorldTimingsHandler {
     public final Timing syncChunkLoadPostTimer;
     public final Timing syncChunkLoadNBTTimer;
     public final Timing syncChunkLoadPopulateNeighbors;
+    public final Timing chunkGenerationAsync; // CloudSpigot
+    public final Timing chunkGenerationFinish; // CloudSpigot
     public final Timing chunkGeneration;
     public final Timing chunkIOStage1;
     public final Timing chunkIOStage2;
@@ -50,6 +56,7 @@ public class WorldTimingsHandler {
     public final Timing chunkSaveData;
 
     public final Timing lightingQueueTimer;
+    public final Timing lightEngine; // CloudSpigot
 
     public WorldTimingsHandler(World server) {
         String name = server.worldData.getName() +" - ";
@@ -85,6 +92,8 @@ public class WorldTimingsHandler {
         syncChunkLoadPostTimer = Timings.ofSafe(name + "chunkLoad - Post");
         syncChunkLoadNBTTimer = Timings.ofSafe(name + "chunkLoad - NBT");
         syncChunkLoadPopulateNeighbors = Timings.ofSafe(name + "chunkLoad - Populate Neighbors");
+        chunkGenerationAsync = Timings.ofSafe(name + "chunkGeneration - Async Terrain"); // CloudSpigot
+        chunkGenerationFinish = Timings.ofSafe(name + "chunkGeneration - Finish"); // CloudSpigot
         chunkGeneration = Timings.ofSafe(name + "chunkGeneration");
         chunkIOStage1 = Timings.ofSafe(name + "ChunkIO Stage 1 - DiskIO");
         chunkIOStage2 = Timings.ofSafe(name + "ChunkIO Stage 2 - Post Load");
@@ -95,9 +104,14 @@ public class WorldTimingsHandler {
 
         tracker1 = Timings.ofSafe(name + "tracker stage 1");
         tracker2 = Timings.ofSafe(name + "tracker stage 2");
+        trackerCompute = Timings.ofSafe(name + "tracker - Compute"); // CloudSpigot
+        trackerSend = Timings.ofSafe(name + "tracker - Send"); // CloudSpigot
+        trackerFlush = Timings.ofSafe(name + "tracker - Flush Packets"); // CloudSpigot
         doTick = Timings.ofSafe(name + "doTick");
         tickEntities = Timings.ofSafe(name + "tickEntities");
+        parallelTick = Timings.ofSafe(name + "Parallel World Tick (wall time)"); // CloudSpigot
 
         lightingQueueTimer = Timings.ofSafe(name + "Lighting Queue");
+        lightEngine = Timings.ofSafe(name + "Light Engine"); // CloudSpigot
     }
 }
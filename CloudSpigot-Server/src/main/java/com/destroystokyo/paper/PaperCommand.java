@@ -25,14 +25,14 @@ public class PaperCommand extends Command {
     public PaperCommand(String name) {
         super(name);
         this.description = "Paper related commands";
-        this.usageMessage = "/paper [heap | entity | reload | version]";
+        this.usageMessage = "/paper [heap | entity | reload | version | recompress]";
         this.setPermission("bukkit.command.paper");
     }
 
     @Override
     public List<String> tabComplete(CommandSender sender, String alias, String[] args, Location location) throws IllegalArgumentException {
         if (args.length <= 1)
-            return CommandAbstract.getListMatchingLast(args, "heap", "entity", "reload", "version");
+            return CommandAbstract.getListMatchingLast(args, "heap", "entity", "reload", "version", "recompress");
 
         switch (args[0].toLowerCase(Locale.ENGLISH))
         {
@@ -42,6 +42,14 @@ public class PaperCommand extends Command {
                 if (args.length == 3)
                     return CommandAbstract.getListMatchingLast(args, EntityTypes.getEntityNameList().stream().map(MinecraftKey::toString).sorted().toArray(String[]::new));
                 break;
+            // CloudSpigot start
+            case "recompress":
+                if (args.length == 2)
+                    return CommandAbstract.getListMatchingLast(args, Bukkit.getWorlds().stream().map(World::getName).toArray(String[]::new));
+                if (args.length == 3)
+                    return CommandAbstract.getListMatchingLast(args, RegionFile.getCodecNames().toArray(new String[0]));
+                break;
+            // CloudSpigot end
         }
         return Collections.emptyList();
     }
@@ -65,6 +73,9 @@ public class PaperCommand extends Command {
             case "reload":
                 doReload(sender);
                 break;
+            case "recompress":
+                recompress(sender, args); // CloudSpigot
+                break;
             case "ver":
             case "version":
                 org.bukkit.Bukkit.getServer().getCommandMap().getCommand("version").execute(sender, commandLabel, new String[0]);
@@ -167,6 +178,103 @@ public class PaperCommand extends Command {
         }
     }
 
+    // CloudSpigot start
+    /**
+     * Rewrites the region files of a world with the world's codec, or the given one.
+     * Chunks already stored with the codec are only rewritten when a level is
+     * given, the level a chunk was stored with is not known. Loaded worlds are
+     * recompressed online, every region is processed on the FileIOThread worker
+     * that owns it so it is ordered with regular saves.
+     */
+    private void recompress(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Use /paper recompress <world> [codec] [level] to rewrite a world's region files.");
+            return;
+        }
+
+        World bukkitWorld = Bukkit.getWorld(args[1]);
+        WorldServer world = bukkitWorld != null ? ((CraftWorld) bukkitWorld).getHandle() : null;
+        int type = world != null ? world.paperConfig.chunkCompressionType : RegionFile.COMPRESSION_ZLIB;
+        int level = world != null ? world.paperConfig.chunkCompressionLevel : java.util.zip.Deflater.DEFAULT_COMPRESSION;
+        if (args.length > 2) {
+            type = RegionFile.getCodecType(args[2]);
+            if (type == -1) {
+                sender.sendMessage(ChatColor.RED + "Unknown codec " + args[2] + ", must be one of: " + String.join(", ", RegionFile.getCodecNames()));
+                return;
+            }
+        }
+        boolean force = args.length > 3;
+        if (force) {
+            try {
+                level = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                level = -2;
+            }
+            if (level < -1 || level > 9) {
+                sender.sendMessage(ChatColor.RED + "The level must be a number from 0 to 9, or -1 for the default.");
+                return;
+            }
+        }
+
+        List<File> directories = new ArrayList<>();
+        if (world != null) {
+            IChunkLoader loader = world.getChunkProviderServer().getChunkLoader();
+            if (loader instanceof ChunkRegionLoader) {
+                directories.add(((ChunkRegionLoader) loader).getDirectory());
+            }
+        } else {
+            // Not loaded, recompress every dimension found in the world folder
+            File folder = new File(Bukkit.getWorldContainer(), args[1]);
+            for (String dimension : new String[] { ".", "DIM-1", "DIM1" }) {
+                File directory = new File(folder, dimension);
+                if (new File(directory, "region").isDirectory()) {
+                    directories.add(directory);
+                }
+            }
+        }
+        List<int[]> regions = new ArrayList<>();
+        List<File> owners = new ArrayList<>();
+        for (File directory : directories) {
+            File[] files = new File(directory, "region").listFiles((dir, name) -> name.matches("r\\.-?\\d+\\.-?\\d+\\.mca"));
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String[] parts = file.getName().split("\\.");
+                regions.add(new int[] { Integer.parseInt(parts[1]), Integer.parseInt(parts[2]) });
+                owners.add(directory);
+            }
+        }
+
+        if (regions.isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "Could not find any region files for " + args[1] + ".");
+            return;
+        }
+
+        Command.broadcastCommandMessage(sender, ChatColor.YELLOW + "Recompressing " + regions.size() + " region files of " + args[1] + "...");
+        final int codec = type;
+        final int codecLevel = level;
+        final java.util.concurrent.atomic.AtomicInteger remaining = new java.util.concurrent.atomic.AtomicInteger(regions.size());
+        final java.util.concurrent.atomic.AtomicInteger chunks = new java.util.concurrent.atomic.AtomicInteger();
+        for (int i = 0; i < regions.size(); ++i) {
+            final File directory = owners.get(i);
+            final int chunkX = regions.get(i)[0] << 5;
+            final int chunkZ = regions.get(i)[1] << 5;
+            FileIOThread.a().a(directory, chunkX, chunkZ, () -> {
+                try {
+                    chunks.addAndGet(RegionFileCache.recompress(directory, chunkX, chunkZ, codec, codecLevel, force));
+                } catch (java.io.IOException e) {
+                    MinecraftServer.LOGGER.error("Failed to recompress region " + chunkX + "," + chunkZ + " of " + directory, e);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        MinecraftServer.getServer().processQueue.add(() -> Command.broadcastCommandMessage(sender, ChatColor.GREEN + "Recompressed " + chunks.get() + " chunks of " + args[1]));
+                    }
+                }
+            });
+        }
+    }
+    // CloudSpigot end
+
     private void dumpHeap(CommandSender sender) {
         File file = new File(new File(new File("."), "dumps"),
                 "heap-dump-" + DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss").format(LocalDateTime.now()) + "-server.hprof");
@@ -217,6 +217,12 @@ public class PaperConfig {
 																							// 6
 	}
 
+	public static int chunkSaveThreads = 2; // CloudSpigot
+
+	private static void chunkSaveThreads() { // CloudSpigot
+		chunkSaveThreads = Math.max(1, Math.min(8, getInt("settings.chunk-save-threads", 2)));
+	}
+
 	public static boolean enableFileIOThreadSleep;
 
 	private static void enableFileIOThreadSleep() {
@@ -237,6 +243,15 @@ public class PaperConfig {
 		regionFileCacheSize = getInt("settings.region-file-cache-size", 256);
 	}
 
+	public static boolean useMappedRegionFiles = false; // CloudSpigot
+
+	private static void useMappedRegionFiles() { // CloudSpigot
+		useMappedRegionFiles = getBoolean("settings.use-mapped-region-files", false);
+		if (useMappedRegionFiles) {
+			Bukkit.getLogger().info("Using memory-mapped region files for chunk reads");
+		}
+	}
+
 	public static boolean enablePlayerCollisions = true;
 
 	private static void enablePlayerCollisions() {
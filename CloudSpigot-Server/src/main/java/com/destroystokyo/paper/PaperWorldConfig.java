@@ -149,6 +149,14 @@ public class PaperWorldConfig {
         log("Lighting Queue enabled: " + queueLightUpdates);
     }
 
+    // CloudSpigot start
+    public String lightingEngine;
+    private void lightingEngine() {
+        lightingEngine = getString("lighting-engine", "vanilla");
+        log("Lighting engine: " + lightingEngine);
+    }
+    // CloudSpigot end
+
     public boolean disableEndCredits;
     private void disableEndCredits() {
         disableEndCredits = getBoolean("game-mechanics.disable-end-credits", false);
@@ -393,6 +401,14 @@ public class PaperWorldConfig {
         maxAutoSaveChunksPerTick = getInt("max-auto-save-chunks-per-tick", 24);
     }
 
+    public long autoSaveTickBudgetNanos = 2000000L;
+    public int autoSaveMaxInterval = -1;
+    private void autoSaveBudget() {
+        autoSaveTickBudgetNanos = Math.max(0, getInt("auto-save-tick-budget-micros", 2000)) * 1000L;
+        autoSaveMaxInterval = getInt("auto-save-max-interval", -1); // -1 twice the auto save interval
+        log("Auto save budget: " + (autoSaveTickBudgetNanos / 1000) + "us/tick, max interval " + (autoSaveMaxInterval > 0 ? autoSaveMaxInterval + " ticks" : "2x auto save interval"));
+    }
+
     public int queueSizeAutoSaveThreshold = 50;
     private void queueSizeAutoSaveThreshold() {
         queueSizeAutoSaveThreshold = getInt("save-queue-limit-for-auto-save", 50);
@@ -598,6 +614,19 @@ public class PaperWorldConfig {
         log("Village sieges are " + (this.villageSiegesEnabled ? "enabled" : "disabled"));
     }
 
+    public int chunkCompressionType = net.minecraft.server.RegionFile.COMPRESSION_ZLIB;
+    public int chunkCompressionLevel = java.util.zip.Deflater.DEFAULT_COMPRESSION;
+    private void chunkCompression() {
+        String codec = getString("chunk-compression.codec", "zlib");
+        chunkCompressionType = net.minecraft.server.RegionFile.getCodecType(codec);
+        if (chunkCompressionType == -1) {
+            logError("Unknown chunk compression codec " + codec + ", must be one of: " + String.join(", ", net.minecraft.server.RegionFile.getCodecNames()));
+            chunkCompressionType = net.minecraft.server.RegionFile.COMPRESSION_ZLIB;
+        }
+        chunkCompressionLevel = Math.max(-1, Math.min(9, getInt("chunk-compression.deflate-level", -1)));
+        log("Chunk compression: " + codec + (chunkCompressionLevel != -1 ? ", deflate level " + chunkCompressionLevel : ""));
+    }
+
     public boolean preventMovingIntoUnloadedChunks = false;
     private void preventMovingIntoUnloadedChunks() {
         preventMovingIntoUnloadedChunks = getBoolean("prevent-moving-into-unloaded-chunks", false);
@@ -4,11 +4,17 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAdder;
+
+import co.aikar.timings.MinecraftTimings;
 
 import com.destroystokyo.paper.PaperWorldConfig;
 
+import eu.minewars.cloudspigot.config.CloudSpigotConfig;
+
 import net.minecraft.server.Block;
 import net.minecraft.server.BlockPosition;
 import net.minecraft.server.Blocks;
@@ -129,12 +135,39 @@ public class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockControll
 
 	private static ExecutorService getExecutorServiceInstance() {
 		if (executorServiceInstance == null) {
-			executorServiceInstance = Executors.newSingleThreadExecutor();
+			// CloudSpigot start - a pool instead of a single thread, the chunk packets of a
+			// player may be done in any order, the network manager still sends them in order
+			executorServiceInstance = new ForkJoinPool(CloudSpigotConfig.antiXrayThreads, pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("Paper Anti-Xray Thread #" + thread.getPoolIndex());
+				return thread;
+			}, null, true);
+			// CloudSpigot end
 		}
 
 		return executorServiceInstance;
 	}
 
+	// CloudSpigot start
+	private static final LongAdder queueWaitNanos = new LongAdder();
+	private static final LongAdder obfuscateNanos = new LongAdder();
+
+	/**
+	 * Moves the time chunk packets spent waiting for and being obfuscated since
+	 * the last call into timings, must be called from the main thread.
+	 */
+	public static void recordTimings() {
+		long wait = queueWaitNanos.sumThenReset();
+		long obfuscate = obfuscateNanos.sumThenReset();
+		if (wait != 0L) {
+			MinecraftTimings.addTime(MinecraftTimings.antiXrayQueueWaitTimer, wait);
+		}
+		if (obfuscate != 0L) {
+			MinecraftTimings.addTime(MinecraftTimings.antiXrayObfuscateTimer, obfuscate);
+		}
+	}
+	// CloudSpigot end
+
 	@Override
 	public IBlockData[] getPredefinedBlockData(Chunk chunk, int chunkSectionIndex) {
 		// Return the block data which should be added to the data palettes so that they
@@ -199,26 +232,47 @@ public class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockControll
 	public void modifyBlocks(PacketPlayOutMapChunk packetPlayOutMapChunk,
 			PacketPlayOutMapChunkInfo packetPlayOutMapChunkInfo) {
 		if (asynchronous) {
-			executorService.submit((PacketPlayOutMapChunkInfoAntiXray) packetPlayOutMapChunkInfo);
+			((PacketPlayOutMapChunkInfoAntiXray) packetPlayOutMapChunkInfo).setQueued(System.nanoTime()); // CloudSpigot
+			executorService.execute((PacketPlayOutMapChunkInfoAntiXray) packetPlayOutMapChunkInfo); // CloudSpigot - submit -> execute, don't swallow exceptions
 		} else {
 			obfuscate((PacketPlayOutMapChunkInfoAntiXray) packetPlayOutMapChunkInfo);
 		}
 	}
 
-	// Actually these fields should be variables inside the obfuscate method but in
-	// sync mode or with SingleThreadExecutor in async mode it's okay
-	private final boolean[] solid = new boolean[Block.REGISTRY_ID.size()];
-	private final boolean[] obfuscate = new boolean[Block.REGISTRY_ID.size()];
-	// These boolean arrays represent chunk layers, true means don't obfuscate,
-	// false means obfuscate
-	private boolean[][] current = new boolean[16][16];
-	private boolean[][] next = new boolean[16][16];
-	private boolean[][] nextNext = new boolean[16][16];
-	private final DataBitsReader dataBitsReader = new DataBitsReader();
-	private final DataBitsWriter dataBitsWriter = new DataBitsWriter();
-	private final ChunkSection[] nearbyChunkSections = new ChunkSection[4];
+	// CloudSpigot start - scratch space per thread, packets are obfuscated on several threads
+	private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	private static final class Scratch {
+		private final boolean[] solid = new boolean[Block.REGISTRY_ID.size()];
+		private final boolean[] obfuscate = new boolean[Block.REGISTRY_ID.size()];
+		// These boolean arrays represent chunk layers, true means don't obfuscate,
+		// false means obfuscate
+		private final boolean[][] current = new boolean[16][16];
+		private final boolean[][] next = new boolean[16][16];
+		private final boolean[][] nextNext = new boolean[16][16];
+		private final DataBitsReader dataBitsReader = new DataBitsReader();
+		private final DataBitsWriter dataBitsWriter = new DataBitsWriter();
+		private final ChunkSection[] nearbyChunkSections = new ChunkSection[4];
+	}
+	// CloudSpigot end
 
 	public void obfuscate(PacketPlayOutMapChunkInfoAntiXray packetPlayOutMapChunkInfoAntiXray) {
+		// CloudSpigot start
+		long start = System.nanoTime();
+		if (packetPlayOutMapChunkInfoAntiXray.getQueued() != 0L) {
+			queueWaitNanos.add(start - packetPlayOutMapChunkInfoAntiXray.getQueued());
+		}
+
+		Scratch scratch = ChunkPacketBlockControllerAntiXray.scratch.get();
+		boolean[] solid = scratch.solid;
+		boolean[] obfuscate = scratch.obfuscate;
+		boolean[][] current = scratch.current;
+		boolean[][] next = scratch.next;
+		boolean[][] nextNext = scratch.nextNext;
+		DataBitsReader dataBitsReader = scratch.dataBitsReader;
+		DataBitsWriter dataBitsWriter = scratch.dataBitsWriter;
+		ChunkSection[] nearbyChunkSections = scratch.nearbyChunkSections;
+		// CloudSpigot end
 		boolean[] solidTemp = null;
 		boolean[] obfuscateTemp = null;
 		dataBitsReader.setDataBits(packetPlayOutMapChunkInfoAntiXray.getData());
@@ -350,6 +404,7 @@ public class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockControll
 			}
 		}
 
+		obfuscateNanos.add(System.nanoTime() - start); // CloudSpigot
 		packetPlayOutMapChunkInfoAntiXray.getPacketPlayOutMapChunk().setReady(true);
 	}
 
@@ -7,6 +7,7 @@ public class PacketPlayOutMapChunkInfoAntiXray extends PacketPlayOutMapChunkInfo
 
     private Chunk[] nearbyChunks;
     private final ChunkPacketBlockControllerAntiXray chunkPacketBlockControllerAntiXray;
+    private long queued; // CloudSpigot
 
     public PacketPlayOutMapChunkInfoAntiXray(PacketPlayOutMapChunk packetPlayOutMapChunk, Chunk chunk, int chunkSectionSelector, ChunkPacketBlockControllerAntiXray chunkPacketBlockControllerAntiXray) {
         super(packetPlayOutMapChunk, chunk, chunkSectionSelector);
@@ -21,6 +22,16 @@ public class PacketPlayOutMapChunkInfoAntiXray extends PacketPlayOutMapChunkInfo
         this.nearbyChunks = nearbyChunks;
     }
 
+    // CloudSpigot start
+    public long getQueued() {
+        return queued;
+    }
+
+    public void setQueued(long queued) {
+        this.queued = queued;
+    }
+    // CloudSpigot end
+
     @Override
     public void run() {
         chunkPacketBlockControllerAntiXray.obfuscate(this);
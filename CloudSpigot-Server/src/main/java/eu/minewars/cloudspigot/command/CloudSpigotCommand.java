@@ -0,0 +1,152 @@
+package eu.minewars.cloudspigot.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.CraftWorld;
+
+import eu.minewars.cloudspigot.config.CloudSpigotConfig;
+import eu.minewars.cloudspigot.world.WorldPregenerator;
+import net.minecraft.server.CommandAbstract;
+import net.minecraft.server.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.NetworkManager;
+import net.minecraft.server.WorldServer;
+
+public class CloudSpigotCommand extends Command {
+
+	public CloudSpigotCommand(String name) {
+		super(name);
+		this.description = "CloudSpigot related commands";
+		this.usageMessage = "/cloudspigot [pregen|network]";
+		this.setPermission("bukkit.command.cloudspigot");
+	}
+
+	@Override
+	public List<String> tabComplete(CommandSender sender, String alias, String[] args, Location location)
+			throws IllegalArgumentException {
+		if (args.length <= 1) {
+			return CommandAbstract.getListMatchingLast(args, "pregen", "network");
+		}
+
+		switch (args[0].toLowerCase(Locale.ENGLISH)) {
+		case "pregen":
+			if (args.length == 2) {
+				List<String> worlds = new ArrayList<String>();
+				for (World world : Bukkit.getWorlds()) {
+					worlds.add(world.getName());
+				}
+				return CommandAbstract.getListMatchingLast(args, worlds.toArray(new String[0]));
+			}
+			if (args.length == 3) {
+				return CommandAbstract.getListMatchingLast(args, "cancel");
+			}
+			break;
+		}
+		return Collections.emptyList();
+	}
+
+	@Override
+	public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+		if (!testPermission(sender)) {
+			return true;
+		}
+
+		if (args.length == 0) {
+			sender.sendMessage(ChatColor.RED + "Usage: " + usageMessage);
+			return false;
+		}
+
+		switch (args[0].toLowerCase(Locale.ENGLISH)) {
+		case "pregen":
+			pregen(sender, args);
+			break;
+		case "network":
+			network(sender);
+			break;
+		default:
+			sender.sendMessage(ChatColor.RED + "Usage: " + usageMessage);
+			return false;
+		}
+		return true;
+	}
+
+	private void network(CommandSender sender) {
+		if (!CloudSpigotConfig.flushConsolidation) {
+			sender.sendMessage(ChatColor.RED + "Flush consolidation is disabled, every packet is flushed on its own.");
+			return;
+		}
+
+		List<EntityPlayer> players = MinecraftServer.getServer().getPlayerList().players;
+		if (players.isEmpty()) {
+			sender.sendMessage(ChatColor.RED + "Nobody is online.");
+			return;
+		}
+		for (int i = 0; i < players.size(); ++i) {
+			EntityPlayer player = players.get(i);
+			NetworkManager networkManager = player.playerConnection.networkManager;
+			long flushes = networkManager.getFlushCount();
+			long bytes = networkManager.getFlushedBytes();
+			sender.sendMessage(ChatColor.GREEN + player.getName() + ": " + flushes + " flushes, "
+					+ (flushes == 0 ? 0 : bytes / flushes) + " bytes per flush");
+		}
+	}
+
+	private void pregen(CommandSender sender, String[] args) {
+		if (args.length == 1) {
+			if (WorldPregenerator.getActive().isEmpty()) {
+				sender.sendMessage(ChatColor.RED + "Use /cloudspigot pregen <world> <radius|cancel> to pre-generate a world.");
+				return;
+			}
+			for (WorldPregenerator pregenerator : WorldPregenerator.getActive()) {
+				sender.sendMessage(ChatColor.GREEN + pregenerator.getWorld().getWorld().getName() + ": "
+						+ pregenerator.getPercent() + "% of radius " + pregenerator.getRadius() + ", "
+						+ (pregenerator.isPaused() ? "paused (low TPS)" : pregenerator.getChunksPerTick() + " chunks/tick"));
+			}
+			return;
+		}
+
+		World bukkitWorld = Bukkit.getWorld(args[1]);
+		if (bukkitWorld == null) {
+			sender.sendMessage(ChatColor.RED + "Unknown world " + args[1]);
+			return;
+		}
+		WorldServer world = ((CraftWorld) bukkitWorld).getHandle();
+
+		if (args.length < 3) {
+			WorldPregenerator pregenerator = WorldPregenerator.get(world);
+			sender.sendMessage(pregenerator == null ? ChatColor.RED + bukkitWorld.getName() + " is not being pre-generated."
+					: ChatColor.GREEN + bukkitWorld.getName() + ": " + pregenerator.getPercent() + "% of radius " + pregenerator.getRadius());
+			return;
+		}
+
+		if (args[2].equalsIgnoreCase("cancel")) {
+			sender.sendMessage(WorldPregenerator.cancel(world) ? ChatColor.GREEN + "Cancelled the pre-generation of " + bukkitWorld.getName() + "."
+					: ChatColor.RED + bukkitWorld.getName() + " is not being pre-generated.");
+			return;
+		}
+
+		int radius;
+		try {
+			radius = Integer.parseInt(args[2]);
+		} catch (NumberFormatException ex) {
+			radius = -1;
+		}
+		if (radius <= 0 || radius > 30000000) {
+			sender.sendMessage(ChatColor.RED + "The radius must be a number of blocks between 1 and 30000000.");
+			return;
+		}
+
+		WorldPregenerator.start(world, radius);
+		sender.sendMessage(ChatColor.GREEN + "Pre-generating " + bukkitWorld.getName() + " within " + radius
+				+ " blocks of the world border center, progress is kept across restarts.");
+	}
+}
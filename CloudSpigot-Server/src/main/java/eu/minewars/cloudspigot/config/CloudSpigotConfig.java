@@ -2,14 +2,20 @@ package eu.minewars.cloudspigot.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import com.google.common.base.Throwables;
 
+import eu.minewars.cloudspigot.command.CloudSpigotCommand;
+import net.minecraft.server.MinecraftServer;
+
 public class CloudSpigotConfig {
 
 	private static File CONFIG_FILE;
@@ -20,6 +26,7 @@ public class CloudSpigotConfig {
 			+ "join us on our Discord server.\n" + "\n" + "Discord: https://discordapp.com/invite/5qp26hf\n";
 	/* ======================================================================== */
 	public static YamlConfiguration config;
+	static Map<String, Command> commands;
 
 	@SuppressWarnings("deprecation")
 	public static void init(File configFile) {
@@ -36,7 +43,18 @@ public class CloudSpigotConfig {
 		config.options().header(HEADER);
 		config.options().copyDefaults(true);
 
+		commands = new HashMap<String, Command>();
+		commands.put("cloudspigot", new CloudSpigotCommand("cloudspigot"));
+
 		animateExplosions();
+		parallelWorldTicking();
+		asyncChunkGeneration();
+		pregen();
+		entityTracker();
+		metadata();
+		network();
+		chunkPacketCache();
+		antiXray();
 		
 		try {
 			config.save(CONFIG_FILE);
@@ -45,6 +63,12 @@ public class CloudSpigotConfig {
 		}
 	}
 
+	public static void registerCommands() {
+		for (Map.Entry<String, Command> entry : commands.entrySet()) {
+			MinecraftServer.getServer().server.getCommandMap().register(entry.getKey(), "CloudSpigot", entry.getValue());
+		}
+	}
+
 	public static boolean animateExplosions;
 
 	private static void animateExplosions() {
@@ -52,4 +76,98 @@ public class CloudSpigotConfig {
 		animateExplosions = config.getBoolean("settings.animate-explosions", false);
 	}
 
+	public static boolean asyncChunkGeneration;
+	public static int asyncChunkGenerationThreads;
+
+	private static void asyncChunkGeneration() {
+		config.addDefault("settings.async-chunk-generation.enabled", false);
+		config.addDefault("settings.async-chunk-generation.threads", -1);
+		asyncChunkGeneration = config.getBoolean("settings.async-chunk-generation.enabled", false);
+		asyncChunkGenerationThreads = config.getInt("settings.async-chunk-generation.threads", -1);
+		if (asyncChunkGenerationThreads <= 0) { // -1 Automatic, half of the cores as the main thread populates
+			asyncChunkGenerationThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		}
+	}
+
+	public static int pregenMaxChunksPerTick;
+	public static double pregenPauseBelowTps;
+
+	private static void pregen() {
+		config.addDefault("settings.pregen.max-chunks-per-tick", 16);
+		config.addDefault("settings.pregen.pause-below-tps", 17.0D);
+		pregenMaxChunksPerTick = Math.max(1, config.getInt("settings.pregen.max-chunks-per-tick", 16));
+		pregenPauseBelowTps = config.getDouble("settings.pregen.pause-below-tps", 17.0D);
+	}
+
+	public static boolean parallelEntityTracker;
+	public static int parallelEntityTrackerThreads;
+	public static int parallelEntityTrackerMinEntries;
+	public static boolean entityTrackerBatchPackets;
+
+	private static void entityTracker() {
+		config.addDefault("settings.entity-tracker.parallel.enabled", false);
+		config.addDefault("settings.entity-tracker.parallel.threads", -1);
+		config.addDefault("settings.entity-tracker.parallel.min-entries", 256);
+		config.addDefault("settings.entity-tracker.batch-packets", true);
+		parallelEntityTracker = config.getBoolean("settings.entity-tracker.parallel.enabled", false);
+		parallelEntityTrackerThreads = config.getInt("settings.entity-tracker.parallel.threads", -1);
+		if (parallelEntityTrackerThreads <= 0) { // -1 Automatic, the tracking world waits for the workers
+			parallelEntityTrackerThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		}
+		parallelEntityTrackerMinEntries = config.getInt("settings.entity-tracker.parallel.min-entries", 256);
+		entityTrackerBatchPackets = config.getBoolean("settings.entity-tracker.batch-packets", true);
+	}
+
+	public static boolean clearBlockMetadataOnChunkUnload;
+
+	private static void metadata() {
+		config.addDefault("settings.metadata.clear-block-metadata-on-chunk-unload", true);
+		clearBlockMetadataOnChunkUnload = config.getBoolean("settings.metadata.clear-block-metadata-on-chunk-unload", true);
+	}
+
+	public static boolean flushConsolidation;
+	public static int flushConsolidationThreshold;
+	public static boolean framePacketsInEncoder;
+
+	private static void network() {
+		config.addDefault("settings.network.flush-consolidation.enabled", true);
+		config.addDefault("settings.network.flush-consolidation.threshold", 65536);
+		config.addDefault("settings.network.frame-packets-in-encoder", true);
+		flushConsolidation = config.getBoolean("settings.network.flush-consolidation.enabled", true);
+		// bytes waiting on a connection before it is flushed without waiting for the end of the tick
+		flushConsolidationThreshold = Math.max(1, config.getInt("settings.network.flush-consolidation.threshold", 65536));
+		// uncompressed packets get their length written by the encoder instead of being copied by the prepender
+		framePacketsInEncoder = config.getBoolean("settings.network.frame-packets-in-encoder", true);
+	}
+
+	public static boolean chunkPacketCache;
+
+	private static void chunkPacketCache() {
+		config.addDefault("settings.chunk-packet-cache", true);
+		chunkPacketCache = config.getBoolean("settings.chunk-packet-cache", true);
+	}
+
+	public static int antiXrayThreads;
+
+	private static void antiXray() {
+		config.addDefault("settings.anti-xray.threads", -1);
+		antiXrayThreads = config.getInt("settings.anti-xray.threads", -1);
+		if (antiXrayThreads <= 0) { // -1 Automatic, packets are obfuscated while the server ticks
+			antiXrayThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		}
+	}
+
+	public static boolean parallelWorldTicking;
+	public static int parallelWorldTickThreads;
+
+	private static void parallelWorldTicking() {
+		config.addDefault("settings.parallel-world-ticking.enabled", false);
+		config.addDefault("settings.parallel-world-ticking.threads", -1);
+		parallelWorldTicking = config.getBoolean("settings.parallel-world-ticking.enabled", false);
+		parallelWorldTickThreads = config.getInt("settings.parallel-world-ticking.threads", -1);
+		if (parallelWorldTickThreads <= 0) { // -1 Automatic, leave one core for the netty and chunk I/O threads
+			parallelWorldTickThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		}
+	}
+
 }
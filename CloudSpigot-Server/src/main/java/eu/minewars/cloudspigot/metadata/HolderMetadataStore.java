@@ -0,0 +1,136 @@
+package eu.minewars.cloudspigot.metadata;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.metadata.MetadataStoreBase;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * A metadata store that keeps the metadata of its subjects in a
+ * {@link MetadataHolder} attached to them, so lookups don't build a
+ * disambiguated key. Subjects that can't hold their metadata, like objects of
+ * other implementations, are still stored by disambiguated key.
+ * <p>
+ * Holders with metadata are tracked to invalidate or remove all values of a
+ * plugin. They are dropped with {@link #discard(MetadataHolder)} once their
+ * subject is gone.
+ */
+public abstract class HolderMetadataStore<T> extends MetadataStoreBase<T> {
+
+	private final Set<MetadataHolder> holders = Collections.newSetFromMap(new ConcurrentHashMap<MetadataHolder, Boolean>());
+
+	/**
+	 * @return whether the metadata of the subject is kept in a holder
+	 */
+	protected abstract boolean isHeld(T subject);
+
+	/**
+	 * @param create whether to create the holder if the subject has none yet
+	 * @return the holder of the subject, null if it has none
+	 */
+	protected abstract MetadataHolder getHolder(T subject, boolean create);
+
+	/**
+	 * Called once the last value of a holder was removed.
+	 */
+	protected void emptied(T subject, MetadataHolder holder) {
+	}
+
+	@Override
+	public void setMetadata(T subject, String metadataKey, MetadataValue newMetadataValue) {
+		if (!this.isHeld(subject)) {
+			super.setMetadata(subject, metadataKey, newMetadataValue);
+			return;
+		}
+
+		Validate.notNull(newMetadataValue, "Value cannot be null");
+		Validate.notNull(newMetadataValue.getOwningPlugin(), "Plugin cannot be null");
+		MetadataHolder holder = this.getHolder(subject, true);
+		synchronized (holder) {
+			if (holder.isEmpty()) {
+				this.holders.add(holder);
+			}
+			holder.set(metadataKey, newMetadataValue);
+		}
+	}
+
+	@Override
+	public List<MetadataValue> getMetadata(T subject, String metadataKey) {
+		if (!this.isHeld(subject)) {
+			return super.getMetadata(subject, metadataKey);
+		}
+
+		MetadataHolder holder = this.getHolder(subject, false);
+		return holder == null ? Collections.<MetadataValue>emptyList() : holder.get(metadataKey);
+	}
+
+	@Override
+	public boolean hasMetadata(T subject, String metadataKey) {
+		if (!this.isHeld(subject)) {
+			return super.hasMetadata(subject, metadataKey);
+		}
+
+		MetadataHolder holder = this.getHolder(subject, false);
+		return holder != null && holder.has(metadataKey);
+	}
+
+	@Override
+	public void removeMetadata(T subject, String metadataKey, Plugin owningPlugin) {
+		if (!this.isHeld(subject)) {
+			super.removeMetadata(subject, metadataKey, owningPlugin);
+			return;
+		}
+
+		Validate.notNull(owningPlugin, "Plugin cannot be null");
+		MetadataHolder holder = this.getHolder(subject, false);
+		if (holder == null) {
+			return;
+		}
+		synchronized (holder) {
+			if (holder.isEmpty()) {
+				return;
+			}
+			holder.remove(metadataKey, owningPlugin);
+			if (holder.isEmpty()) {
+				this.holders.remove(holder);
+				this.emptied(subject, holder);
+			}
+		}
+	}
+
+	@Override
+	public void invalidateAll(Plugin owningPlugin) {
+		super.invalidateAll(owningPlugin);
+		for (MetadataHolder holder : this.holders) {
+			holder.invalidateAll(owningPlugin);
+		}
+	}
+
+	@Override
+	public void removeAll(Plugin owningPlugin) {
+		super.removeAll(owningPlugin);
+		for (MetadataHolder holder : this.holders) {
+			synchronized (holder) {
+				holder.removeAll(owningPlugin);
+				if (holder.isEmpty()) {
+					this.holders.remove(holder);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops the metadata of a subject that is gone.
+	 */
+	protected void discard(MetadataHolder holder) {
+		synchronized (holder) {
+			holder.clear();
+			this.holders.remove(holder);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package eu.minewars.cloudspigot.metadata;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * The metadata of a single object, kept with the object instead of in a map
+ * keyed by a string built from the object and the metadata key.
+ * <p>
+ * Objects rarely have more than a few keys and a key rarely has values of more
+ * than one plugin, both are kept in small arrays. Keys are interned when they
+ * are set, so the usual lookup with a string constant finds them by
+ * reference. Every access is synchronized on the holder.
+ */
+public final class MetadataHolder {
+
+	private static final String[] NO_KEYS = new String[0];
+	private static final Values[] NO_VALUES = new Values[0];
+
+	private String[] keys = NO_KEYS;
+	private Values[] values = NO_VALUES;
+	private int size;
+
+	public synchronized boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public synchronized void set(String key, MetadataValue value) {
+		int index = this.indexOf(key);
+		if (index < 0) {
+			if (this.size == this.keys.length) {
+				int capacity = Math.max(2, this.size << 1);
+				this.keys = Arrays.copyOf(this.keys, capacity);
+				this.values = Arrays.copyOf(this.values, capacity);
+			}
+			index = this.size++;
+			this.keys[index] = key.intern();
+			this.values[index] = new Values();
+		}
+		this.values[index].put(value.getOwningPlugin(), value);
+	}
+
+	public synchronized List<MetadataValue> get(String key) {
+		int index = this.indexOf(key);
+		return index < 0 ? Collections.<MetadataValue>emptyList() : this.values[index].toList();
+	}
+
+	public synchronized boolean has(String key) {
+		return this.indexOf(key) >= 0;
+	}
+
+	public synchronized void remove(String key, Plugin plugin) {
+		int index = this.indexOf(key);
+		if (index >= 0 && this.values[index].remove(plugin)) {
+			this.removeAt(index);
+		}
+	}
+
+	public synchronized void invalidateAll(Plugin plugin) {
+		for (int i = 0; i < this.size; ++i) {
+			this.values[i].invalidate(plugin);
+		}
+	}
+
+	public synchronized void removeAll(Plugin plugin) {
+		for (int i = this.size - 1; i >= 0; --i) {
+			if (this.values[i].remove(plugin)) {
+				this.removeAt(i);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(this.keys, 0, this.size, null);
+		Arrays.fill(this.values, 0, this.size, null);
+		this.size = 0;
+	}
+
+	private int indexOf(String key) {
+		for (int i = 0; i < this.size; ++i) {
+			if (this.keys[i] == key) {
+				return i;
+			}
+		}
+		for (int i = 0; i < this.size; ++i) {
+			if (this.keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void removeAt(int index) {
+		int last = --this.size;
+		this.keys[index] = this.keys[last];
+		this.values[index] = this.values[last];
+		this.keys[last] = null;
+		this.values[last] = null;
+	}
+
+	/**
+	 * The values set for one key, at most one per plugin.
+	 */
+	private static final class Values {
+
+		private Plugin[] plugins = new Plugin[1];
+		private MetadataValue[] values = new MetadataValue[1];
+		private int size;
+
+		void put(Plugin plugin, MetadataValue value) {
+			int index = this.indexOf(plugin);
+			if (index < 0) {
+				if (this.size == this.plugins.length) {
+					this.plugins = Arrays.copyOf(this.plugins, this.size << 1);
+					this.values = Arrays.copyOf(this.values, this.size << 1);
+				}
+				index = this.size++;
+				this.plugins[index] = plugin;
+			}
+			this.values[index] = value;
+		}
+
+		/**
+		 * @return whether no value is left
+		 */
+		boolean remove(Plugin plugin) {
+			int index = this.indexOf(plugin);
+			if (index >= 0) {
+				int last = --this.size;
+				System.arraycopy(this.plugins, index + 1, this.plugins, index, last - index);
+				System.arraycopy(this.values, index + 1, this.values, index, last - index);
+				this.plugins[last] = null;
+				this.values[last] = null;
+			}
+			return this.size == 0;
+		}
+
+		void invalidate(Plugin plugin) {
+			int index = this.indexOf(plugin);
+			if (index >= 0) {
+				this.values[index].invalidate();
+			}
+		}
+
+		List<MetadataValue> toList() {
+			return this.size == 1 ? Collections.singletonList(this.values[0])
+					: Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(this.values, this.size)));
+		}
+
+		private int indexOf(Plugin plugin) {
+			for (int i = 0; i < this.size; ++i) {
+				if (this.plugins[i].equals(plugin)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+}
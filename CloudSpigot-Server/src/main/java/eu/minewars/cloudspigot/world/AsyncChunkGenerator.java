@@ -0,0 +1,186 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.aikar.timings.MinecraftTimings;
+import co.aikar.timings.TimedChunkGenerator;
+import eu.minewars.cloudspigot.config.CloudSpigotConfig;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.BiomeBase;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkCoordIntPair;
+import net.minecraft.server.ChunkGenerator;
+import net.minecraft.server.ChunkProviderServer;
+import net.minecraft.server.MinecraftServer;
+import org.bukkit.craftbukkit.generator.NormalChunkGenerator;
+
+/**
+ * Generates the terrain of new chunks for a world on a shared worker pool.
+ * <p>
+ * Requests are made on the main thread with a callback, like asynchronous
+ * chunk loads. Workers build the terrain with their own copy of the
+ * generator, finished chunks are picked up by {@link #processCompleted()}
+ * once per tick, which registers the structure starts, adds the chunk to the
+ * world, populates it and runs the callbacks.
+ */
+public final class AsyncChunkGenerator {
+
+	private static final ThreadLocal<Map<AsyncTerrainGenerator, AsyncTerrainGenerator>> WORKER_COPIES = ThreadLocal.withInitial(WeakHashMap::new);
+	private static ExecutorService pool;
+
+	private final ChunkProviderServer provider;
+	private final AsyncTerrainGenerator generator;
+	private final Long2ObjectOpenHashMap<PendingChunk> pending = new Long2ObjectOpenHashMap<PendingChunk>();
+	private final Queue<PendingChunk> completed = new ConcurrentLinkedQueue<PendingChunk>();
+
+	private AsyncChunkGenerator(ChunkProviderServer provider, AsyncTerrainGenerator generator) {
+		this.provider = provider;
+		this.generator = generator;
+	}
+
+	/**
+	 * @return a generator for the world of the provider, or null if async
+	 *         generation is disabled or the world uses a generator that does
+	 *         not support it
+	 */
+	public static AsyncChunkGenerator create(ChunkProviderServer provider) {
+		if (!CloudSpigotConfig.asyncChunkGeneration) {
+			return null;
+		}
+
+		ChunkGenerator generator = provider.chunkGenerator;
+		if (generator instanceof TimedChunkGenerator) {
+			generator = ((TimedChunkGenerator) generator).getHandle();
+		}
+		if (generator instanceof NormalChunkGenerator) {
+			generator = ((NormalChunkGenerator) generator).getHandle();
+		}
+		return generator instanceof AsyncTerrainGenerator ? new AsyncChunkGenerator(provider, (AsyncTerrainGenerator) generator) : null;
+	}
+
+	public boolean isPending(int x, int z) {
+		return this.pending.containsKey(ChunkCoordIntPair.a(x, z));
+	}
+
+	public int getPendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 * Queues the generation of a chunk, the callback runs on the main thread
+	 * once the chunk was added to the world. Main thread only.
+	 */
+	public void queue(int x, int z, Runnable callback) {
+		long key = ChunkCoordIntPair.a(x, z);
+		PendingChunk chunk = this.pending.get(key);
+		if (chunk != null) {
+			chunk.callbacks.add(callback);
+			return;
+		}
+
+		chunk = new PendingChunk(x, z, this.generator.sampleBiomes(x, z));
+		chunk.callbacks.add(callback);
+		this.pending.put(key, chunk);
+
+		final PendingChunk request = chunk;
+		getPool().execute(() -> {
+			long start = System.nanoTime();
+			try {
+				AsyncTerrainGenerator copy = WORKER_COPIES.get().computeIfAbsent(this.generator, AsyncTerrainGenerator::createWorkerCopy);
+				request.chunk = copy.generateTerrain(request.x, request.z, request.biomes);
+			} catch (Throwable throwable) {
+				request.failure = throwable;
+			} finally {
+				request.nanos = System.nanoTime() - start;
+				this.completed.add(request);
+			}
+		});
+	}
+
+	/**
+	 * Removes a callback, the chunk is not added to the world if no callback
+	 * is left once its terrain is done. Main thread only.
+	 */
+	public void drop(int x, int z, Runnable callback) {
+		PendingChunk chunk = this.pending.get(ChunkCoordIntPair.a(x, z));
+		if (chunk != null) {
+			chunk.callbacks.remove(callback);
+		}
+	}
+
+	/**
+	 * Adds the chunks finished since the last call to the world. Main thread
+	 * only.
+	 */
+	public void processCompleted() {
+		PendingChunk request;
+		while ((request = this.completed.poll()) != null) {
+			this.pending.remove(ChunkCoordIntPair.a(request.x, request.z));
+			MinecraftTimings.addTime(this.provider.world.timings.chunkGenerationAsync, request.nanos);
+			if (request.callbacks.isEmpty()) {
+				continue; // nobody is waiting for it anymore
+			}
+
+			this.provider.world.timings.chunkGenerationFinish.startTiming();
+			try {
+				if (request.failure != null) {
+					MinecraftServer.LOGGER.warn("Failed to generate chunk " + request.x + "," + request.z + " asynchronously, generating it on the main thread", request.failure);
+					this.provider.getChunkAt(request.x, request.z);
+				} else if (this.provider.getChunkIfLoaded(request.x, request.z) == null) {
+					if (this.provider.getChunkLoader().chunkExists(request.x, request.z)) {
+						// generated, changed and saved again while we were working
+						this.provider.getChunkAt(request.x, request.z);
+					} else {
+						this.generator.registerStructures(request.x, request.z);
+						this.provider.addGeneratedChunk(request.chunk);
+					}
+				}
+			} finally {
+				this.provider.world.timings.chunkGenerationFinish.stopTiming();
+			}
+
+			for (Runnable callback : request.callbacks) {
+				callback.run();
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			pool = Executors.newFixedThreadPool(CloudSpigotConfig.asyncChunkGenerationThreads, runnable -> {
+				Thread thread = new Thread(runnable, "Chunk Generation Thread - " + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			});
+		}
+		return pool;
+	}
+
+	private static final class PendingChunk {
+
+		private final int x;
+		private final int z;
+		private final BiomeBase[][] biomes;
+		private final List<Runnable> callbacks = new ArrayList<Runnable>(1);
+		// written by the worker, read after the completed queue hand off
+		private Chunk chunk;
+		private Throwable failure;
+		private long nanos;
+
+		PendingChunk(int x, int z, BiomeBase[][] biomes) {
+			this.x = x;
+			this.z = z;
+			this.biomes = biomes;
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package eu.minewars.cloudspigot.world;
+
+import net.minecraft.server.BiomeBase;
+import net.minecraft.server.Chunk;
+
+/**
+ * A chunk generator whose terrain stage can run off the main thread.
+ * <p>
+ * Generation is split into three steps: the biomes are sampled on the main
+ * thread (the world chunk manager and its caches are not thread safe), the
+ * terrain is built on a worker from those biomes, and the structure starts of
+ * the chunk are registered on the main thread again. Population is left to
+ * {@link Chunk#loadNearby} as usual.
+ */
+public interface AsyncTerrainGenerator {
+
+	/**
+	 * Samples the biomes the terrain step needs. Main thread only.
+	 */
+	BiomeBase[][] sampleBiomes(int x, int z);
+
+	/**
+	 * Creates a generator with the same settings but its own noise buffers,
+	 * random and carvers, used by a single worker thread.
+	 */
+	AsyncTerrainGenerator createWorkerCopy();
+
+	/**
+	 * Builds the terrain of the chunk. Only ever called on a copy owned by the
+	 * calling thread, the returned chunk is not added to the world.
+	 */
+	Chunk generateTerrain(int x, int z, BiomeBase[][] biomes);
+
+	/**
+	 * Registers the structure starts of the chunk. Main thread only.
+	 */
+	void registerStructures(int x, int z);
+}
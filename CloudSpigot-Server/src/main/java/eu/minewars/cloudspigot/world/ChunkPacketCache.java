@@ -0,0 +1,125 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.Arrays;
+
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkSection;
+
+/**
+ * The serialized sections of a full chunk packet, shared by the packets of
+ * every player the chunk is sent to while its blocks and light stay the same.
+ * <p>
+ * Sections count their block and light changes, the data is valid while the
+ * chunk has the same sections at the same counts and the same biomes.
+ * Anti-xray reads the blocks at the edges of the nearby chunks as well, with
+ * it the nearby chunks are checked the same way. The data is only shared once
+ * anti-xray is done with it, so every viewer gets the obfuscated sections.
+ */
+public final class ChunkPacketCache {
+
+	private final byte[] data;
+	private final int sectionMask;
+	private final ChunkSection[] sections;
+	private final int[] modCounts;
+	private final byte[] biomes;
+	private final Chunk[] nearbyChunks;
+	private final ChunkSection[][] nearbySections;
+	private final int[][] nearbyModCounts;
+
+	/**
+	 * Captures the state the data is serialized from, before anything changes.
+	 *
+	 * @param nearbyChunks the nearby chunks the data depends on, in the order
+	 *            of {@link #nearby(Chunk, int)}, or null
+	 */
+	public ChunkPacketCache(Chunk chunk, byte[] data, int sectionMask, Chunk[] nearbyChunks) {
+		this.data = data;
+		this.sectionMask = sectionMask;
+		this.sections = chunk.getSections().clone();
+		this.modCounts = modCounts(this.sections);
+		this.biomes = chunk.getBiomeIndex().clone();
+
+		if (nearbyChunks == null) {
+			this.nearbyChunks = null;
+			this.nearbySections = null;
+			this.nearbyModCounts = null;
+		} else {
+			this.nearbyChunks = nearbyChunks.clone();
+			this.nearbySections = new ChunkSection[nearbyChunks.length][];
+			this.nearbyModCounts = new int[nearbyChunks.length][];
+			for (int i = 0; i < nearbyChunks.length; ++i) {
+				if (nearbyChunks[i] != null) {
+					this.nearbySections[i] = nearbyChunks[i].getSections().clone();
+					this.nearbyModCounts[i] = modCounts(this.nearbySections[i]);
+				}
+			}
+		}
+	}
+
+	private static int[] modCounts(ChunkSection[] sections) {
+		int[] modCounts = new int[sections.length];
+		for (int i = 0; i < sections.length; ++i) {
+			if (sections[i] != Chunk.EMPTY_CHUNK_SECTION) {
+				modCounts[i] = sections[i].getModCount();
+			}
+		}
+		return modCounts;
+	}
+
+	private static boolean unchanged(ChunkSection[] sections, ChunkSection[] cached, int[] modCounts) {
+		for (int i = 0; i < sections.length; ++i) {
+			ChunkSection section = sections[i];
+			if (section != cached[i] || section != Chunk.EMPTY_CHUNK_SECTION && section.getModCount() != modCounts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The nearby chunks anti-xray looks at: west, east, north, south.
+	 */
+	private static Chunk nearby(Chunk chunk, int i) {
+		switch (i) {
+		case 0:
+			return chunk.world.getChunkIfLoaded(chunk.locX - 1, chunk.locZ);
+		case 1:
+			return chunk.world.getChunkIfLoaded(chunk.locX + 1, chunk.locZ);
+		case 2:
+			return chunk.world.getChunkIfLoaded(chunk.locX, chunk.locZ - 1);
+		default:
+			return chunk.world.getChunkIfLoaded(chunk.locX, chunk.locZ + 1);
+		}
+	}
+
+	/**
+	 * @return whether the data is still what the chunk would serialize to
+	 */
+	public boolean isValid(Chunk chunk) {
+		if (!unchanged(chunk.getSections(), this.sections, this.modCounts) || !Arrays.equals(chunk.getBiomeIndex(), this.biomes)) {
+			return false;
+		}
+
+		if (this.nearbyChunks != null) {
+			for (int i = 0; i < this.nearbyChunks.length; ++i) {
+				Chunk nearby = nearby(chunk, i);
+				if (nearby != this.nearbyChunks[i]
+						|| nearby != null && !unchanged(nearby.getSections(), this.nearbySections[i], this.nearbyModCounts[i])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the serialized sections, must not be modified
+	 */
+	public byte[] getData() {
+		return this.data;
+	}
+
+	public int getSectionMask() {
+		return this.sectionMask;
+	}
+}
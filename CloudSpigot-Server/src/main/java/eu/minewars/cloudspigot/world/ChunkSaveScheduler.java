@@ -0,0 +1,76 @@
+package eu.minewars.cloudspigot.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkProviderServer;
+
+/**
+ * Spreads the auto save of a world's chunks across ticks.
+ * <p>
+ * Loaded chunks are kept in the order they were last saved, oldest first, so
+ * a tick only looks at the chunks that are due instead of every loaded chunk.
+ * Due chunks are saved until the tick's time budget is used up; chunks not
+ * saved for longer than the maximum interval are saved regardless of the
+ * budget. A due chunk that turns out to be unmodified is moved to the back as
+ * if it was saved, which keeps the order intact and still saves any later
+ * change within one auto save period.
+ */
+public final class ChunkSaveScheduler {
+
+	private final Long2ObjectLinkedOpenHashMap<Chunk> chunks = new Long2ObjectLinkedOpenHashMap<Chunk>(8192);
+
+	public void add(Chunk chunk) {
+		this.chunks.putAndMoveToLast(chunk.chunkKey, chunk);
+	}
+
+	public void remove(long chunkKey) {
+		this.chunks.remove(chunkKey);
+	}
+
+	/**
+	 * Moves a chunk that was just saved to the back of the queue.
+	 */
+	public void saved(Chunk chunk) {
+		this.chunks.getAndMoveToLast(chunk.chunkKey);
+	}
+
+	/**
+	 * Saves due chunks, oldest first.
+	 *
+	 * @param provider the provider the chunks belong to
+	 * @param time the current world time
+	 * @param period ticks between saves of a modified chunk
+	 * @param maxInterval ticks after which a modified chunk is saved even if
+	 *            the budget is used up
+	 * @param budgetNanos time the tick may spend saving, or 0 to only save
+	 *            overdue chunks
+	 * @param limit maximum number of chunks to save within the budget
+	 * @return the number of chunks saved
+	 */
+	public int saveDue(ChunkProviderServer provider, long time, long period, long maxInterval, long budgetNanos, int limit) {
+		long deadline = System.nanoTime() + budgetNanos;
+		boolean budgetLeft = budgetNanos > 0 && limit > 0;
+		int saved = 0;
+		int visited = 0;
+		int size = this.chunks.size();
+
+		while (visited++ < size) {
+			Chunk chunk = this.chunks.get(this.chunks.firstLongKey());
+			long age = time - chunk.getLastSaved();
+			if (age < period || (!budgetLeft && age < maxInterval)) {
+				break; // everything behind was saved more recently
+			}
+
+			if (chunk.a(false)) {
+				provider.saveChunk(chunk, false); // moves it to the back
+				chunk.f(false);
+				++saved;
+				budgetLeft = budgetLeft && saved < limit && System.nanoTime() < deadline;
+			} else {
+				chunk.setLastSaved(time);
+				this.chunks.getAndMoveToLast(chunk.chunkKey);
+			}
+		}
+		return saved;
+	}
+}
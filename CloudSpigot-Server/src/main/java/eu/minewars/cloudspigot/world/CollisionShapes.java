@@ -0,0 +1,58 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.List;
+
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Block;
+import net.minecraft.server.BlockPosition;
+
+/**
+ * Collects block collision boxes without allocating boxes that are not hit.
+ * <p>
+ * Boxes of full cubes, by far the most common shape, are shared through a
+ * small direct mapped cache keyed by position: an entity standing on the
+ * ground asks for the same few boxes every tick. Boxes are immutable, the
+ * cache needs no synchronization, a lost update only costs an allocation.
+ */
+public final class CollisionShapes {
+
+	private static final int CACHE_BITS = 12;
+	private static final AxisAlignedBB[] FULL_CUBES = new AxisAlignedBB[1 << CACHE_BITS];
+
+	private CollisionShapes() {
+	}
+
+	/**
+	 * @return the box of a full cube at the position
+	 */
+	public static AxisAlignedBB getFullCube(int x, int y, int z) {
+		int index = (x * 0x9E3779B9 ^ y * 0xC2B2AE35 ^ z * 0x85EBCA6B) >>> (32 - CACHE_BITS);
+		AxisAlignedBB box = FULL_CUBES[index];
+		if (box == null || box.a != x || box.b != y || box.c != z) {
+			box = new AxisAlignedBB(x, y, z, x + 1, y + 1, z + 1);
+			FULL_CUBES[index] = box;
+		}
+		return box;
+	}
+
+	/**
+	 * Adds the shape, moved to the position, to the list if it intersects the
+	 * query box. Same result as {@code shape.a(position)} followed by an
+	 * intersection test.
+	 *
+	 * @param shape the block's collision box relative to the block, or null
+	 *            if it has none
+	 */
+	public static void addBox(BlockPosition position, AxisAlignedBB query, List<AxisAlignedBB> list, AxisAlignedBB shape) {
+		if (shape == null) {
+			return;
+		}
+
+		int x = position.getX();
+		int y = position.getY();
+		int z = position.getZ();
+		if (query.a(shape.a + x, shape.b + y, shape.c + z, shape.d + x, shape.e + y, shape.f + z)) {
+			list.add(shape == Block.j ? getFullCube(x, y, z) : shape.a(position));
+		}
+	}
+}
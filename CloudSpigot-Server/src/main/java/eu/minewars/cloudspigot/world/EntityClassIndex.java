@@ -0,0 +1,104 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.minecraft.server.Entity;
+import net.minecraft.server.EntityExperienceOrb;
+import net.minecraft.server.EntityHanging;
+import net.minecraft.server.EntityHuman;
+import net.minecraft.server.EntityInsentient;
+import net.minecraft.server.EntityItem;
+import net.minecraft.server.EntityLiving;
+import net.minecraft.server.EntityMinecartAbstract;
+import net.minecraft.server.IInventory;
+
+/**
+ * The entities of a chunk's sections bucketed by a few common base types, so
+ * a lookup for a type only visits the entities that can match.
+ * <p>
+ * An entity is in the bucket of every base type it is an instance of. A
+ * lookup uses the bucket of the first base type the class extends, bases
+ * are ordered so that is the narrowest one. Classes that extend none of them
+ * use the whole section. Buckets only ever hold candidates, lookups still
+ * check the class of every entity. Kept in sync with the chunk's entity
+ * slices by {@link net.minecraft.server.Chunk}.
+ */
+public final class EntityClassIndex {
+
+	private static final Class<?>[] BASES = { EntityHuman.class, EntityItem.class, EntityExperienceOrb.class,
+			EntityInsentient.class, EntityLiving.class, EntityHanging.class, EntityMinecartAbstract.class,
+			IInventory.class };
+	private static final ClassValue<Integer> BUCKET = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			for (int i = 0; i < BASES.length; ++i) {
+				if (BASES[i].isAssignableFrom(type)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	};
+	private static final List<Entity> EMPTY = Collections.emptyList();
+
+	// base type, section, created on first use
+	@SuppressWarnings("unchecked")
+	private final List<Entity>[][] buckets = new List[BASES.length][];
+
+	/**
+	 * @return the bucket index used for lookups of the class, or -1 if it has
+	 *         none
+	 */
+	public static int getBucket(Class<?> type) {
+		return BUCKET.get(type);
+	}
+
+	public void add(Entity entity, int section) {
+		for (int i = 0; i < BASES.length; ++i) {
+			if (BASES[i].isInstance(entity)) {
+				List<Entity>[] sections = this.buckets[i];
+				if (sections == null) {
+					sections = this.buckets[i] = newSections();
+				}
+				if (sections[section] == EMPTY) {
+					sections[section] = new ArrayList<Entity>(4);
+				}
+				sections[section].add(entity);
+			}
+		}
+	}
+
+	public void remove(Entity entity, int section) {
+		for (int i = 0; i < BASES.length; ++i) {
+			List<Entity>[] sections = this.buckets[i];
+			if (sections != null && BASES[i].isInstance(entity)) {
+				sections[section].remove(entity);
+			}
+		}
+	}
+
+	/**
+	 * @param bucket the index from {@link #getBucket(Class)}
+	 * @param all the section's entity slice, returned if there is no bucket
+	 * @return the entities of the section that can be of the type
+	 */
+	public List<Entity> get(int bucket, int section, List<Entity> all) {
+		if (bucket < 0) {
+			return all;
+		}
+
+		List<Entity>[] sections = this.buckets[bucket];
+		return sections == null ? EMPTY : sections[section];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Entity>[] newSections() {
+		List<Entity>[] sections = new List[16];
+		for (int i = 0; i < sections.length; ++i) {
+			sections[i] = EMPTY;
+		}
+		return sections;
+	}
+}
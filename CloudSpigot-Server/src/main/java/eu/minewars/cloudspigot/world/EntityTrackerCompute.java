@@ -0,0 +1,81 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.minewars.cloudspigot.config.CloudSpigotConfig;
+import net.minecraft.server.EntityTrackerEntry;
+
+/**
+ * Runs the compute phase of the entity tracker, the movement deltas and
+ * packets of every entry, across a fork-join pool shared by all worlds.
+ * <p>
+ * The world that is tracking waits for the whole phase, so its entities do
+ * not change while the workers read them. Small worlds are computed on the
+ * calling thread, splitting them up costs more than it saves.
+ */
+public final class EntityTrackerCompute {
+
+	private static final int SPLIT_THRESHOLD = 64;
+	private static ForkJoinPool pool;
+
+	private EntityTrackerCompute() {
+	}
+
+	/**
+	 * Calls {@link EntityTrackerEntry#computeUpdate()} on the first
+	 * {@code count} entries and returns once all are done.
+	 */
+	public static void computeAll(EntityTrackerEntry[] entries, int count) {
+		if (!CloudSpigotConfig.parallelEntityTracker || count < CloudSpigotConfig.parallelEntityTrackerMinEntries) {
+			for (int i = 0; i < count; ++i) {
+				entries[i].computeUpdate();
+			}
+			return;
+		}
+
+		getPool().invoke(new ComputeTask(entries, 0, count));
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			pool = new ForkJoinPool(CloudSpigotConfig.parallelEntityTrackerThreads, forkJoinPool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				thread.setName("Entity Tracker Thread - " + threadNumber.getAndIncrement());
+				return thread;
+			}, null, false);
+		}
+		return pool;
+	}
+
+	private static final class ComputeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final EntityTrackerEntry[] entries;
+		private final int from;
+		private final int to;
+
+		ComputeTask(EntityTrackerEntry[] entries, int from, int to) {
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= SPLIT_THRESHOLD) {
+				for (int i = this.from; i < this.to; ++i) {
+					this.entries[i].computeUpdate();
+				}
+				return;
+			}
+
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new ComputeTask(this.entries, this.from, middle), new ComputeTask(this.entries, middle, this.to));
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.ChunkCoordIntPair;
+import net.minecraft.server.Entity;
+import net.minecraft.server.EntityHuman;
+import net.minecraft.server.EntityPlayer;
+import net.minecraft.server.EntityTrackerEntry;
+import net.minecraft.server.MathHelper;
+
+/**
+ * Spatial index of the players and tracker entries of a world, so tracking
+ * only looks at the players near an entity and the entities near a player
+ * instead of every pair.
+ * <p>
+ * Both are bucketed into cells of 4x4 chunks, a tracking range of 128 blocks
+ * spans at most 5x5 cells. Entries are indexed by the position last sent to
+ * clients, which is what their range check uses; players by their current
+ * position, refreshed before every pass over the tracker.
+ * <p>
+ * Players an entry is tracking, and entries a player is tracking, are always
+ * checked as well since they may have to be removed. Entities that ride or
+ * carry other entities are visible as far as their vehicle or passengers are,
+ * they fall back to checking every player.
+ */
+public final class EntityTrackerGrid {
+
+	private static final int CELL_SHIFT = 6;
+	private static final EntityPlayer[] NO_PLAYERS = new EntityPlayer[0];
+	private static final EntityTrackerEntry[] NO_ENTRIES = new EntityTrackerEntry[0];
+
+	private final Long2ObjectOpenHashMap<ArrayList<EntityPlayer>> players = new Long2ObjectOpenHashMap<ArrayList<EntityPlayer>>();
+	private EntityPlayer[] playerSnapshot = NO_PLAYERS;
+	private long[] playerCells = new long[0];
+	private final Long2ObjectOpenHashMap<ArrayList<EntityTrackerEntry>> entries = new Long2ObjectOpenHashMap<ArrayList<EntityTrackerEntry>>();
+
+	// reused to iterate tracked sets that change while they are checked
+	private EntityPlayer[] playerBuffer = NO_PLAYERS;
+	private EntityTrackerEntry[] entryBuffer = NO_ENTRIES;
+
+	private static long cell(int blockX, int blockZ) {
+		return ChunkCoordIntPair.a(blockX >> CELL_SHIFT, blockZ >> CELL_SHIFT);
+	}
+
+	/**
+	 * Brings the player cells up to date with the world's player list, cheap
+	 * if nobody changed cells.
+	 */
+	public void refreshPlayers(List<EntityHuman> list) {
+		boolean changed = list.size() != this.playerSnapshot.length;
+		if (!changed) {
+			for (int i = 0; i < list.size(); ++i) {
+				EntityHuman player = list.get(i);
+				if (player != this.playerSnapshot[i] || cell(MathHelper.floor(player.locX), MathHelper.floor(player.locZ)) != this.playerCells[i]) {
+					changed = true;
+					break;
+				}
+			}
+		}
+		if (!changed) {
+			return;
+		}
+
+		this.players.clear();
+		this.playerSnapshot = new EntityPlayer[list.size()];
+		this.playerCells = new long[list.size()];
+		for (int i = 0; i < list.size(); ++i) {
+			EntityPlayer player = (EntityPlayer) list.get(i);
+			long cell = cell(MathHelper.floor(player.locX), MathHelper.floor(player.locZ));
+			this.playerSnapshot[i] = player;
+			this.playerCells[i] = cell;
+
+			ArrayList<EntityPlayer> players = this.players.get(cell);
+			if (players == null) {
+				players = new ArrayList<EntityPlayer>(4);
+				this.players.put(cell, players);
+			}
+			players.add(player);
+		}
+	}
+
+	public void addEntry(EntityTrackerEntry entry) {
+		long cell = cell(entry.getTrackedX(), entry.getTrackedZ());
+		ArrayList<EntityTrackerEntry> entries = this.entries.get(cell);
+		if (entries == null) {
+			entries = new ArrayList<EntityTrackerEntry>();
+			this.entries.put(cell, entries);
+		}
+		entry.gridCell = cell;
+		entry.gridIndex = entries.size();
+		entries.add(entry);
+	}
+
+	public void removeEntry(EntityTrackerEntry entry) {
+		if (entry.gridIndex < 0) {
+			return;
+		}
+
+		ArrayList<EntityTrackerEntry> entries = this.entries.get(entry.gridCell);
+		EntityTrackerEntry last = entries.remove(entries.size() - 1);
+		if (last != entry) {
+			entries.set(entry.gridIndex, last);
+			last.gridIndex = entry.gridIndex;
+		}
+		if (entries.isEmpty()) {
+			this.entries.remove(entry.gridCell);
+		}
+		entry.gridIndex = -1;
+	}
+
+	/**
+	 * Moves the entry if the position sent to clients changed cells.
+	 */
+	public void updateEntry(EntityTrackerEntry entry) {
+		if (entry.gridIndex >= 0 && cell(entry.getTrackedX(), entry.getTrackedZ()) != entry.gridCell) {
+			this.removeEntry(entry);
+			this.addEntry(entry);
+		}
+	}
+
+	/**
+	 * Updates the entry for the players that can be affected, the same as
+	 * {@link EntityTrackerEntry#scanPlayers(List)} over every player.
+	 *
+	 * @return false if the entry has to check every player
+	 */
+	public boolean scanPlayers(EntityTrackerEntry entry) {
+		Entity entity = entry.b();
+		if (entity.isPassenger() || entity.isVehicle()) {
+			return false;
+		}
+
+		// players out of range have to be removed
+		int tracked = entry.trackedPlayers.size();
+		if (tracked > 0) {
+			EntityPlayer[] players = this.playerBuffer = entry.trackedPlayers.toArray(this.playerBuffer);
+			for (int i = 0; i < tracked; ++i) {
+				EntityPlayer player = players[i];
+				players[i] = null;
+				entry.updatePlayer(player);
+			}
+		}
+
+		int range = entry.getTrackingRange() + 1; // the sent position is truncated to the block
+		int x = entry.getTrackedX();
+		int z = entry.getTrackedZ();
+		for (int cellX = (x - range) >> CELL_SHIFT; cellX <= (x + range) >> CELL_SHIFT; ++cellX) {
+			for (int cellZ = (z - range) >> CELL_SHIFT; cellZ <= (z + range) >> CELL_SHIFT; ++cellZ) {
+				ArrayList<EntityPlayer> players = this.players.get(ChunkCoordIntPair.a(cellX, cellZ));
+				if (players == null) {
+					continue;
+				}
+
+				for (int i = 0; i < players.size(); ++i) {
+					EntityPlayer player = players.get(i);
+					if (!entry.trackedPlayers.contains(player)) { // tracked ones were checked above
+						entry.updatePlayer(player);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the entries near the player and the ones it tracks, in place of
+	 * calling {@link EntityTrackerEntry#updatePlayer(EntityPlayer)} on every
+	 * entry.
+	 *
+	 * @param range the largest tracking range of any entry
+	 */
+	public void updateEntries(EntityPlayer player, int range) {
+		// entries out of range have to be removed
+		int tracked = player.trackedEntries.size();
+		if (tracked > 0) {
+			EntityTrackerEntry[] entries = this.entryBuffer = player.trackedEntries.toArray(this.entryBuffer);
+			for (int i = 0; i < tracked; ++i) {
+				EntityTrackerEntry entry = entries[i];
+				entries[i] = null;
+				entry.updatePlayer(player);
+			}
+		}
+
+		// a chunk of margin for passengers, they are seen as long as their
+		// vehicle is and may lag behind it
+		range += 16;
+		int x = MathHelper.floor(player.locX);
+		int z = MathHelper.floor(player.locZ);
+		for (int cellX = (x - range) >> CELL_SHIFT; cellX <= (x + range) >> CELL_SHIFT; ++cellX) {
+			for (int cellZ = (z - range) >> CELL_SHIFT; cellZ <= (z + range) >> CELL_SHIFT; ++cellZ) {
+				ArrayList<EntityTrackerEntry> entries = this.entries.get(ChunkCoordIntPair.a(cellX, cellZ));
+				if (entries == null) {
+					continue;
+				}
+
+				for (int i = 0; i < entries.size(); ++i) {
+					EntityTrackerEntry entry = entries.get(i);
+					if (entry.b() != player && !entry.trackedPlayers.contains(player)) {
+						entry.updatePlayer(player);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calls {@code action} for every entry tracked by the player, safe against
+	 * the entries removing the player.
+	 */
+	public void forEachTracked(EntityPlayer player, java.util.function.Consumer<EntityTrackerEntry> action) {
+		int tracked = player.trackedEntries.size();
+		if (tracked == 0) {
+			return;
+		}
+
+		EntityTrackerEntry[] entries = player.trackedEntries.toArray(new EntityTrackerEntry[tracked]);
+		for (EntityTrackerEntry entry : entries) {
+			action.accept(entry);
+		}
+	}
+}
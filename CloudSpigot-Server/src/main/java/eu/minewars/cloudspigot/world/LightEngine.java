@@ -0,0 +1,835 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.Blocks;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkSection;
+import net.minecraft.server.EnumSkyBlock;
+import net.minecraft.server.IBlockData;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.NibbleArray;
+import net.minecraft.server.World;
+
+/**
+ * Light propagation for a world, selected with the {@code lighting-engine}
+ * world setting. Same light rules as {@code World.c(EnumSkyBlock,
+ * BlockPosition)}: a position sees the sky or takes the brightest neighbour
+ * minus its opacity, at least one, and emitted light.
+ * <p>
+ * Block changes only queue their position, {@link #flush()} relights all
+ * positions queued since the last flush. Positions are grouped by chunk and
+ * each group is one breadth first search, first taking away the light of
+ * darkened positions, then spreading light from the positions that kept
+ * theirs and the ones that got brighter. Sky and block light are separate
+ * passes. The search works on positions packed into ints relative to the
+ * 3x3 chunks around the group's chunk and reads sections straight from those
+ * chunks, its queues are reused between flushes.
+ * <p>
+ * Threaded, {@code lighting-engine: threaded}, the searches of a flush run on
+ * the light worker instead. The worker copies the light of the sections it
+ * touches and relights the copies, reading blocks and height maps from the
+ * live chunks like async anti-xray does, a block changed meanwhile is queued
+ * again anyway. The next flush publishes the light values the worker changed
+ * into the live sections and hands over the positions queued since. Right
+ * before chunks are sent, {@link #flushBeforeSend()} only publishes, so the
+ * chunks of a batch handed over then would not settle in time. Chunks in a
+ * batch the worker has not published yet are not settled, the player chunk
+ * holds their packets for a few ticks at most.
+ * <p>
+ * Not thread safe, a world flushes its engine from the thread ticking it.
+ */
+public final class LightEngine {
+
+	private static final int CHUNK_BITS = 22;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1L;
+	private static final int SIZE = 48;
+
+	private static final int MAX_FAILED_BATCHES = 3;
+	private static ExecutorService worker;
+
+	private final ChunkAccess access;
+	private final boolean threaded;
+	private Batch inFlight; // threaded, handed to the worker and not published yet
+	private int failedBatches; // threaded, in a row, their positions are queued again
+	private final LongOpenHashSet skyPending = new LongOpenHashSet();
+	private final LongOpenHashSet blockPending = new LongOpenHashSet();
+	private final LongOpenHashSet around = new LongOpenHashSet(); // positions taken out for an unloading chunk
+	private long[] batch = new long[256];
+
+	// The chunks around the group being relit, positions are relative to the lower corner
+	private final Chunk[] chunks = new Chunk[9];
+	private int originX;
+	private int originZ;
+	private final BlockPosition.MutableBlockPosition position = new BlockPosition.MutableBlockPosition();
+	// The copies of those chunks' light while a batch is relit, null when relighting the live chunks
+	private final ChunkCopy[] copies = new ChunkCopy[9];
+	private boolean copying;
+
+	// Entries are x | z << 6 | y << 12, decrease entries add the light taken away << 20
+	private int[] decrease = new int[1024];
+	private int decreaseCount;
+	private int[] increase = new int[1024];
+	private int increaseHead;
+	private int increaseCount;
+
+	/**
+	 * Where the engine finds chunks, the world it belongs to outside of tests.
+	 */
+	public interface ChunkAccess {
+
+		@Nullable
+		Chunk getChunkIfLoaded(int x, int z);
+
+		boolean hasSkyLight();
+	}
+
+	public LightEngine(final World world, boolean threaded) {
+		this(new ChunkAccess() {
+			@Override
+			public Chunk getChunkIfLoaded(int x, int z) {
+				return world.getChunkIfLoaded(x, z);
+			}
+
+			@Override
+			public boolean hasSkyLight() {
+				return world.worldProvider.m();
+			}
+		}, threaded);
+	}
+
+	public LightEngine(ChunkAccess access) {
+		this(access, false);
+	}
+
+	public LightEngine(ChunkAccess access, boolean threaded) {
+		this.access = access;
+		this.threaded = threaded;
+	}
+
+	private static synchronized ExecutorService getWorker() {
+		if (worker == null) {
+			worker = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Light Worker");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return worker;
+	}
+
+	private static long pack(int x, int y, int z) {
+		return ((long) (x >> 4) & CHUNK_MASK) << 42 | ((long) (z >> 4) & CHUNK_MASK) << 20 | (y << 8 | (z & 15) << 4 | x & 15);
+	}
+
+	/**
+	 * Queues both sky and block light of the position to be checked, like a
+	 * block change would check them.
+	 */
+	public void queue(BlockPosition blockposition) {
+		if (blockposition.isValidLocation()) {
+			long key = pack(blockposition.getX(), blockposition.getY(), blockposition.getZ());
+			this.skyPending.add(key);
+			this.blockPending.add(key);
+		}
+	}
+
+	/**
+	 * Queues the sky light of the position to be checked, like a changed
+	 * height map would check it.
+	 */
+	public void queueSky(int x, int y, int z) {
+		if (y >= 0 && y < 256) {
+			this.skyPending.add(pack(x, y, z));
+		}
+	}
+
+	public boolean hasPending() {
+		return !this.skyPending.isEmpty() || !this.blockPending.isEmpty() || this.inFlight != null;
+	}
+
+	/**
+	 * Positions queued since the last flush do not count, a chunk with light
+	 * changes every tick would never settle otherwise.
+	 *
+	 * @return false while the worker relights a batch reaching into the chunk,
+	 *         always true unless threaded
+	 */
+	public boolean isSettled(Chunk chunk) {
+		return chunk.lightPending == 0;
+	}
+
+	/**
+	 * Relights all queued positions, or threaded, publishes what the worker
+	 * finished and hands it the positions queued since. Positions of chunks
+	 * without all their neighbours loaded are dropped, like vanilla does.
+	 */
+	public void flush() {
+		if (!this.threaded) {
+			if (this.access.hasSkyLight()) {
+				this.relight(true, this.skyPending);
+			} else {
+				this.skyPending.clear();
+			}
+			this.relight(false, this.blockPending);
+			return;
+		}
+
+		if (this.inFlight != null) {
+			if (!this.inFlight.isDone()) {
+				return; // still relighting, the queued positions go with the next batch
+			}
+			this.publish();
+		}
+
+		Batch batch = this.prepare();
+		if (batch != null) {
+			this.inFlight = batch;
+			getWorker().execute(batch);
+		}
+	}
+
+	/**
+	 * Called right before chunks are sent. Relights all queued positions, or
+	 * threaded, only publishes what the worker finished.
+	 */
+	public void flushBeforeSend() {
+		if (!this.threaded) {
+			this.flush();
+		} else if (this.inFlight != null && this.inFlight.isDone()) {
+			this.publish();
+		}
+	}
+
+	/**
+	 * Relights the positions queued around an unloading chunk right away, the
+	 * next flush would drop them for the missing chunk. Threaded, waits for
+	 * the worker first, so the chunk is saved with all its light.
+	 */
+	public void flushFor(Chunk chunk) {
+		this.takeAround(this.skyPending, chunk);
+		boolean sky = !this.around.isEmpty();
+		if (sky) {
+			if (this.threaded && this.inFlight != null) {
+				this.await();
+			}
+			if (this.access.hasSkyLight()) {
+				this.relight(true, this.around);
+			} else {
+				this.around.clear();
+			}
+		}
+
+		this.takeAround(this.blockPending, chunk);
+		if (!this.around.isEmpty() || this.threaded && chunk.lightPending > 0) {
+			if (this.threaded && this.inFlight != null) {
+				this.await();
+			}
+			this.relight(false, this.around);
+		}
+	}
+
+	/**
+	 * Moves the positions whose search reaches into the chunk to
+	 * {@link #around}.
+	 */
+	private void takeAround(LongOpenHashSet pending, Chunk chunk) {
+		this.around.clear();
+		for (LongIterator iterator = pending.iterator(); iterator.hasNext();) {
+			long key = iterator.nextLong();
+			int chunkX = (int) (key >> 20 >> CHUNK_BITS);
+			int chunkZ = (int) (key >> 20) << 10 >> 10;
+			if (Math.abs(chunkX - chunk.locX) <= 1 && Math.abs(chunkZ - chunk.locZ) <= 1) {
+				this.around.add(key);
+				iterator.remove();
+			}
+		}
+	}
+
+	private void await() {
+		this.inFlight.await();
+		this.publish();
+	}
+
+	/**
+	 * @return the queued positions sorted, so positions of a chunk follow each
+	 *         other, in {@link #batch}
+	 */
+	private int drain(LongOpenHashSet pending) {
+		int size = pending.size();
+		if (this.batch.length < size) {
+			this.batch = new long[Math.max(size, this.batch.length << 1)];
+		}
+		long[] batch = this.batch;
+		LongIterator iterator = pending.iterator();
+		for (int i = 0; i < size; ++i) {
+			batch[i] = iterator.nextLong();
+		}
+		pending.clear();
+		Arrays.sort(batch, 0, size);
+		return size;
+	}
+
+	private void relight(boolean sky, LongOpenHashSet pending) {
+		int size = pending.size();
+		if (size == 0) {
+			return;
+		}
+
+		size = this.drain(pending);
+		long[] batch = this.batch;
+
+		try {
+			for (int start = 0, end; start < size; start = end) {
+				long chunk = batch[start] >> 20;
+				end = start + 1;
+				while (end < size && batch[end] >> 20 == chunk) {
+					++end;
+				}
+
+				if (this.cache((int) (chunk >> CHUNK_BITS), (int) chunk << 10 >> 10)) {
+					this.relight(sky, batch, start, end);
+				}
+			}
+		} finally {
+			Arrays.fill(this.chunks, null);
+		}
+	}
+
+	private boolean cache(int chunkX, int chunkZ) {
+		for (int dz = 0; dz < 3; ++dz) {
+			for (int dx = 0; dx < 3; ++dx) {
+				Chunk chunk = this.access.getChunkIfLoaded(chunkX + dx - 1, chunkZ + dz - 1);
+				if (chunk == null) {
+					return false;
+				}
+				this.chunks[dz * 3 + dx] = chunk;
+			}
+		}
+
+		this.originX = (chunkX - 1) << 4;
+		this.originZ = (chunkZ - 1) << 4;
+		return true;
+	}
+
+	private void relight(boolean sky, long[] batch, int start, int end) {
+		this.decreaseCount = 0;
+		this.increaseHead = 0;
+		this.increaseCount = 0;
+
+		for (int i = start; i < end; ++i) {
+			long key = batch[i];
+			int x = 16 + (int) (key & 15);
+			int z = 16 + (int) (key >> 4 & 15);
+			int y = (int) (key >> 8 & 255);
+			int current = this.getLight(sky, x, y, z);
+			int expected = this.expected(sky, x, y, z);
+
+			if (expected < current) {
+				this.setLight(sky, x, y, z, 0);
+				this.pushDecrease(x, y, z, current);
+			} else if (expected > current) {
+				this.setLight(sky, x, y, z, expected);
+				this.pushIncrease(x, y, z);
+			}
+		}
+
+		// Take away the light that came from darkened positions, neighbours at
+		// least as bright did not get theirs from there and spread it again
+		for (int i = 0; i < this.decreaseCount; ++i) {
+			int entry = this.decrease[i];
+			int x = entry & 63;
+			int z = entry >> 6 & 63;
+			int y = entry >> 12 & 255;
+			int level = entry >>> 20;
+
+			this.decreaseNeighbour(sky, x - 1, y, z, level);
+			this.decreaseNeighbour(sky, x + 1, y, z, level);
+			this.decreaseNeighbour(sky, x, y - 1, z, level);
+			this.decreaseNeighbour(sky, x, y + 1, z, level);
+			this.decreaseNeighbour(sky, x, y, z - 1, level);
+			this.decreaseNeighbour(sky, x, y, z + 1, level);
+		}
+
+		// Darkened positions may see the sky or emit light themselves
+		for (int i = 0; i < this.decreaseCount; ++i) {
+			int entry = this.decrease[i];
+			int x = entry & 63;
+			int z = entry >> 6 & 63;
+			int y = entry >> 12 & 255;
+			int expected = this.expected(sky, x, y, z);
+
+			if (expected > this.getLight(sky, x, y, z)) {
+				this.setLight(sky, x, y, z, expected);
+				this.pushIncrease(x, y, z);
+			}
+		}
+
+		while (this.increaseHead < this.increaseCount) {
+			int entry = this.increase[this.increaseHead++];
+			int x = entry & 63;
+			int z = entry >> 6 & 63;
+			int y = entry >> 12 & 255;
+			int level = this.getLight(sky, x, y, z);
+
+			if (level > 1) {
+				this.increaseNeighbour(sky, x - 1, y, z, level);
+				this.increaseNeighbour(sky, x + 1, y, z, level);
+				this.increaseNeighbour(sky, x, y - 1, z, level);
+				this.increaseNeighbour(sky, x, y + 1, z, level);
+				this.increaseNeighbour(sky, x, y, z - 1, level);
+				this.increaseNeighbour(sky, x, y, z + 1, level);
+			}
+		}
+	}
+
+	private void decreaseNeighbour(boolean sky, int x, int y, int z, int level) {
+		if (!inBounds(x, y, z)) {
+			return;
+		}
+
+		int light = this.getLight(sky, x, y, z);
+		if (light == 0) {
+			return;
+		}
+
+		if (light >= level || sky && this.seesSky(x, y, z)) {
+			this.pushIncrease(x, y, z);
+		} else {
+			this.setLight(sky, x, y, z, 0);
+			this.pushDecrease(x, y, z, light);
+		}
+	}
+
+	private void increaseNeighbour(boolean sky, int x, int y, int z, int level) {
+		if (!inBounds(x, y, z) || sky && this.seesSky(x, y, z)) {
+			return;
+		}
+
+		int opacity = opacity(this.getType(x, y, z));
+		if (opacity >= 15) {
+			return;
+		}
+
+		int light = level - opacity;
+		if (light > this.getLight(sky, x, y, z)) {
+			this.setLight(sky, x, y, z, light);
+			this.pushIncrease(x, y, z);
+		}
+	}
+
+	/**
+	 * @return the light the position should have given its neighbours, same as
+	 *         {@code World.a(BlockPosition, EnumSkyBlock)}
+	 */
+	private int expected(boolean sky, int x, int y, int z) {
+		if (sky && this.seesSky(x, y, z)) {
+			return 15;
+		}
+
+		IBlockData iblockdata = this.getType(x, y, z);
+		int opacity = opacity(iblockdata);
+		if (opacity >= 15) {
+			return 0;
+		}
+
+		int light = sky ? 0 : iblockdata.d();
+		if (light >= 14) {
+			return light;
+		}
+
+		light = Math.max(light, this.getNeighbourLight(sky, x - 1, y, z) - opacity);
+		light = Math.max(light, this.getNeighbourLight(sky, x + 1, y, z) - opacity);
+		light = Math.max(light, this.getNeighbourLight(sky, x, y - 1, z) - opacity);
+		light = Math.max(light, this.getNeighbourLight(sky, x, y + 1, z) - opacity);
+		light = Math.max(light, this.getNeighbourLight(sky, x, y, z - 1) - opacity);
+		light = Math.max(light, this.getNeighbourLight(sky, x, y, z + 1) - opacity);
+		return light;
+	}
+
+	/**
+	 * @return how much light the block takes away, 15 if it lets none through
+	 */
+	private static int opacity(IBlockData iblockdata) {
+		int opacity = iblockdata.c();
+		if (opacity >= 15) {
+			return iblockdata.d() > 0 ? 1 : 15;
+		}
+		return Math.max(1, opacity);
+	}
+
+	private static boolean inBounds(int x, int y, int z) {
+		return x >= 0 && x < SIZE && z >= 0 && z < SIZE && y >= 0 && y < 256;
+	}
+
+	private Chunk getChunk(int x, int z) {
+		return this.chunks[(z >> 4) * 3 + (x >> 4)];
+	}
+
+	private boolean seesSky(int x, int y, int z) {
+		return y >= this.getChunk(x, z).b(x & 15, z & 15);
+	}
+
+	private IBlockData getType(int x, int y, int z) {
+		ChunkSection section = this.copying ? this.copies[(z >> 4) * 3 + (x >> 4)].getSection(y >> 4) : this.getChunk(x, z).getSections()[y >> 4];
+		return section == Chunk.EMPTY_CHUNK_SECTION ? Blocks.AIR.getBlockData() : section.getType(x & 15, y & 15, z & 15);
+	}
+
+	private int getNeighbourLight(boolean sky, int x, int y, int z) {
+		return inBounds(x, y, z) ? this.getLight(sky, x, y, z) : 0;
+	}
+
+	private int getLight(boolean sky, int x, int y, int z) {
+		if (this.copying) {
+			return this.copies[(z >> 4) * 3 + (x >> 4)].getLight(sky, y >> 4).a(x & 15, y & 15, z & 15);
+		}
+
+		Chunk chunk = this.getChunk(x, z);
+		ChunkSection section = chunk.getSections()[y >> 4];
+		if (section == Chunk.EMPTY_CHUNK_SECTION) {
+			return sky && y >= chunk.b(x & 15, z & 15) ? 15 : 0;
+		}
+		return sky ? section.b(x & 15, y & 15, z & 15) : section.c(x & 15, y & 15, z & 15);
+	}
+
+	private void setLight(boolean sky, int x, int y, int z, int light) {
+		if (this.copying) {
+			this.copies[(z >> 4) * 3 + (x >> 4)].getLight(sky, y >> 4).a(x & 15, y & 15, z & 15, light);
+			return;
+		}
+
+		Chunk chunk = this.getChunk(x, z);
+		ChunkSection section = chunk.getSections()[y >> 4];
+		if (section == Chunk.EMPTY_CHUNK_SECTION) {
+			if (light != this.getLight(sky, x, y, z)) {
+				// Creates the section
+				chunk.a(sky ? EnumSkyBlock.SKY : EnumSkyBlock.BLOCK, this.position.c(this.originX + x, y, this.originZ + z), light);
+			}
+			return;
+		}
+
+		if (sky) {
+			section.a(x & 15, y & 15, z & 15, light);
+		} else {
+			section.b(x & 15, y & 15, z & 15, light);
+		}
+		chunk.markDirty();
+	}
+
+	/**
+	 * Takes the queued positions for the worker, on the thread ticking the
+	 * world.
+	 */
+	@Nullable
+	private Batch prepare() {
+		if (!this.access.hasSkyLight()) {
+			this.skyPending.clear();
+		}
+
+		Batch batch = new Batch(this.skyPending.size() + this.blockPending.size());
+		if (!this.skyPending.isEmpty()) {
+			batch.add(true, this.batch, this.drain(this.skyPending));
+		}
+		if (!this.blockPending.isEmpty()) {
+			batch.add(false, this.batch, this.drain(this.blockPending));
+		}
+		return batch.groups == 0 ? null : batch;
+	}
+
+	/**
+	 * Writes the light the worker changed into the live sections, on the thread
+	 * ticking the world. Light of chunks unloaded meanwhile is dropped. The
+	 * positions of a failed batch are queued again, the worker reads blocks
+	 * while they change and may fail on a section resized meanwhile.
+	 */
+	private void publish() {
+		Batch batch = this.inFlight;
+		this.inFlight = null;
+
+		if (batch.failure == null) {
+			this.failedBatches = 0;
+			for (ChunkCopy copy : batch.copies.values()) {
+				if (this.access.getChunkIfLoaded(copy.chunk.locX, copy.chunk.locZ) == copy.chunk) {
+					copy.publish(this.position);
+				}
+			}
+		} else if (++this.failedBatches <= MAX_FAILED_BATCHES) {
+			MinecraftServer.LOGGER.warn("Failed to relight " + batch.groups + " chunks on the light worker, trying again", batch.failure);
+			for (int group = 0; group < batch.groups; ++group) {
+				LongOpenHashSet pending = batch.sky[group] ? this.skyPending : this.blockPending;
+				for (int i = batch.starts[group]; i < batch.starts[group + 1]; ++i) {
+					pending.add(batch.positions[i]);
+				}
+			}
+		} else {
+			MinecraftServer.LOGGER.warn("Failed to relight " + batch.groups + " chunks on the light worker " + this.failedBatches + " times in a row, dropping them", batch.failure);
+		}
+
+		for (int i = 0; i < batch.groups * 9; ++i) {
+			--batch.chunks[i].lightPending;
+		}
+	}
+
+	/**
+	 * Relights a batch on the worker.
+	 */
+	private void relight(Batch batch) {
+		this.copying = true;
+		try {
+			for (int group = 0; group < batch.groups; ++group) {
+				for (int i = 0; i < 9; ++i) {
+					Chunk chunk = batch.chunks[group * 9 + i];
+					ChunkCopy copy = batch.copies.get(chunk);
+					if (copy == null) {
+						copy = new ChunkCopy(chunk);
+						batch.copies.put(chunk, copy);
+					}
+					this.chunks[i] = chunk;
+					this.copies[i] = copy;
+				}
+
+				Chunk center = this.chunks[4];
+				this.originX = (center.locX - 1) << 4;
+				this.originZ = (center.locZ - 1) << 4;
+				this.relight(batch.sky[group], batch.positions, batch.starts[group], batch.starts[group + 1]);
+			}
+		} finally {
+			this.copying = false;
+			Arrays.fill(this.chunks, null);
+			Arrays.fill(this.copies, null);
+		}
+	}
+
+	/**
+	 * The positions of one flush, grouped by chunk, and the light the worker
+	 * computed for them.
+	 */
+	private final class Batch implements Runnable {
+
+		private final long[] positions;
+		private int[] starts = new int[17];
+		private boolean[] sky = new boolean[16];
+		private Chunk[] chunks = new Chunk[16 * 9];
+		private int groups;
+		private int size;
+		private final Map<Chunk, ChunkCopy> copies = new IdentityHashMap<Chunk, ChunkCopy>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private Throwable failure; // written by the worker before done
+
+		private Batch(int capacity) {
+			this.positions = new long[capacity];
+		}
+
+		/**
+		 * Adds the groups of the sorted positions whose chunks have all their
+		 * neighbours loaded, marking those chunks as not settled.
+		 */
+		private void add(boolean sky, long[] sorted, int count) {
+			for (int start = 0, end; start < count; start = end) {
+				long chunk = sorted[start] >> 20;
+				end = start + 1;
+				while (end < count && sorted[end] >> 20 == chunk) {
+					++end;
+				}
+
+				if (!LightEngine.this.cache((int) (chunk >> CHUNK_BITS), (int) chunk << 10 >> 10)) {
+					continue;
+				}
+
+				if (this.groups == this.sky.length) {
+					this.starts = Arrays.copyOf(this.starts, this.groups * 2 + 1);
+					this.sky = Arrays.copyOf(this.sky, this.groups * 2);
+					this.chunks = Arrays.copyOf(this.chunks, this.groups * 2 * 9);
+				}
+				for (int i = 0; i < 9; ++i) {
+					Chunk neighbour = LightEngine.this.chunks[i];
+					++neighbour.lightPending;
+					this.chunks[this.groups * 9 + i] = neighbour;
+				}
+				this.sky[this.groups] = sky;
+				this.starts[this.groups] = this.size;
+				System.arraycopy(sorted, start, this.positions, this.size, end - start);
+				this.size += end - start;
+				this.starts[++this.groups] = this.size;
+			}
+			Arrays.fill(LightEngine.this.chunks, null);
+		}
+
+		@Override
+		public void run() {
+			try {
+				LightEngine.this.relight(this);
+			} catch (Throwable throwable) {
+				this.failure = throwable;
+			} finally {
+				this.done.countDown();
+			}
+		}
+
+		private boolean isDone() {
+			return this.done.getCount() == 0L;
+		}
+
+		private void await() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					this.done.await();
+					break;
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The worker's copy of a chunk's light, sections are copied when the
+	 * worker first reads them. Empty sections get light arrays of their own
+	 * with the light an empty section reads as.
+	 */
+	private static final class ChunkCopy {
+
+		private final Chunk chunk;
+		private final ChunkSection[] sections = new ChunkSection[16];
+		private final NibbleArray[] skyLight = new NibbleArray[16];
+		private final NibbleArray[] blockLight = new NibbleArray[16];
+		private final byte[][] skyOriginal = new byte[16][];
+		private final byte[][] blockOriginal = new byte[16][];
+
+		private ChunkCopy(Chunk chunk) {
+			this.chunk = chunk;
+		}
+
+		private ChunkSection getSection(int y) {
+			if (this.skyLight[y] == null) {
+				this.copy(y);
+			}
+			return this.sections[y];
+		}
+
+		private NibbleArray getLight(boolean sky, int y) {
+			if (this.skyLight[y] == null) {
+				this.copy(y);
+			}
+			return sky ? this.skyLight[y] : this.blockLight[y];
+		}
+
+		private void copy(int y) {
+			ChunkSection section = this.chunk.getSections()[y];
+			byte[] sky;
+			byte[] block;
+			if (section == Chunk.EMPTY_CHUNK_SECTION) {
+				sky = new byte[2048];
+				block = new byte[2048];
+				NibbleArray skyLight = new NibbleArray(sky);
+				for (int x = 0; x < 16; ++x) {
+					for (int z = 0; z < 16; ++z) {
+						for (int i = Math.max(0, this.chunk.b(x, z) - (y << 4)); i < 16; ++i) {
+							skyLight.a(x, i, z, 15);
+						}
+					}
+				}
+			} else {
+				NibbleArray skyLight = section.getSkyLightArray();
+				sky = skyLight == null ? new byte[2048] : skyLight.asBytes().clone();
+				block = section.getEmittedLightArray().asBytes().clone();
+			}
+
+			this.sections[y] = section;
+			this.skyOriginal[y] = sky.clone();
+			this.blockOriginal[y] = block.clone();
+			this.skyLight[y] = new NibbleArray(sky);
+			this.blockLight[y] = new NibbleArray(block);
+		}
+
+		/**
+		 * Writes the light values the worker changed, main thread changes to
+		 * other values since the copy are kept.
+		 */
+		private void publish(BlockPosition.MutableBlockPosition position) {
+			ChunkSection[] live = this.chunk.getSections();
+			for (int y = 0; y < 16; ++y) {
+				if (this.skyLight[y] == null) {
+					continue;
+				}
+
+				ChunkSection section = this.sections[y];
+				if (section != Chunk.EMPTY_CHUNK_SECTION && live[y] != section) {
+					continue; // replaced since the copy
+				}
+
+				this.publish(y, section, EnumSkyBlock.SKY, this.skyOriginal[y], this.skyLight[y], position);
+				this.publish(y, section, EnumSkyBlock.BLOCK, this.blockOriginal[y], this.blockLight[y], position);
+			}
+		}
+
+		private void publish(int y, ChunkSection section, EnumSkyBlock type, byte[] original, NibbleArray copy, BlockPosition.MutableBlockPosition position) {
+			byte[] changed = copy.asBytes();
+			boolean sky = type == EnumSkyBlock.SKY;
+			NibbleArray live = section == Chunk.EMPTY_CHUNK_SECTION ? null : sky ? section.getSkyLightArray() : section.getEmittedLightArray();
+			if (section != Chunk.EMPTY_CHUNK_SECTION && live == null) {
+				return;
+			}
+
+			boolean modified = false;
+			for (int i = 0; i < changed.length; ++i) {
+				if (changed[i] == original[i]) {
+					continue;
+				}
+
+				for (int index = i << 1; index < (i << 1) + 2; ++index) {
+					int light = copy.a(index);
+					if (light == (original[i] >> ((index & 1) << 2) & 15)) {
+						continue;
+					}
+
+					if (live != null) {
+						live.a(index, light);
+						modified = true;
+					} else {
+						// Creates the section, like the engine does for the live chunks
+						this.chunk.a(type, position.c((this.chunk.locX << 4) + (index & 15), (y << 4) + (index >> 8), (this.chunk.locZ << 4) + (index >> 4 & 15)), light);
+					}
+				}
+			}
+
+			if (modified) {
+				// Setting the same array counts as a light change, see ChunkSection.getModCount()
+				if (sky) {
+					section.b(live);
+				} else {
+					section.a(live);
+				}
+				this.chunk.markDirty();
+			}
+		}
+	}
+
+	private void pushDecrease(int x, int y, int z, int level) {
+		if (this.decreaseCount == this.decrease.length) {
+			this.decrease = Arrays.copyOf(this.decrease, this.decrease.length << 1);
+		}
+		this.decrease[this.decreaseCount++] = x | z << 6 | y << 12 | level << 20;
+	}
+
+	private void pushIncrease(int x, int y, int z) {
+		if (this.increaseCount == this.increase.length) {
+			this.increase = Arrays.copyOf(this.increase, this.increase.length << 1);
+		}
+		this.increase[this.increaseCount++] = x | z << 6 | y << 12;
+	}
+}
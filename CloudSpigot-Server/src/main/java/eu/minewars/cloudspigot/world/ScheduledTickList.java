@@ -0,0 +1,190 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.ChunkCoordIntPair;
+import net.minecraft.server.NextTickListEntry;
+import net.minecraft.server.StructureBoundingBox;
+
+/**
+ * Pending block ticks of a world, indexed both by chunk and by due time.
+ * <p>
+ * Every entry is stored in the ordered set of its chunk, so collecting the
+ * ticks of a chunk that is saved or unloaded only visits the chunks
+ * overlapping the requested box. For execution entries are bucketed by the
+ * tick they are due on; buckets are sorted lazily when they become due, which
+ * keeps the execution order of the tree set this replaces (time, priority,
+ * insertion order) without paying for it on insertion.
+ * <p>
+ * Entries removed together with their chunk are left in their time bucket
+ * and skipped once the bucket is polled.
+ */
+public final class ScheduledTickList {
+
+	private final Map<NextTickListEntry, NextTickListEntry> entries = new Object2ObjectOpenHashMap<NextTickListEntry, NextTickListEntry>();
+	private final Long2ObjectOpenHashMap<TreeSet<NextTickListEntry>> byChunk = new Long2ObjectOpenHashMap<TreeSet<NextTickListEntry>>();
+	private final TreeMap<Long, Bucket> byTime = new TreeMap<Long, Bucket>();
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	public boolean isEmpty() {
+		return this.entries.isEmpty();
+	}
+
+	public boolean contains(NextTickListEntry entry) {
+		return this.entries.containsKey(entry);
+	}
+
+	/**
+	 * Adds the entry unless an equal one (same position and block) is already
+	 * scheduled.
+	 */
+	public boolean add(NextTickListEntry entry) {
+		if (this.entries.putIfAbsent(entry, entry) != null) {
+			return false;
+		}
+
+		long chunkKey = chunkKey(entry.a);
+		TreeSet<NextTickListEntry> chunk = this.byChunk.get(chunkKey);
+		if (chunk == null) {
+			chunk = new TreeSet<NextTickListEntry>();
+			this.byChunk.put(chunkKey, chunk);
+		}
+		chunk.add(entry);
+
+		Bucket bucket = this.byTime.get(entry.b);
+		if (bucket == null) {
+			bucket = new Bucket();
+			this.byTime.put(entry.b, bucket);
+		}
+		bucket.add(entry);
+		return true;
+	}
+
+	/**
+	 * Removes up to {@code limit} entries due at or before {@code time} and adds
+	 * them to {@code out} in execution order.
+	 */
+	public void pollDue(long time, int limit, Collection<NextTickListEntry> out) {
+		while (limit > 0 && !this.byTime.isEmpty()) {
+			Map.Entry<Long, Bucket> first = this.byTime.firstEntry();
+			if (first.getKey() > time) {
+				break;
+			}
+
+			Bucket bucket = first.getValue();
+			bucket.sort();
+			while (limit > 0 && bucket.index < bucket.entries.size()) {
+				NextTickListEntry entry = bucket.entries.get(bucket.index);
+				bucket.entries.set(bucket.index++, null);
+				if (this.entries.get(entry) != entry) {
+					continue; // removed with its chunk, possibly rescheduled since
+				}
+
+				this.entries.remove(entry);
+				this.removeFromChunk(entry);
+				out.add(entry);
+				--limit;
+			}
+
+			if (bucket.index >= bucket.entries.size()) {
+				this.byTime.pollFirstEntry();
+			}
+		}
+	}
+
+	/**
+	 * Collects the entries inside the horizontal bounds of the box, in
+	 * execution order.
+	 *
+	 * @param remove whether to remove the collected entries
+	 * @return the entries, or null if there are none
+	 */
+	public List<NextTickListEntry> getEntriesIn(StructureBoundingBox box, boolean remove) {
+		List<NextTickListEntry> list = null;
+		int chunks = 0;
+
+		for (int chunkX = box.a >> 4; chunkX <= (box.d - 1) >> 4; ++chunkX) {
+			for (int chunkZ = box.c >> 4; chunkZ <= (box.f - 1) >> 4; ++chunkZ) {
+				long chunkKey = ChunkCoordIntPair.asLong(chunkX, chunkZ);
+				TreeSet<NextTickListEntry> chunk = this.byChunk.get(chunkKey);
+				if (chunk == null) {
+					continue;
+				}
+
+				boolean found = false;
+				for (java.util.Iterator<NextTickListEntry> iterator = chunk.iterator(); iterator.hasNext();) {
+					NextTickListEntry entry = iterator.next();
+					BlockPosition position = entry.a;
+					if (position.getX() >= box.a && position.getX() < box.d && position.getZ() >= box.c && position.getZ() < box.f) {
+						if (remove) {
+							iterator.remove();
+							this.entries.remove(entry);
+						}
+						if (list == null) {
+							list = new ArrayList<NextTickListEntry>();
+						}
+						list.add(entry);
+						found = true;
+					}
+				}
+
+				if (found) {
+					++chunks;
+				}
+				if (chunk.isEmpty()) {
+					this.byChunk.remove(chunkKey);
+				}
+			}
+		}
+
+		if (chunks > 1) {
+			list.sort(null); // each chunk is ordered, the merged list is not
+		}
+		return list;
+	}
+
+	private void removeFromChunk(NextTickListEntry entry) {
+		long chunkKey = chunkKey(entry.a);
+		TreeSet<NextTickListEntry> chunk = this.byChunk.get(chunkKey);
+		if (chunk != null && chunk.remove(entry) && chunk.isEmpty()) {
+			this.byChunk.remove(chunkKey);
+		}
+	}
+
+	private static long chunkKey(BlockPosition position) {
+		return ChunkCoordIntPair.asLong(position.getX() >> 4, position.getZ() >> 4);
+	}
+
+	private static final class Bucket {
+
+		private final ArrayList<NextTickListEntry> entries = new ArrayList<NextTickListEntry>();
+		private int index;
+		private boolean sorted = true;
+
+		void add(NextTickListEntry entry) {
+			int size = this.entries.size();
+			if (size > this.index && this.entries.get(size - 1).compareTo(entry) > 0) {
+				this.sorted = false;
+			}
+			this.entries.add(entry);
+		}
+
+		void sort() {
+			if (!this.sorted) {
+				this.entries.subList(this.index, this.entries.size()).sort(null);
+				this.sorted = true;
+			}
+		}
+	}
+}
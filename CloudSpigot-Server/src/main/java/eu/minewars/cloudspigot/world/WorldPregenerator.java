@@ -0,0 +1,355 @@
+package eu.minewars.cloudspigot.world;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import eu.minewars.cloudspigot.config.CloudSpigotConfig;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkProviderServer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.WorldServer;
+
+/**
+ * Generates every chunk within a square radius around the world border center.
+ * <p>
+ * Work is done one region at a time, in spiral order from the center, the
+ * spiral is walked as the regions are done instead of listed up front. Each
+ * region is requested together with a one chunk margin so all of its chunks
+ * get populated, then saved and unloaded right away to keep memory bounded.
+ * Progress is written to the world folder after every region, an interrupted
+ * run continues with the region it was working on once the world is loaded
+ * again. The number of chunks requested per tick follows the one minute TPS
+ * average.
+ */
+public final class WorldPregenerator {
+
+	private static final String PROGRESS_FILE = "cloudspigot_pregen.yml";
+	private static final Map<String, WorldPregenerator> ACTIVE = new LinkedHashMap<String, WorldPregenerator>();
+
+	private final WorldServer world;
+	private final int centerX;
+	private final int centerZ;
+	private final int radius;
+	private final int minChunkX;
+	private final int minChunkZ;
+	private final int maxChunkX;
+	private final int maxChunkZ;
+	private final long regionCount;
+	private long regionIndex; // regions done
+	private long chunksDone;
+
+	// the spiral walk, at the next region to visit
+	private int spiralX;
+	private int spiralZ;
+	private int spiralDX = 1;
+	private int spiralDZ;
+	private int spiralLeg = 1;
+	private int spiralTurn;
+	private int spiralStep;
+	private int regionX;
+	private int regionZ;
+
+	// current region, chunk x, z pairs
+	private int[] chunks;
+	private int nextChunk;
+	private int inFlight;
+
+	private int chunksPerTick = 1;
+	private boolean paused;
+	private long lastReport = System.currentTimeMillis();
+	private long chunksAtLastReport;
+
+	private WorldPregenerator(WorldServer world, int centerX, int centerZ, int radius) {
+		this.world = world;
+		this.centerX = centerX;
+		this.centerZ = centerZ;
+		this.radius = radius;
+		// one extra chunk on every side, chunks are populated once their
+		// south and east neighbours exist
+		this.minChunkX = ((centerX - radius) >> 4) - 1;
+		this.minChunkZ = ((centerZ - radius) >> 4) - 1;
+		this.maxChunkX = ((centerX + radius) >> 4) + 1;
+		this.maxChunkZ = ((centerZ + radius) >> 4) + 1;
+		this.regionCount = (long) ((this.maxChunkX >> 5) - (this.minChunkX >> 5) + 1) * ((this.maxChunkZ >> 5) - (this.minChunkZ >> 5) + 1);
+		this.spiralX = ((this.minChunkX >> 5) + (this.maxChunkX >> 5)) >> 1;
+		this.spiralZ = ((this.minChunkZ >> 5) + (this.maxChunkZ >> 5)) >> 1;
+	}
+
+	/**
+	 * Starts pre-generating the world, replacing a run that is already active.
+	 */
+	public static WorldPregenerator start(WorldServer world, int radius) {
+		cancel(world);
+		WorldPregenerator pregenerator = new WorldPregenerator(world, (int) Math.floor(world.getWorldBorder().getCenterX()),
+				(int) Math.floor(world.getWorldBorder().getCenterZ()), radius);
+		pregenerator.saveProgress();
+		ACTIVE.put(world.getWorld().getName(), pregenerator);
+		return pregenerator;
+	}
+
+	/**
+	 * Stops pre-generating the world and forgets its progress.
+	 *
+	 * @return whether a run was active
+	 */
+	public static boolean cancel(WorldServer world) {
+		WorldPregenerator pregenerator = ACTIVE.remove(world.getWorld().getName());
+		if (pregenerator == null) {
+			return false;
+		}
+
+		pregenerator.getProgressFile().delete();
+		return true;
+	}
+
+	public static WorldPregenerator get(WorldServer world) {
+		return ACTIVE.get(world.getWorld().getName());
+	}
+
+	public static Collection<WorldPregenerator> getActive() {
+		return Collections.unmodifiableCollection(ACTIVE.values());
+	}
+
+	/**
+	 * Continues a run that was interrupted by a restart or world unload. Called
+	 * when the world is loaded.
+	 */
+	public static void resume(WorldServer world) {
+		File file = new File(world.getWorld().getWorldFolder(), PROGRESS_FILE);
+		if (!file.isFile() || ACTIVE.containsKey(world.getWorld().getName())) {
+			return;
+		}
+
+		YamlConfiguration progress = YamlConfiguration.loadConfiguration(file);
+		WorldPregenerator pregenerator = new WorldPregenerator(world, progress.getInt("center-x"),
+				progress.getInt("center-z"), progress.getInt("radius"));
+		pregenerator.regionIndex = progress.getLong("region-index");
+		pregenerator.chunksDone = progress.getLong("chunks");
+		if (progress.isConfigurationSection("spiral")) {
+			pregenerator.spiralX = progress.getInt("spiral.x");
+			pregenerator.spiralZ = progress.getInt("spiral.z");
+			pregenerator.spiralDX = progress.getInt("spiral.dx");
+			pregenerator.spiralDZ = progress.getInt("spiral.dz");
+			pregenerator.spiralLeg = progress.getInt("spiral.leg");
+			pregenerator.spiralTurn = progress.getInt("spiral.turn");
+			pregenerator.spiralStep = progress.getInt("spiral.step");
+		} else {
+			for (long i = 0; i < pregenerator.regionIndex; ++i) {
+				pregenerator.nextRegion(); // saved before the spiral was, walk it up to the region
+			}
+		}
+		pregenerator.chunksAtLastReport = pregenerator.chunksDone;
+		ACTIVE.put(world.getWorld().getName(), pregenerator);
+		MinecraftServer.LOGGER.info("Resuming pre-generation of " + world.getWorld().getName() + " at "
+				+ pregenerator.getPercent() + "%");
+	}
+
+	/**
+	 * Advances every active run. Main thread only.
+	 */
+	public static void tickAll() {
+		if (ACTIVE.isEmpty()) {
+			return;
+		}
+
+		MinecraftServer server = MinecraftServer.getServer();
+		boolean adjust = server.aq() % 20 == 0;
+		for (Iterator<WorldPregenerator> iterator = ACTIVE.values().iterator(); iterator.hasNext();) {
+			WorldPregenerator pregenerator = iterator.next();
+			if (!server.worlds.contains(pregenerator.world)) {
+				iterator.remove(); // unloaded, the progress file stays for the next load
+				continue;
+			}
+
+			if (adjust) {
+				pregenerator.adjustRate(server.tps1.getAverage());
+			}
+			if (!pregenerator.paused && pregenerator.tick()) {
+				iterator.remove();
+				pregenerator.getProgressFile().delete();
+				MinecraftServer.LOGGER.info("Finished pre-generating " + pregenerator.world.getWorld().getName() + ", "
+						+ pregenerator.chunksDone + " chunks");
+			}
+		}
+	}
+
+	public WorldServer getWorld() {
+		return this.world;
+	}
+
+	public int getRadius() {
+		return this.radius;
+	}
+
+	public boolean isPaused() {
+		return this.paused;
+	}
+
+	public int getChunksPerTick() {
+		return this.chunksPerTick;
+	}
+
+	public int getPercent() {
+		return (int) (this.regionIndex * 100L / Math.max(1L, this.regionCount));
+	}
+
+	private void adjustRate(double tps) {
+		this.paused = tps < CloudSpigotConfig.pregenPauseBelowTps;
+		if (this.paused) {
+			this.chunksPerTick = 1;
+		} else if (tps >= 19.5D) {
+			this.chunksPerTick = Math.min(this.chunksPerTick + 1, CloudSpigotConfig.pregenMaxChunksPerTick);
+		} else if (tps < 19.0D) {
+			this.chunksPerTick = Math.max(1, this.chunksPerTick >> 1);
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - this.lastReport >= 30000L) {
+			MinecraftServer.LOGGER.info("Pre-generating " + this.world.getWorld().getName() + ": " + getPercent() + "%, "
+					+ ((this.chunksDone - this.chunksAtLastReport) * 1000L / (now - this.lastReport)) + " chunks/s"
+					+ (this.paused ? ", paused until the TPS recover" : ""));
+			this.lastReport = now;
+			this.chunksAtLastReport = this.chunksDone;
+		}
+	}
+
+	/**
+	 * @return whether every region is done
+	 */
+	private boolean tick() {
+		ChunkProviderServer provider = this.world.getChunkProviderServer();
+		int budget = this.chunksPerTick;
+
+		while (budget > 0) {
+			if (this.chunks == null) {
+				if (this.regionIndex >= this.regionCount) {
+					return true;
+				}
+				this.nextRegion();
+				this.chunks = this.getRegionChunks(this.regionX, this.regionZ);
+				this.nextChunk = 0;
+			}
+
+			if (this.nextChunk < this.chunks.length >> 1) {
+				if (this.inFlight >= this.chunksPerTick << 2) {
+					break; // let the generation threads catch up
+				}
+
+				int index = this.nextChunk++ << 1;
+				++this.inFlight;
+				--budget;
+				// runs right away unless the chunk is loaded or generated asynchronously
+				provider.getChunkAt(this.chunks[index], this.chunks[index + 1], () -> {
+					--this.inFlight;
+					++this.chunksDone;
+				}, true);
+				continue;
+			}
+
+			if (this.inFlight > 0) {
+				break;
+			}
+
+			this.unloadRegion(provider);
+			this.chunks = null;
+			++this.regionIndex;
+			this.saveProgress();
+		}
+		return false;
+	}
+
+	private void unloadRegion(ChunkProviderServer provider) {
+		for (int i = 0; i < this.chunks.length; i += 2) {
+			int x = this.chunks[i];
+			int z = this.chunks[i + 1];
+			Chunk chunk = provider.getChunkIfLoaded(x, z);
+			if (chunk != null && !this.world.getPlayerChunkMap().isChunkInUse(x, z) && !this.world.shouldStayLoaded(x, z)) {
+				provider.unloadChunk(chunk, true);
+			}
+		}
+	}
+
+	private int[] getRegionChunks(int regionX, int regionZ) {
+		// the margin overlaps the neighbouring regions, done ones are just loaded
+		int fromX = Math.max((regionX << 5) - 1, this.minChunkX);
+		int fromZ = Math.max((regionZ << 5) - 1, this.minChunkZ);
+		int toX = Math.min((regionX << 5) + 32, this.maxChunkX);
+		int toZ = Math.min((regionZ << 5) + 32, this.maxChunkZ);
+		int[] chunks = new int[Math.max(0, (toX - fromX + 1) * (toZ - fromZ + 1) * 2)];
+		int index = 0;
+		for (int x = fromX; x <= toX; ++x) {
+			for (int z = fromZ; z <= toZ; ++z) {
+				chunks[index++] = x;
+				chunks[index++] = z;
+			}
+		}
+		return chunks;
+	}
+
+	private File getProgressFile() {
+		return new File(this.world.getWorld().getWorldFolder(), PROGRESS_FILE);
+	}
+
+	private void saveProgress() {
+		YamlConfiguration progress = new YamlConfiguration();
+		progress.set("center-x", this.centerX);
+		progress.set("center-z", this.centerZ);
+		progress.set("radius", this.radius);
+		progress.set("region-index", this.regionIndex);
+		progress.set("chunks", this.chunksDone);
+		progress.set("spiral.x", this.spiralX);
+		progress.set("spiral.z", this.spiralZ);
+		progress.set("spiral.dx", this.spiralDX);
+		progress.set("spiral.dz", this.spiralDZ);
+		progress.set("spiral.leg", this.spiralLeg);
+		progress.set("spiral.turn", this.spiralTurn);
+		progress.set("spiral.step", this.spiralStep);
+		try {
+			progress.save(this.getProgressFile());
+		} catch (IOException ex) {
+			MinecraftServer.LOGGER.warn("Could not save the pre-generation progress of " + this.world.getWorld().getName(), ex);
+		}
+	}
+
+	/**
+	 * Walks the square spiral around the center to the next region inside the
+	 * rectangle, so the area closest to the center is done first. Every length
+	 * is walked twice: east, south, then west, north, ...
+	 */
+	private void nextRegion() {
+		int minX = this.minChunkX >> 5;
+		int minZ = this.minChunkZ >> 5;
+		int maxX = this.maxChunkX >> 5;
+		int maxZ = this.maxChunkZ >> 5;
+
+		while (true) {
+			int x = this.spiralX;
+			int z = this.spiralZ;
+			this.spiralX += this.spiralDX;
+			this.spiralZ += this.spiralDZ;
+			if (++this.spiralStep == this.spiralLeg) {
+				this.spiralStep = 0;
+				int rotated = this.spiralDX;
+				this.spiralDX = -this.spiralDZ;
+				this.spiralDZ = rotated;
+				if (++this.spiralTurn == 2) {
+					this.spiralTurn = 0;
+					++this.spiralLeg;
+				}
+			}
+
+			if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+				this.regionX = x;
+				this.regionZ = z;
+				return;
+			}
+		}
+	}
+}
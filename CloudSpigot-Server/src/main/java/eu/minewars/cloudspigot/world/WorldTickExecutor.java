@@ -0,0 +1,202 @@
+package eu.minewars.cloudspigot.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.common.base.Throwables;
+
+import co.aikar.timings.MinecraftTimings;
+import eu.minewars.cloudspigot.config.CloudSpigotConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.World;
+import net.minecraft.server.WorldServer;
+
+/**
+ * Ticks independent worlds concurrently on a fixed pool of threads.
+ * <p>
+ * The main thread hands every world to the pool and waits for all of them
+ * before the connection and player list phase runs, so code outside of the
+ * world tick never observes a world while it is being ticked. Work that
+ * touches another world (dimension changes, cross-world teleports) must be
+ * passed to {@link #handoff(Runnable)} while on a world tick thread, it is run
+ * on the main thread right after the barrier.
+ * <p>
+ * Plugin events fired from a world tick thread are dispatched under
+ * {@link #PLUGIN_LOCK}. While the main thread waits at the barrier, the thread
+ * holding the lock is the only one running plugin code, so it counts as the
+ * primary thread for {@code Bukkit.isPrimaryThread()} until it releases the
+ * lock. Outside of that, world tick threads are not primary threads: the
+ * timings of a world and everything nested in them are not recorded, each
+ * world's wall time is recorded under "Parallel World Tick" instead.
+ * <p>
+ * A world tick thread only owns the world it ticks. Entity additions and
+ * removals in another world, from plugins or vanilla code alike, are handed
+ * off to the main thread, other guarded operations on another world fail in
+ * {@code AsyncCatcher} (see {@link #isForeignWorld(World)}). Static state that
+ * vanilla code uses during a tick is per world or thread confined.
+ */
+public final class WorldTickExecutor {
+
+	/**
+	 * Held while a world tick thread dispatches a plugin event, plugins are not
+	 * expected to be thread safe.
+	 */
+	public static final Object PLUGIN_LOCK = new Object();
+
+	private static final Queue<Runnable> HANDOFF = new ConcurrentLinkedQueue<Runnable>();
+	private static ExecutorService pool;
+
+	private WorldTickExecutor() {
+	}
+
+	/**
+	 * @return true if the current thread is ticking a world in parallel with
+	 *         other worlds
+	 */
+	public static boolean isWorldTickThread() {
+		return Thread.currentThread() instanceof WorldTickThread;
+	}
+
+	/**
+	 * @return true if the current thread may access world state, either the
+	 *         main thread or a world tick thread
+	 */
+	public static boolean isTickThread() {
+		return Thread.currentThread() == MinecraftServer.getServer().primaryThread || isWorldTickThread();
+	}
+
+	/**
+	 * @return true if the current thread is a world tick thread ticking
+	 *         another world than the given one, the world may be ticking on
+	 *         another thread at the same time
+	 */
+	public static boolean isForeignWorld(World world) {
+		Thread thread = Thread.currentThread();
+		return thread instanceof WorldTickThread && ((WorldTickThread) thread).world != world;
+	}
+
+	/**
+	 * @return true if the current thread is a world tick thread dispatching a
+	 *         plugin event under {@link #PLUGIN_LOCK}
+	 */
+	public static boolean isDispatchingEvent() {
+		Thread thread = Thread.currentThread();
+		return thread instanceof WorldTickThread && ((WorldTickThread) thread).eventDepth > 0;
+	}
+
+	/**
+	 * Runs the dispatch of a plugin event, or a command, from a world tick
+	 * thread under {@link #PLUGIN_LOCK}.
+	 */
+	public static void dispatchEvent(Runnable dispatch) {
+		WorldTickThread thread = (WorldTickThread) Thread.currentThread();
+		synchronized (PLUGIN_LOCK) {
+			++thread.eventDepth;
+			try {
+				dispatch.run();
+			} finally {
+				--thread.eventDepth;
+			}
+		}
+	}
+
+	/**
+	 * Queues a task that has to run on the main thread once all worlds finished
+	 * ticking.
+	 */
+	public static void handoff(Runnable runnable) {
+		HANDOFF.add(runnable);
+	}
+
+	/**
+	 * Ticks all worlds on the pool and blocks until every world is done. Must be
+	 * called from the main thread.
+	 */
+	public static void tickWorlds(List<WorldServer> worlds, Consumer<WorldServer> ticker) {
+		final int size = worlds.size();
+		final long[] wallTimes = new long[size];
+		final List<Future<?>> futures = new ArrayList<Future<?>>(size);
+		final ExecutorService pool = getPool();
+
+		MinecraftTimings.parallelWorldTickTimer.startTiming();
+		for (int i = 0; i < size; ++i) {
+			final WorldServer worldserver = worlds.get(i);
+			final int index = i;
+			futures.add(pool.submit(() -> {
+				WorldTickThread thread = (WorldTickThread) Thread.currentThread();
+				long start = System.nanoTime();
+				thread.world = worldserver;
+				try {
+					ticker.accept(worldserver);
+				} finally {
+					thread.world = null;
+					wallTimes[index] = System.nanoTime() - start;
+				}
+			}));
+		}
+
+		Throwable failure = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		// Future.get() happens-after the task, so wallTimes is safely published here
+		long criticalPath = 0;
+		for (int i = 0; i < size; ++i) {
+			MinecraftTimings.addTime(worlds.get(i).timings.parallelTick, wallTimes[i]);
+			criticalPath = Math.max(criticalPath, wallTimes[i]);
+		}
+		MinecraftTimings.addTime(MinecraftTimings.parallelWorldTickCriticalPathTimer, criticalPath);
+		MinecraftTimings.parallelWorldTickTimer.stopTiming();
+
+		if (failure != null) {
+			throw Throwables.propagate(failure);
+		}
+
+		MinecraftTimings.parallelWorldTickHandoffTimer.startTiming();
+		Runnable task;
+		while ((task = HANDOFF.poll()) != null) {
+			task.run();
+		}
+		MinecraftTimings.parallelWorldTickHandoffTimer.stopTiming();
+	}
+
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			pool = Executors.newFixedThreadPool(CloudSpigotConfig.parallelWorldTickThreads, runnable -> {
+				Thread thread = new WorldTickThread(runnable, "World Tick Thread - " + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY + 1);
+				return thread;
+			});
+		}
+		return pool;
+	}
+
+	private static final class WorldTickThread extends Thread {
+
+		private int eventDepth; // events nest, listeners fire events of their own
+		private WorldServer world;
+
+		WorldTickThread(Runnable runnable, String name) {
+			super(runnable, name);
+		}
+	}
+}
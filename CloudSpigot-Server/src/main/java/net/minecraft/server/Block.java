@@ -280,14 +280,7 @@ public class Block {
     }
 
     protected static void a(BlockPosition blockposition, AxisAlignedBB axisalignedbb, List<AxisAlignedBB> list, @Nullable AxisAlignedBB axisalignedbb1) {
-        if (axisalignedbb1 != Block.k) {
-            AxisAlignedBB axisalignedbb2 = axisalignedbb1.a(blockposition);
-
-            if (axisalignedbb.c(axisalignedbb2)) {
-                list.add(axisalignedbb2);
-            }
-        }
-
+        eu.minewars.cloudspigot.world.CollisionShapes.addBox(blockposition, axisalignedbb, list, axisalignedbb1); // CloudSpigot - no allocation for boxes that are not hit
     }
 
     @Deprecated
@@ -325,11 +318,11 @@ public class Block {
     }
 
     public void onPlace(World world, BlockPosition blockposition, IBlockData iblockdata) {
-        org.spigotmc.AsyncCatcher.catchOp( "block onPlace"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp(world, "block onPlace"); // Spigot // CloudSpigot - only from the owning thread
     }
 
     public void remove(World world, BlockPosition blockposition, IBlockData iblockdata) {
-        org.spigotmc.AsyncCatcher.catchOp( "block remove"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp(world, "block remove"); // Spigot // CloudSpigot - only from the owning thread
     }
 
     public int a(Random random) {
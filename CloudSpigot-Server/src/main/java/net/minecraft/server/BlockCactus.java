@@ -90,9 +90,9 @@ public class BlockCactus extends Block {
     }
 
     public void a(World world, BlockPosition blockposition, IBlockData iblockdata, Entity entity) {
-        CraftEventFactory.blockDamage = world.getWorld().getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ()); // CraftBukkit
+        CraftEventFactory.setBlockDamage(world.getWorld().getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ())); // CraftBukkit // CloudSpigot
         entity.damageEntity(DamageSource.CACTUS, 1.0F);
-        CraftEventFactory.blockDamage = null; // CraftBukkit
+        CraftEventFactory.setBlockDamage(null); // CraftBukkit // CloudSpigot
     }
 
     public IBlockData fromLegacyData(int i) {
@@ -38,14 +38,14 @@ public abstract class BlockDiodeAbstract extends BlockFacingHorizontal {
 
             if (this.d && !flag) {
                 // CraftBukkit start
-                if (CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 15, 0).getNewCurrent() != 0) {
+                if (CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 15, 0) != 0) {
                     return;
                 }
                 // CraftBukkit end
                 world.setTypeAndData(blockposition, this.z(iblockdata), 2);
             } else if (!this.d) {
                 // CraftBukkit start
-                if (CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 0, 15).getNewCurrent() != 15) {
+                if (CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 0, 15) != 15) {
                     return;
                 }
                 // CraftBukkit end
@@ -5,6 +5,14 @@ import java.util.Random;
 public class BlockFalling extends Block {
 
     public static boolean instaFall;
+    // CloudSpigot start - thread confined, worlds may populate in parallel
+    // instaFall is kept for classes and plugins that still set it
+    public static final ThreadLocal<Boolean> instaFallLocal = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public static boolean isInstaFall() {
+        return BlockFalling.instaFall || BlockFalling.instaFallLocal.get();
+    }
+    // CloudSpigot end
 
     public BlockFalling() {
         super(Material.SAND);
@@ -32,7 +40,7 @@ public class BlockFalling extends Block {
 
     private void b(World world, BlockPosition blockposition) {
         if (x(world.getType(blockposition.down())) && blockposition.getY() >= 0) {
-            if (!BlockFalling.instaFall && world.areChunksLoadedBetween(blockposition.a(-32, -32, -32), blockposition.a(32, 32, 32))) {
+            if (!BlockFalling.isInstaFall() && world.areChunksLoadedBetween(blockposition.a(-32, -32, -32), blockposition.a(32, 32, 32))) { // CloudSpigot
                 if (!world.isClientSide) {
                     EntityFallingBlock entityfallingblock = new EntityFallingBlock(world, (double) blockposition.getX() + 0.5D, (double) blockposition.getY(), (double) blockposition.getZ() + 0.5D, world.getType(blockposition));
 
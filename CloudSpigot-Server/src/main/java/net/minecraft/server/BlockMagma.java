@@ -17,9 +17,9 @@ public class BlockMagma extends Block {
 
     public void stepOn(World world, BlockPosition blockposition, Entity entity) {
         if (!entity.isFireProof() && entity instanceof EntityLiving && !EnchantmentManager.i((EntityLiving) entity)) {
-            org.bukkit.craftbukkit.event.CraftEventFactory.blockDamage = world.getWorld().getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ()); // CraftBukkit
+            org.bukkit.craftbukkit.event.CraftEventFactory.setBlockDamage(world.getWorld().getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ())); // CraftBukkit // CloudSpigot
             entity.damageEntity(DamageSource.HOT_FLOOR, 1.0F);
-            org.bukkit.craftbukkit.event.CraftEventFactory.blockDamage = null; // CraftBukkit
+            org.bukkit.craftbukkit.event.CraftEventFactory.setBlockDamage(null); // CraftBukkit // CloudSpigot
         }
 
         super.stepOn(world, blockposition, entity);
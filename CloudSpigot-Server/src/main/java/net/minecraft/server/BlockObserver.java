@@ -28,14 +28,14 @@ public class BlockObserver extends BlockDirectional {
     public void b(World world, BlockPosition blockposition, IBlockData iblockdata, Random random) {
         if (((Boolean) iblockdata.get(BlockObserver.a)).booleanValue()) {
             // Paper start
-            if (CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 15, 0).getNewCurrent() != 0) {
+            if (CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 15, 0) != 0) {
                 return;
             }
             // Paper end
             world.setTypeAndData(blockposition, iblockdata.set(BlockObserver.a, false), 2);
         } else {
             // Paper start
-            if (CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 0, 15).getNewCurrent() != 15) {
+            if (CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 0, 15) != 15) {
                 return;
             }
             // Paper end
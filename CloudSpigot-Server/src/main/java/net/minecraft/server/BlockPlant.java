@@ -41,7 +41,7 @@ public class BlockPlant extends Block {
     protected void e(World world, BlockPosition blockposition, IBlockData iblockdata) {
         if (!this.f(world, blockposition, iblockdata)) {
             // CraftBukkit start
-            if (org.bukkit.craftbukkit.event.CraftEventFactory.callBlockPhysicsEvent(world, blockposition).isCancelled()) {
+            if (!org.bukkit.craftbukkit.event.CraftEventFactory.handleBlockPhysicsEvent(world, blockposition)) { // CloudSpigot
                 return;
             }
             // CraftBukkit end
@@ -121,7 +121,7 @@ public class BlockPoweredRail extends BlockMinecartTrackAbstract {
         if (flag1 != flag) {
             // CraftBukkit start
             int power = (Boolean)iblockdata.get(POWERED) ? 15 : 0;
-            int newPower = CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), power, 15 - power).getNewCurrent();
+            int newPower = CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), power, 15 - power);
             if (newPower == power) {
                 return;
             }
@@ -166,14 +166,14 @@ public class BlockRedstoneComparator extends BlockDiodeAbstract implements ITile
 
             if (flag1 && !flag) {
                 // Paper start
-                if (CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 15, 0).getNewCurrent() != 0) {
+                if (CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 15, 0) != 0) {
                     return;
                 }
                 // Paper end
                 world.setTypeAndData(blockposition, iblockdata.set(BlockRedstoneComparator.POWERED, false), 2);
             } else if (!flag1 && flag) {
                 // Paper start
-                if (CraftEventFactory.callRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 0, 15).getNewCurrent() != 15) {
+                if (CraftEventFactory.handleRedstoneChange(world, blockposition.getX(), blockposition.getY(), blockposition.getZ(), 0, 15) != 15) {
                     return;
                 }
                 // Paper end
@@ -19,8 +19,10 @@ public class BlockRedstoneWire extends Block {
     public static final BlockStateEnum<BlockRedstoneWire.EnumRedstoneWireConnection> WEST = BlockStateEnum.of("west", BlockRedstoneWire.EnumRedstoneWireConnection.class);
     public static final BlockStateInteger POWER = BlockStateInteger.of("power", 0, 15);
     protected static final AxisAlignedBB[] f = new AxisAlignedBB[] { new AxisAlignedBB(0.1875D, 0.0D, 0.1875D, 0.8125D, 0.0625D, 0.8125D), new AxisAlignedBB(0.1875D, 0.0D, 0.1875D, 0.8125D, 0.0625D, 1.0D), new AxisAlignedBB(0.0D, 0.0D, 0.1875D, 0.8125D, 0.0625D, 0.8125D), new AxisAlignedBB(0.0D, 0.0D, 0.1875D, 0.8125D, 0.0625D, 1.0D), new AxisAlignedBB(0.1875D, 0.0D, 0.0D, 0.8125D, 0.0625D, 0.8125D), new AxisAlignedBB(0.1875D, 0.0D, 0.0D, 0.8125D, 0.0625D, 1.0D), new AxisAlignedBB(0.0D, 0.0D, 0.0D, 0.8125D, 0.0625D, 0.8125D), new AxisAlignedBB(0.0D, 0.0D, 0.0D, 0.8125D, 0.0625D, 1.0D), new AxisAlignedBB(0.1875D, 0.0D, 0.1875D, 1.0D, 0.0625D, 0.8125D), new AxisAlignedBB(0.1875D, 0.0D, 0.1875D, 1.0D, 0.0625D, 1.0D), new AxisAlignedBB(0.0D, 0.0D, 0.1875D, 1.0D, 0.0625D, 0.8125D), new AxisAlignedBB(0.0D, 0.0D, 0.1875D, 1.0D, 0.0625D, 1.0D), new AxisAlignedBB(0.1875D, 0.0D, 0.0D, 1.0D, 0.0625D, 0.8125D), new AxisAlignedBB(0.1875D, 0.0D, 0.0D, 1.0D, 0.0625D, 1.0D), new AxisAlignedBB(0.0D, 0.0D, 0.0D, 1.0D, 0.0625D, 0.8125D), new AxisAlignedBB(0.0D, 0.0D, 0.0D, 1.0D, 0.0625D, 1.0D)};
-    private boolean g = true;
-    private final Set<BlockPosition> B = Sets.newHashSet();
+    // CloudSpigot start - thread confined, the block is shared by worlds that may tick in parallel
+    private final ThreadLocal<Boolean> g = ThreadLocal.withInitial(() -> Boolean.TRUE);
+    private final ThreadLocal<Set<BlockPosition>> B = ThreadLocal.withInitial(Sets::newHashSet);
+    // CloudSpigot end
 
     public BlockRedstoneWire() {
         super(Material.ORIENTABLE);
@@ -109,9 +111,10 @@ public class BlockRedstoneWire extends Block {
 
     private IBlockData e(World world, BlockPosition blockposition, IBlockData iblockdata) {
         iblockdata = this.a(world, blockposition, blockposition, iblockdata);
-        ArrayList arraylist = Lists.newArrayList(this.B);
+        Set<BlockPosition> updates = this.B.get(); // CloudSpigot
+        ArrayList arraylist = Lists.newArrayList(updates); // CloudSpigot
 
-        this.B.clear();
+        updates.clear(); // CloudSpigot
         Iterator iterator = arraylist.iterator();
 
         while (iterator.hasNext()) {
@@ -129,10 +132,10 @@ public class BlockRedstoneWire extends Block {
         byte b0 = 0;
         int j = this.getPower(world, blockposition1, b0);
 
-        this.g = false;
+        this.g.set(Boolean.FALSE); // CloudSpigot
         int k = world.z(blockposition);
 
-        this.g = true;
+        this.g.set(Boolean.TRUE); // CloudSpigot
         if (k > 0 && k > j - 1) {
             j = k;
         }
@@ -171,7 +174,7 @@ public class BlockRedstoneWire extends Block {
         }
 
         // CraftBukkit start
-        if (i != j) {
+        if (i != j && BlockRedstoneEvent.getHandlerList().hasListeners()) { // CloudSpigot - skip the event if nobody listens
             BlockRedstoneEvent event = new BlockRedstoneEvent(world.getWorld().getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ()), i, j);
             world.getServer().getPluginManager().callEvent(event);
 
@@ -185,14 +188,15 @@ public class BlockRedstoneWire extends Block {
                 world.setTypeAndData(blockposition, iblockdata, 2);
             }
 
-            this.B.add(blockposition);
+            Set<BlockPosition> updates = this.B.get(); // CloudSpigot
+            updates.add(blockposition); // CloudSpigot
             EnumDirection[] aenumdirection = EnumDirection.values();
             int i1 = aenumdirection.length;
 
             for (int j1 = 0; j1 < i1; ++j1) {
                 EnumDirection enumdirection1 = aenumdirection[j1];
 
-                this.B.add(blockposition.shift(enumdirection1));
+                updates.add(blockposition.shift(enumdirection1)); // CloudSpigot
             }
         }
 
@@ -314,11 +318,11 @@ public class BlockRedstoneWire extends Block {
     }
 
     public int c(IBlockData iblockdata, IBlockAccess iblockaccess, BlockPosition blockposition, EnumDirection enumdirection) {
-        return !this.g ? 0 : iblockdata.a(iblockaccess, blockposition, enumdirection);
+        return !this.g.get() ? 0 : iblockdata.a(iblockaccess, blockposition, enumdirection); // CloudSpigot
     }
 
     public int b(IBlockData iblockdata, IBlockAccess iblockaccess, BlockPosition blockposition, EnumDirection enumdirection) {
-        if (!this.g) {
+        if (!this.g.get()) { // CloudSpigot
             return 0;
         } else {
             int i = ((Integer) iblockdata.get(BlockRedstoneWire.POWER)).intValue();
@@ -382,7 +386,7 @@ public class BlockRedstoneWire extends Block {
     }
 
     public boolean isPowerSource(IBlockData iblockdata) {
-        return this.g;
+        return this.g.get(); // CloudSpigot
     }
 
     public ItemStack a(World world, BlockPosition blockposition, IBlockData iblockdata) {
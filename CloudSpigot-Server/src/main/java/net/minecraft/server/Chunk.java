@@ -36,6 +36,7 @@ public class Chunk {
     public final World world;
     public final int[] heightMap;
     public Long scheduledForUnload; // Paper - delay chunk unloads
+    public volatile eu.minewars.cloudspigot.world.ChunkPacketCache packetCache; // CloudSpigot - sections serialized for the last chunk packet
     private static final Logger logger = LogManager.getLogger(); // Paper
     public final int locX;
     public final int locZ;
@@ -91,6 +92,7 @@ public class Chunk {
     private final int[] itemCounts = new int[16];
     private final int[] inventoryEntityCounts = new int[16];
     // Paper end
+    public final eu.minewars.cloudspigot.world.EntityClassIndex entityIndex = new eu.minewars.cloudspigot.world.EntityClassIndex(); // CloudSpigot - keep synced like the counts above
 
     // CraftBukkit start - Neighbor loaded cache for chunk lighting and entity ticking
     private int neighbors = 0x1 << 12;
@@ -149,6 +151,7 @@ public class Chunk {
     public org.bukkit.Chunk bukkitChunk;
     public boolean mustSave;
     // CraftBukkit end
+    public int lightPending; // CloudSpigot - batches on the light worker reaching into the chunk
 
     public Chunk(World world, ChunkSnapshot chunksnapshot, int i, int j) {
         this(world, i, j);
@@ -326,6 +329,12 @@ public class Chunk {
     private void a(int i, int j, int k, int l) {
         if (l > k && this.areNeighborsLoaded(1)) { // Paper
             for (int i1 = k; i1 < l; ++i1) {
+                // CloudSpigot start
+                if (this.world.lightEngine != null) {
+                    this.world.lightEngine.queueSky(i, i1, j);
+                    continue;
+                }
+                // CloudSpigot end
                 this.world.c(EnumSkyBlock.SKY, new BlockPosition(i, i1, j));
             }
 
@@ -669,6 +678,11 @@ public class Chunk {
             k = this.entitySlices.length - 1;
         }
 
+        // CloudSpigot start - remember the chunk the entity was in, for the class index below
+        boolean wasInChunk = entity.aa;
+        int oldChunkX = entity.ab;
+        int oldChunkZ = entity.ad;
+        // CloudSpigot end
         entity.aa = true;
         entity.ab = this.locX;
         entity.ac = k;
@@ -688,11 +702,20 @@ public class Chunk {
                 } else {
                     removeEntity(entity);
                 }
-                currentSlice.remove(entity); // Just incase the above did not remove from this target slice
+                // CloudSpigot start - keep the class index in sync
+                if (currentSlice.remove(entity)) { // Just incase the above did not remove from this target slice
+                    Chunk owner = chunk;
+                    if (owner == null && wasInChunk) {
+                        owner = this.world.getChunkIfLoaded(oldChunkX, oldChunkZ);
+                    }
+                    (owner != null ? owner : this).removeFromIndex(entity, currentSlice);
+                }
+                // CloudSpigot end
             }
         }
         entity.entitySlice = entitySlice;
         entitySlice.add(entity);
+        this.entityIndex.add(entity, k); // CloudSpigot
 
         this.markDirty();
         entity.setCurrentChunk(this);
@@ -740,6 +763,7 @@ public class Chunk {
             entity.entitySlice = null;
         }
         if (!this.entitySlices[i].remove(entity)) { return; }
+        this.entityIndex.remove(entity, i); // CloudSpigot
         this.markDirty();
         entity.setCurrentChunk(null);
         entityCounts.decrement(entity.getMinecraftKeyString());
@@ -767,6 +791,17 @@ public class Chunk {
         // Spigot end
     }
 
+    // CloudSpigot start
+    private void removeFromIndex(Entity entity, List<Entity> slice) {
+        for (int k = 0; k < this.entitySlices.length; ++k) {
+            if (this.entitySlices[k] == slice) {
+                this.entityIndex.remove(entity, k);
+                return;
+            }
+        }
+    }
+    // CloudSpigot end
+
     public boolean c(BlockPosition blockposition) {
         int i = blockposition.getX() & 15;
         int j = blockposition.getY();
@@ -999,7 +1034,7 @@ public class Chunk {
 
         for (int k = i; k <= j; ++k) {
             if (!this.entitySlices[k].isEmpty()) {
-                Iterator iterator = this.entitySlices[k].iterator();
+                List<Entity> entitySlice = this.entitySlices[k]; // CloudSpigot - indexed, no iterator
 
                 // Paper start - Don't search for inventories if we have none, and that is all we want
                 /*
@@ -1010,8 +1045,8 @@ public class Chunk {
                 */
                 if (predicate == IEntitySelector.c && inventoryEntityCounts[k] <= 0) continue;
                 // Paper end
-                while (iterator.hasNext()) {
-                    Entity entity1 = (Entity) iterator.next();
+                for (int index = 0; index < entitySlice.size(); ++index) { // CloudSpigot
+                    Entity entity1 = entitySlice.get(index); // CloudSpigot
 
                     if (entity1.getBoundingBox().c(axisalignedbb) && entity1 != entity) {
                         if (predicate == null || predicate.apply(entity1)) {
@@ -1056,12 +1091,15 @@ public class Chunk {
             counts = null;
         }
         // Paper end
+        int bucket = eu.minewars.cloudspigot.world.EntityClassIndex.getBucket(oclass); // CloudSpigot
         for (int k = i; k <= j; ++k) {
             if (counts != null && counts[k] <= 0) continue; // Paper - Don't check a chunk if it doesn't have the type we are looking for
-            Iterator iterator = this.entitySlices[k].iterator(); // Spigot
+            // CloudSpigot start - only the entities that can be of the class
+            List<Entity> entitySlice = this.entityIndex.get(bucket, k, this.entitySlices[k]);
 
-            while (iterator.hasNext()) {
-                Entity entity = (Entity) iterator.next();
+            for (int index = 0; index < entitySlice.size(); ++index) {
+                Entity entity = entitySlice.get(index);
+                // CloudSpigot end
 
                 if (oclass.isInstance(entity) && entity.getBoundingBox().c(axisalignedbb) && (predicate == null || predicate.apply((T) entity))) { // CraftBukkit - fix decompile error // Spigot - instance check
                     list.add((T) entity); // Fix decompile error
@@ -1157,7 +1195,7 @@ public class Chunk {
             chunkgenerator.recreateStructures(this.locX, this.locZ);
 
             // CraftBukkit start
-            BlockSand.instaFall = true;
+            BlockSand.instaFallLocal.set(Boolean.TRUE); // CloudSpigot
             Random random = new Random();
             random.setSeed(world.getSeed());
             long xRand = random.nextLong() / 2L * 2L + 1L;
@@ -1175,7 +1213,7 @@ public class Chunk {
                     this.world.populating = false;
                 }
             }
-            BlockSand.instaFall = false;
+            BlockSand.instaFallLocal.set(Boolean.FALSE); // CloudSpigot
             this.world.getServer().getPluginManager().callEvent(new org.bukkit.event.world.ChunkPopulateEvent(bukkitChunk));
             // CraftBukkit end
             this.markDirty();
@@ -1519,6 +1557,8 @@ public class Chunk {
         this.lastSaved = i;
     }
 
+    public long getLastSaved() { return this.lastSaved; } // CloudSpigot
+
     public int w() {
         return this.v;
     }
@@ -7,7 +7,7 @@ import java.util.Map;
 import java.util.Random;
 import javax.annotation.Nullable;
 
-public class ChunkProviderFlat implements ChunkGenerator {
+public class ChunkProviderFlat implements ChunkGenerator, eu.minewars.cloudspigot.world.AsyncTerrainGenerator { // CloudSpigot
 
     private final World a;
     private final Random b;
@@ -92,7 +92,38 @@ public class ChunkProviderFlat implements ChunkGenerator {
     }
 
     public Chunk getOrCreateChunk(int i, int j) {
+        // CloudSpigot start - split into steps that can run on different threads
+        Chunk chunk = this.generateTerrain(i, j, this.sampleBiomes(i, j));
+
+        this.registerStructures(i, j);
+        return chunk;
+    }
+
+    @Override
+    public BiomeBase[][] sampleBiomes(int i, int j) {
+        return new BiomeBase[][] { null, this.a.getWorldChunkManager().getBiomeBlock((BiomeBase[]) null, i * 16, j * 16, 16, 16) };
+    }
+
+    @Override
+    public eu.minewars.cloudspigot.world.AsyncTerrainGenerator createWorkerCopy() {
+        return this; // the layers are never modified after construction
+    }
+
+    @Override
+    public void registerStructures(int i, int j) {
+        Iterator iterator = this.e.values().iterator();
+
+        while (iterator.hasNext()) {
+            WorldGenBase worldgenbase = (WorldGenBase) iterator.next();
+
+            worldgenbase.a(this.a, i, j, (ChunkSnapshot) null);
+        }
+    }
+
+    @Override
+    public Chunk generateTerrain(int i, int j, BiomeBase[][] biomes) {
         ChunkSnapshot chunksnapshot = new ChunkSnapshot();
+        // CloudSpigot end
 
         int k;
 
@@ -108,16 +139,8 @@ public class ChunkProviderFlat implements ChunkGenerator {
             }
         }
 
-        Iterator iterator = this.e.values().iterator();
-
-        while (iterator.hasNext()) {
-            WorldGenBase worldgenbase = (WorldGenBase) iterator.next();
-
-            worldgenbase.a(this.a, i, j, chunksnapshot);
-        }
-
         Chunk chunk = new Chunk(this.a, chunksnapshot, i, j);
-        BiomeBase[] abiomebase = this.a.getWorldChunkManager().getBiomeBlock((BiomeBase[]) null, i * 16, j * 16, 16, 16);
+        BiomeBase[] abiomebase = biomes[1]; // CloudSpigot
         byte[] abyte = chunk.getBiomeIndex();
 
         for (k = 0; k < abyte.length; ++k) {
@@ -4,7 +4,7 @@ import java.util.List;
 import java.util.Random;
 import javax.annotation.Nullable;
 
-public class ChunkProviderGenerate implements ChunkGenerator {
+public class ChunkProviderGenerate implements ChunkGenerator, eu.minewars.cloudspigot.world.AsyncTerrainGenerator { // CloudSpigot
 
     protected static final IBlockData a = Blocks.STONE.getBlockData();
     private final Random i;
@@ -36,8 +36,14 @@ public class ChunkProviderGenerate implements ChunkGenerator {
     double[] f;
     double[] g;
     double[] h;
+    // CloudSpigot start
+    private final long seed;
+    private final String settings;
+    // CloudSpigot end
 
     public ChunkProviderGenerate(World world, long i, boolean flag, String s) {
+        this.seed = i; // CloudSpigot
+        this.settings = s; // CloudSpigot
         this.t = Blocks.WATER.getBlockData();
         this.u = new double[256];
         this.v = new WorldGenCaves();
@@ -80,6 +86,11 @@ public class ChunkProviderGenerate implements ChunkGenerator {
 
     public void a(int i, int j, ChunkSnapshot chunksnapshot) {
         this.D = this.n.getWorldChunkManager().getBiomes(this.D, i * 4 - 2, j * 4 - 2, 10, 10);
+        this.fillNoise(i, j, chunksnapshot); // CloudSpigot
+    }
+
+    // CloudSpigot start - split from above, uses the biomes in this.D
+    private void fillNoise(int i, int j, ChunkSnapshot chunksnapshot) {
         this.a(i * 4, 0, j * 4);
 
         for (int k = 0; k < 4; ++k) {
@@ -142,18 +153,43 @@ public class ChunkProviderGenerate implements ChunkGenerator {
             for (int l = 0; l < 16; ++l) {
                 BiomeBase biomebase = abiomebase[l + k * 16];
 
+                synchronized (biomebase) { // CloudSpigot - some biomes keep state while building the surface
                 biomebase.a(this.n, this.i, chunksnapshot, i * 16 + k, j * 16 + l, this.u[l + k * 16]);
+                } // CloudSpigot
             }
         }
 
     }
 
     public Chunk getOrCreateChunk(int i, int j) {
+        // CloudSpigot start - split into steps that can run on different threads
+        Chunk chunk = this.generateTerrain(i, j, this.sampleBiomes(i, j));
+
+        this.registerStructures(i, j);
+        return chunk;
+    }
+
+    @Override
+    public BiomeBase[][] sampleBiomes(int i, int j) {
+        return new BiomeBase[][] {
+            this.n.getWorldChunkManager().getBiomes((BiomeBase[]) null, i * 4 - 2, j * 4 - 2, 10, 10),
+            this.n.getWorldChunkManager().getBiomeBlock((BiomeBase[]) null, i * 16, j * 16, 16, 16)
+        };
+    }
+
+    @Override
+    public eu.minewars.cloudspigot.world.AsyncTerrainGenerator createWorkerCopy() {
+        return new ChunkProviderGenerate(this.n, this.seed, this.o, this.settings);
+    }
+
+    @Override
+    public Chunk generateTerrain(int i, int j, BiomeBase[][] biomes) {
         this.i.setSeed(i * 341873128712L + j * 132897987541L);
         ChunkSnapshot chunksnapshot = new ChunkSnapshot();
 
-        this.a(i, j, chunksnapshot);
-        this.D = this.n.getWorldChunkManager().getBiomeBlock(this.D, i * 16, j * 16, 16, 16);
+        this.D = biomes[0];
+        this.fillNoise(i, j, chunksnapshot);
+        this.D = biomes[1];
         this.a(i, j, chunksnapshot, this.D);
         if (this.s.r && this.n.paperConfig.generateCaves) { // Paper
             this.v.a(this.n, i, j, chunksnapshot);
@@ -163,41 +199,47 @@ public class ChunkProviderGenerate implements ChunkGenerator {
             this.A.a(this.n, i, j, chunksnapshot);
         }
 
+        Chunk chunk = new Chunk(this.n, chunksnapshot, i, j);
+        byte[] abyte = chunk.getBiomeIndex();
+
+        for (int k = 0; k < abyte.length; ++k) {
+            abyte[k] = (byte) BiomeBase.a(this.D[k]);
+        }
+
+        chunk.initLighting();
+        this.D = null; // do not keep the caller's arrays around
+        return chunk;
+    }
+
+    @Override
+    public void registerStructures(int i, int j) {
+        // Structure starts do not touch the terrain, the snapshot is unused
         if (this.o) {
             if (this.s.w && this.n.paperConfig.generateMineshaft) { // Paper
-                this.y.a(this.n, i, j, chunksnapshot);
+                this.y.a(this.n, i, j, (ChunkSnapshot) null);
             }
 
             if (this.s.v&& this.n.paperConfig.generateVillage) { // Paper
-                this.x.a(this.n, i, j, chunksnapshot);
+                this.x.a(this.n, i, j, (ChunkSnapshot) null);
             }
 
             if (this.s.u && this.n.paperConfig.generateStronghold) { // Paper
-                this.w.a(this.n, i, j, chunksnapshot);
+                this.w.a(this.n, i, j, (ChunkSnapshot) null);
             }
 
             if (this.s.x && this.n.paperConfig.generateTemple) { // Paper
-                this.z.a(this.n, i, j, chunksnapshot);
+                this.z.a(this.n, i, j, (ChunkSnapshot) null);
             }
 
             if (this.s.y && this.n.paperConfig.generateMonument) { // Paper
-                this.B.a(this.n, i, j, chunksnapshot);
+                this.B.a(this.n, i, j, (ChunkSnapshot) null);
             }
 
             if (this.s.z) {
-                this.C.a(this.n, i, j, chunksnapshot);
+                this.C.a(this.n, i, j, (ChunkSnapshot) null);
             }
         }
-
-        Chunk chunk = new Chunk(this.n, chunksnapshot, i, j);
-        byte[] abyte = chunk.getBiomeIndex();
-
-        for (int k = 0; k < abyte.length; ++k) {
-            abyte[k] = (byte) BiomeBase.a(this.D[k]);
-        }
-
-        chunk.initLighting();
-        return chunk;
+        // CloudSpigot end
     }
 
     private void a(int i, int j, int k) {
@@ -308,7 +350,7 @@ public class ChunkProviderGenerate implements ChunkGenerator {
     }
 
     public void recreateStructures(int i, int j) {
-        BlockFalling.instaFall = true;
+        BlockFalling.instaFallLocal.set(Boolean.TRUE); // CloudSpigot
         int k = i * 16;
         int l = j * 16;
         BlockPosition blockposition = new BlockPosition(k, 0, l);
@@ -397,7 +439,7 @@ public class ChunkProviderGenerate implements ChunkGenerator {
             }
         }
 
-        BlockFalling.instaFall = false;
+        BlockFalling.instaFallLocal.set(Boolean.FALSE); // CloudSpigot
     }
 
     public boolean a(Chunk chunk, int i, int j) {
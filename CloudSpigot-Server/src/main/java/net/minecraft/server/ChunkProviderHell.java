@@ -4,7 +4,7 @@ import java.util.List;
 import java.util.Random;
 import javax.annotation.Nullable;
 
-public class ChunkProviderHell implements ChunkGenerator {
+public class ChunkProviderHell implements ChunkGenerator, eu.minewars.cloudspigot.world.AsyncTerrainGenerator { // CloudSpigot
 
     protected static final IBlockData a = Blocks.AIR.getBlockData();
     protected static final IBlockData b = Blocks.NETHERRACK.getBlockData();
@@ -42,8 +42,10 @@ public class ChunkProviderHell implements ChunkGenerator {
     double[] k;
     double[] l;
     double[] m;
+    private final long seed; // CloudSpigot
 
     public ChunkProviderHell(World world, boolean flag, long i) {
+        this.seed = i; // CloudSpigot
         this.C = new WorldGenMinable(Blocks.QUARTZ_ORE.getBlockData(), 14, BlockPredicate.a(Blocks.NETHERRACK));
         this.D = new WorldGenMinable(Blocks.df.getBlockData(), 33, BlockPredicate.a(Blocks.NETHERRACK));
         this.E = new WorldGenHellLava(Blocks.FLOWING_LAVA, true);
@@ -196,18 +198,42 @@ public class ChunkProviderHell implements ChunkGenerator {
     }
 
     public Chunk getOrCreateChunk(int i, int j) {
+        // CloudSpigot start - split into steps that can run on different threads
+        Chunk chunk = this.generateTerrain(i, j, this.sampleBiomes(i, j));
+
+        this.registerStructures(i, j);
+        return chunk;
+    }
+
+    @Override
+    public BiomeBase[][] sampleBiomes(int i, int j) {
+        return new BiomeBase[][] { null, this.n.getWorldChunkManager().getBiomeBlock((BiomeBase[]) null, i * 16, j * 16, 16, 16) };
+    }
+
+    @Override
+    public eu.minewars.cloudspigot.world.AsyncTerrainGenerator createWorkerCopy() {
+        return new ChunkProviderHell(this.n, this.o, this.seed);
+    }
+
+    @Override
+    public void registerStructures(int i, int j) {
+        if (this.o) {
+            this.I.a(this.n, i, j, (ChunkSnapshot) null);
+        }
+    }
+
+    @Override
+    public Chunk generateTerrain(int i, int j, BiomeBase[][] biomes) {
         this.p.setSeed((long) i * 341873128712L + (long) j * 132897987541L);
         ChunkSnapshot chunksnapshot = new ChunkSnapshot();
 
         this.a(i, j, chunksnapshot);
         this.b(i, j, chunksnapshot);
         this.J.a(this.n, i, j, chunksnapshot);
-        if (this.o) {
-            this.I.a(this.n, i, j, chunksnapshot);
-        }
 
         Chunk chunk = new Chunk(this.n, chunksnapshot, i, j);
-        BiomeBase[] abiomebase = this.n.getWorldChunkManager().getBiomeBlock((BiomeBase[]) null, i * 16, j * 16, 16, 16);
+        BiomeBase[] abiomebase = biomes[1];
+        // CloudSpigot end
         byte[] abyte = chunk.getBiomeIndex();
 
         for (int k = 0; k < abyte.length; ++k) {
@@ -288,7 +314,7 @@ public class ChunkProviderHell implements ChunkGenerator {
     }
 
     public void recreateStructures(int i, int j) {
-        BlockFalling.instaFall = true;
+        BlockFalling.instaFallLocal.set(Boolean.TRUE); // CloudSpigot
         int k = i * 16;
         int l = j * 16;
         BlockPosition blockposition = new BlockPosition(k, 0, l);
@@ -340,7 +366,7 @@ public class ChunkProviderHell implements ChunkGenerator {
         }
 
         biomebase.a(this.n, this.p, new BlockPosition(k, 0, l));
-        BlockFalling.instaFall = false;
+        BlockFalling.instaFallLocal.set(Boolean.FALSE); // CloudSpigot
     }
 
     public boolean a(Chunk chunk, int i, int j) {
@@ -35,8 +35,17 @@ public class ChunkProviderServer implements IChunkProvider {
     // Paper end
     // Paper start
     protected Chunk lastChunkByPos = null;
+    public final eu.minewars.cloudspigot.world.ChunkSaveScheduler saveScheduler = new eu.minewars.cloudspigot.world.ChunkSaveScheduler(); // CloudSpigot
     public Long2ObjectOpenHashMap<Chunk> chunks = new Long2ObjectOpenHashMap<Chunk>(8192) {
 
+        // CloudSpigot start
+        @Override
+        public Chunk put(long key, Chunk chunk) {
+            saveScheduler.add(chunk);
+            return super.put(key, chunk);
+        }
+        // CloudSpigot end
+
         @Override
         public Chunk get(long key) {
             if (lastChunkByPos != null && key == lastChunkByPos.chunkKey) {
@@ -50,16 +59,21 @@ public class ChunkProviderServer implements IChunkProvider {
             if (lastChunkByPos != null && key == lastChunkByPos.chunkKey) {
                 lastChunkByPos = null;
             }
+            saveScheduler.remove(key); // CloudSpigot
             return super.remove(key);
         }
     }; // CraftBukkit
     // Paper end
     public final WorldServer world;
 
+    public IChunkLoader getChunkLoader() { return this.chunkLoader; } // CloudSpigot
+    public final eu.minewars.cloudspigot.world.AsyncChunkGenerator asyncGenerator; // CloudSpigot
+
     public ChunkProviderServer(WorldServer worldserver, IChunkLoader ichunkloader, ChunkGenerator chunkgenerator) {
         this.world = worldserver;
         this.chunkLoader = ichunkloader;
         this.chunkGenerator = chunkgenerator;
+        this.asyncGenerator = eu.minewars.cloudspigot.world.AsyncChunkGenerator.create(this); // CloudSpigot
     }
 
     public Collection<Chunk> a() {
@@ -177,6 +191,12 @@ public class ChunkProviderServer implements IChunkProvider {
                 // Paper end
             }
         } else if (chunk == null && generate) {
+            // CloudSpigot start - generate the terrain off the main thread
+            if (runnable != null && this.asyncGenerator != null) {
+                this.asyncGenerator.queue(i, j, runnable);
+                return null;
+            }
+            // CloudSpigot end
             chunk = originalGetChunkAt(i, j);
         }
 
@@ -217,6 +237,18 @@ public class ChunkProviderServer implements IChunkProvider {
         return chunk;
     }
 
+    // CloudSpigot start
+    public boolean isGenerating(int x, int z) {
+        return this.asyncGenerator != null && this.asyncGenerator.isPending(x, z);
+    }
+
+    public void addGeneratedChunk(Chunk chunk) {
+        this.chunks.put(ChunkCoordIntPair.a(chunk.locX, chunk.locZ), chunk);
+        chunk.addEntities();
+        chunk.loadNearby(this, this.chunkGenerator, true);
+    }
+    // CloudSpigot end
+
     @Nullable
     public Chunk loadChunk(int i, int j) {
         try {
@@ -254,6 +286,7 @@ public class ChunkProviderServer implements IChunkProvider {
     public void saveChunk(Chunk chunk, boolean unloaded) { // Spigot
         try (co.aikar.timings.Timing timed = world.timings.chunkSaveData.startTiming()) {
             chunk.setLastSaved(this.world.getTime());
+            this.saveScheduler.saved(chunk); // CloudSpigot
             this.chunkLoader.saveChunk(this.world, chunk, unloaded); // Spigot
         } catch (IOException ioexception) {
             // Paper start
@@ -299,6 +332,16 @@ public class ChunkProviderServer implements IChunkProvider {
             }
         }
 
+        // CloudSpigot start - incremental auto save only looks at due chunks, oldest first
+        if (!flag) {
+            int period = world.paperConfig.autoSavePeriod;
+            int maxInterval = world.paperConfig.autoSaveMaxInterval > 0 ? world.paperConfig.autoSaveMaxInterval : period * 2;
+            // with a full save queue only chunks past the max interval are saved
+            long budget = queueSize > world.paperConfig.queueSizeAutoSaveThreshold ? 0L : world.paperConfig.autoSaveTickBudgetNanos;
+            this.saveScheduler.saveDue(this, this.world.getTime(), period, maxInterval, budget, world.paperConfig.maxAutoSaveChunksPerTick);
+            return false;
+        }
+        // CloudSpigot end
         if (queueSize > world.paperConfig.queueSizeAutoSaveThreshold){
             return false;
         }
@@ -395,6 +438,7 @@ public class ChunkProviderServer implements IChunkProvider {
         }
         save = event.isSaveChunk();
         chunk.lightingQueue.processUnload(); // Paper
+        this.world.flushLightFor(chunk); // CloudSpigot - save the chunk with its light settled
 
         // Update neighbor counts
         for (int x = -2; x < 3; x++) {
@@ -412,6 +456,11 @@ public class ChunkProviderServer implements IChunkProvider {
         }
         // Moved from unloadChunks above
         chunk.removeEntities();
+        // CloudSpigot start
+        if (eu.minewars.cloudspigot.config.CloudSpigotConfig.clearBlockMetadataOnChunkUnload) {
+            this.world.getWorld().getBlockMetadata().unloadChunk(chunk.locX, chunk.locZ);
+        }
+        // CloudSpigot end
         if (save) {
             this.saveChunk(chunk, true); // Spigot
             this.saveChunkNOP(chunk);
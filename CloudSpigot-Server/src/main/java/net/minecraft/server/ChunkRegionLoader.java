@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue; // Paper
 // Spigot start
 import java.util.function.Supplier;
 
@@ -20,7 +19,7 @@ import com.google.common.collect.Maps;
 
 public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
 
-    private ConcurrentLinkedQueue<QueuedChunk> queue = new ConcurrentLinkedQueue<>(); // Paper - Chunk queue improvements
+    private final java.util.concurrent.atomic.AtomicInteger pendingSaves = new java.util.concurrent.atomic.AtomicInteger(); // Paper - Chunk queue improvements // CloudSpigot - queue lives in FileIOThread
     private final Object lock = new Object(); // Paper - Chunk queue improvements
     private static final Logger a = LogManager.getLogger();
     private final Map<ChunkCoordIntPair, Supplier<NBTTagCompound>> b = Maps.newConcurrentMap(); // Spigot
@@ -28,6 +27,11 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
     // private final Set<ChunkCoordIntPair> c = Collections.newSetFromMap(Maps.newConcurrentMap());
     private final File d;
     private final DataConverterManager e;
+    // CloudSpigot start - compression of the owning world, updated on every save
+    private volatile int compressionType = RegionFile.COMPRESSION_ZLIB;
+    private volatile int compressionLevel = java.util.zip.Deflater.DEFAULT_COMPRESSION;
+    public File getDirectory() { return this.d; }
+    // CloudSpigot end
     // private boolean f;
     // CraftBukkit
     private static final double SAVE_QUEUE_TARGET_SIZE = 625; // Spigot
@@ -40,7 +44,7 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
     // Paper start
     private long queuedSaves = 0;
     private final java.util.concurrent.atomic.AtomicLong processedSaves = new java.util.concurrent.atomic.AtomicLong(0L);
-    public int getQueueSize() { return queue.size(); }
+    public int getQueueSize() { return pendingSaves.get(); } // CloudSpigot
     public long getQueuedSaves() { return queuedSaves; }
     public long getProcessedSaves() { return processedSaves.longValue(); }
     // Paper end
@@ -148,6 +152,10 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
 
     public void saveChunk(World world, Chunk chunk, boolean unloaded) throws IOException, ExceptionWorldConflict { // Spigot
         world.checkSession();
+        // CloudSpigot start
+        this.compressionType = world.paperConfig.chunkCompressionType;
+        this.compressionLevel = world.paperConfig.chunkCompressionLevel;
+        // CloudSpigot end
 
         try {
             NBTTagCompound nbttagcompound = new NBTTagCompound();
@@ -182,65 +190,46 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
             this.b.put(chunkcoordintpair, nbttagcompound);
         }
         queuedSaves++; // Paper
-        queue.add(new QueuedChunk(chunkcoordintpair, nbttagcompound)); // Paper - Chunk queue improvements
+        pendingSaves.incrementAndGet(); // CloudSpigot
 
-        FileIOThread.a().a(this);
+        FileIOThread.a().a(this.d, chunkcoordintpair.x, chunkcoordintpair.z, () -> this.writeQueuedChunk(chunkcoordintpair, nbttagcompound)); // CloudSpigot - scheduled on the worker owning the region
     }
 
     public boolean a() {
-        // CraftBukkit start
-        return this.processSaveQueueEntry(false);
+        return false; // CloudSpigot - writes are scheduled per region through FileIOThread
     }
 
-    private synchronized boolean processSaveQueueEntry(boolean logCompletion) {
-        // CraftBukkit start
-        // Paper start - Chunk queue improvements
-        QueuedChunk chunk = queue.poll();
-        if (chunk == null) {
-        // Paper - end
-            if (logCompletion) {
-                // CraftBukkit end
-                ChunkRegionLoader.a.info("ThreadedAnvilChunkStorage ({}): All chunks are saved", this.d.getName());
-            }
+    // CloudSpigot start - runs on the FileIOThread worker owning the chunk's region
+    private void writeQueuedChunk(ChunkCoordIntPair chunkcoordintpair, Supplier<NBTTagCompound> compoundSupplier) {
+        processedSaves.incrementAndGet(); // Paper
 
-            return false;
-        } else {
-            ChunkCoordIntPair chunkcoordintpair = chunk.coords; // Paper - Chunk queue improvements
-            processedSaves.incrementAndGet(); // Paper
-
-            boolean flag;
-
-            try {
-                // this.c.add(chunkcoordintpair);
-                NBTTagCompound nbttagcompound = SupplierUtils.getIfExists(chunk.compoundSupplier); // Spigot // Paper
-                // CraftBukkit
-
-                if (nbttagcompound != null) {
-                    int attempts = 0; Exception laste = null; while (attempts++ < 5) { // Paper
-                    try {
-                        this.b(chunkcoordintpair, nbttagcompound);
-                        laste = null; break; // Paper
-                    } catch (Exception exception) {
-                        //ChunkRegionLoader.a.error("Failed to save chunk", exception); // Paper
-                        laste = exception; // Paper
-                    }
-                    try {Thread.sleep(10);} catch (InterruptedException e) {e.printStackTrace();} } // Paper
-                    if (laste != null) { com.destroystokyo.paper.exception.ServerInternalException.reportInternalException(laste); MinecraftServer.LOGGER.error("Failed to save chunk", laste); } // Paper
+        try {
+            // this.c.add(chunkcoordintpair);
+            NBTTagCompound nbttagcompound = SupplierUtils.getIfExists(compoundSupplier); // Spigot // Paper
+            // CraftBukkit
+
+            if (nbttagcompound != null) {
+                int attempts = 0; Exception laste = null; while (attempts++ < 5) { // Paper
+                try {
+                    this.b(chunkcoordintpair, nbttagcompound);
+                    laste = null; break; // Paper
+                } catch (Exception exception) {
+                    //ChunkRegionLoader.a.error("Failed to save chunk", exception); // Paper
+                    laste = exception; // Paper
                 }
-                synchronized (lock) { if (this.b.get(chunkcoordintpair) == chunk.compoundSupplier) { this.b.remove(chunkcoordintpair); } }// Paper - This will not equal if a newer version is still pending
-
-                flag = true;
-            } finally {
-                //this.b.remove(chunkcoordintpair, value); // CraftBukkit // Spigot // Paper
+                try {Thread.sleep(10);} catch (InterruptedException e) {e.printStackTrace();} } // Paper
+                if (laste != null) { com.destroystokyo.paper.exception.ServerInternalException.reportInternalException(laste); MinecraftServer.LOGGER.error("Failed to save chunk", laste); } // Paper
             }
-
-            return flag;
+            synchronized (lock) { if (this.b.get(chunkcoordintpair) == compoundSupplier) { this.b.remove(chunkcoordintpair); } }// Paper - This will not equal if a newer version is still pending
+        } finally {
+            pendingSaves.decrementAndGet();
         }
     }
+    // CloudSpigot end
 
     private void b(ChunkCoordIntPair chunkcoordintpair, NBTTagCompound nbttagcompound) throws IOException {
         // CraftBukkit start
-        RegionFileCache.e(this.d, chunkcoordintpair.x, chunkcoordintpair.z, nbttagcompound);
+        RegionFileCache.e(this.d, chunkcoordintpair.x, chunkcoordintpair.z, nbttagcompound, this.compressionType, this.compressionLevel); // CloudSpigot
 
         /*
         NBTCompressedStreamTools.a(nbttagcompound, (DataOutput) dataoutputstream);
@@ -254,19 +243,14 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
     public void b() {}
 
     public void c() {
+        // CloudSpigot start - wait for the region workers instead of draining on the calling thread
         try {
-            // this.f = true; // CraftBukkit
-
-            while (true) {
-                if (this.processSaveQueueEntry(true)) { // CraftBukkit
-                    continue;
-                }
-                break; // CraftBukkit - Fix infinite loop when saving chunks
-            }
-        } finally {
-            // this.f = false; // CraftBukkit
+            FileIOThread.a().b();
+        } catch (InterruptedException interruptedexception) {
+            Thread.currentThread().interrupt();
         }
-
+        ChunkRegionLoader.a.info("ThreadedAnvilChunkStorage ({}): All chunks are saved", this.d.getName());
+        // CloudSpigot end
     }
 
     public static void a(DataConverterManager dataconvertermanager) {
@@ -622,16 +606,4 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
             return entity;
         }
     }
-
-    // Paper start - Chunk queue improvements
-    private static class QueuedChunk {
-        public ChunkCoordIntPair coords;
-        public Supplier<NBTTagCompound> compoundSupplier;
-
-        public QueuedChunk(ChunkCoordIntPair coords, Supplier<NBTTagCompound> compoundSupplier) {
-            this.coords = coords;
-            this.compoundSupplier = compoundSupplier;
-        }
-    }
-    // Paper end
 }
@@ -8,6 +8,7 @@ public class ChunkSection {
     final DataPaletteBlock blockIds; // Paper - package
     private NibbleArray emittedLight;
     private NibbleArray skyLight;
+    private int modCount; // CloudSpigot - block and light changes, for the chunk packet cache
 
     // Paper start - Anti-Xray - Support default constructor
     public ChunkSection(int i, boolean flag) {
@@ -73,6 +74,7 @@ public class ChunkSection {
         }
 
         this.blockIds.setBlock(i, j, k, iblockdata);
+        ++this.modCount; // CloudSpigot
     }
 
     public boolean a() {
@@ -89,6 +91,7 @@ public class ChunkSection {
 
     public void a(int i, int j, int k, int l) {
         this.skyLight.a(i, j, k, l);
+        ++this.modCount; // CloudSpigot
     }
 
     public int b(int i, int j, int k) {
@@ -97,6 +100,7 @@ public class ChunkSection {
 
     public void b(int i, int j, int k, int l) {
         this.emittedLight.a(i, j, k, l);
+        ++this.modCount; // CloudSpigot
     }
 
     public int c(int i, int j, int k) {
@@ -138,9 +142,21 @@ public class ChunkSection {
 
     public void a(NibbleArray nibblearray) {
         this.emittedLight = nibblearray;
+        ++this.modCount; // CloudSpigot
     }
 
     public void b(NibbleArray nibblearray) {
         this.skyLight = nibblearray;
+        ++this.modCount; // CloudSpigot
     }
+
+    // CloudSpigot start
+    /**
+     * Gets a count of the changes to the blocks and light of this section,
+     * changes that bypass its setters are not counted.
+     */
+    public int getModCount() {
+        return this.modCount;
+    }
+    // CloudSpigot end
 }
@@ -6,13 +6,9 @@ import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.EncoderException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap; // Paper
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -22,8 +18,12 @@ public class DataWatcher {
     private static final Logger a = LogManager.getLogger();
     private static final Map<Class<? extends Entity>, Integer> b = Maps.newHashMap();
     private final Entity c;
-    private final Map<Integer, DataWatcher.Item<?>> d = new Int2ObjectOpenHashMap<>(); // Paper
-    private final ReadWriteLock e = new ReentrantReadWriteLock();
+    // CloudSpigot start - items indexed by id instead of a map behind a lock, a
+    // new array is published on register so other threads only see complete ones
+    private volatile DataWatcher.Item<?>[] items = new DataWatcher.Item<?>[0];
+    private final Map<Integer, DataWatcher.Item<?>> d = new ItemMap(); // view for plugins reflecting on the old map
+    private final long[] dirty = new long[4]; // ids 0 to 254, changed since the last b()
+    // CloudSpigot end
     private boolean f = true;
     private boolean g;
 
@@ -76,7 +76,7 @@ public class DataWatcher {
 
         if (i > 254) {
             throw new IllegalArgumentException("Data value id is too big with " + i + "! (Max is " + 254 + ")");
-        } else if (this.d.containsKey(Integer.valueOf(i))) {
+        } else if (this.d.containsKey(i)) { // CloudSpigot
             throw new IllegalArgumentException("Duplicate id value for " + i + "!");
         } else if (DataWatcherRegistry.b(datawatcherobject.b()) < 0) {
             throw new IllegalArgumentException("Unregistered serializer " + datawatcherobject.b() + " for " + i + "!");
@@ -88,31 +88,43 @@ public class DataWatcher {
     private <T> void registerObject(DataWatcherObject<T> datawatcherobject, Object t0) { // CraftBukkit Object
         DataWatcher.Item datawatcher_item = new DataWatcher.Item(datawatcherobject, t0);
 
-        this.e.writeLock().lock();
-        this.d.put(Integer.valueOf(datawatcherobject.a()), datawatcher_item);
+        this.putItem(datawatcherobject.a(), datawatcher_item); // CloudSpigot
         this.f = false;
-        this.e.writeLock().unlock();
     }
 
-    private <T> DataWatcher.Item<T> c(DataWatcherObject<T> datawatcherobject) {
-        this.e.readLock().lock();
+    // CloudSpigot start
+    private DataWatcher.Item<?> putItem(int i, DataWatcher.Item<?> datawatcher_item) {
+        DataWatcher.Item<?>[] items = this.items;
 
-        DataWatcher.Item datawatcher_item;
+        if (i >= items.length) {
+            items = java.util.Arrays.copyOf(items, i + 1);
+        } else {
+            items = items.clone();
+        }
 
-        try {
-            datawatcher_item = (DataWatcher.Item) this.d.get(Integer.valueOf(datawatcherobject.a()));
-        } catch (Throwable throwable) {
-            CrashReport crashreport = CrashReport.a(throwable, "Getting synched entity data");
-            CrashReportSystemDetails crashreportsystemdetails = crashreport.a("Synched entity data");
+        DataWatcher.Item<?> previous = items[i];
+        items[i] = datawatcher_item;
+        this.markDirty(i); // new items start dirty
+        this.items = items;
+        return previous;
+    }
+    // CloudSpigot end
 
-            crashreportsystemdetails.a("Data ID", (Object) datawatcherobject);
-            throw new ReportedException(crashreport);
-        }
+    private <T> DataWatcher.Item<T> c(DataWatcherObject<T> datawatcherobject) {
+        // CloudSpigot start
+        DataWatcher.Item<?>[] items = this.items;
+        int i = datawatcherobject.a();
 
-        this.e.readLock().unlock();
-        return datawatcher_item;
+        return i < items.length ? (DataWatcher.Item<T>) items[i] : null;
+        // CloudSpigot end
     }
 
+    // CloudSpigot start
+    private void markDirty(int i) {
+        this.dirty[i >> 6] |= 1L << i;
+    }
+    // CloudSpigot end
+
     public <T> T get(DataWatcherObject<T> datawatcherobject) {
         return this.c(datawatcherobject).b();
     }
@@ -124,6 +136,7 @@ public class DataWatcher {
             datawatcher_item.a(t0);
             this.c.a(datawatcherobject);
             datawatcher_item.a(true);
+            this.markDirty(datawatcherobject.a()); // CloudSpigot
             this.g = true;
         }
 
@@ -131,6 +144,7 @@ public class DataWatcher {
 
     public <T> void markDirty(DataWatcherObject<T> datawatcherobject) {
         this.c(datawatcherobject).c = true;
+        this.markDirty(datawatcherobject.a()); // CloudSpigot
         this.g = true;
     }
 
@@ -157,23 +171,28 @@ public class DataWatcher {
         ArrayList arraylist = null;
 
         if (this.g) {
-            this.e.readLock().lock();
-            Iterator iterator = this.d.values().iterator();
+            // CloudSpigot start - only visit the items marked dirty
+            DataWatcher.Item<?>[] items = this.items;
 
-            while (iterator.hasNext()) {
-                DataWatcher.Item datawatcher_item = (DataWatcher.Item) iterator.next();
+            for (int i = 0; i < this.dirty.length; ++i) {
+                long bits = this.dirty[i];
 
-                if (datawatcher_item.c()) {
-                    datawatcher_item.a(false);
-                    if (arraylist == null) {
-                        arraylist = Lists.newArrayList();
-                    }
+                this.dirty[i] = 0L;
+                while (bits != 0L) {
+                    DataWatcher.Item datawatcher_item = items[(i << 6) + Long.numberOfTrailingZeros(bits)];
 
-                    arraylist.add(datawatcher_item.d());
+                    bits &= bits - 1L;
+                    if (datawatcher_item.c()) {
+                        datawatcher_item.a(false);
+                        if (arraylist == null) {
+                            arraylist = Lists.newArrayList();
+                        }
+
+                        arraylist.add(datawatcher_item.d());
+                    }
                 }
             }
-
-            this.e.readLock().unlock();
+            // CloudSpigot end
         }
 
         this.g = false;
@@ -181,16 +200,14 @@ public class DataWatcher {
     }
 
     public void a(PacketDataSerializer packetdataserializer) throws IOException {
-        this.e.readLock().lock();
-        Iterator iterator = this.d.values().iterator();
-
-        while (iterator.hasNext()) {
-            DataWatcher.Item datawatcher_item = (DataWatcher.Item) iterator.next();
-
-            a(packetdataserializer, datawatcher_item);
+        // CloudSpigot start
+        for (DataWatcher.Item datawatcher_item : this.items) {
+            if (datawatcher_item != null) {
+                a(packetdataserializer, datawatcher_item);
+            }
         }
+        // CloudSpigot end
 
-        this.e.readLock().unlock();
         packetdataserializer.writeByte(255);
     }
 
@@ -198,18 +215,18 @@ public class DataWatcher {
     public List<DataWatcher.Item<?>> c() {
         ArrayList arraylist = null;
 
-        this.e.readLock().lock();
-
-        DataWatcher.Item datawatcher_item;
+        // CloudSpigot start
+        for (DataWatcher.Item datawatcher_item : this.items) {
+            if (datawatcher_item != null) {
+                if (arraylist == null) {
+                    arraylist = Lists.newArrayList();
+                }
 
-        for (Iterator iterator = this.d.values().iterator(); iterator.hasNext(); arraylist.add(datawatcher_item.d())) {
-            datawatcher_item = (DataWatcher.Item) iterator.next();
-            if (arraylist == null) {
-                arraylist = Lists.newArrayList();
+                arraylist.add(datawatcher_item.d());
             }
         }
+        // CloudSpigot end
 
-        this.e.readLock().unlock();
         return arraylist;
     }
 
@@ -256,17 +273,74 @@ public class DataWatcher {
 
     public void e() {
         this.g = false;
-        this.e.readLock().lock();
-        Iterator iterator = this.d.values().iterator();
+        // CloudSpigot start
+        java.util.Arrays.fill(this.dirty, 0L);
+        for (DataWatcher.Item datawatcher_item : this.items) {
+            if (datawatcher_item != null) {
+                datawatcher_item.a(false);
+            }
+        }
+        // CloudSpigot end
+    }
 
-        while (iterator.hasNext()) {
-            DataWatcher.Item datawatcher_item = (DataWatcher.Item) iterator.next();
+    // CloudSpigot start
+    private final class ItemMap extends java.util.AbstractMap<Integer, DataWatcher.Item<?>> {
 
-            datawatcher_item.a(false);
+        @Override
+        public DataWatcher.Item<?> get(Object key) {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            DataWatcher.Item<?>[] items = DataWatcher.this.items;
+            int i = (Integer) key;
+
+            return i >= 0 && i < items.length ? items[i] : null;
         }
 
-        this.e.readLock().unlock();
+        @Override
+        public boolean containsKey(Object key) {
+            return this.get(key) != null;
+        }
+
+        @Override
+        public DataWatcher.Item<?> put(Integer key, DataWatcher.Item<?> value) {
+            if (key < 0 || key > 254) {
+                throw new IllegalArgumentException("Data value id is out of range with " + key + "!");
+            }
+            return DataWatcher.this.putItem(key, value);
+        }
+
+        @Override
+        public java.util.Set<Map.Entry<Integer, DataWatcher.Item<?>>> entrySet() {
+            return new java.util.AbstractSet<Map.Entry<Integer, DataWatcher.Item<?>>>() {
+                @Override
+                public java.util.Iterator<Map.Entry<Integer, DataWatcher.Item<?>>> iterator() {
+                    List<Map.Entry<Integer, DataWatcher.Item<?>>> entries = Lists.newArrayList();
+                    DataWatcher.Item<?>[] items = DataWatcher.this.items;
+
+                    for (int i = 0; i < items.length; ++i) {
+                        if (items[i] != null) {
+                            entries.add(new java.util.AbstractMap.SimpleImmutableEntry<Integer, DataWatcher.Item<?>>(i, items[i]));
+                        }
+                    }
+                    return java.util.Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+
+                    for (DataWatcher.Item<?> datawatcher_item : DataWatcher.this.items) {
+                        if (datawatcher_item != null) {
+                            ++size;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
     }
+    // CloudSpigot end
 
     public static class Item<T> {
 
@@ -184,7 +184,10 @@ public class DedicatedServer extends MinecraftServer implements IMinecraftServer
 			// version history now // CloudSpigot
 			// Paper end
 
-			CloudSpigotConfig.init((File) options.valueOf("cloudspigot-settings")); // CloudSpigot
+			// CloudSpigot start
+			CloudSpigotConfig.init((File) options.valueOf("cloudspigot-settings"));
+			CloudSpigotConfig.registerCommands();
+			// CloudSpigot end
 
 			DedicatedServer.LOGGER.info("Generating keypair");
 			this.a(MinecraftEncryption.b());
@@ -12,10 +12,12 @@ import java.util.Map.Entry;
 
 public class EnchantmentManager {
 
-    private static final EnchantmentManager.EnchantmentModifierProtection a = new EnchantmentManager.EnchantmentModifierProtection(null);
-    private static final EnchantmentManager.EnchantmentModifierDamage b = new EnchantmentManager.EnchantmentModifierDamage(null);
-    private static final EnchantmentManager.EnchantmentModifierThorns c = new EnchantmentManager.EnchantmentModifierThorns(null);
-    private static final EnchantmentManager.EnchantmentModifierArthropods d = new EnchantmentManager.EnchantmentModifierArthropods(null);
+    // CloudSpigot start - thread confined, worlds may tick in parallel
+    private static final ThreadLocal<EnchantmentManager.EnchantmentModifierProtection> a = ThreadLocal.withInitial(() -> new EnchantmentManager.EnchantmentModifierProtection(null));
+    private static final ThreadLocal<EnchantmentManager.EnchantmentModifierDamage> b = ThreadLocal.withInitial(() -> new EnchantmentManager.EnchantmentModifierDamage(null));
+    private static final ThreadLocal<EnchantmentManager.EnchantmentModifierThorns> c = ThreadLocal.withInitial(() -> new EnchantmentManager.EnchantmentModifierThorns(null));
+    private static final ThreadLocal<EnchantmentManager.EnchantmentModifierArthropods> d = ThreadLocal.withInitial(() -> new EnchantmentManager.EnchantmentModifierArthropods(null));
+    // CloudSpigot end
 
     public static int getEnchantmentLevel(Enchantment enchantment, ItemStack itemstack) {
         if (itemstack.isEmpty()) {
@@ -111,17 +113,19 @@ public class EnchantmentManager {
     }
 
     public static int a(Iterable<ItemStack> iterable, DamageSource damagesource) {
-        EnchantmentManager.a.a = 0;
-        EnchantmentManager.a.b = damagesource;
-        a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.a, iterable);
-        return EnchantmentManager.a.a;
+        EnchantmentManager.EnchantmentModifierProtection modifier = EnchantmentManager.a.get(); // CloudSpigot
+        modifier.a = 0;
+        modifier.b = damagesource;
+        a((EnchantmentManager.EnchantmentModifier) modifier, iterable);
+        return modifier.a;
     }
 
     public static float a(ItemStack itemstack, EnumMonsterType enummonstertype) {
-        EnchantmentManager.b.a = 0.0F;
-        EnchantmentManager.b.b = enummonstertype;
-        a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.b, itemstack);
-        return EnchantmentManager.b.a;
+        EnchantmentManager.EnchantmentModifierDamage modifier = EnchantmentManager.b.get(); // CloudSpigot
+        modifier.a = 0.0F;
+        modifier.b = enummonstertype;
+        a((EnchantmentManager.EnchantmentModifier) modifier, itemstack);
+        return modifier.a;
     }
 
     public static float a(EntityLiving entityliving) {
@@ -131,27 +135,29 @@ public class EnchantmentManager {
     }
 
     public static void a(EntityLiving entityliving, Entity entity) {
-        EnchantmentManager.c.b = entity;
-        EnchantmentManager.c.a = entityliving;
+        EnchantmentManager.EnchantmentModifierThorns modifier = EnchantmentManager.c.get(); // CloudSpigot
+        modifier.b = entity;
+        modifier.a = entityliving;
         if (entityliving != null) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.c, entityliving.aQ());
+            a((EnchantmentManager.EnchantmentModifier) modifier, entityliving.aQ());
         }
 
         if (entity instanceof EntityHuman) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.c, entityliving.getItemInMainHand());
+            a((EnchantmentManager.EnchantmentModifier) modifier, entityliving.getItemInMainHand());
         }
 
     }
 
     public static void b(EntityLiving entityliving, Entity entity) {
-        EnchantmentManager.d.a = entityliving;
-        EnchantmentManager.d.b = entity;
+        EnchantmentManager.EnchantmentModifierArthropods modifier = EnchantmentManager.d.get(); // CloudSpigot
+        modifier.a = entityliving;
+        modifier.b = entity;
         if (entityliving != null) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.d, entityliving.aQ());
+            a((EnchantmentManager.EnchantmentModifier) modifier, entityliving.aQ());
         }
 
         if (entityliving instanceof EntityHuman) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.d, entityliving.getItemInMainHand());
+            a((EnchantmentManager.EnchantmentModifier) modifier, entityliving.getItemInMainHand());
         }
 
     }
@@ -84,7 +84,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 
 	private static final List<ItemStack> b = Collections.emptyList();
 	private static final AxisAlignedBB c = new AxisAlignedBB(0.0D, 0.0D, 0.0D, 0.0D, 0.0D, 0.0D);
-	private static int entityCount = 1; // Paper - MC-111480 - ID 0 is treated as special for DataWatchers, start 1
+	private static final java.util.concurrent.atomic.AtomicInteger entityCount = new java.util.concurrent.atomic.AtomicInteger(1); // Paper - MC-111480 - ID 0 is treated as special for DataWatchers, start 1 // CloudSpigot - atomic for parallel world ticking
 	private int id;
 	public boolean i;
 
@@ -239,7 +239,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 	// CraftBukkit end
 
 	public Entity(World world) {
-		this.id = Entity.entityCount++;
+		this.id = Entity.entityCount.getAndIncrement(); // CloudSpigot
 		this.passengers = Lists.newArrayList();
 		this.boundingBox = Entity.c;
 		this.width = 0.6F;
@@ -618,7 +618,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 	}
 
 	private boolean b(AxisAlignedBB axisalignedbb) {
-		return this.world.getCubes(this, axisalignedbb).isEmpty() && !this.world.containsLiquid(axisalignedbb);
+		return this.world.hasNoCubes(this, axisalignedbb) && !this.world.containsLiquid(axisalignedbb); // CloudSpigot
 	}
 
 	public void move(EnumMoveType enummovetype, double d0, double d1, double d2) {
@@ -707,7 +707,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 			if ((enummovetype == EnumMoveType.SELF || enummovetype == EnumMoveType.PLAYER) && this.onGround
 					&& this.isSneaking() && this instanceof EntityHuman) {
 				for (; d0 != 0.0D && this.world
-						.getCubes(this, this.getBoundingBox().d(d0, (double) (-this.P), 0.0D)).isEmpty(); d7 = d0) {
+						.hasNoCubes(this, this.getBoundingBox().d(d0, (double) (-this.P), 0.0D)); d7 = d0) { // CloudSpigot
 					if (d0 < 0.05D && d0 >= -0.05D) {
 						d0 = 0.0D;
 					} else if (d0 > 0.0D) {
@@ -717,8 +717,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 					}
 				}
 
-				for (; d2 != 0.0D && this.world.getCubes(this, this.getBoundingBox().d(0.0D, (double) (-this.P), d2))
-						.isEmpty(); d9 = d2) {
+				for (; d2 != 0.0D && this.world.hasNoCubes(this, this.getBoundingBox().d(0.0D, (double) (-this.P), d2)); d9 = d2) { // CloudSpigot
 					if (d2 < 0.05D && d2 >= -0.05D) {
 						d2 = 0.0D;
 					} else if (d2 > 0.0D) {
@@ -729,7 +728,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 				}
 
 				for (; d0 != 0.0D && d2 != 0.0D && this.world
-						.getCubes(this, this.getBoundingBox().d(d0, (double) (-this.P), d2)).isEmpty(); d9 = d2) {
+						.hasNoCubes(this, this.getBoundingBox().d(d0, (double) (-this.P), d2)); d9 = d2) { // CloudSpigot
 					if (d0 < 0.05D && d0 >= -0.05D) {
 						d0 = 0.0D;
 					} else if (d0 > 0.0D) {
@@ -749,7 +748,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 				}
 			}
 
-			List list = this.world.getCubes(this, this.getBoundingBox().b(d0, d1, d2));
+			List list = this.world.getCubes(this, this.getBoundingBox().b(d0, d1, d2), World.getCubeBuffer()); // CloudSpigot - reused buffer
 			AxisAlignedBB axisalignedbb = this.getBoundingBox();
 			int k;
 			int l;
@@ -799,7 +798,7 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 
 				this.a(axisalignedbb);
 				d1 = (double) this.P;
-				List list1 = this.world.getCubes(this, this.getBoundingBox().b(d7, d1, d9));
+				List list1 = this.world.getCubes(this, this.getBoundingBox().b(d7, d1, d9), World.getCubeBuffer()); // CloudSpigot - reused buffer, list is done
 				AxisAlignedBB axisalignedbb2 = this.getBoundingBox();
 				AxisAlignedBB axisalignedbb3 = axisalignedbb2.b(d7, 0.0D, d9);
 
@@ -2360,9 +2359,9 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 		if (this.fireProof) {
 			return;
 		}
-		CraftEventFactory.entityDamage = entitylightning;
+		CraftEventFactory.setEntityDamage(entitylightning); // CloudSpigot
 		if (!this.damageEntity(DamageSource.LIGHTNING, 5.0F)) {
-			CraftEventFactory.entityDamage = null;
+			CraftEventFactory.setEntityDamage(null); // CloudSpigot
 			return;
 		}
 		// CraftBukkit end
@@ -2529,6 +2528,12 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 
 	@Nullable
 	public Entity b(int i) {
+		// CloudSpigot start - the target world may be ticking on another thread
+		if (eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread()) {
+			eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.b(i));
+			return null;
+		}
+		// CloudSpigot end
 		if (!this.world.isClientSide && !this.dead) {
 			//this.world.methodProfiler.a("changeDimension");
 			MinecraftServer minecraftserver = this.C_();
@@ -2592,6 +2597,12 @@ public abstract class Entity implements ICommandListener, KeyedObject { // Paper
 	}
 
 	public Entity teleportTo(Location exit, boolean portal) {
+		// CloudSpigot start - the target world may be ticking on another thread
+		if (eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread()) {
+			eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.teleportTo(exit, portal));
+			return null;
+		}
+		// CloudSpigot end
 		if (!this.dead) { // Paper
 			WorldServer worldserver = ((CraftWorld) getBukkitEntity().getLocation().getWorld()).getHandle();
 			WorldServer worldserver1 = ((CraftWorld) exit.getWorld()).getHandle();
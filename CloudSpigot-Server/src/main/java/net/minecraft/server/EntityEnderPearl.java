@@ -91,9 +91,9 @@ public class EntityEnderPearl extends EntityProjectile {
 
                         entityplayer.playerConnection.teleport(teleEvent.getTo());
                         entityliving.fallDistance = 0.0F;
-                        CraftEventFactory.entityDamage = this;
+                        CraftEventFactory.setEntityDamage(this); // CloudSpigot
                         entityliving.damageEntity(DamageSource.FALL, 5.0F);
-                        CraftEventFactory.entityDamage = null;
+                        CraftEventFactory.setEntityDamage(null); // CloudSpigot
                     }
                     // CraftBukkit end
                 }
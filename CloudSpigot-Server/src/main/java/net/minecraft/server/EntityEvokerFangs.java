@@ -108,9 +108,9 @@ public class EntityEvokerFangs extends Entity {
 
         if (entityliving.isAlive() && !entityliving.be() && entityliving != entityliving1) {
             if (entityliving1 == null) {
-                org.bukkit.craftbukkit.event.CraftEventFactory.entityDamage = this; // CraftBukkit
+                org.bukkit.craftbukkit.event.CraftEventFactory.setEntityDamage(this); // CraftBukkit // CloudSpigot
                 entityliving.damageEntity(DamageSource.MAGIC, 6.0F);
-                org.bukkit.craftbukkit.event.CraftEventFactory.entityDamage = null; // CraftBukkit
+                org.bukkit.craftbukkit.event.CraftEventFactory.setEntityDamage(null); // CraftBukkit // CloudSpigot
             } else {
                 if (entityliving1.r(entityliving)) {
                     return;
@@ -223,9 +223,9 @@ public class EntityFallingBlock extends Entity {
                 while (iterator.hasNext()) {
                     Entity entity = (Entity) iterator.next();
 
-                    CraftEventFactory.entityDamage = this; // CraftBukkit
+                    CraftEventFactory.setEntityDamage(this); // CraftBukkit // CloudSpigot
                     entity.damageEntity(damagesource, (float) Math.min(MathHelper.d((float) i * this.fallHurtAmount), this.fallHurtMax));
-                    CraftEventFactory.entityDamage = null; // CraftBukkit
+                    CraftEventFactory.setEntityDamage(null); // CraftBukkit // CloudSpigot
                 }
 
                 if (flag && (double) this.random.nextFloat() < 0.05000000074505806D + (double) i * 0.05D) {
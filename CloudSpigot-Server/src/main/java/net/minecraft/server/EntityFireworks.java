@@ -150,9 +150,9 @@ public class EntityFireworks extends Entity {
 
         if (f > 0.0F) {
             if (this.e != null) {
-                CraftEventFactory.entityDamage = this; // CraftBukkit
+                CraftEventFactory.setEntityDamage(this); // CraftBukkit // CloudSpigot
                 this.e.damageEntity(DamageSource.t, (float) (5 + nbttaglist.size() * 2));
-                CraftEventFactory.entityDamage = null; // CraftBukkit
+                CraftEventFactory.setEntityDamage(null); // CraftBukkit // CloudSpigot
             }
 
             Vec3D vec3d = new Vec3D(this.locX, this.locY, this.locZ);
@@ -177,9 +177,9 @@ public class EntityFireworks extends Entity {
                     if (flag) {
                         float f1 = f * (float) Math.sqrt((5.0D - (double) this.g(entityliving)) / 5.0D);
 
-                        CraftEventFactory.entityDamage = this; // CraftBukkit
+                        CraftEventFactory.setEntityDamage(this); // CraftBukkit // CloudSpigot
                         entityliving.damageEntity(DamageSource.t, f1);
-                        CraftEventFactory.entityDamage = null; // CraftBukkit
+                        CraftEventFactory.setEntityDamage(null); // CraftBukkit // CloudSpigot
                     }
                 }
             }
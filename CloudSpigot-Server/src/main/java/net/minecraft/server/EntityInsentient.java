@@ -752,7 +752,7 @@ public abstract class EntityInsentient extends EntityLiving {
     }
 
     public boolean canSpawn() {
-        return !this.world.containsLiquid(this.getBoundingBox()) && this.world.getCubes(this, this.getBoundingBox()).isEmpty() && this.world.a(this.getBoundingBox(), (Entity) this);
+        return !this.world.containsLiquid(this.getBoundingBox()) && this.world.hasNoCubes(this, this.getBoundingBox()) /* CloudSpigot */ && this.world.a(this.getBoundingBox(), (Entity) this);
     }
 
     public int cU() {
@@ -41,6 +41,7 @@ public class EntityPlayer extends EntityHuman implements ICrafting {
     public double d;
     public double e;
     public final Deque<Integer> removeQueue = new ArrayDeque<>(); // Paper
+    public final java.util.Set<EntityTrackerEntry> trackedEntries = new java.util.HashSet<EntityTrackerEntry>(); // CloudSpigot - tracker entries visible to this player
     private final AdvancementDataPlayer bY;
     private final ServerStatisticManager bZ;
     private float ca = Float.MIN_VALUE;
@@ -651,6 +652,13 @@ public class EntityPlayer extends EntityHuman implements ICrafting {
 
     @Nullable
     public Entity b(int i) {
+        // CloudSpigot start - the target world may be ticking on another thread
+        if (eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread()) {
+            final int dimension = i;
+            eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.b(dimension));
+            return this;
+        }
+        // CloudSpigot end
         if (this.isSleeping()) return this; // CraftBukkit - SPIGOT-3154
         // this.worldChangeInvuln = true; // CraftBukkit - Moved down and into PlayerList#changeDimension
         if (this.dimension == 0 && i == -1) {
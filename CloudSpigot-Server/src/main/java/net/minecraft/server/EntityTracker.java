@@ -15,6 +15,8 @@ public class EntityTracker {
     private final Set<EntityTrackerEntry> c = Sets.newHashSet();
     public final IntHashMap<EntityTrackerEntry> trackedEntities = new IntHashMap();
     private int e;
+    private final eu.minewars.cloudspigot.world.EntityTrackerGrid grid = new eu.minewars.cloudspigot.world.EntityTrackerGrid(); // CloudSpigot
+    private EntityTrackerEntry[] updateBuffer = new EntityTrackerEntry[0]; // CloudSpigot - reused by updatePlayers
 
     public EntityTracker(WorldServer worldserver) {
         this.world = worldserver;
@@ -29,15 +31,7 @@ public class EntityTracker {
         if (entity instanceof EntityPlayer) {
             this.addEntity(entity, 512, 2);
             EntityPlayer entityplayer = (EntityPlayer) entity;
-            Iterator iterator = this.c.iterator();
-
-            while (iterator.hasNext()) {
-                EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
-
-                if (entitytrackerentry.b() != entityplayer) {
-                    entitytrackerentry.updatePlayer(entityplayer);
-                }
-            }
+            this.grid.updateEntries(entityplayer, this.e); // CloudSpigot - only entries near the player
         } else if (entity instanceof EntityFishingHook) {
             this.addEntity(entity, 64, 5, true);
         } else if (entity instanceof EntityArrow) {
@@ -105,7 +99,7 @@ public class EntityTracker {
     }
 
     public void addEntity(Entity entity, int i, final int j, boolean flag) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity track"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp(this.world, "entity track"); // Spigot // CloudSpigot - only from the owning thread
         i = org.spigotmc.TrackingRange.getEntityTrackingRange(entity, i); // Spigot
         try {
             if (this.trackedEntities.b(entity.getId())) {
@@ -116,7 +110,12 @@ public class EntityTracker {
 
             this.c.add(entitytrackerentry);
             this.trackedEntities.a(entity.getId(), entitytrackerentry);
-            entitytrackerentry.scanPlayers(this.world.players);
+            // CloudSpigot start
+            entitytrackerentry.grid = this.grid;
+            this.grid.addEntry(entitytrackerentry);
+            this.grid.refreshPlayers(this.world.players);
+            entitytrackerentry.scanNearbyPlayers(this.world.players);
+            // CloudSpigot end
         } catch (Throwable throwable) {
             CrashReport crashreport = CrashReport.a(throwable, "Adding entity to track");
             CrashReportSystemDetails crashreportsystemdetails = crashreport.a("Entity To Track");
@@ -151,22 +150,17 @@ public class EntityTracker {
     }
 
     public void untrackEntity(Entity entity) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity untrack"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp(this.world, "entity untrack"); // Spigot // CloudSpigot - only from the owning thread
         if (entity instanceof EntityPlayer) {
             EntityPlayer entityplayer = (EntityPlayer) entity;
-            Iterator iterator = this.c.iterator();
-
-            while (iterator.hasNext()) {
-                EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
-
-                entitytrackerentry.a(entityplayer);
-            }
+            this.grid.forEachTracked(entityplayer, entry -> entry.a(entityplayer)); // CloudSpigot - only what the player tracks
         }
 
         EntityTrackerEntry entitytrackerentry1 = (EntityTrackerEntry) this.trackedEntities.d(entity.getId());
 
         if (entitytrackerentry1 != null) {
             this.c.remove(entitytrackerentry1);
+            this.grid.removeEntry(entitytrackerentry1); // CloudSpigot
             entitytrackerentry1.a();
         }
 
@@ -174,12 +168,35 @@ public class EntityTracker {
 
     public void updatePlayers() {
         ArrayList arraylist = Lists.newArrayList();
-        Iterator iterator = this.c.iterator();
         world.timings.tracker1.startTiming(); // Spigot
-        while (iterator.hasNext()) {
-            EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
+        this.grid.refreshPlayers(this.world.players); // CloudSpigot
+        // CloudSpigot start - compute every entry first, possibly in parallel, then send
+        int count = this.c.size();
+        EntityTrackerEntry[] entries = this.updateBuffer = this.c.toArray(this.updateBuffer);
+        world.timings.trackerCompute.startTiming();
+        eu.minewars.cloudspigot.world.EntityTrackerCompute.computeAll(entries, count);
+        world.timings.trackerCompute.stopTiming();
+
+        // players may change worlds while the tracker runs, flush the ones that were batched
+        PlayerConnection[] batched = null;
+        if (eu.minewars.cloudspigot.config.CloudSpigotConfig.entityTrackerBatchPackets) {
+            batched = new PlayerConnection[this.world.players.size()];
+            for (int i = 0; i < batched.length; ++i) {
+                batched[i] = ((EntityPlayer) this.world.players.get(i)).playerConnection;
+                if (batched[i] != null) {
+                    batched[i].startPacketBatch();
+                }
+            }
+        }
+
+        world.timings.trackerSend.startTiming();
+        for (int i = 0; i < count; ++i) {
+            EntityTrackerEntry entitytrackerentry = entries[i];
+            entries[i] = null;
 
-            entitytrackerentry.track(this.world.players);
+            entitytrackerentry.applyUpdate(this.world.players);
+            // CloudSpigot end
+            this.grid.updateEntry(entitytrackerentry); // CloudSpigot - the sent position may have changed
             if (entitytrackerentry.b) {
                 Entity entity = entitytrackerentry.b();
 
@@ -188,38 +205,39 @@ public class EntityTracker {
                 }
             }
         }
+        world.timings.trackerSend.stopTiming(); // CloudSpigot
         world.timings.tracker1.stopTiming(); // Spigot
 
         world.timings.tracker2.startTiming(); // Spigot
         for (int i = 0; i < arraylist.size(); ++i) {
             EntityPlayer entityplayer = (EntityPlayer) arraylist.get(i);
-            Iterator iterator1 = this.c.iterator();
-
-            while (iterator1.hasNext()) {
-                EntityTrackerEntry entitytrackerentry1 = (EntityTrackerEntry) iterator1.next();
+            this.grid.updateEntries(entityplayer, this.e); // CloudSpigot - only entries near the player
+        }
+        world.timings.tracker2.stopTiming(); // Spigot
 
-                if (entitytrackerentry1.b() != entityplayer) {
-                    entitytrackerentry1.updatePlayer(entityplayer);
+        // CloudSpigot start - one write and flush per player for everything the tracker sent
+        if (batched != null) {
+            world.timings.trackerFlush.startTiming();
+            for (PlayerConnection connection : batched) {
+                if (connection != null) {
+                    connection.flushPacketBatch();
                 }
             }
+            world.timings.trackerFlush.stopTiming();
         }
-        world.timings.tracker2.stopTiming(); // Spigot
-
+        // CloudSpigot end
     }
 
     public void a(EntityPlayer entityplayer) {
-        Iterator iterator = this.c.iterator();
+        // CloudSpigot start - only players and entries near the player
+        this.grid.refreshPlayers(this.world.players);
+        EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) this.trackedEntities.get(entityplayer.getId());
 
-        while (iterator.hasNext()) {
-            EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
-
-            if (entitytrackerentry.b() == entityplayer) {
-                entitytrackerentry.scanPlayers(this.world.players);
-            } else {
-                entitytrackerentry.updatePlayer(entityplayer);
-            }
+        if (entitytrackerentry != null) {
+            entitytrackerentry.scanNearbyPlayers(this.world.players);
         }
-
+        this.grid.updateEntries(entityplayer, this.e);
+        // CloudSpigot end
     }
 
     public void a(Entity entity, Packet<?> packet) {
@@ -241,14 +259,7 @@ public class EntityTracker {
     }
 
     public void untrackPlayer(EntityPlayer entityplayer) {
-        Iterator iterator = this.c.iterator();
-
-        while (iterator.hasNext()) {
-            EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
-
-            entitytrackerentry.clear(entityplayer);
-        }
-
+        this.grid.forEachTracked(entityplayer, entry -> entry.clear(entityplayer)); // CloudSpigot - only what the player tracks
     }
 
     public void a(EntityPlayer entityplayer, Chunk chunk) {
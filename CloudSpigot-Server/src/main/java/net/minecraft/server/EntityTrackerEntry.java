@@ -46,6 +46,22 @@ public class EntityTrackerEntry {
     // their first update (which is forced to have absolute coordinates), false afterward.
     public java.util.Map<EntityPlayer, Boolean> trackedPlayerMap = new java.util.HashMap<EntityPlayer, Boolean>();
     public Set<EntityPlayer> trackedPlayers = trackedPlayerMap.keySet();
+    // CloudSpigot start - position in the world's EntityTrackerGrid
+    public eu.minewars.cloudspigot.world.EntityTrackerGrid grid;
+    public long gridCell;
+    public int gridIndex = -1;
+    // CloudSpigot end
+    // CloudSpigot start - what computeUpdate() worked out for applyUpdate()
+    private boolean pendingUpdate;
+    private boolean pendingRescan;
+    private boolean pendingLocation;
+    private long pendingX;
+    private long pendingY;
+    private long pendingZ;
+    private Packet<?> pendingBroadcast;
+    private Packet<?> pendingMove;
+    private Packet<?> pendingHeadRotation;
+    // CloudSpigot end
     // Paper end
 
     public EntityTrackerEntry(Entity entity, int i, int j, int k, boolean flag) {
@@ -73,6 +89,18 @@ public class EntityTrackerEntry {
     }
 
     public void track(List<EntityHuman> list) {
+        // CloudSpigot start - split into a compute and an apply phase
+        this.computeUpdate();
+        this.applyUpdate(list);
+    }
+
+    /**
+     * Works out what this tick's update sends, without sending anything or
+     * touching the tracked players. Only reads the tracked entity and writes
+     * this entry, so different entries can be computed in parallel while the
+     * world is not ticking.
+     */
+    public void computeUpdate() {
         this.b = false;
         if (!this.isMoving || this.tracker.d(this.q, this.r, this.s) > 16.0D) {
             this.q = this.tracker.locX;
@@ -80,59 +108,27 @@ public class EntityTrackerEntry {
             this.s = this.tracker.locZ;
             this.isMoving = true;
             this.b = true;
-            this.scanPlayers(list);
         }
 
-        List list1 = this.tracker.bF();
-
-        if (!list1.equals(this.w)) {
-            this.w = list1;
-            this.broadcastIncludingSelf(new PacketPlayOutMount(this.tracker)); // CraftBukkit
-        }
-
-        // PAIL : rename
-        if (this.tracker instanceof EntityItemFrame && this.a % 20 == 0) { // Paper
-            EntityItemFrame entityitemframe = (EntityItemFrame) this.tracker;
-            ItemStack itemstack = entityitemframe.getItem();
-
-            if (itemstack != null && itemstack.getItem() instanceof ItemWorldMap) { // Paper - moved back up
-                WorldMap worldmap = Items.FILLED_MAP.getSavedMap(itemstack, this.tracker.world);
-                Iterator iterator = this.trackedPlayers.iterator(); // CraftBukkit
-
-                while (iterator.hasNext()) {
-                    EntityHuman entityhuman = (EntityHuman) iterator.next();
-                    EntityPlayer entityplayer = (EntityPlayer) entityhuman;
-
-                    worldmap.a(entityplayer, itemstack);
-                    Packet packet = Items.FILLED_MAP.a(itemstack, this.tracker.world, (EntityHuman) entityplayer);
-
-                    if (packet != null) {
-                        entityplayer.playerConnection.sendPacket(packet);
-                    }
-                }
-            }
-
-            this.d();
-        }
+        // item frames send their metadata in applyUpdate before the update
+        boolean metadataSent = this.tracker instanceof EntityItemFrame && this.a % 20 == 0;
 
-        if (this.a % this.g == 0 || this.tracker.impulse || this.tracker.getDataWatcher().a()) {
+        if (this.a % this.g == 0 || this.tracker.impulse || (!metadataSent && this.tracker.getDataWatcher().a())) {
             int i;
 
+            this.pendingUpdate = true;
             if (this.tracker.isPassenger()) {
                 i = MathHelper.d(this.tracker.yaw * 256.0F / 360.0F);
                 int j = MathHelper.d(this.tracker.pitch * 256.0F / 360.0F);
                 boolean flag = Math.abs(i - this.yRot) >= 1 || Math.abs(j - this.xRot) >= 1;
 
                 if (flag) {
-                    this.broadcast(new PacketPlayOutEntity.PacketPlayOutEntityLook(this.tracker.getId(), (byte) i, (byte) j, this.tracker.onGround));
+                    this.pendingBroadcast = new PacketPlayOutEntity.PacketPlayOutEntityLook(this.tracker.getId(), (byte) i, (byte) j, this.tracker.onGround);
                     this.yRot = i;
                     this.xRot = j;
                 }
 
-                this.xLoc = EntityTracker.a(this.tracker.locX);
-                this.yLoc = EntityTracker.a(this.tracker.locY);
-                this.zLoc = EntityTracker.a(this.tracker.locZ);
-                this.d();
+                this.setPendingLocation(EntityTracker.a(this.tracker.locX), EntityTracker.a(this.tracker.locY), EntityTracker.a(this.tracker.locZ));
                 this.x = true;
             } else {
                 ++this.v;
@@ -151,9 +147,7 @@ public class EntityTrackerEntry {
                 if (this.a > 0 || this.tracker instanceof EntityArrow) { // Paper - Moved up
                 // CraftBukkit start - Code moved from below
                 if (flag1) {
-                    this.xLoc = k;
-                    this.yLoc = l;
-                    this.zLoc = i1;
+                    this.setPendingLocation(k, l, i1);
                 }
 
                 if (flag2) {
@@ -175,11 +169,8 @@ public class EntityTrackerEntry {
                     } else {
                         this.y = this.tracker.onGround;
                         this.v = 0;
-                        // CraftBukkit start - Refresh list of who can see a player before sending teleport packet
-                        if (this.tracker instanceof EntityPlayer) {
-                            this.scanPlayers(new java.util.ArrayList(this.trackedPlayers));
-                        }
-                        // CraftBukkit end
+                        // CraftBukkit - Refresh list of who can see a player before sending teleport packet
+                        this.pendingRescan = this.tracker instanceof EntityPlayer;
                         this.c();
                         object = new PacketPlayOutEntityTeleport(this.tracker);
                     }
@@ -201,10 +192,96 @@ public class EntityTrackerEntry {
                         this.n = this.tracker.motX;
                         this.o = this.tracker.motY;
                         this.p = this.tracker.motZ;
-                        this.broadcast(new PacketPlayOutEntityVelocity(this.tracker.getId(), this.n, this.o, this.p));
+                        this.pendingBroadcast = new PacketPlayOutEntityVelocity(this.tracker.getId(), this.n, this.o, this.p);
+                    }
+                }
+
+                this.pendingMove = (Packet<?>) object;
+                this.x = false;
+            }
+
+            i = MathHelper.d(this.tracker.getHeadRotation() * 256.0F / 360.0F);
+            if (Math.abs(i - this.headYaw) >= 1) {
+                this.pendingHeadRotation = new PacketPlayOutEntityHeadRotation(this.tracker, (byte) i);
+                this.headYaw = i;
+            }
+
+            this.tracker.impulse = false;
+        }
+    }
+
+    private void setPendingLocation(long x, long y, long z) {
+        this.pendingLocation = true;
+        this.pendingX = x;
+        this.pendingY = y;
+        this.pendingZ = z;
+    }
+
+    /**
+     * Sends what {@link #computeUpdate()} worked out to the tracked players,
+     * in the order the single pass did. Must not run in parallel.
+     */
+    public void applyUpdate(List<EntityHuman> list) {
+        if (this.b) {
+            this.scanNearbyPlayers(list); // against the location sent before this update
+        }
+
+        if (this.pendingLocation) {
+            this.xLoc = this.pendingX;
+            this.yLoc = this.pendingY;
+            this.zLoc = this.pendingZ;
+            this.pendingLocation = false;
+        }
+        // CloudSpigot end
+
+        List list1 = this.tracker.bF();
+
+        if (!list1.equals(this.w)) {
+            this.w = list1;
+            this.broadcastIncludingSelf(new PacketPlayOutMount(this.tracker)); // CraftBukkit
+        }
+
+        // PAIL : rename
+        if (this.tracker instanceof EntityItemFrame && this.a % 20 == 0) { // Paper
+            EntityItemFrame entityitemframe = (EntityItemFrame) this.tracker;
+            ItemStack itemstack = entityitemframe.getItem();
+
+            if (itemstack != null && itemstack.getItem() instanceof ItemWorldMap) { // Paper - moved back up
+                WorldMap worldmap = Items.FILLED_MAP.getSavedMap(itemstack, this.tracker.world);
+                Iterator iterator = this.trackedPlayers.iterator(); // CraftBukkit
+
+                while (iterator.hasNext()) {
+                    EntityHuman entityhuman = (EntityHuman) iterator.next();
+                    EntityPlayer entityplayer = (EntityPlayer) entityhuman;
+
+                    worldmap.a(entityplayer, itemstack);
+                    Packet packet = Items.FILLED_MAP.a(itemstack, this.tracker.world, (EntityHuman) entityplayer);
+
+                    if (packet != null) {
+                        entityplayer.playerConnection.sendPacket(packet);
                     }
                 }
+            }
+
+            this.d();
+        }
 
+        // CloudSpigot start - computed by computeUpdate
+        if (this.pendingUpdate) {
+            this.pendingUpdate = false;
+            if (this.pendingRescan) {
+                this.pendingRescan = false;
+                this.scanPlayers(new java.util.ArrayList(this.trackedPlayers));
+            }
+
+            if (this.pendingBroadcast != null) {
+                this.broadcast(this.pendingBroadcast);
+                this.pendingBroadcast = null;
+            }
+
+            Object object = this.pendingMove;
+            this.pendingMove = null;
+            // CloudSpigot end
                 if (object != null) {
                     // Paper start - ensure fresh viewers get an absolute position on their first update,
                     // since we can't be certain what position they received in the spawn packet.
@@ -229,29 +306,13 @@ public class EntityTrackerEntry {
                 }
 
                 this.d();
-                /* CraftBukkit start - Code moved up
-                if (flag1) {
-                    this.xLoc = k;
-                    this.yLoc = l;
-                    this.zLoc = i1;
-                }
 
-                if (flag2) {
-                    this.yRot = j1;
-                    this.xRot = k1;
-                }
-                // CraftBukkit end */
-
-                this.x = false;
+            // CloudSpigot start
+            if (this.pendingHeadRotation != null) {
+                this.broadcast(this.pendingHeadRotation);
+                this.pendingHeadRotation = null;
             }
-
-            i = MathHelper.d(this.tracker.getHeadRotation() * 256.0F / 360.0F);
-            if (Math.abs(i - this.headYaw) >= 1) {
-                this.broadcast(new PacketPlayOutEntityHeadRotation(this.tracker, (byte) i));
-                this.headYaw = i;
-            }
-
-            this.tracker.impulse = false;
+            // CloudSpigot end
         }
 
         ++this.a;
@@ -334,6 +395,7 @@ public class EntityTrackerEntry {
 
             this.tracker.c(entityplayer);
             entityplayer.c(this.tracker);
+            entityplayer.trackedEntries.remove(this); // CloudSpigot
         }
 
     }
@@ -343,6 +405,7 @@ public class EntityTrackerEntry {
             this.tracker.c(entityplayer);
             entityplayer.c(this.tracker);
             this.trackedPlayers.remove(entityplayer);
+            entityplayer.trackedEntries.remove(this); // CloudSpigot
         }
 
     }
@@ -363,6 +426,7 @@ public class EntityTrackerEntry {
                     entityplayer.removeQueue.remove(Integer.valueOf(this.tracker.getId()));
                     // CraftBukkit end
                     this.trackedPlayerMap.put(entityplayer, true); // Paper
+                    entityplayer.trackedEntries.add(this); // CloudSpigot
                     Packet packet = this.e();
 
                     entityplayer.playerConnection.sendPacket(packet);
@@ -450,6 +514,7 @@ public class EntityTrackerEntry {
                 }
             } else if (this.trackedPlayers.contains(entityplayer)) {
                 this.trackedPlayers.remove(entityplayer);
+                entityplayer.trackedEntries.remove(this); // CloudSpigot
                 this.tracker.c(entityplayer);
                 entityplayer.c(this.tracker);
                 updatePassengers(entityplayer); // Paper
@@ -517,6 +582,26 @@ public class EntityTrackerEntry {
 
     }
 
+    // CloudSpigot start
+    public void scanNearbyPlayers(List<EntityHuman> list) {
+        if (this.grid == null || !this.grid.scanPlayers(this)) {
+            this.scanPlayers(list);
+        }
+    }
+
+    public int getTrackedX() {
+        return (int) (this.xLoc >> 12);
+    }
+
+    public int getTrackedZ() {
+        return (int) (this.zLoc >> 12);
+    }
+
+    public int getTrackingRange() {
+        return Math.min(this.e, this.f);
+    }
+    // CloudSpigot end
+
     private Packet<?> e() {
         if (this.tracker.dead) {
             // CraftBukkit start - Remove useless error spam, just return
@@ -633,6 +718,7 @@ public class EntityTrackerEntry {
         org.spigotmc.AsyncCatcher.catchOp( "player tracker clear"); // Spigot
         if (this.trackedPlayers.contains(entityplayer)) {
             this.trackedPlayers.remove(entityplayer);
+            entityplayer.trackedEntries.remove(this); // CloudSpigot
             this.tracker.c(entityplayer);
             entityplayer.c(this.tracker);
             updatePassengers(entityplayer); // Paper
@@ -135,10 +135,10 @@ public class Explosion {
 
                         // CraftBukkit start
                         // entity.damageEntity(DamageSource.explosion(this), (float) ((int) ((d13 * d13 + d13) / 2.0D * 7.0D * (double) f3 + 1.0D)));
-                        CraftEventFactory.entityDamage = source;
+                        CraftEventFactory.setEntityDamage(source); // CloudSpigot
                         entity.forceExplosionKnockback = false;
                         boolean wasDamaged = entity.damageEntity(DamageSource.explosion(this), (float) ((int) ((d13 * d13 + d13) / 2.0D * 7.0D * (double) f3 + 1.0D)));
-                        CraftEventFactory.entityDamage = null;
+                        CraftEventFactory.setEntityDamage(null); // CloudSpigot
                         if (!wasDamaged && !(entity instanceof EntityTNTPrimed || entity instanceof EntityFallingBlock) && !entity.forceExplosionKnockback) {
                             continue;
                         }
@@ -1,79 +1,262 @@
 package net.minecraft.server;
 
-import com.google.common.collect.Lists;
-import java.util.Collections;
-import java.util.List;
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class FileIOThread implements Runnable {
+import co.aikar.timings.MinecraftTimings;
+import co.aikar.timings.Timing;
+
+/**
+ * Schedules region file writes on a set of worker threads.
+ * <p>
+ * Every region file is owned by exactly one worker, so writes to the same
+ * .mca file are executed in the order they were submitted while writes to
+ * different regions proceed in parallel. Workers block on their queue instead
+ * of polling, and {@link #b()} waits on a monitor until every submitted write
+ * completed. Write time is reported in timings per worker, the slowest
+ * region file write of the last minute is kept for {@link #getSlowestWrite()}.
+ */
+public class FileIOThread {
 
     private static final FileIOThread a = new FileIOThread();
-    private final List<IAsyncChunkSaver> b = Collections.synchronizedList(Lists.newArrayList());
-    private volatile long c;
-    private volatile long d;
+    private final Worker[] workers;
+    private final AtomicLong pending = new AtomicLong();
+    private final Object flushLock = new Object();
+    private final AtomicReference<SlowWrite> slowest = new AtomicReference<SlowWrite>();
+    private volatile SlowWrite lastSlowest;
+    private int ticks;
     private volatile boolean e;
 
     private FileIOThread() {
-        Thread thread = new Thread(this, "File IO Thread");
+        this.workers = new Worker[Math.max(1, com.destroystokyo.paper.PaperConfig.chunkSaveThreads)];
+        for (int i = 0; i < this.workers.length; ++i) {
+            this.workers[i] = new Worker(i);
+            Thread thread = new Thread(this.workers[i], "File IO Thread" + (this.workers.length > 1 ? " #" + (i + 1) : ""));
 
-        thread.setPriority(1);
-        thread.start();
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            thread.start();
+        }
     }
 
     public static FileIOThread a() {
         return FileIOThread.a;
     }
 
-    public void run() {
-        while (true) {
-            this.c();
+    /**
+     * Schedules a write to the region file holding the given chunk.
+     */
+    public void a(File regionDirectory, int chunkX, int chunkZ, Runnable write) {
+        int hash = regionDirectory.hashCode();
+        hash = hash * 31 + (chunkX >> 5);
+        hash = hash * 31 + (chunkZ >> 5);
+        hash ^= hash >>> 16;
+        this.submit(this.workers[(hash & Integer.MAX_VALUE) % this.workers.length], new Region(regionDirectory, chunkX >> 5, chunkZ >> 5), write);
+    }
+
+    /**
+     * Legacy entry point for savers that drain their own queue, runs on the first worker.
+     */
+    public void a(IAsyncChunkSaver iasyncchunksaver) {
+        this.submit(this.workers[0], null, () -> {
+            while (iasyncchunksaver.a()) {
+                ;
+            }
+        });
+    }
+
+    private void submit(Worker worker, Region region, Runnable write) {
+        this.pending.incrementAndGet();
+        worker.queue.add(new Task(region, write));
+    }
+
+    /**
+     * Blocks until every write submitted so far has completed.
+     */
+    public void b() throws InterruptedException {
+        this.e = true;
+
+        synchronized (this.flushLock) {
+            while (this.pending.get() != 0L) {
+                this.flushLock.wait();
+            }
         }
+
+        this.e = false;
     }
 
-    private void c() {
-        for (int i = 0; i < this.b.size(); ++i) {
-            IAsyncChunkSaver iasyncchunksaver = (IAsyncChunkSaver) this.b.get(i);
-            boolean flag = iasyncchunksaver.a();
+    public long getQueueDepth() {
+        return this.pending.get();
+    }
 
-            if (!flag) {
-                this.b.remove(i--);
-                ++this.d;
+    public long getCompletedWrites() {
+        long completed = 0L;
+        for (Worker worker : this.workers) {
+            completed += worker.completed.get();
+        }
+        return completed;
+    }
+
+    /**
+     * Moves the time spent by the workers since the last call into timings, must be called from the main thread.
+     */
+    public void recordTimings() {
+        for (Worker worker : this.workers) {
+            long wait = worker.waitNanos.getAndSet(0L);
+            long write = worker.writeNanos.getAndSet(0L);
+            if (wait != 0L) {
+                MinecraftTimings.addTime(MinecraftTimings.chunkIOQueueWaitTimer, wait);
+            }
+            if (write != 0L) {
+                MinecraftTimings.addTime(worker.timing, write);
             }
+        }
 
-            // Paper start - Add toggle
-            if (com.destroystokyo.paper.PaperConfig.enableFileIOThreadSleep) {
-                try {
-                    Thread.sleep(this.e ? 0L : 2L);
-                } catch (InterruptedException interruptedexception) {
-                    interruptedexception.printStackTrace();
-                }
+        if (++this.ticks % 1200 == 0) {
+            this.lastSlowest = this.slowest.getAndSet(null);
+        }
+    }
+
+    /**
+     * @return the region file and latency, queue wait included, of the
+     *         slowest write of the last minute, or null if nothing was written
+     */
+    public String getSlowestWrite() {
+        SlowWrite write = this.lastSlowest;
+        SlowWrite current = this.slowest.get();
+        if (write == null || current != null && current.nanos > write.nanos) {
+            write = current;
+        }
+        return write == null ? null : write.region + " (" + write.nanos / 1000000L + " ms)";
+    }
+
+    private void recordLatency(Region region, long nanos) {
+        SlowWrite write = null;
+        for (;;) {
+            SlowWrite current = this.slowest.get();
+            if (current != null && current.nanos >= nanos) {
+                return;
+            }
+            if (write == null) {
+                write = new SlowWrite(region, nanos);
+            }
+            if (this.slowest.compareAndSet(current, write)) {
+                return;
             }
-            // Paper end
         }
+    }
 
-        if (this.b.isEmpty()) {
-            try {
-                Thread.sleep(25L);
-            } catch (InterruptedException interruptedexception1) {
-                interruptedexception1.printStackTrace();
+    private void completed() {
+        if (this.pending.decrementAndGet() == 0L) {
+            synchronized (this.flushLock) {
+                this.flushLock.notifyAll();
             }
         }
+    }
+
+    private static final class Task {
+
+        private final Region region;
+        private final Runnable write;
+        private final long queued = System.nanoTime();
 
+        private Task(Region region, Runnable write) {
+            this.region = region;
+            this.write = write;
+        }
     }
 
-    public void a(IAsyncChunkSaver iasyncchunksaver) {
-        if (!this.b.contains(iasyncchunksaver)) {
-            ++this.c;
-            this.b.add(iasyncchunksaver);
+    private static final class SlowWrite {
+
+        private final Region region;
+        private final long nanos;
+
+        private SlowWrite(Region region, long nanos) {
+            this.region = region;
+            this.nanos = nanos;
         }
     }
 
-    public void b() throws InterruptedException {
-        this.e = true;
+    private static final class Region {
 
-        while (this.c != this.d) {
-            Thread.sleep(10L);
+        private final File directory;
+        private final int x;
+        private final int z;
+
+        private Region(File directory, int x, int z) {
+            this.directory = directory;
+            this.x = x;
+            this.z = z;
         }
 
-        this.e = false;
+        public boolean equals(Object object) {
+            if (!(object instanceof Region)) {
+                return false;
+            }
+            Region region = (Region) object;
+            return this.x == region.x && this.z == region.z && this.directory.equals(region.directory);
+        }
+
+        public int hashCode() {
+            return (this.directory.hashCode() * 31 + this.x) * 31 + this.z;
+        }
+
+        public String toString() {
+            return this.directory.getPath() + File.separator + "region" + File.separator + "r." + this.x + "." + this.z + ".mca";
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<Task>();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong writeNanos = new AtomicLong();
+        private final Timing timing;
+
+        private Worker(int id) {
+            this.timing = MinecraftTimings.getChunkIOWorkerTiming(id);
+        }
+
+        public void run() {
+            while (true) {
+                Task task;
+                try {
+                    task = this.queue.take();
+                } catch (InterruptedException interruptedexception) {
+                    interruptedexception.printStackTrace();
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                this.waitNanos.addAndGet(start - task.queued);
+                try {
+                    task.write.run();
+                } catch (Throwable throwable) {
+                    MinecraftServer.LOGGER.error("Failed to run chunk I/O task", throwable);
+                } finally {
+                    long end = System.nanoTime();
+                    this.writeNanos.addAndGet(end - start);
+                    if (task.region != null) {
+                        FileIOThread.this.recordLatency(task.region, end - task.queued);
+                    }
+                    this.completed.incrementAndGet();
+                    FileIOThread.this.completed();
+                }
+
+                // Paper start - Add toggle
+                if (com.destroystokyo.paper.PaperConfig.enableFileIOThreadSleep && !FileIOThread.this.e) {
+                    try {
+                        Thread.sleep(2L);
+                    } catch (InterruptedException interruptedexception) {
+                        interruptedexception.printStackTrace();
+                    }
+                }
+                // Paper end
+            }
+        }
     }
 }
@@ -77,7 +77,7 @@ public class HandshakeListener implements PacketHandshakingInListener {
                 boolean proxyLogicEnabled = org.spigotmc.SpigotConfig.bungee;
                 boolean handledByEvent = false;
                 // Try and handle the handshake through the event
-                if (com.destroystokyo.paper.event.player.PlayerHandshakeEvent.getHandlerList().getRegisteredListeners().length != 0) { // Hello? Can you hear me?
+                if (com.destroystokyo.paper.event.player.PlayerHandshakeEvent.getHandlerList().hasListeners()) { // Hello? Can you hear me?
                     com.destroystokyo.paper.event.player.PlayerHandshakeEvent event = new com.destroystokyo.paper.event.player.PlayerHandshakeEvent(packethandshakinginsetprotocol.hostname, !proxyLogicEnabled);
                     if (event.callEvent()) {
                         // If we've failed somehow, let the client know so and go no further.
@@ -303,7 +303,7 @@ public class LoginListener implements PacketLoginInListener, ITickable {
                             uniqueId = i.getId();
                             // Paper end
 
-                            if (PlayerPreLoginEvent.getHandlerList().getRegisteredListeners().length != 0) {
+                            if (PlayerPreLoginEvent.getHandlerList().hasListeners()) {
                                 final PlayerPreLoginEvent event = new PlayerPreLoginEvent(playerName, address, uniqueId);
                                 if (asyncEvent.getResult() != PlayerPreLoginEvent.Result.ALLOWED) {
                                     event.disallow(asyncEvent.getResult(), asyncEvent.getKickMessage());
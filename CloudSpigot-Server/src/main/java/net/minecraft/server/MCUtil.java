@@ -50,7 +50,7 @@ public final class MCUtil {
      * @return
      */
     public static <T> T ensureMain(String reason, Supplier<T> run) {
-        if (AsyncCatcher.enabled && Thread.currentThread() != MinecraftServer.getServer().primaryThread) {
+        if (AsyncCatcher.enabled && !eu.minewars.cloudspigot.world.WorldTickExecutor.isTickThread()) { // CloudSpigot - world tick threads own their world
             new IllegalStateException( "Asynchronous " + reason + "! Blocking thread until it returns ").printStackTrace();
             Waitable<T> wait = new Waitable<T>() {
                 @Override
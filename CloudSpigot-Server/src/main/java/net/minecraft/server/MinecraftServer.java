@@ -401,6 +401,7 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IAs
 		}
 
 		for (WorldServer world : this.worlds) {
+			eu.minewars.cloudspigot.world.WorldPregenerator.resume(world); // CloudSpigot
 			this.server.getPluginManager().callEvent(new org.bukkit.event.world.WorldLoadEvent(world.getWorld()));
 		}
 		// CraftBukkit end
@@ -780,6 +781,7 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IAs
 	protected void C() throws ExceptionWorldConflict { // CraftBukkit - added throws
 		co.aikar.timings.TimingsManager.FULL_SERVER_TICK.startTiming(); // Paper
 		this.slackActivityAccountant.tickStarted(); // Spigot
+		NetworkManager.deferFlushes = eu.minewars.cloudspigot.config.CloudSpigotConfig.flushConsolidation; // CloudSpigot
 		long i = System.nanoTime();
 		long startTime = i; // Paper
 
@@ -852,6 +854,7 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IAs
 
 		org.spigotmc.WatchdogThread.tick(); // Spigot
 		PaperLightingQueue.processQueue(startTime); // Paper
+		this.an().flushConnections(); // CloudSpigot - packets written during the tick were not flushed
 		this.slackActivityAccountant.tickEnded(tickNanos); // Spigot
 		co.aikar.timings.TimingsManager.FULL_SERVER_TICK.stopTiming(); // Paper
 	}
@@ -883,7 +886,15 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IAs
 
 		MinecraftTimings.chunkIOTickTimer.startTiming(); // Spigot
 		org.bukkit.craftbukkit.chunkio.ChunkIOExecutor.tick();
+		FileIOThread.a().recordTimings(); // CloudSpigot
 		MinecraftTimings.chunkIOTickTimer.stopTiming(); // Spigot
+		com.destroystokyo.paper.antixray.ChunkPacketBlockControllerAntiXray.recordTimings(); // CloudSpigot
+
+		// CloudSpigot start
+		MinecraftTimings.worldPregenTimer.startTiming();
+		eu.minewars.cloudspigot.world.WorldPregenerator.tickAll();
+		MinecraftTimings.worldPregenTimer.stopTiming();
+		// CloudSpigot end
 
 		MinecraftTimings.timeUpdateTimer.startTiming(); // Spigot
 		// Send time updates to everyone, it will get the right time from the world the
@@ -904,72 +915,21 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IAs
 
 		int i;
 
+		// CloudSpigot start - parallel world ticking
+		if (eu.minewars.cloudspigot.config.CloudSpigotConfig.parallelWorldTicking && this.worlds.size() > 1) {
+			eu.minewars.cloudspigot.world.WorldTickExecutor.tickWorlds(this.worlds, this::tickWorld);
+		} else {
 		for (i = 0; i < this.worlds.size(); ++i) { // CraftBukkit
 			// if (i == 0 || this.getAllowNether()) {
 			WorldServer worldserver = this.worlds.get(i);
-			TileEntityHopper.skipHopperEvents = worldserver.paperConfig.disableHopperMoveEvents
-					|| org.bukkit.event.inventory.InventoryMoveItemEvent.getHandlerList()
-							.getRegisteredListeners().length == 0;
-
-			/*
-			 * this.methodProfiler.a(() -> { return worldserver.getWorldData().getName();
-			 * });
-			 */
-			/*
-			 * Drop global time updates if (this.ticks % 20 == 0) {
-			 * //this.methodProfiler.a("timeSync"); this.v.a((Packet) (new
-			 * PacketPlayOutUpdateTime(worldserver.getTime(), worldserver.getDayTime(),
-			 * worldserver.getGameRules().getBoolean("doDaylightCycle"))),
-			 * worldserver.worldProvider.getDimensionManager().getDimensionID());
-			 * //this.methodProfiler.b(); } // CraftBukkit end
-			 */
-
-			// this.methodProfiler.a("tick");
-
-			CrashReport crashreport;
-
-			try {
-				worldserver.timings.doTick.startTiming(); // Spigot
-				worldserver.doTick();
-				worldserver.timings.doTick.stopTiming(); // Spigot
-			} catch (Throwable throwable) {
-				// Spigot Start
-				try {
-					crashreport = CrashReport.a(throwable, "Exception ticking world");
-				} catch (Throwable t) {
-					throw new RuntimeException("Error generating crash report", t);
-				}
-				// Spigot End
-				worldserver.a(crashreport);
-				throw new ReportedException(crashreport);
-			}
-
-			try {
-				worldserver.timings.tickEntities.startTiming(); // Spigot
-				worldserver.tickEntities();
-				worldserver.timings.tickEntities.stopTiming(); // Spigot
-			} catch (Throwable throwable1) {
-				// Spigot Start
-				try {
-					crashreport = CrashReport.a(throwable1, "Exception ticking world entities");
-				} catch (Throwable t) {
-					throw new RuntimeException("Error generating crash report", t);
-				}
-				// Spigot End
-				worldserver.a(crashreport);
-				throw new ReportedException(crashreport);
-			}
-
-			// this.methodProfiler.b();
-			// this.methodProfiler.a("tracker");
-			worldserver.getTracker().updatePlayers();
-			// this.methodProfiler.b();
-			// this.methodProfiler.b();
-			worldserver.explosionDensityCache.clear(); // Paper - Optimize explosions
+			// CloudSpigot - hoppers look up whether to skip their events themselves
+			this.tickWorld(worldserver);
 			// } // CraftBukkit
 
 			// this.i[i][this.ticks % 100] = System.nanoTime() - j; // CraftBukkit
 		}
+		}
+		// CloudSpigot end
 
 		// this.methodProfiler.c("connection");
 		MinecraftTimings.connectionTimer.startTiming(); // Spigot
@@ -996,6 +956,67 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IAs
 		// this.methodProfiler.b();
 	}
 
+	// CloudSpigot start - extracted from D() so worlds can be ticked on the world tick pool
+	private void tickWorld(WorldServer worldserver) {
+		/*
+		 * this.methodProfiler.a(() -> { return worldserver.getWorldData().getName();
+		 * });
+		 */
+		/*
+		 * Drop global time updates if (this.ticks % 20 == 0) {
+		 * //this.methodProfiler.a("timeSync"); this.v.a((Packet) (new
+		 * PacketPlayOutUpdateTime(worldserver.getTime(), worldserver.getDayTime(),
+		 * worldserver.getGameRules().getBoolean("doDaylightCycle"))),
+		 * worldserver.worldProvider.getDimensionManager().getDimensionID());
+		 * //this.methodProfiler.b(); } // CraftBukkit end
+		 */
+
+		// this.methodProfiler.a("tick");
+
+		CrashReport crashreport;
+
+		try {
+			worldserver.timings.doTick.startTiming(); // Spigot
+			worldserver.doTick();
+			worldserver.timings.doTick.stopTiming(); // Spigot
+		} catch (Throwable throwable) {
+			// Spigot Start
+			try {
+				crashreport = CrashReport.a(throwable, "Exception ticking world");
+			} catch (Throwable t) {
+				throw new RuntimeException("Error generating crash report", t);
+			}
+			// Spigot End
+			worldserver.a(crashreport);
+			throw new ReportedException(crashreport);
+		}
+
+		try {
+			worldserver.timings.tickEntities.startTiming(); // Spigot
+			worldserver.tickEntities();
+			worldserver.timings.tickEntities.stopTiming(); // Spigot
+			worldserver.flushLight(); // CloudSpigot - explosions and falling blocks
+		} catch (Throwable throwable1) {
+			// Spigot Start
+			try {
+				crashreport = CrashReport.a(throwable1, "Exception ticking world entities");
+			} catch (Throwable t) {
+				throw new RuntimeException("Error generating crash report", t);
+			}
+			// Spigot End
+			worldserver.a(crashreport);
+			throw new ReportedException(crashreport);
+		}
+
+		// this.methodProfiler.b();
+		// this.methodProfiler.a("tracker");
+		worldserver.getTracker().updatePlayers();
+		// this.methodProfiler.b();
+		// this.methodProfiler.b();
+		worldserver.explosionDensityCache.clear(); // Paper - Optimize explosions
+	}
+	// CloudSpigot end
+
 	public boolean getAllowNether() {
 		return true;
 	}
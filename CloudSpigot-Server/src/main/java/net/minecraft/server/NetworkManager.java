@@ -83,6 +83,17 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
     public java.net.InetSocketAddress virtualHost;
     private static boolean enableExplicitFlush = Boolean.getBoolean("paper.explicit-flush");
     // Paper end
+    // CloudSpigot start - write coalescing
+    /**
+     * Set while the server is ticking, packets written in play are only
+     * flushed at the end of the tick or once enough of them piled up.
+     */
+    public static volatile boolean deferFlushes;
+    private volatile boolean flushPending;
+    private final Runnable flushTask = this::flushNow;
+    private volatile long flushCount;
+    private volatile long flushedBytes;
+    // CloudSpigot end
 
     public NetworkManager(EnumProtocolDirection enumprotocoldirection) {
         this.h = enumprotocoldirection;
@@ -186,6 +197,115 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
 
     }
 
+    // CloudSpigot start - write a batch of packets in one event loop task with a single flush
+    public void sendPacketBatch(final java.util.List<Packet<?>> packets) {
+        boolean direct = this.isConnected() && this.trySendQueue() && this.channel.attr(NetworkManager.c).get() == EnumProtocol.PLAY;
+
+        for (int i = 0; direct && i < packets.size(); ++i) {
+            Packet<?> packet = packets.get(i);
+            // protocol changes and chunks that are not ready take the regular path
+            direct = EnumProtocol.a(packet) == EnumProtocol.PLAY && !(packet instanceof PacketPlayOutMapChunk && !((PacketPlayOutMapChunk) packet).isReady());
+        }
+
+        if (!direct) {
+            for (Packet<?> packet : packets) {
+                this.sendPacket(packet);
+            }
+            return;
+        }
+
+        if (this.channel.eventLoop().inEventLoop()) {
+            this.writeBatch(packets);
+        } else {
+            this.channel.eventLoop().execute(() -> this.writeBatch(packets));
+        }
+    }
+
+    private void writeBatch(java.util.List<Packet<?>> packets) {
+        for (Packet<?> packet : packets) {
+            this.writePacket(packet);
+        }
+        this.flushOrDefer();
+    }
+
+    private void writePacket(Packet<?> packet) {
+        this.channel.write(packet).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+
+        java.util.List<Packet> extraPackets = packet.getExtraPackets(); // Paper
+        if (extraPackets != null && !extraPackets.isEmpty()) {
+            for (Packet extraPacket : extraPackets) {
+                this.writePacket(extraPacket);
+            }
+        }
+    }
+
+    private ChannelFuture write(Packet<?> packet, EnumProtocol protocol) {
+        if (protocol != EnumProtocol.PLAY || !NetworkManager.deferFlushes) {
+            return this.channel.writeAndFlush(packet);
+        }
+
+        ChannelFuture channelfuture = this.channel.write(packet);
+        this.flushOrDefer();
+        return channelfuture;
+    }
+
+    /**
+     * Flushes now if the tick is over or the connection has enough waiting,
+     * leaves the flush to the end of the tick otherwise. Called on the event
+     * loop after writing.
+     */
+    private void flushOrDefer() {
+        if (NetworkManager.deferFlushes) {
+            io.netty.channel.ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
+            if (buffer != null && buffer.totalPendingWriteBytes() < eu.minewars.cloudspigot.config.CloudSpigotConfig.flushConsolidationThreshold) {
+                this.flushPending = true;
+                if (NetworkManager.deferFlushes) {
+                    return;
+                }
+                // the tick ended in between, it may have missed this connection
+            }
+        }
+        this.flushNow();
+    }
+
+    private void flushNow() {
+        this.flushPending = false;
+        io.netty.channel.ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
+        long bytes = buffer == null ? 0 : buffer.totalPendingWriteBytes();
+        if (bytes > 0) {
+            this.flushCount = this.flushCount + 1; // only written on the event loop
+            this.flushedBytes = this.flushedBytes + bytes;
+        }
+        this.channel.flush();
+    }
+
+    public boolean hasPendingFlush() {
+        return this.flushPending;
+    }
+
+    /**
+     * Flushes the packets written since the last flush, from any thread.
+     */
+    public void flushPending() {
+        if (this.flushPending) {
+            this.flushPending = false;
+            if (this.channel.eventLoop().inEventLoop()) {
+                this.flushNow();
+            } else {
+                this.channel.eventLoop().execute(this.flushTask);
+            }
+        }
+    }
+
+    public long getFlushCount() {
+        return this.flushCount;
+    }
+
+    public long getFlushedBytes() {
+        return this.flushedBytes;
+    }
+    // CloudSpigot end
+
     private void dispatchPacket(final Packet<?> packet, @Nullable final GenericFutureListener<? extends Future<? super Void>>[] genericFutureListeners) { this.a(packet, genericFutureListeners); } // Paper - Anti-Xray - OBFHELPER
     private void a(final Packet<?> packet, @Nullable final GenericFutureListener<? extends Future<? super Void>>[] agenericfuturelistener) {
         final EnumProtocol enumprotocol = EnumProtocol.a(packet);
@@ -201,7 +321,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
                 this.setProtocol(enumprotocol);
             }
 
-            ChannelFuture channelfuture = this.channel.writeAndFlush(packet);
+            ChannelFuture channelfuture = this.write(packet, enumprotocol); // CloudSpigot
 
             if (agenericfuturelistener != null) {
                 channelfuture.addListeners(agenericfuturelistener);
@@ -215,7 +335,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
                         NetworkManager.this.setProtocol(enumprotocol);
                     }
 
-                    ChannelFuture channelfuture = NetworkManager.this.channel.writeAndFlush(packet);
+                    ChannelFuture channelfuture = NetworkManager.this.write(packet, enumprotocol); // CloudSpigot
 
                     if (agenericfuturelistener != null) {
                         channelfuture.addListeners(agenericfuturelistener);
@@ -291,6 +411,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
         this.preparing = false;
         // Spigot End
         if (this.channel.isOpen()) {
+            this.flushPending(); // CloudSpigot - closing drops unflushed writes
             this.channel.close(); // We can't wait as this may be called from an event loop.
             this.n = ichatbasecomponent;
         }
@@ -339,6 +460,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
                 ((PacketCompressor) this.channel.pipeline().get("compress")).a(i);
             } else {
                 this.channel.pipeline().addBefore("encoder", "compress", new PacketCompressor(i));
+                this.setFraming(false); // CloudSpigot - the compressed packet is what gets framed
             }
         } else {
             if (this.channel.pipeline().get("decompress") instanceof PacketDecompressor) {
@@ -347,11 +469,20 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet<?>> {
 
             if (this.channel.pipeline().get("compress") instanceof PacketCompressor) {
                 this.channel.pipeline().remove("compress");
+                this.setFraming(eu.minewars.cloudspigot.config.CloudSpigotConfig.framePacketsInEncoder); // CloudSpigot
             }
         }
 
     }
 
+    // CloudSpigot start
+    private void setFraming(boolean framing) {
+        if (this.channel.pipeline().get("encoder") instanceof PacketEncoder) {
+            ((PacketEncoder) this.channel.pipeline().get("encoder")).setFraming(framing);
+        }
+    }
+    // CloudSpigot end
+
     public void handleDisconnection() {
         if (this.channel != null && !this.channel.isOpen()) {
             if (this.p) {
@@ -14,5 +14,16 @@ public interface Packet<T extends PacketListener> {
         return false;
     }
     // Paper end
+    // CloudSpigot start
+    /**
+     * Gets about how many bytes {@link #b(PacketDataSerializer)} writes, so
+     * the buffer it is encoded into is allocated once.
+     *
+     * @return the expected size, or -1 if unknown
+     */
+    default int getEncodedSizeHint() {
+        return -1;
+    }
+    // CloudSpigot end
     void a(T t0);
 }
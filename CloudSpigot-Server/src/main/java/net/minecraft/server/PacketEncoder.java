@@ -35,6 +35,15 @@ public class PacketEncoder extends MessageToByteEncoder<Packet<?>> {
                 throw new IOException("Can\'t serialize unregistered packet");
             } else {
                 PacketDataSerializer packetdataserializer = new PacketDataSerializer(bytebuf);
+                // CloudSpigot start - leave room for the length
+                boolean framing = this.framing && channelhandlercontext.handler() == this;
+                int start = bytebuf.writerIndex();
+                this.framed = null;
+
+                if (framing) {
+                    bytebuf.writeMedium(0);
+                }
+                // CloudSpigot end
 
                 packetdataserializer.d(integer.intValue());
 
@@ -45,15 +54,56 @@ public class PacketEncoder extends MessageToByteEncoder<Packet<?>> {
                 }
 
                 // Paper start
-                int packetLength = bytebuf.readableBytes();
-                if (packetLength > MAX_PACKET_SIZE) {
+                int packetLength = bytebuf.writerIndex() - start - (framing ? 3 : 0); // CloudSpigot
+                if (packetLength > MAX_PACKET_SIZE || framing && packetLength > MAX_FRAMED_SIZE) { // CloudSpigot
                     throw new PacketTooLargeException(packet, packetLength);
                 }
                 // Paper end
+                // CloudSpigot start - the length as a 3 byte VarInt, which the client reads like any other
+                if (framing) {
+                    bytebuf.setMedium(start, (packetLength & 127 | 128) << 16 | (packetLength >>> 7 & 127 | 128) << 8 | packetLength >>> 14);
+                    this.framed = bytebuf;
+                }
+                // CloudSpigot end
             }
         }
     }
 
+    // CloudSpigot start - allocate once, sized by the packet, and frame in place
+    private static final int MAX_FRAMED_SIZE = (1 << 21) - 1;
+    private volatile boolean framing;
+    private ByteBuf framed;
+
+    /**
+     * Sets whether packets are framed here instead of by the prepender, only
+     * while nothing rewrites the encoded packets in between.
+     */
+    public void setFraming(boolean framing) {
+        this.framing = framing;
+    }
+
+    /**
+     * @return whether the message is a packet this encoder framed last
+     */
+    boolean takeFramed(Object msg) {
+        if (msg != null && msg == this.framed) {
+            this.framed = null;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext channelhandlercontext, Packet<?> packet, boolean preferDirect) throws Exception {
+        int size = packet.getEncodedSizeHint();
+        if (size < 0) {
+            return super.allocateBuffer(channelhandlercontext, packet, preferDirect);
+        }
+        // room for the length and id VarInts
+        return channelhandlercontext.alloc().ioBuffer(Math.min(8 + size, MAX_PACKET_SIZE + 8));
+    }
+    // CloudSpigot end
+
     // Paper start
     private static int MAX_PACKET_SIZE = 2097152;
     public static class PacketTooLargeException extends RuntimeException {
@@ -10,7 +10,10 @@ import java.util.Map.Entry;
 
 // Paper start
 import com.destroystokyo.paper.antixray.PacketPlayOutMapChunkInfo; // Anti-Xray
+import com.destroystokyo.paper.antixray.PacketPlayOutMapChunkInfoAntiXray; // Anti-Xray
 // Paper end
+import eu.minewars.cloudspigot.config.CloudSpigotConfig; // CloudSpigot
+import eu.minewars.cloudspigot.world.ChunkPacketCache; // CloudSpigot
 
 public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
 
@@ -21,6 +24,10 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
     private List<NBTTagCompound> e;
     private boolean f;
     private volatile boolean ready = false; // Paper - Async-Anti-Xray - Ready flag for the network manager
+    // CloudSpigot start - published to the chunk once ready
+    private Chunk cacheChunk;
+    private ChunkPacketCache pendingCache;
+    // CloudSpigot end
 
     // Paper start - Async-Anti-Xray - Set the ready flag to true
     public PacketPlayOutMapChunk() {
@@ -36,21 +43,24 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
     }
     // Paper end
     public PacketPlayOutMapChunk(Chunk chunk, int i) {
-        PacketPlayOutMapChunkInfo packetPlayOutMapChunkInfo = chunk.world.chunkPacketBlockController.getPacketPlayOutMapChunkInfo(this, chunk, i); // Paper - Anti-Xray - Add chunk packet info
         this.a = chunk.locX;
         this.b = chunk.locZ;
         this.f = i == '\uffff';
         boolean flag = chunk.getWorld().worldProvider.m();
-
-        this.d = new byte[this.a(chunk, flag, i)];
-
-        // Paper start - Anti-Xray - Add chunk packet info
-        if (packetPlayOutMapChunkInfo != null) {
-            packetPlayOutMapChunkInfo.setData(this.d);
+        // CloudSpigot start - reuse the sections serialized for another viewer
+        ChunkPacketCache cache = this.f && CloudSpigotConfig.chunkPacketCache ? chunk.packetCache : null;
+        if (cache != null && !cache.isValid(chunk)) {
+            chunk.packetCache = cache = null;
         }
-        // Paper end
 
-        this.c = this.writeChunk(new PacketDataSerializer(this.g()), chunk, flag, i, packetPlayOutMapChunkInfo); // Paper - Anti-Xray - Add chunk packet info
+        PacketPlayOutMapChunkInfo packetPlayOutMapChunkInfo = null;
+        if (cache != null) {
+            this.d = cache.getData();
+            this.c = cache.getSectionMask();
+        } else {
+            packetPlayOutMapChunkInfo = this.serialize(chunk, flag, i);
+        }
+        // CloudSpigot end
         this.e = Lists.newArrayList();
         Iterator iterator = chunk.getTileEntities().entrySet().iterator();
         int totalSigns = 0; // Paper
@@ -76,9 +86,39 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
             }
         }
 
+        // CloudSpigot start - cached sections are already obfuscated
+        if (cache != null) {
+            this.ready = true;
+            return;
+        }
+        // CloudSpigot end
         chunk.world.chunkPacketBlockController.modifyBlocks(this, packetPlayOutMapChunkInfo); // Paper - Anti-Xray - Modify blocks
     }
 
+    // CloudSpigot start - extracted from the constructor
+    private PacketPlayOutMapChunkInfo serialize(Chunk chunk, boolean flag, int i) {
+        PacketPlayOutMapChunkInfo packetPlayOutMapChunkInfo = chunk.world.chunkPacketBlockController.getPacketPlayOutMapChunkInfo(this, chunk, i); // Paper - Anti-Xray - Add chunk packet info
+
+        this.d = new byte[this.a(chunk, flag, i)];
+
+        // Paper start - Anti-Xray - Add chunk packet info
+        if (packetPlayOutMapChunkInfo != null) {
+            packetPlayOutMapChunkInfo.setData(this.d);
+        }
+        // Paper end
+
+        this.c = this.writeChunk(new PacketDataSerializer(this.g()), chunk, flag, i, packetPlayOutMapChunkInfo); // Paper - Anti-Xray - Add chunk packet info
+
+        // shared once anti-xray is done with it
+        if (this.f && CloudSpigotConfig.chunkPacketCache) {
+            this.cacheChunk = chunk;
+            this.pendingCache = new ChunkPacketCache(chunk, this.d, this.c, packetPlayOutMapChunkInfo instanceof PacketPlayOutMapChunkInfoAntiXray
+                    ? ((PacketPlayOutMapChunkInfoAntiXray) packetPlayOutMapChunkInfo).getNearbyChunks() : null);
+        }
+        return packetPlayOutMapChunkInfo;
+    }
+    // CloudSpigot end
+
     // Paper start - Async-Anti-Xray - Getter and Setter for the ready flag
     public boolean isReady() {
         return this.ready;
@@ -86,6 +126,13 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
 
     public void setReady(boolean ready) {
         this.ready = ready;
+        // CloudSpigot start
+        if (ready && this.pendingCache != null) {
+            this.cacheChunk.packetCache = this.pendingCache;
+            this.pendingCache = null;
+            this.cacheChunk = null;
+        }
+        // CloudSpigot end
     }
     // Paper end
 
@@ -130,6 +177,14 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
 
     }
 
+    // CloudSpigot start
+    @Override
+    public int getEncodedSizeHint() {
+        // tile entities are guessed at, about the size of a sign
+        return 4 + 4 + 1 + 5 + 5 + this.d.length + 5 + this.e.size() * 192;
+    }
+    // CloudSpigot end
+
     public void a(PacketListenerPlayOut packetlistenerplayout) {
         packetlistenerplayout.a(this);
     }
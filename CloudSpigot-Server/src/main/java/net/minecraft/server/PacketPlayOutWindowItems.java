@@ -57,6 +57,23 @@ public class PacketPlayOutWindowItems implements Packet<PacketListenerPlayOut> {
 
     }
 
+    // CloudSpigot start
+    @Override
+    public int getEncodedSizeHint() {
+        int size = 1 + 2;
+        for (int i = 0; i < this.b.size(); ++i) {
+            ItemStack itemstack = this.b.get(i);
+            if (itemstack.isEmpty()) {
+                size += 2;
+            } else {
+                // the tag is guessed at, it depends on the item meta
+                size += 2 + 1 + 2 + (itemstack.hasTag() ? 64 : 1);
+            }
+        }
+        return size;
+    }
+    // CloudSpigot end
+
     public void a(PacketListenerPlayOut packetlistenerplayout) {
         packetlistenerplayout.a(this);
     }
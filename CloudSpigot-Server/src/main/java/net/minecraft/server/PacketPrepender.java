@@ -0,0 +1,54 @@
+package net.minecraft.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+public class PacketPrepender extends MessageToByteEncoder<ByteBuf> {
+
+    // CloudSpigot start - packets the encoder framed itself are passed through
+    private final PacketEncoder encoder;
+
+    public PacketPrepender(PacketEncoder encoder) {
+        this.encoder = encoder;
+    }
+    // CloudSpigot end
+
+    public PacketPrepender() {
+        this(null); // CloudSpigot
+    }
+
+    // CloudSpigot start
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        if (this.encoder != null && this.encoder.takeFramed(msg)) {
+            return false;
+        }
+        return super.acceptOutboundMessage(msg);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) throws Exception {
+        return ctx.alloc().ioBuffer(3 + msg.readableBytes());
+    }
+    // CloudSpigot end
+
+    protected void a(ChannelHandlerContext channelhandlercontext, ByteBuf bytebuf, ByteBuf bytebuf1) throws Exception {
+        int i = bytebuf.readableBytes();
+        int j = PacketDataSerializer.a(i);
+
+        if (j > 3) {
+            throw new IllegalArgumentException("unable to fit " + i + " into " + 3);
+        } else {
+            PacketDataSerializer packetdataserializer = new PacketDataSerializer(bytebuf1);
+
+            packetdataserializer.ensureWritable(j + i);
+            packetdataserializer.d(i);
+            packetdataserializer.writeBytes(bytebuf, bytebuf.readerIndex(), i);
+        }
+    }
+
+    protected void encode(ChannelHandlerContext channelhandlercontext, ByteBuf object, ByteBuf bytebuf) throws Exception { // CraftBukkit - fix decompile error
+        this.a(channelhandlercontext, object, bytebuf);
+    }
+}
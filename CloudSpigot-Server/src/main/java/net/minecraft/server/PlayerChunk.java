@@ -25,6 +25,11 @@ public class PlayerChunk {
     private int h;
     private long i;
     private boolean done;
+    // CloudSpigot start - threaded lighting engine
+    private static final int MAX_LIGHT_WAIT_TICKS = 10;
+    private final List<EntityPlayer> waitingForLight = Lists.newArrayList();
+    private int lightWaitStart = -1;
+    // CloudSpigot end
 
     // CraftBukkit start - add fields
     boolean chunkExists; // Paper
@@ -89,6 +94,12 @@ public class PlayerChunk {
 
                 if (this.c.isEmpty()) {
                     ChunkIOExecutor.dropQueuedChunkLoad(this.playerChunkMap.getWorld(), this.location.x, this.location.z, this.loadedRunnable);
+                    // CloudSpigot start
+                    ChunkProviderServer provider = this.playerChunkMap.getWorld().getChunkProviderServer();
+                    if (provider.asyncGenerator != null) {
+                        provider.asyncGenerator.drop(this.location.x, this.location.z, this.loadedRunnable);
+                    }
+                    // CloudSpigot end
                     this.playerChunkMap.b(this);
                 }
 
@@ -101,6 +112,7 @@ public class PlayerChunk {
 
             this.c.remove(entityplayer);
             if (this.c.isEmpty()) {
+                this.chunk.packetCache = null; // CloudSpigot - only kept while someone could be sent the chunk
                 this.playerChunkMap.b(this);
             }
 
@@ -122,6 +134,11 @@ public class PlayerChunk {
                 loadInProgress = true;
                 this.chunk = playerChunkMap.getWorld().getChunkProviderServer().getChunkAt(this.location.x, this.location.z, loadedRunnable, flag);
                 markChunkUsed(); // Paper - delay chunk unloads
+                // CloudSpigot start - queued for generation, don't charge the generation limit again while it runs
+                if (this.chunk == null && flag && playerChunkMap.getWorld().getChunkProviderServer().isGenerating(this.location.x, this.location.z)) {
+                    this.chunkExists = true;
+                }
+                // CloudSpigot end
             }
             // CraftBukkit end
 
@@ -138,10 +155,13 @@ public class PlayerChunk {
             return false;
         } else if (!this.chunk.world.chunkPacketBlockController.onChunkPacketCreate(this.chunk, '\uffff', false)) { // Paper - Anti-Xray - Load nearby chunks if necessary
             return false; // Paper - Anti-Xray - Wait and try again later
+        } else if (!this.isLightSettled()) { // CloudSpigot - send the chunk once the light worker published its light
+            return false;
         } else {
             this.dirtyCount = 0;
             this.h = 0;
             this.done = true;
+            this.lightWaitStart = -1; // CloudSpigot - the next held packet waits again
             PacketPlayOutMapChunk packetplayoutmapchunk = new PacketPlayOutMapChunk(this.chunk, '\uffff');
             Iterator iterator = this.c.iterator();
 
@@ -158,12 +178,73 @@ public class PlayerChunk {
 
     public void sendChunk(EntityPlayer entityplayer) {
         if (this.done) {
+            // CloudSpigot start - send the chunk once the light worker published its light
+            if (!this.isLightSettled()) {
+                if (!this.waitingForLight.contains(entityplayer)) {
+                    this.waitingForLight.add(entityplayer);
+                }
+                this.playerChunkMap.waitForLight(this);
+                return;
+            }
+            // CloudSpigot end
             this.chunk.world.chunkPacketBlockController.onChunkPacketCreate(this.chunk, '\uffff', true); // Paper - Anti-Xray - Load nearby chunks if necessary
             entityplayer.playerConnection.sendPacket(new PacketPlayOutMapChunk(this.chunk, '\uffff'));
             this.playerChunkMap.getWorld().getTracker().a(entityplayer, this.chunk);
         }
     }
 
+    // CloudSpigot start
+    /**
+     * @return whether the light worker published the light of the chunk, or
+     *         packets waited {@link #MAX_LIGHT_WAIT_TICKS} for it already
+     */
+    private boolean isLightSettled() {
+        eu.minewars.cloudspigot.world.LightEngine lightEngine = this.chunk.world.lightEngine;
+        if (lightEngine == null || lightEngine.isSettled(this.chunk)) {
+            this.lightWaitStart = -1;
+            return true;
+        }
+
+        if (this.lightWaitStart < 0) {
+            this.lightWaitStart = MinecraftServer.currentTick;
+        }
+        return MinecraftServer.currentTick - this.lightWaitStart >= MAX_LIGHT_WAIT_TICKS;
+    }
+
+    /**
+     * Sends what waits for the light worker once the light is settled, called
+     * by the chunk map every tick before it sends anything else.
+     *
+     * @return false while something still waits
+     */
+    public boolean sendWaitingForLight() {
+        if (!this.done || this.chunk == null) {
+            this.waitingForLight.clear();
+            return true;
+        }
+        if (!this.isLightSettled()) {
+            return false;
+        }
+
+        if (!this.waitingForLight.isEmpty()) {
+            List<EntityPlayer> players = Lists.newArrayList(this.waitingForLight);
+            this.waitingForLight.clear();
+            for (EntityPlayer entityplayer : players) {
+                if (this.c.contains(entityplayer)) {
+                    this.sendChunk(entityplayer);
+                }
+            }
+        }
+
+        if (this.dirtyCount == 64) {
+            this.playerChunkMap.a(this); // the sections resent by d(), which ends the wait
+        } else {
+            this.lightWaitStart = -1; // the next held packet waits again
+        }
+        return true;
+    }
+    // CloudSpigot end
+
     public void c() {
         long i = this.playerChunkMap.getWorld().getTime();
 
@@ -223,9 +304,16 @@ public class PlayerChunk {
                         this.a(this.playerChunkMap.getWorld().getTileEntity(blockposition));
                     }
                 } else if (this.dirtyCount == 64) {
+                    // CloudSpigot start - resend the sections once the light worker published their light
+                    if (!this.isLightSettled()) {
+                        this.playerChunkMap.waitForLight(this);
+                        return;
+                    }
+                    // CloudSpigot end
                     // Paper - Anti-Xray - Loading chunks here could cause a ConcurrentModificationException #1104
                     //this.chunk.world.chunkPacketBlockController.onChunkPacketCreate(this.chunk, this.h, true); // Paper - Anti-Xray - Load nearby chunks if necessary
                     this.a((Packet) (new PacketPlayOutMapChunk(this.chunk, this.h)));
+                    this.lightWaitStart = -1; // CloudSpigot - the next held packet waits again
                 } else {
                     this.a((Packet) (new PacketPlayOutMultiBlockChange(this.dirtyCount, this.dirtyBlocks, this.chunk)));
 
@@ -47,6 +47,7 @@ public class PlayerChunkMap {
     private final List<PlayerChunk> g = Lists.newLinkedList();
     private final List<PlayerChunk> h = Lists.newLinkedList();
     private final List<PlayerChunk> i = Lists.newArrayList();
+    private final Set<PlayerChunk> waitingForLight = Sets.newHashSet(); // CloudSpigot - threaded lighting engine
     private int j;public int getViewDistance() { return j; } // Paper OBFHELPER
     private long k;
     private boolean l = true;
@@ -118,6 +119,12 @@ public class PlayerChunkMap {
             } // Paper timing
         }
 
+        // CloudSpigot start - send what waited for the light worker, before the dirty chunks so they can be added
+        if (!this.waitingForLight.isEmpty()) {
+            this.waitingForLight.removeIf(PlayerChunk::sendWaitingForLight);
+        }
+        // CloudSpigot end
+
         if (!this.f.isEmpty()) {
             try (Timing ignored = world.timings.doChunkMapToUpdate.startTiming()) { // Paper
             Iterator iterator = this.f.iterator();
@@ -474,12 +481,22 @@ public class PlayerChunkMap {
     }
 
     public void a(PlayerChunk playerchunk) {
-        org.spigotmc.AsyncCatcher.catchOp("Async Player Chunk Add"); // Paper
+        org.spigotmc.AsyncCatcher.catchOp(this.world, "Async Player Chunk Add"); // Paper // CloudSpigot - only from the owning thread
         this.f.add(playerchunk);
     }
 
+    // CloudSpigot start
+    /**
+     * Retries the packets the player chunk holds back for its light every
+     * tick until they are sent.
+     */
+    public void waitForLight(PlayerChunk playerchunk) {
+        this.waitingForLight.add(playerchunk);
+    }
+    // CloudSpigot end
+
     public void b(PlayerChunk playerchunk) {
-        org.spigotmc.AsyncCatcher.catchOp("Async Player Chunk Remove"); // Paper
+        org.spigotmc.AsyncCatcher.catchOp(this.world, "Async Player Chunk Remove"); // Paper // CloudSpigot - only from the owning thread
         ChunkCoordIntPair chunkcoordintpair = playerchunk.a();
         long i = d(chunkcoordintpair.x, chunkcoordintpair.z);
 
@@ -489,6 +506,7 @@ public class PlayerChunkMap {
         this.f.remove(playerchunk);
         this.g.remove(playerchunk);
         this.h.remove(playerchunk);
+        this.waitingForLight.remove(playerchunk); // CloudSpigot
         Chunk chunk = playerchunk.f();
 
         if (chunk != null) {
@@ -423,7 +423,7 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 					return;
 				}
 
-				boolean flag = worldserver.getCubes(entity, entity.getBoundingBox().shrink(0.0625D)).isEmpty();
+				boolean flag = worldserver.hasNoCubes(entity, entity.getBoundingBox().shrink(0.0625D)); // CloudSpigot
 
 				d6 = d3 - this.v;
 				d7 = d4 - this.w - 1.0E-6D;
@@ -453,7 +453,7 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 
 				entity.setLocation(d3, d4, d5, f, f1);
 				player.setLocation(d3, d4, d5, this.player.yaw, this.player.pitch); // CraftBukkit
-				boolean flag2 = worldserver.getCubes(entity, entity.getBoundingBox().shrink(0.0625D)).isEmpty();
+				boolean flag2 = worldserver.hasNoCubes(entity, entity.getBoundingBox().shrink(0.0625D)); // CloudSpigot
 
 				if (flag && (flag1 || !flag2)) {
 					entity.setLocation(d0, d1, d2, f, f1);
@@ -474,40 +474,34 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 					hasMoved = true;
 				}
 				// Spigot End
-				Location from = new Location(player.getWorld(), lastPosX, lastPosY, lastPosZ, lastYaw, lastPitch); // Get
-																													// the
-																													// Players
-																													// previous
-																													// Event
-																													// location.
-				Location to = player.getLocation().clone(); // Start off the To location as the Players current
-															// location.
-
-				// If the packet contains movement information then we update the To location
-				// with the correct XYZ.
-				to.setX(packetplayinvehiclemove.getX());
-				to.setY(packetplayinvehiclemove.getY());
-				to.setZ(packetplayinvehiclemove.getZ());
-
-				// If the packet contains look information then we update the To location with
-				// the correct Yaw & Pitch.
-				to.setYaw(packetplayinvehiclemove.getYaw());
-				to.setPitch(packetplayinvehiclemove.getPitch());
+				// CloudSpigot start - only build the locations if the event is listened to
+				double toX = packetplayinvehiclemove.getX();
+				double toY = packetplayinvehiclemove.getY();
+				double toZ = packetplayinvehiclemove.getZ();
+				float toYaw = packetplayinvehiclemove.getYaw();
+				float toPitch = packetplayinvehiclemove.getPitch();
 
 				// Prevent 40 event-calls for less than a single pixel of movement >.>
-				double delta = Math.pow(this.lastPosX - to.getX(), 2) + Math.pow(this.lastPosY - to.getY(), 2)
-						+ Math.pow(this.lastPosZ - to.getZ(), 2);
-				float deltaAngle = Math.abs(this.lastYaw - to.getYaw()) + Math.abs(this.lastPitch - to.getPitch());
+				double delta = Math.pow(this.lastPosX - toX, 2) + Math.pow(this.lastPosY - toY, 2)
+						+ Math.pow(this.lastPosZ - toZ, 2);
+				float deltaAngle = Math.abs(this.lastYaw - toYaw) + Math.abs(this.lastPitch - toPitch);
 
 				if ((delta > 1f / 256 || deltaAngle > 10f) && !this.player.isFrozen()) {
-					this.lastPosX = to.getX();
-					this.lastPosY = to.getY();
-					this.lastPosZ = to.getZ();
-					this.lastYaw = to.getYaw();
-					this.lastPitch = to.getPitch();
+					Location from = null;
+					Location to = null;
+					if (PlayerMoveEvent.getHandlerList().hasListeners()) {
+						from = new Location(player.getWorld(), lastPosX, lastPosY, lastPosZ, lastYaw, lastPitch); // Get the Players previous Event location.
+						to = new Location(player.getWorld(), toX, toY, toZ, toYaw, toPitch);
+					}
+					this.lastPosX = toX;
+					this.lastPosY = toY;
+					this.lastPosZ = toZ;
+					this.lastYaw = toYaw;
+					this.lastPitch = toPitch;
 
 					// Skip the first time we do this
-					if (true) { // Spigot - don't skip any move events
+					if (from != null) { // Spigot - don't skip any move events
+					// CloudSpigot end
 						Location oldTo = to.clone();
 						PlayerMoveEvent event = new PlayerMoveEvent(player, from, to);
 						this.server.getPluginManager().callEvent(event);
@@ -711,7 +705,7 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 							}
 
 							boolean flag = worldserver
-									.getCubes(this.player, this.player.getBoundingBox().shrink(0.0625D)).isEmpty();
+									.hasNoCubes(this.player, this.player.getBoundingBox().shrink(0.0625D)); // CloudSpigot
 
 							d7 = d4 - this.o;
 							d8 = d5 - this.p;
@@ -778,7 +772,7 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 									this.player.locZ - d2);
 							if (!this.player.noclip && !this.player.isSleeping()) {
 								boolean flag2 = worldserver
-										.getCubes(this.player, this.player.getBoundingBox().shrink(0.0625D)).isEmpty();
+										.hasNoCubes(this.player, this.player.getBoundingBox().shrink(0.0625D)); // CloudSpigot
 
 								if (flag && (flag1 || !flag2)) {
 									this.a(d0, d1, d2, f, f1);
@@ -791,41 +785,37 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 							this.player.setLocation(prevX, prevY, prevZ, prevYaw, prevPitch);
 
 							Player player = this.getPlayer();
-							Location from = new Location(player.getWorld(), lastPosX, lastPosY, lastPosZ, lastYaw,
-									lastPitch); // Get the Players previous Event location.
-							Location to = player.getLocation().clone(); // Start off the To location as the Players
-																		// current location.
-
-							// If the packet contains movement information then we update the To location
-							// with the correct XYZ.
-							if (packetplayinflying.hasPos) {
-								to.setX(packetplayinflying.x);
-								to.setY(packetplayinflying.y);
-								to.setZ(packetplayinflying.z);
-							}
-
-							// If the packet contains look information then we update the To location with
-							// the correct Yaw & Pitch.
-							if (packetplayinflying.hasLook) {
-								to.setYaw(packetplayinflying.yaw);
-								to.setPitch(packetplayinflying.pitch);
-							}
+							// CloudSpigot start - only build the locations if the event is listened to
+							// The To location starts off as the Players current location, updated with the
+							// movement and look information the packet contains.
+							double toX = packetplayinflying.hasPos ? packetplayinflying.x : this.player.locX;
+							double toY = packetplayinflying.hasPos ? packetplayinflying.y : this.player.locY;
+							double toZ = packetplayinflying.hasPos ? packetplayinflying.z : this.player.locZ;
+							float toYaw = packetplayinflying.hasLook ? packetplayinflying.yaw : this.player.getBukkitYaw();
+							float toPitch = packetplayinflying.hasLook ? packetplayinflying.pitch : this.player.pitch;
 
 							// Prevent 40 event-calls for less than a single pixel of movement >.>
-							double delta = Math.pow(this.lastPosX - to.getX(), 2)
-									+ Math.pow(this.lastPosY - to.getY(), 2) + Math.pow(this.lastPosZ - to.getZ(), 2);
-							float deltaAngle = Math.abs(this.lastYaw - to.getYaw())
-									+ Math.abs(this.lastPitch - to.getPitch());
+							double delta = Math.pow(this.lastPosX - toX, 2) + Math.pow(this.lastPosY - toY, 2)
+									+ Math.pow(this.lastPosZ - toZ, 2);
+							float deltaAngle = Math.abs(this.lastYaw - toYaw) + Math.abs(this.lastPitch - toPitch);
 
 							if ((delta > 1f / 256 || deltaAngle > 10f) && !this.player.isFrozen()) {
-								this.lastPosX = to.getX();
-								this.lastPosY = to.getY();
-								this.lastPosZ = to.getZ();
-								this.lastYaw = to.getYaw();
-								this.lastPitch = to.getPitch();
+								Location from = null;
+								Location to = null;
+								if (PlayerMoveEvent.getHandlerList().hasListeners()) {
+									from = new Location(player.getWorld(), lastPosX, lastPosY, lastPosZ, lastYaw,
+											lastPitch); // Get the Players previous Event location.
+									to = new Location(player.getWorld(), toX, toY, toZ, toYaw, toPitch);
+								}
+								this.lastPosX = toX;
+								this.lastPosY = toY;
+								this.lastPosZ = toZ;
+								this.lastYaw = toYaw;
+								this.lastPitch = toPitch;
 
 								// Skip the first time we do this
-								if (from.getX() != Double.MAX_VALUE) {
+								if (from != null && from.getX() != Double.MAX_VALUE) {
+								// CloudSpigot end
 									Location oldTo = to.clone();
 									PlayerMoveEvent event = new PlayerMoveEvent(player, from, to);
 									this.server.getPluginManager().callEvent(event);
@@ -1374,6 +1364,13 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 		}
 		// CraftBukkit end
 
+		// CloudSpigot start - held back until the batch is flushed
+		if (this.packetBatch != null && this.packetBatchThread == Thread.currentThread()) {
+			this.packetBatch.add(packet);
+			return;
+		}
+		// CloudSpigot end
+
 		try {
 			this.networkManager.sendPacket(packet);
 		} catch (Throwable throwable) {
@@ -1393,6 +1390,44 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 		}
 	}
 
+	// CloudSpigot start - packet batching
+	private java.util.List<Packet<?>> packetBatch;
+	private Thread packetBatchThread;
+
+	/**
+	 * Holds back the packets sent from the current thread until
+	 * {@link #flushPacketBatch()}, which writes them with a single flush.
+	 * Packets sent from other threads are not affected.
+	 */
+	public void startPacketBatch() {
+		if (this.packetBatch == null) {
+			this.packetBatch = new ArrayList<Packet<?>>();
+			this.packetBatchThread = Thread.currentThread();
+		}
+	}
+
+	public void flushPacketBatch() {
+		java.util.List<Packet<?>> batch = this.packetBatch;
+		if (batch == null) {
+			return;
+		}
+
+		this.packetBatch = null;
+		this.packetBatchThread = null;
+		if (batch.isEmpty() || this.processedDisconnect) {
+			return;
+		}
+
+		try {
+			this.networkManager.sendPacketBatch(batch);
+		} catch (Throwable throwable) {
+			CrashReport crashreport = CrashReport.a(throwable, "Sending packet batch");
+			crashreport.a("Packets being sent").a("Packet count", batch.size());
+			throw new ReportedException(crashreport);
+		}
+	}
+	// CloudSpigot end
+
 	public void a(PacketPlayInHeldItemSlot packetplayinhelditemslot) {
 		PlayerConnectionUtils.ensureMainThread(packetplayinhelditemslot, this, this.player.x());
 		if (this.player.isFrozen())
@@ -1584,7 +1619,7 @@ public class PlayerConnection implements PacketListenerPlayIn, ITickable {
 			AsyncPlayerChatEvent event = new AsyncPlayerChatEvent(async, player, s, new LazyPlayerSet(minecraftServer));
 			this.server.getPluginManager().callEvent(event);
 
-			if (PlayerChatEvent.getHandlerList().getRegisteredListeners().length != 0) {
+			if (PlayerChatEvent.getHandlerList().hasListeners()) {
 				// Evil plugins still listening to deprecated event
 				final PlayerChatEvent queueEvent = new PlayerChatEvent(player, event.getMessage(), event.getFormat(),
 						event.getRecipients());
@@ -617,6 +617,13 @@ public abstract class PlayerList {
     }
 
     public EntityPlayer moveToWorld(EntityPlayer entityplayer, int i, boolean flag, Location location, boolean avoidSuffocation) {
+        // CloudSpigot start - the target world may be ticking on another thread
+        if (eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread()) {
+            final Location target = location;
+            eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.moveToWorld(entityplayer, i, flag, target, avoidSuffocation));
+            return entityplayer;
+        }
+        // CloudSpigot end
         entityplayer.stopRiding(); // CraftBukkit
         entityplayer.x().getTracker().untrackPlayer(entityplayer);
         // entityplayer.x().getTracker().untrackEntity(entityplayer); // CraftBukkit
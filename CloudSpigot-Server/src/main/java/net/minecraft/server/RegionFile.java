@@ -35,6 +35,11 @@ public class RegionFile {
     private List<Boolean> f;
     private int g;
     private long h;
+    // CloudSpigot start - reader/writer separation and safe eviction
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private final java.util.concurrent.atomic.AtomicInteger users = new java.util.concurrent.atomic.AtomicInteger(); // -1 once closed
+    volatile long lastAccess;
+    // CloudSpigot end
 
     public RegionFile(File file) {
         this.b = file;
@@ -124,10 +129,11 @@ public class RegionFile {
     }
 
     @Nullable
-    public synchronized DataInputStream getReadStream(int i, int j) { return a(i, j); } @Nullable public synchronized DataInputStream a(int i, int j) { // Paper - OBFHELPER
+    public DataInputStream getReadStream(int i, int j) { return a(i, j); } @Nullable public DataInputStream a(int i, int j) { // Paper - OBFHELPER // CloudSpigot - read lock instead of synchronized
         if (this.d(i, j)) {
             return null;
         } else {
+            this.lock.readLock().lock(); // CloudSpigot
             try {
                 int k = this.getOffset(i, j);
 
@@ -138,16 +144,17 @@ public class RegionFile {
                     int i1 = k & 255;
                     // Spigot start
                     if (i1 == 255) {
-                        this.c.seek(l * 4096);
-                        i1 = (this.c.readInt() + 4) / 4096 + 1;
+                        i1 = (this.readInt(l * 4096L) + 4) / 4096 + 1; // CloudSpigot - positional read
                     }
                     // Spigot end
 
                     if (l + i1 > this.f.size()) {
                         return null;
                     } else {
-                        this.c.seek((long) (l * 4096));
-                        int j1 = this.c.readInt();
+                        // CloudSpigot start - positional reads, concurrent readers do not share the file pointer
+                        ByteBuffer header = this.read((long) (l * 4096), 5);
+                        int j1 = header.getInt(0);
+                        // CloudSpigot end
 
                         if (j1 > 4096 * i1) {
                             org.bukkit.Bukkit.getLogger().log(java.util.logging.Level.WARNING, "Invalid chunk: ({0}, {1}) Offset: {2} Invalid Size: {3}>{4} {5}", new Object[]{i, j, l, j1, i1 * 4096, this.b}); // Spigot
@@ -156,35 +163,261 @@ public class RegionFile {
                             org.bukkit.Bukkit.getLogger().log(java.util.logging.Level.WARNING, "Invalid chunk: ({0}, {1}) Offset: {2} Invalid Size: {3} {4}", new Object[]{i, j, l, j1, this.b}); // Spigot
                             return null;
                         } else {
-                            byte b0 = this.c.readByte();
-                            byte[] abyte;
-
-                            if (b0 == 1) {
-                                abyte = new byte[j1 - 1];
-                                this.c.read(abyte);
-                                return new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(abyte))));
-                            } else if (b0 == 2) {
-                                abyte = new byte[j1 - 1];
-                                this.c.read(abyte);
-                                return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(abyte))));
+                            // CloudSpigot start - look up the codec by type byte
+                            Codec codec = RegionFile.codecs[header.get(4) & 255];
+
+                            if (codec != null) {
+                                ByteBuffer data = this.read((long) (l * 4096 + 5), j1 - 1);
+                                if (data.isDirect()) {
+                                    // a slice of the mapping, inflated now while the read lock keeps its sectors from being reused
+                                    try (java.io.InputStream in = codec.decompress(data)) {
+                                        return new DataInputStream(new ByteArrayInputStream(com.google.common.io.ByteStreams.toByteArray(in)));
+                                    }
+                                }
+                                return new DataInputStream(new BufferedInputStream(codec.decompress(data)));
                             } else {
                                 return null;
                             }
+                            // CloudSpigot end
                         }
                     }
                 }
             } catch (IOException ioexception) {
                 return null;
+            } finally {
+                this.lock.readLock().unlock(); // CloudSpigot
             }
         }
     }
 
+    // CloudSpigot start
+    private int readInt(long position) throws IOException {
+        return this.read(position, 4).getInt(0);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (com.destroystokyo.paper.PaperConfig.useMappedRegionFiles) {
+            return this.getMappedSlice(position, length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        this.readFully(buffer, position);
+        return buffer;
+    }
+
+    private final Object mapLock = new Object();
+    private volatile java.nio.MappedByteBuffer mapped; // unmapped and cleared under the write lock when the file grows
+
+    /**
+     * @return a slice of the mapping, only valid while the caller holds the
+     *         read lock, a write may reuse the sectors once it is released
+     */
+    private ByteBuffer getMappedSlice(long position, int length) throws IOException {
+        java.nio.MappedByteBuffer buffer = this.mapped;
+        if (buffer == null) {
+            synchronized (this.mapLock) {
+                buffer = this.mapped;
+                if (buffer == null) {
+                    java.nio.channels.FileChannel channel = this.c.getChannel();
+                    buffer = channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                    this.mapped = buffer;
+                }
+            }
+        }
+        if (position + length > buffer.capacity()) {
+            throw new EOFException();
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) position);
+        slice.limit((int) position + length);
+        return slice.slice();
+    }
+
+    private static final java.util.function.Consumer<ByteBuffer> UNMAPPER = createUnmapper();
+
+    private static java.util.function.Consumer<ByteBuffer> createUnmapper() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            java.lang.reflect.Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not available, try the Java 8 cleaner
+        }
+        try {
+            java.lang.reflect.Method cleanerMethod = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            java.lang.reflect.Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                try {
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleanMethod.invoke(cleaner);
+                    }
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            MinecraftServer.LOGGER.warn("Mapped region files cannot be unmapped on this runtime, old mappings stay open until they are garbage collected", e);
+            return null;
+        }
+    }
+
+    /**
+     * Releases the mapping right away instead of when it is collected, callers
+     * hold the write lock so no reader is copying from it.
+     */
+    private void unmap() {
+        java.nio.MappedByteBuffer buffer = this.mapped;
+        if (buffer == null) {
+            return;
+        }
+        this.mapped = null;
+        if (RegionFile.UNMAPPER != null) {
+            try {
+                RegionFile.UNMAPPER.accept(buffer);
+            } catch (RuntimeException e) {
+                MinecraftServer.LOGGER.warn("Could not unmap " + this.b, e);
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        java.nio.channels.FileChannel channel = this.c.getChannel();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Marks this file as in use so the cache does not close it, fails if it was already closed.
+     */
+    boolean acquire() {
+        for (;;) {
+            int count = this.users.get();
+            if (count < 0) {
+                return false;
+            }
+            if (this.users.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        this.users.decrementAndGet();
+    }
+
+    /**
+     * Closes this file once the threads using it released it, new users are
+     * turned away as soon as it is unused.
+     */
+    public void closeWhenUnused() throws IOException {
+        for (;;) {
+            int count = this.users.get();
+            if (count < 0) {
+                return; // closed already
+            }
+            if (count == 0 && this.users.compareAndSet(0, -1)) {
+                this.c();
+                return;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Closes this file if no other thread is using it.
+     */
+    boolean tryClose() throws IOException {
+        if (!this.users.compareAndSet(0, -1)) {
+            return false;
+        }
+        this.c();
+        return true;
+    }
+    // CloudSpigot end
+
     @Nullable
     public DataOutputStream getWriteStream(int i, int j) { return b(i, j); } @Nullable public DataOutputStream b(int i, int j) { // Paper - OBFHELPER
-        return this.d(i, j) ? null : new DataOutputStream(new RegionFile.ChunkBuffer(i, j)); // Paper - remove middleware, move deflate to .close() for dynamic levels
+        return this.getWriteStream(i, j, RegionFile.COMPRESSION_ZLIB, java.util.zip.Deflater.DEFAULT_COMPRESSION); // CloudSpigot
+    }
+
+    // CloudSpigot start
+    @Nullable
+    public DataOutputStream getWriteStream(int i, int j, int type, int level) {
+        if (RegionFile.codecs[type & 255] == null) {
+            throw new IllegalArgumentException("Unknown chunk compression type " + type);
+        }
+        return this.d(i, j) ? null : new DataOutputStream(new RegionFile.ChunkBuffer(i, j, type, level)); // Paper - remove middleware, move deflate to .close() for dynamic levels
+    }
+
+    /**
+     * @return the compression type byte of the stored chunk, or -1 if the chunk does not exist
+     */
+    public int getCompressionType(int i, int j) {
+        if (this.d(i, j)) {
+            return -1;
+        }
+        this.lock.readLock().lock();
+        try {
+            int k = this.getOffset(i, j);
+
+            if (k == 0) {
+                return -1;
+            }
+            return this.read((long) ((k >> 8) * 4096 + 4), 1).get(0) & 255;
+        } catch (IOException ioexception) {
+            return -1;
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
-    protected synchronized void a(int i, int j, byte[] abyte, int k) {
+    /**
+     * Rewrites the chunk with the given codec if it was stored with another one,
+     * or always if forced. The level a chunk was stored with is not known, a new
+     * level needs a forced rewrite.
+     *
+     * @return true if the chunk was rewritten
+     */
+    public boolean recompress(int i, int j, int type, int level, boolean force) throws IOException {
+        int current = this.getCompressionType(i, j);
+
+        if (current == -1 || current == type && !force) {
+            return false;
+        }
+        byte[] data;
+        try (DataInputStream in = this.a(i, j)) {
+            if (in == null) {
+                return false;
+            }
+            data = com.google.common.io.ByteStreams.toByteArray(in);
+        }
+        try (DataOutputStream out = this.getWriteStream(i, j, type, level)) {
+            out.write(data);
+        }
+        return true;
+    }
+
+    protected void a(int i, int j, byte[] abyte, int k) {
+        this.a(i, j, abyte, k, RegionFile.COMPRESSION_ZLIB);
+    }
+    // CloudSpigot end
+
+    protected void a(int i, int j, byte[] abyte, int k, int type) { // CloudSpigot - compression type
+        this.lock.writeLock().lock(); // CloudSpigot - write lock instead of synchronized
         try {
             int l = this.getOffset(i, j);
             int i1 = l >> 8;
@@ -206,7 +439,7 @@ public class RegionFile {
             }
 
             if (i1 != 0 && j1 == k1) {
-                this.a(i1, abyte, k);
+                this.a(i1, abyte, k, type); // CloudSpigot
             } else {
                 int l1;
 
@@ -245,7 +478,7 @@ public class RegionFile {
                         this.f.set(i1 + j2, false);
                     }
 
-                    this.a(i1, abyte, k);
+                    this.a(i1, abyte, k, type); // CloudSpigot
                 } else {
                     this.c.seek(this.c.length());
                     i1 = this.f.size();
@@ -256,7 +489,8 @@ public class RegionFile {
                     }
 
                     this.g += 4096 * k1;
-                    this.a(i1, abyte, k);
+                    this.unmap(); // CloudSpigot - the file grew, readers map it again
+                    this.a(i1, abyte, k, type); // CloudSpigot
                     this.a(i, j, i1 << 8 | (k1 > 255 ? 255 : k1)); // Spigot
                 }
             }
@@ -264,14 +498,16 @@ public class RegionFile {
             this.b(i, j, (int) (MinecraftServer.aw() / 1000L));
         } catch (IOException ioexception) {
             org.spigotmc.SneakyThrow.sneaky(ioexception); // Paper - we want the upper try/catch to retry this
+        } finally {
+            this.lock.writeLock().unlock(); // CloudSpigot
         }
 
     }
 
-    private void a(int i, byte[] abyte, int j) throws IOException {
+    private void a(int i, byte[] abyte, int j, int type) throws IOException { // CloudSpigot - compression type
         this.c.seek((long) (i * 4096));
         this.c.writeInt(j + 1);
-        this.c.writeByte(2);
+        this.c.writeByte(type); // CloudSpigot
         this.c.write(abyte, 0, j);
     }
 
@@ -279,12 +515,19 @@ public class RegionFile {
         return i < 0 || i >= 32 || j < 0 || j >= 32;
     }
 
-    private synchronized int getOffset(int i, int j) {
+    private int getOffset(int i, int j) { // CloudSpigot - callers hold the lock
         return this.d[i + j * 32];
     }
 
     public boolean c(int i, int j) {
-        return this.getOffset(i, j) != 0;
+        // CloudSpigot start
+        this.lock.readLock().lock();
+        try {
+            return this.getOffset(i, j) != 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        // CloudSpigot end
     }
 
     private void a(int i, int j, int k) throws IOException {
@@ -300,35 +543,47 @@ public class RegionFile {
     }
 
     public void c() throws IOException {
-        if (this.c != null) {
-            this.c.close();
+        this.users.set(-1); // CloudSpigot - no new users once closed
+        this.lock.writeLock().lock(); // CloudSpigot - let in-flight reads and writes finish
+        try {
+            this.unmap(); // CloudSpigot
+            if (this.c != null) {
+                this.c.close();
+            }
+        } finally {
+            this.lock.writeLock().unlock(); // CloudSpigot
         }
 
     }
 
     // Paper start
     public synchronized void deleteChunk(int j1) {
-        backup();
-        int k = offsets[j1];
-        int x = j1 & 1024;
-        int z = j1 >> 2;
-        int offset = (k >> 8);
-        int len = (k & 255);
-        org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager.getLogger();
-        String debug = "idx:" + + j1 + " - " + x + "," + z + " - offset: " + offset + " - len: " + len;
+        this.lock.writeLock().lock(); // CloudSpigot
         try {
-            RandomAccessFile file = getDataFile();
-            file.seek(j1 * 4);
-            file.writeInt(0);
-            // clear the timestamp
-            file.seek(4096 + j1 * 4);
-            file.writeInt(0);
-            timestamps[j1] = 0;
-            offsets[j1] = 0;
-            logger.error("Deleted corrupt chunk (" + debug + ") " + getFile().getAbsolutePath(), e);
-        } catch (IOException e) {
-
-            logger.error("Error deleting corrupt chunk (" + debug + ") " + getFile().getAbsolutePath(), e);
+            backup();
+            int k = offsets[j1];
+            int x = j1 & 1024;
+            int z = j1 >> 2;
+            int offset = (k >> 8);
+            int len = (k & 255);
+            org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager.getLogger();
+            String debug = "idx:" + + j1 + " - " + x + "," + z + " - offset: " + offset + " - len: " + len;
+            try {
+                RandomAccessFile file = getDataFile();
+                file.seek(j1 * 4);
+                file.writeInt(0);
+                // clear the timestamp
+                file.seek(4096 + j1 * 4);
+                file.writeInt(0);
+                timestamps[j1] = 0;
+                offsets[j1] = 0;
+                logger.error("Deleted corrupt chunk (" + debug + ") " + getFile().getAbsolutePath(), e);
+            } catch (IOException e) {
+
+                logger.error("Error deleting corrupt chunk (" + debug + ") " + getFile().getAbsolutePath(), e);
+            }
+        } finally {
+            this.lock.writeLock().unlock(); // CloudSpigot
         }
     }
     private boolean backedUp = false;
@@ -463,43 +718,164 @@ public class RegionFile {
 
         private final int b;
         private final int c;
+        // CloudSpigot start
+        private final int type;
+        private final int level;
 
-        public ChunkBuffer(int i, int j) {
+        public ChunkBuffer(int i, int j, int type, int level) {
             super(8096);
             this.b = i;
             this.c = j;
+            this.type = type;
+            this.level = level;
         }
+        // CloudSpigot end
 
         public void close() throws IOException {
             // Paper start - apply dynamic compression
             int origLength = this.count;
             byte[] buf = this.buf;
-            DirectByteArrayOutputStream out = compressData(buf, origLength);
+            DirectByteArrayOutputStream out = new DirectByteArrayOutputStream(origLength); // CloudSpigot
+            RegionFile.codecs[this.type & 255].compress(buf, origLength, this.level, out); // CloudSpigot
             byte[] bytes = out.getBuffer();
             int length = out.size();
 
-            RegionFile.this.a(this.b, this.c, bytes, length); // Paper - change to bytes/length
+            RegionFile.this.a(this.b, this.c, bytes, length, this.type); // Paper - change to bytes/length // CloudSpigot - compression type
         }
     }
 
-    private static final byte[] compressionBuffer = new byte[1024 * 64]; // 64k fits most standard chunks input size even, ideally 1 pass through zlib
-    private static final java.util.zip.Deflater deflater = new java.util.zip.Deflater();
-    // since file IO is single threaded, no benefit to using per-region file buffers/synchronization, we can change that later if it becomes viable.
-    private static DirectByteArrayOutputStream compressData(byte[] buf, int length) throws IOException {
-        synchronized (deflater) {
-            deflater.setInput(buf, 0, length);
-            deflater.finish();
+    // CloudSpigot start - file IO has multiple workers now, keep one deflater per thread
+    private static final ThreadLocal<byte[]> compressionBuffer = ThreadLocal.withInitial(() -> new byte[1024 * 64]); // 64k fits most standard chunks input size even, ideally 1 pass through zlib
+    private static final ThreadLocal<java.util.zip.Deflater> deflaterCache = ThreadLocal.withInitial(java.util.zip.Deflater::new);
+    // CloudSpigot end
+    private static void compressData(byte[] buf, int length, int level, ByteArrayOutputStream out) throws IOException { // CloudSpigot - configurable level
+        final byte[] compressionBuffer = RegionFile.compressionBuffer.get(); // CloudSpigot
+        final java.util.zip.Deflater deflater = deflaterCache.get(); // CloudSpigot
+        deflater.setLevel(level); // CloudSpigot
+        deflater.setInput(buf, 0, length);
+        deflater.finish();
 
 
-            DirectByteArrayOutputStream out = new DirectByteArrayOutputStream(length);
-            while (!deflater.finished()) {
-                out.write(compressionBuffer, 0, deflater.deflate(compressionBuffer));
-            }
-            out.close();
-            deflater.reset();
-            return out;
+        while (!deflater.finished()) {
+            out.write(compressionBuffer, 0, deflater.deflate(compressionBuffer));
         }
+        out.close();
+        deflater.reset();
     }
     // Paper end
 
+    // CloudSpigot start - pluggable chunk compression
+    public static final int COMPRESSION_GZIP = 1;
+    public static final int COMPRESSION_ZLIB = 2;
+    public static final int COMPRESSION_NONE = 3;
+    public static final int COMPRESSION_SNAPPY = 126; // outside of the range vanilla may claim
+
+    private static final Codec[] codecs = new Codec[256];
+    private static final java.util.Map<String, Integer> codecNames = new java.util.concurrent.ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Compresses and decompresses chunk payloads. Every stored chunk is prefixed
+     * with the type byte of the codec that wrote it, so chunks written with
+     * different codecs can live in the same region file.
+     */
+    public interface Codec {
+
+        java.io.InputStream decompress(ByteBuffer data) throws IOException;
+
+        void compress(byte[] buf, int length, int level, ByteArrayOutputStream out) throws IOException;
+    }
+
+    public static void registerCodec(int type, String name, Codec codec) {
+        if (type <= 0 || type > 255) {
+            throw new IllegalArgumentException("Compression type must be between 1 and 255");
+        }
+        RegionFile.codecs[type] = codec;
+        RegionFile.codecNames.put(name.toLowerCase(java.util.Locale.ROOT), type);
+    }
+
+    /**
+     * @return the type byte registered under the given name, or -1 if unknown
+     */
+    public static int getCodecType(String name) {
+        return RegionFile.codecNames.getOrDefault(name.toLowerCase(java.util.Locale.ROOT), -1);
+    }
+
+    public static java.util.Set<String> getCodecNames() {
+        return java.util.Collections.unmodifiableSet(RegionFile.codecNames.keySet());
+    }
+
+    private static java.io.InputStream stream(ByteBuffer data) {
+        return new io.netty.buffer.ByteBufInputStream(io.netty.buffer.Unpooled.wrappedBuffer(data));
+    }
+
+    static {
+        registerCodec(COMPRESSION_GZIP, "gzip", new Codec() {
+            public java.io.InputStream decompress(ByteBuffer data) throws IOException {
+                return new GZIPInputStream(RegionFile.stream(data));
+            }
+
+            public void compress(byte[] buf, int length, int level, ByteArrayOutputStream out) throws IOException {
+                try (java.util.zip.GZIPOutputStream gzip = new java.util.zip.GZIPOutputStream(out) {{ this.def.setLevel(level); }}) {
+                    gzip.write(buf, 0, length);
+                }
+            }
+        });
+        registerCodec(COMPRESSION_ZLIB, "zlib", new Codec() {
+            public java.io.InputStream decompress(ByteBuffer data) throws IOException {
+                return new InflaterInputStream(RegionFile.stream(data));
+            }
+
+            public void compress(byte[] buf, int length, int level, ByteArrayOutputStream out) throws IOException {
+                RegionFile.compressData(buf, length, level, out);
+            }
+        });
+        registerCodec(COMPRESSION_NONE, "none", new Codec() {
+            public java.io.InputStream decompress(ByteBuffer data) throws IOException {
+                return RegionFile.stream(data);
+            }
+
+            public void compress(byte[] buf, int length, int level, ByteArrayOutputStream out) throws IOException {
+                out.write(buf, 0, length);
+            }
+        });
+        // the raw snappy encoder only handles blocks up to Short.MAX_VALUE bytes, larger
+        // chunks are split into blocks, each prefixed with its encoded length
+        registerCodec(COMPRESSION_SNAPPY, "snappy", new Codec() {
+            public java.io.InputStream decompress(ByteBuffer data) throws IOException {
+                io.netty.buffer.ByteBuf input = io.netty.buffer.Unpooled.wrappedBuffer(data);
+                io.netty.buffer.ByteBuf decoded = io.netty.buffer.Unpooled.buffer(data.remaining() * 2);
+                io.netty.handler.codec.compression.Snappy snappy = new io.netty.handler.codec.compression.Snappy();
+                try {
+                    while (input.isReadable()) {
+                        snappy.decode(input.readSlice(input.readInt()), decoded);
+                        snappy.reset();
+                    }
+                } catch (RuntimeException e) {
+                    decoded.release();
+                    throw new IOException("Corrupt snappy chunk", e);
+                }
+                return new io.netty.buffer.ByteBufInputStream(decoded, true);
+            }
+
+            public void compress(byte[] buf, int length, int level, ByteArrayOutputStream out) throws IOException {
+                io.netty.buffer.ByteBuf input = io.netty.buffer.Unpooled.wrappedBuffer(buf, 0, length);
+                io.netty.buffer.ByteBuf encoded = io.netty.buffer.Unpooled.buffer(length / 2 + 16);
+                io.netty.handler.codec.compression.Snappy snappy = new io.netty.handler.codec.compression.Snappy();
+                try {
+                    while (input.isReadable()) {
+                        int block = Math.min(input.readableBytes(), Short.MAX_VALUE);
+                        int lengthIndex = encoded.writerIndex();
+                        encoded.writeInt(0);
+                        snappy.encode(input.readSlice(block), encoded, block);
+                        encoded.setInt(lengthIndex, encoded.writerIndex() - lengthIndex - 4);
+                    }
+                    encoded.readBytes(out, encoded.readableBytes());
+                } finally {
+                    encoded.release();
+                }
+            }
+        });
+    }
+    // CloudSpigot end
+
 }
@@ -9,71 +9,102 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
 import com.destroystokyo.paper.PaperConfig; // Paper
-import java.util.LinkedHashMap; // Paper
+import java.util.List; // CloudSpigot
 
 public class RegionFileCache {
 
-    public static final Map<File, RegionFile> a = new LinkedHashMap(PaperConfig.regionFileCacheSize, 0.75f, true); // Spigot - private -> public, Paper - HashMap -> LinkedHashMap
+    public static final Map<File, RegionFile> a = new java.util.concurrent.ConcurrentHashMap<File, RegionFile>(PaperConfig.regionFileCacheSize, 0.75f, 16); // Spigot - private -> public, Paper - HashMap -> LinkedHashMap // CloudSpigot - concurrent, LRU order is tracked per file
+    private static final java.util.concurrent.atomic.AtomicLong accessCounter = new java.util.concurrent.atomic.AtomicLong(); // CloudSpigot
+    private static final Object trimLock = new Object(); // CloudSpigot
 
-    public static synchronized RegionFile getRegionFile(File file, int i, int j) { return a(file, i, j); } // Paper - OBFHELPER
-    public static synchronized RegionFile a(File file, int i, int j) {
+    public static RegionFile getRegionFile(File file, int i, int j) { return a(file, i, j); } // Paper - OBFHELPER
+    public static RegionFile a(File file, int i, int j) { // CloudSpigot - remove global synchronization
         File file1 = new File(file, "region");
         File file2 = new File(file1, "r." + (i >> 5) + "." + (j >> 5) + ".mca");
         RegionFile regionfile = (RegionFile) RegionFileCache.a.get(file2);
 
-        if (regionfile != null) {
-            return regionfile;
-        } else {
-            if (!file1.exists()) {
-                file1.mkdirs();
-            }
+        if (regionfile == null) {
+            // CloudSpigot start - only the bin of this region is locked while the file is opened
+            regionfile = RegionFileCache.a.computeIfAbsent(file2, key -> {
+                if (!file1.exists()) {
+                    file1.mkdirs();
+                }
+
+                RegionFile created = new RegionFile(key);
+                created.lastAccess = accessCounter.incrementAndGet();
+                return created;
+            });
 
-            if (RegionFileCache.a.size() >= PaperConfig.regionFileCacheSize) { // Paper
+            if (RegionFileCache.a.size() > PaperConfig.regionFileCacheSize) { // Paper
                 trimCache(); // Paper
             }
-
-            RegionFile regionfile1 = new RegionFile(file2);
-
-            RegionFileCache.a.put(file2, regionfile1);
-            return regionfile1;
+            // CloudSpigot end
         }
+
+        regionfile.lastAccess = accessCounter.incrementAndGet(); // CloudSpigot
+        return regionfile;
     }
 
-    public static synchronized RegionFile b(File file, int i, int j) {
+    public static RegionFile b(File file, int i, int j) { // CloudSpigot - remove global synchronization
         File file1 = new File(file, "region");
         File file2 = new File(file1, "r." + (i >> 5) + "." + (j >> 5) + ".mca");
         RegionFile regionfile = (RegionFile) RegionFileCache.a.get(file2);
 
         if (regionfile != null) {
+            regionfile.lastAccess = accessCounter.incrementAndGet(); // CloudSpigot
             return regionfile;
         } else if (file1.exists() && file2.exists()) {
-            if (RegionFileCache.a.size() >= 256) {
-                a();
-            }
-
-            RegionFile regionfile1 = new RegionFile(file2);
-
-            RegionFileCache.a.put(file2, regionfile1);
-            return regionfile1;
+            return a(file, i, j); // CloudSpigot
         } else {
             return null;
         }
     }
 
+    // CloudSpigot start
+    /**
+     * Looks up a region file and marks it as in use, so it is not closed by a concurrent trim.
+     * The caller must call {@link RegionFile#release()} once done.
+     */
+    @javax.annotation.Nullable
+    private static RegionFile acquire(File file, int i, int j, boolean create) {
+        while (true) {
+            RegionFile regionfile = create ? a(file, i, j) : b(file, i, j);
+            if (regionfile == null || regionfile.acquire()) {
+                return regionfile;
+            }
+            // Closed by a trim between the lookup and acquire, it is removed from the map right after
+            Thread.yield();
+        }
+    }
+    // CloudSpigot end
+
     // Paper Start
-    private static synchronized void trimCache() {
-        Iterator<Map.Entry<File, RegionFile>> itr = RegionFileCache.a.entrySet().iterator();
-        int count = RegionFileCache.a.size() - PaperConfig.regionFileCacheSize;
-        while (count-- >= 0 && itr.hasNext()) {
-            try {
-                itr.next().getValue().c();
-            } catch (IOException ioexception) {
-                ioexception.printStackTrace();
-                ServerInternalException.reportInternalException(ioexception);
+    // CloudSpigot start - evict the least recently used files that no other thread is using
+    private static void trimCache() {
+        synchronized (trimLock) {
+            int count = RegionFileCache.a.size() - PaperConfig.regionFileCacheSize;
+            if (count <= 0) {
+                return;
+            }
+
+            List<Map.Entry<File, RegionFile>> entries = new java.util.ArrayList<Map.Entry<File, RegionFile>>(RegionFileCache.a.entrySet());
+            entries.sort(java.util.Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            for (Iterator<Map.Entry<File, RegionFile>> itr = entries.iterator(); count > 0 && itr.hasNext(); ) {
+                Map.Entry<File, RegionFile> entry = itr.next();
+                try {
+                    if (!entry.getValue().tryClose()) {
+                        continue; // in use
+                    }
+                } catch (IOException ioexception) {
+                    ioexception.printStackTrace();
+                    ServerInternalException.reportInternalException(ioexception);
+                }
+                RegionFileCache.a.remove(entry.getKey(), entry.getValue());
+                --count;
             }
-            itr.remove();
         }
     }
+    // CloudSpigot end
     private static void printOversizedLog(String msg, File file, int x, int z) {
         org.apache.logging.log4j.LogManager.getLogger().fatal(msg + " (" + file.toString().replaceAll(".+[\\\\/]", "") + " - " + x + "," + z + ") Go clean it up to remove this message. /minecraft:tp " + (x<<4)+" 128 "+(z<<4) + " - DO NOT REPORT THIS TO PAPER - You may ask for help on Discord, but do not file an issue. These error messages can not be removed.");
     }
@@ -93,10 +124,11 @@ public class RegionFileCache {
         return SIZE_THRESHOLD == OVERZEALOUS_THRESHOLD;
     }
 
-    private static void writeRegion(File file, int x, int z, NBTTagCompound nbttagcompound) throws IOException {
-        RegionFile regionfile = getRegionFile(file, x, z);
+    private static void writeRegion(File file, int x, int z, NBTTagCompound nbttagcompound, int type, int level) throws IOException { // CloudSpigot - compression
+        RegionFile regionfile = acquire(file, x, z, true); // CloudSpigot
+        try { // CloudSpigot
 
-        DataOutputStream out = regionfile.getWriteStream(x & 31, z & 31);
+        DataOutputStream out = regionfile.getWriteStream(x & 31, z & 31, type, level); // CloudSpigot
         try {
             NBTCompressedStreamTools.writeNBT(nbttagcompound, out);
             out.close();
@@ -109,7 +141,7 @@ public class RegionFileCache {
             NBTTagCompound oversizedData = filterChunkData(nbttagcompound);
             //noinspection SynchronizationOnLocalVariableOrMethodParameter
             synchronized (regionfile) {
-                out = regionfile.getWriteStream(x & 31, z & 31);
+                out = regionfile.getWriteStream(x & 31, z & 31, type, level); // CloudSpigot
                 NBTCompressedStreamTools.writeNBT(nbttagcompound, out);
                 try {
                     out.close();
@@ -130,6 +162,11 @@ public class RegionFileCache {
             e.printStackTrace();
             throw e;
         }
+        // CloudSpigot start
+        } finally {
+            regionfile.release();
+        }
+        // CloudSpigot end
 
     }
 
@@ -209,28 +246,29 @@ public class RegionFileCache {
 
     // Paper End
 
-    public static synchronized void a() {
-        Iterator iterator = RegionFileCache.a.values().iterator();
+    public static void a() { // CloudSpigot - remove global synchronization
+        // CloudSpigot start - wait for the threads using a file, it stays mapped until closed so no second instance opens it
+        Iterator<Map.Entry<File, RegionFile>> iterator = RegionFileCache.a.entrySet().iterator();
 
         while (iterator.hasNext()) {
-            RegionFile regionfile = (RegionFile) iterator.next();
+            Map.Entry<File, RegionFile> entry = iterator.next();
+            RegionFile regionfile = entry.getValue();
 
             try {
-                if (regionfile != null) {
-                    regionfile.c();
-                }
+                regionfile.closeWhenUnused();
             } catch (IOException ioexception) {
                 ioexception.printStackTrace();
                 ServerInternalException.reportInternalException(ioexception); // Paper
             }
+            RegionFileCache.a.remove(entry.getKey(), regionfile);
         }
-
-        RegionFileCache.a.clear();
+        // CloudSpigot end
     }
 
     // CraftBukkit start - call sites hoisted for synchronization
     public static NBTTagCompound d(File file, int i, int j) throws IOException { // Paper - remove synchronization
-        RegionFile regionfile = a(file, i, j);
+        RegionFile regionfile = acquire(file, i, j, true); // CloudSpigot
+        try { // CloudSpigot
         // Paper start
         if (regionfile.isOversized(i, j)) {
             printOversizedLog("Loading Oversized Chunk!", file, i, j);
@@ -245,10 +283,20 @@ public class RegionFileCache {
         }
 
         return NBTCompressedStreamTools.a(datainputstream);
+        // CloudSpigot start
+        } finally {
+            regionfile.release();
+        }
+        // CloudSpigot end
     }
 
     public static void e(File file, int i, int j, NBTTagCompound nbttagcompound) throws IOException { // Paper - remove synchronization
-        writeRegion(file, i, j, nbttagcompound); // Paper - moved to own method
+        e(file, i, j, nbttagcompound, RegionFile.COMPRESSION_ZLIB, java.util.zip.Deflater.DEFAULT_COMPRESSION); // CloudSpigot
+    }
+
+    // CloudSpigot start
+    public static void e(File file, int i, int j, NBTTagCompound nbttagcompound, int type, int level) throws IOException {
+        writeRegion(file, i, j, nbttagcompound, type, level); // Paper - moved to own method
         // Paper start
 //      RegionFile regionfile = a(file, i, j);
 //
@@ -259,9 +307,51 @@ public class RegionFileCache {
     }
     // CraftBukkit end
 
+    /**
+     * Rewrites every chunk of the region holding the given chunk that is not stored
+     * with the given codec. Must run on the FileIOThread worker owning the region so
+     * it is ordered with pending saves, see {@link FileIOThread#a(File, int, int, Runnable)}.
+     *
+     * @return the number of rewritten chunks
+     */
+    public static int recompress(File file, int i, int j, int type, int level, boolean force) throws IOException {
+        RegionFile regionfile = acquire(file, i, j, false);
+
+        if (regionfile == null) {
+            return 0;
+        }
+        try {
+            int count = 0;
+            for (int x = 0; x < 32; ++x) {
+                for (int z = 0; z < 32; ++z) {
+                    try {
+                        if (regionfile.recompress(x, z, type, level, force)) {
+                            ++count;
+                        }
+                    } catch (RegionFile.ChunkTooLargeException e) {
+                        // keep the old encoding, the chunk does not fit with this codec
+                    }
+                }
+            }
+            return count;
+        } finally {
+            regionfile.release();
+        }
+    }
+    // CloudSpigot end
+
     public static boolean chunkExists(File file, int i, int j) { // Paper - remove synchronization
-        RegionFile regionfile = b(file, i, j);
+        RegionFile regionfile = acquire(file, i, j, false); // CloudSpigot
 
-        return regionfile != null ? regionfile.c(i & 31, j & 31) : false;
+        // CloudSpigot start
+        if (regionfile == null) {
+            return false;
+        }
+        try {
+            return regionfile.c(i & 31, j & 31);
+        } finally {
+            regionfile.release();
+        }
+        // CloudSpigot end
     }
 }
@@ -1,5 +1,6 @@
 package net.minecraft.server;
 
+import co.aikar.timings.MinecraftTimings; // CloudSpigot
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.bootstrap.ServerBootstrap;
@@ -15,6 +16,7 @@ import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler; // CloudSpigot
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
@@ -99,7 +101,16 @@ public class ServerConnection {
                         ;
                     }
 
-                    channel.pipeline().addLast("timeout", new ReadTimeoutHandler(30)).addLast("legacy_query", new LegacyPingHandler(ServerConnection.this)).addLast("splitter", new PacketSplitter()).addLast("decoder", new PacketDecoder(EnumProtocolDirection.SERVERBOUND)).addLast("prepender", new PacketPrepender()).addLast("encoder", new PacketEncoder(EnumProtocolDirection.CLIENTBOUND));
+                    // CloudSpigot start - one flush for everything written while handling a read
+                    if (eu.minewars.cloudspigot.config.CloudSpigotConfig.flushConsolidation) {
+                        channel.pipeline().addLast("flush_consolidation", new FlushConsolidationHandler());
+                    }
+                    // CloudSpigot end
+                    // CloudSpigot start - the encoder frames packets while they are not compressed
+                    PacketEncoder encoder = new PacketEncoder(EnumProtocolDirection.CLIENTBOUND);
+                    encoder.setFraming(eu.minewars.cloudspigot.config.CloudSpigotConfig.framePacketsInEncoder);
+                    // CloudSpigot end
+                    channel.pipeline().addLast("timeout", new ReadTimeoutHandler(30)).addLast("legacy_query", new LegacyPingHandler(ServerConnection.this)).addLast("splitter", new PacketSplitter()).addLast("decoder", new PacketDecoder(EnumProtocolDirection.SERVERBOUND)).addLast("prepender", new PacketPrepender(encoder)).addLast("encoder", encoder); // CloudSpigot
                     NetworkManager networkmanager = new NetworkManager(EnumProtocolDirection.SERVERBOUND);
 
                     pending.add(networkmanager); // Paper
@@ -186,6 +197,23 @@ public class ServerConnection {
         }
     }
 
+    // CloudSpigot start - flush what every connection was sent during the tick
+    public void flushConnections() {
+        NetworkManager.deferFlushes = false;
+        synchronized (this.h) {
+            for (int i = 0; i < this.h.size(); ++i) {
+                NetworkManager networkmanager = this.h.get(i);
+
+                if (networkmanager.hasPendingFlush()) {
+                    MinecraftTimings.connectionFlushTimer.startTiming();
+                    networkmanager.flushPending();
+                    MinecraftTimings.connectionFlushTimer.stopTiming();
+                }
+            }
+        }
+    }
+    // CloudSpigot end
+
     public MinecraftServer d() {
         return this.f;
     }
@@ -60,7 +60,7 @@ public abstract class TileEntity implements KeyedObject {
         return (MinecraftKey) TileEntity.f.b(oclass);
     }
 
-    static boolean IGNORE_TILE_UPDATES = false; // Paper
+    static final ThreadLocal<Boolean> IGNORE_TILE_UPDATES = ThreadLocal.withInitial(() -> Boolean.FALSE); // Paper // CloudSpigot - thread confined, worlds may tick in parallel
     public World getWorld() {
         return this.world;
     }
@@ -139,7 +139,7 @@ public abstract class TileEntity implements KeyedObject {
 
     public void update() {
         if (this.world != null) {
-            if (IGNORE_TILE_UPDATES) return; // Paper
+            if (IGNORE_TILE_UPDATES.get()) return; // Paper // CloudSpigot
             IBlockData iblockdata = this.world.getType(this.position);
 
             this.g = iblockdata.getBlock().toLegacyData(iblockdata);
@@ -197,12 +197,15 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
     }
 
     // Paper start - Optimize Hoppers
-    private static boolean skipPullModeEventFire = false;
-    private static boolean skipPushModeEventFire = false;
-    static boolean skipHopperEvents = false;
+    // CloudSpigot - skipPullModeEventFire and skipPushModeEventFire are per world, worlds may tick in parallel
+    // CloudSpigot start - looked up per transfer instead of a flag set by the server for every world
+    private static boolean skipHopperEvents(World world) {
+        return world.paperConfig.disableHopperMoveEvents || !InventoryMoveItemEvent.getHandlerList().hasListeners();
+    }
+    // CloudSpigot end
 
     private boolean hopperPush(IInventory iinventory, EnumDirection enumdirection) {
-        skipPushModeEventFire = skipHopperEvents;
+        world.skipHopperPushEvents = skipHopperEvents(this.world); // CloudSpigot
         boolean foundItem = false;
         for (int i = 0; i < this.getSize(); ++i) {
             if (!this.getItem(i).isEmpty()) {
@@ -216,7 +219,7 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
 
                 // We only need to fire the event once to give protection plugins a chance to cancel this event
                 // Because nothing uses getItem, every event call should end up the same result.
-                if (!skipPushModeEventFire) {
+                if (!world.skipHopperPushEvents) { // CloudSpigot
                     itemstack = callPushMoveEvent(iinventory, itemstack);
                     if (itemstack == null) { // cancelled
                         origItemStack.setCount(origCount);
@@ -249,7 +252,7 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
         final int moved = Math.min(world.spigotConfig.hopperAmount, origCount);
         itemstack.setCount(moved);
 
-        if (!skipPullModeEventFire) {
+        if (!world.skipHopperPullEvents) { // CloudSpigot
             itemstack = callPullMoveEvent(ihopper, iinventory, itemstack);
             if (itemstack == null) { // cancelled
                 origItemStack.setCount(origCount);
@@ -265,9 +268,9 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
         if (remaining != moved) {
             origItemStack = origItemStack.cloneItemStack();
             origItemStack.setCount(origCount - moved + remaining);
-            IGNORE_TILE_UPDATES = true;
+            IGNORE_TILE_UPDATES.set(Boolean.TRUE); // CloudSpigot
             iinventory.setItem(i, origItemStack);
-            IGNORE_TILE_UPDATES = false;
+            IGNORE_TILE_UPDATES.set(Boolean.FALSE); // CloudSpigot
             iinventory.update();
             return true;
         }
@@ -286,7 +289,7 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
                 CraftItemStack.asCraftMirror(itemstack), destinationInventory, true);
         boolean result = event.callEvent();
         if (!event.calledGetItem && !event.calledSetItem) {
-            skipPushModeEventFire = true;
+            world.skipHopperPushEvents = true; // CloudSpigot
         }
         if (!result) {
             cooldownHopper(this);
@@ -309,7 +312,7 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
                 CraftItemStack.asCraftMirror(itemstack), destination, false);
         boolean result = event.callEvent();
         if (!event.calledGetItem && !event.calledSetItem) {
-            skipPullModeEventFire = true;
+            hopper.getWorld().skipHopperPullEvents = true; // CloudSpigot
         }
         if (!result) {
             cooldownHopper(hopper);
@@ -475,7 +478,7 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
             if (b(iinventory, enumdirection)) {
                 return false;
             }
-            skipPullModeEventFire = skipHopperEvents; // Paper
+            ihopper.getWorld().skipHopperPullEvents = skipHopperEvents(ihopper.getWorld()); // Paper // CloudSpigot
 
             if (iinventory instanceof IWorldInventory) {
                 IWorldInventory iworldinventory = (IWorldInventory) iinventory;
@@ -573,11 +576,13 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
             return false;
         } else {
             // CraftBukkit start
+            if (InventoryPickupItemEvent.getHandlerList().hasListeners()) { // CloudSpigot
             InventoryPickupItemEvent event = new InventoryPickupItemEvent(getInventory(iinventory1), (org.bukkit.entity.Item) entityitem.getBukkitEntity()); // Paper - avoid snapshot creation
             entityitem.world.getServer().getPluginManager().callEvent(event);
             if (event.isCancelled()) {
                 return false;
             }
+            } // CloudSpigot
             // CraftBukkit end
             ItemStack itemstack = entityitem.getItemStack().cloneItemStack();
             ItemStack itemstack1 = addItem(iinventory, iinventory1, itemstack, (EnumDirection) null);
@@ -628,9 +633,9 @@ public class TileEntityHopper extends TileEntityLootable implements IHopper, ITi
             boolean flag1 = iinventory1.x_();
 
             if (itemstack1.isEmpty()) {
-                IGNORE_TILE_UPDATES = true; // Paper
+                IGNORE_TILE_UPDATES.set(Boolean.TRUE); // Paper // CloudSpigot
                 iinventory1.setItem(i, itemstack);
-                IGNORE_TILE_UPDATES = false; // Paper
+                IGNORE_TILE_UPDATES.set(Boolean.FALSE); // Paper // CloudSpigot
                 itemstack = ItemStack.a;
                 flag = true;
             } else if (a(itemstack1, itemstack)) {
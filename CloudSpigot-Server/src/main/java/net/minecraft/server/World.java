@@ -79,6 +79,11 @@ public abstract class World implements IBlockAccess {
     private final Set<TileEntity> tileEntityListUnload = Sets.newHashSet(); // Paper
     public final List<EntityHuman> players = Lists.newArrayList();
     public final List<Entity> j = Lists.newArrayList();
+    // CloudSpigot start - state vanilla kept in statics, worlds may tick in parallel
+    final List<BlockRedstoneTorch.RedstoneUpdateInfo> redstoneTorchUpdates = Lists.newArrayList();
+    boolean skipHopperPullEvents;
+    boolean skipHopperPushEvents;
+    // CloudSpigot end
     protected final IntHashMap<Entity> entitiesById = new IntHashMap<Entity>();
     private int L; private int getSkylightSubtracted() { return this.L; } // Paper - OBFHELPER
     protected int l = (new Random()).nextInt();
@@ -142,6 +147,7 @@ public abstract class World implements IBlockAccess {
 
     public final com.destroystokyo.paper.PaperWorldConfig paperConfig; // Paper
     public final ChunkPacketBlockController chunkPacketBlockController; // Paper - Anti-Xray
+    public final eu.minewars.cloudspigot.world.LightEngine lightEngine; // CloudSpigot - null with the vanilla lighting engine
 
     public final co.aikar.timings.WorldTimingsHandler timings; // Paper
     private boolean guardEntityList; // Spigot
@@ -172,6 +178,15 @@ public abstract class World implements IBlockAccess {
         this.spigotConfig = new org.spigotmc.SpigotWorldConfig( worlddata.getName() ); // Spigot
         this.paperConfig = new com.destroystokyo.paper.PaperWorldConfig(worlddata.getName(), this.spigotConfig); // Paper
         this.chunkPacketBlockController = this.paperConfig.antiXray ? new ChunkPacketBlockControllerAntiXray(this.paperConfig) : ChunkPacketBlockController.NO_OPERATION_INSTANCE; // Paper - Anti-Xray
+        // CloudSpigot start
+        if ("batched".equalsIgnoreCase(this.paperConfig.lightingEngine)) {
+            this.lightEngine = new eu.minewars.cloudspigot.world.LightEngine(this, false);
+        } else if ("threaded".equalsIgnoreCase(this.paperConfig.lightingEngine)) {
+            this.lightEngine = new eu.minewars.cloudspigot.world.LightEngine(this, true);
+        } else {
+            this.lightEngine = null;
+        }
+        // CloudSpigot end
         this.generator = gen;
         this.world = new CraftWorld((WorldServer) this, gen, env);
         this.ticksPerAnimalSpawns = this.getServer().getTicksPerAnimalSpawns(); // CraftBukkit
@@ -409,6 +424,11 @@ public abstract class World implements IBlockAccess {
             } else {
                 if (iblockdata.c() != iblockdata1.c() || iblockdata.d() != iblockdata1.d()) {
                     //this.methodProfiler.a("checkLight");
+                    // CloudSpigot start - relit with the other changes of the tick
+                    if (this.lightEngine != null) {
+                        this.lightEngine.queue(blockposition);
+                    } else
+                    // CloudSpigot end
                     chunk.runOrQueueLightUpdate(() -> this.w(blockposition)); // Paper - Queue light update
                     //this.methodProfiler.b();
                 }
@@ -587,7 +607,7 @@ public abstract class World implements IBlockAccess {
             try {
                 // CraftBukkit start
                 CraftWorld world = ((WorldServer) this).getWorld();
-                if (world != null && !((WorldServer)this).stopPhysicsEvent) { // Paper
+                if (world != null && !((WorldServer)this).stopPhysicsEvent && BlockPhysicsEvent.getHandlerList().hasListeners()) { // Paper // CloudSpigot - skip the event if nobody listens
                     BlockPhysicsEvent event = new BlockPhysicsEvent(world.getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ()), CraftMagicNumbers.getId(block), blockposition1.getX(), blockposition1.getY(), blockposition1.getZ()); // Paper - add source block
                     this.getServer().getPluginManager().callEvent(event);
 
@@ -1113,8 +1133,14 @@ public abstract class World implements IBlockAccess {
     }
 
     public boolean addEntity(Entity entity, SpawnReason spawnReason) { // Changed signature, added SpawnReason
+        if (entity == null) return false; // CloudSpigot - moved up
+        // CloudSpigot start - the world may be ticking on another thread
+        if (eu.minewars.cloudspigot.world.WorldTickExecutor.isForeignWorld(this)) {
+            eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.addEntity(entity, spawnReason));
+            return true;
+        }
+        // CloudSpigot end
         org.spigotmc.AsyncCatcher.catchOp( "entity add"); // Spigot
-        if (entity == null) return false;
         if (entity.valid) { MinecraftServer.LOGGER.error("Attempted Double World add on " + entity, new Throwable()); return true; } // Paper
 
         org.bukkit.event.Cancellable event = null;
@@ -1228,9 +1254,20 @@ public abstract class World implements IBlockAccess {
 
         new com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent(entity.getBukkitEntity()).callEvent(); // Paper - fire while valid
         entity.valid = false; // CraftBukkit
+        // CloudSpigot start - drop the metadata with the entity, unless its bukkit entity moved on to a new handle
+        if (entity.bukkitEntity != null && entity.bukkitEntity.getHandle() == entity) {
+            this.getServer().getEntityMetadata().discard(entity.bukkitEntity);
+        }
+        // CloudSpigot end
     }
 
     public void kill(Entity entity) {
+        // CloudSpigot start - the world may be ticking on another thread
+        if (eu.minewars.cloudspigot.world.WorldTickExecutor.isForeignWorld(this)) {
+            eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.kill(entity));
+            return;
+        }
+        // CloudSpigot end
         org.spigotmc.AsyncCatcher.catchOp( "entity kill"); // Spigot
         if (entity.isVehicle()) {
             entity.ejectPassengers();
@@ -1268,6 +1305,12 @@ public abstract class World implements IBlockAccess {
     }
 
     public void removeEntity(Entity entity) {
+        // CloudSpigot start - the world may be ticking on another thread
+        if (eu.minewars.cloudspigot.world.WorldTickExecutor.isForeignWorld(this)) {
+            eu.minewars.cloudspigot.world.WorldTickExecutor.handoff(() -> this.removeEntity(entity));
+            return;
+        }
+        // CloudSpigot end
         org.spigotmc.AsyncCatcher.catchOp( "entity remove"); // Spigot
         entity.b(false);
         entity.die();
@@ -1363,33 +1406,86 @@ public abstract class World implements IBlockAccess {
     }
 
     public List<AxisAlignedBB> getCubes(@Nullable Entity entity, AxisAlignedBB axisalignedbb) {
-        ArrayList arraylist = Lists.newArrayList();
+        return this.getCubes(entity, axisalignedbb, Lists.<AxisAlignedBB>newArrayList()); // CloudSpigot
+    }
+
+    // CloudSpigot start - collision queries into reusable buffers
+    private static final ThreadLocal<ArrayList<AxisAlignedBB>> cubeBuffer = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<ArrayList<Entity>> collisionEntityBuffer = ThreadLocal.withInitial(ArrayList::new);
 
-        this.a(entity, axisalignedbb, false, arraylist);
+    /**
+     * @return an empty list owned by the current thread, for passing to
+     *         {@link #getCubes(Entity, AxisAlignedBB, List)} when the boxes
+     *         are not kept past the next query
+     */
+    public static List<AxisAlignedBB> getCubeBuffer() {
+        ArrayList<AxisAlignedBB> buffer = cubeBuffer.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Adds the collision boxes of blocks and entities intersecting the box to
+     * the list.
+     *
+     * @return the list
+     */
+    public List<AxisAlignedBB> getCubes(@Nullable Entity entity, AxisAlignedBB axisalignedbb, List<AxisAlignedBB> list) {
+        this.a(entity, axisalignedbb, false, list);
         if (entity != null) {
-            if (entity instanceof EntityArmorStand && !entity.world.paperConfig.armorStandEntityLookups) return arraylist; // Paper
-            List list = this.getEntities(entity, axisalignedbb.g(0.25D));
+            this.addEntityCubes(entity, axisalignedbb, list, false);
+        }
+        return list;
+    }
+
+    /**
+     * Same as {@code getCubes(entity, axisalignedbb).isEmpty()} without
+     * keeping the boxes, stops at the first entity box.
+     */
+    public boolean hasNoCubes(@Nullable Entity entity, AxisAlignedBB axisalignedbb) {
+        List<AxisAlignedBB> list = getCubeBuffer();
+        this.a(entity, axisalignedbb, false, list);
+        boolean empty = list.isEmpty() && (entity == null || !this.addEntityCubes(entity, axisalignedbb, list, true));
+        list.clear();
+        return empty;
+    }
+
+    private boolean addEntityCubes(Entity entity, AxisAlignedBB axisalignedbb, List<AxisAlignedBB> arraylist, boolean stopAtFirst) {
+        if (entity instanceof EntityArmorStand && !entity.world.paperConfig.armorStandEntityLookups) return false; // Paper
+        ArrayList<Entity> list = collisionEntityBuffer.get();
+        boolean found = false;
+
+        try {
+            this.getEntities(entity, axisalignedbb.g(0.25D), IEntitySelector.e, list);
 
             for (int i = 0; i < list.size(); ++i) {
-                Entity entity1 = (Entity) list.get(i);
+                Entity entity1 = list.get(i);
 
                 if (!entity.x(entity1)) {
                     AxisAlignedBB axisalignedbb1 = entity1.al();
 
                     if (axisalignedbb1 != null && axisalignedbb1.c(axisalignedbb)) {
                         arraylist.add(axisalignedbb1);
+                        found = true;
                     }
 
                     axisalignedbb1 = entity.j(entity1);
                     if (axisalignedbb1 != null && axisalignedbb1.c(axisalignedbb)) {
                         arraylist.add(axisalignedbb1);
+                        found = true;
+                    }
+
+                    if (found && stopAtFirst) {
+                        break;
                     }
                 }
             }
+        } finally {
+            list.clear();
         }
-
-        return arraylist;
+        return found;
     }
+    // CloudSpigot end
 
     public boolean g(Entity entity) {
         double d0 = this.P.b();
@@ -2598,7 +2694,12 @@ public abstract class World implements IBlockAccess {
     }
 
     public List<Entity> getEntities(@Nullable Entity entity, AxisAlignedBB axisalignedbb, @Nullable Predicate<? super Entity> predicate) {
-        ArrayList arraylist = Lists.newArrayList();
+        // CloudSpigot start - fill a caller provided list
+        return this.getEntities(entity, axisalignedbb, predicate, Lists.<Entity>newArrayList());
+    }
+
+    public List<Entity> getEntities(@Nullable Entity entity, AxisAlignedBB axisalignedbb, @Nullable Predicate<? super Entity> predicate, List<Entity> arraylist) {
+        // CloudSpigot end
         int i = MathHelper.floor((axisalignedbb.a - 2.0D) / 16.0D);
         int j = MathHelper.floor((axisalignedbb.d + 2.0D) / 16.0D);
         int k = MathHelper.floor((axisalignedbb.c - 2.0D) / 16.0D);
@@ -2617,7 +2718,7 @@ public abstract class World implements IBlockAccess {
 
     public <T extends Entity> List<T> a(Class<? extends T> oclass, Predicate<? super T> predicate) {
         ArrayList arraylist = Lists.newArrayList();
-        Iterator iterator = this.entityList.iterator();
+        Iterator iterator = (EntityHuman.class.isAssignableFrom(oclass) ? this.players : this.entityList).iterator(); // CloudSpigot - players are all in their own list
 
         while (iterator.hasNext()) {
             Entity entity = (Entity) iterator.next();
@@ -2729,7 +2830,7 @@ public abstract class World implements IBlockAccess {
 
     public void addChunkEntities(Collection<Entity> collection) { a(collection); } // Paper - OBFHELPER
     public void a(Collection<Entity> collection) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity world add"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp(this, "entity world add"); // Spigot // CloudSpigot - only from the owning thread
         // CraftBukkit start
         // this.entityList.addAll(collection);
         Iterator iterator = collection.iterator();
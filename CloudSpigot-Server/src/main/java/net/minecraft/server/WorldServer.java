@@ -18,7 +18,6 @@ import javax.annotation.Nullable;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bukkit.WeatherType;
-import org.bukkit.craftbukkit.util.HashTreeSet;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.event.weather.LightningStrikeEvent;
 // CraftBukkit end
@@ -37,7 +36,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
     public EntityTracker tracker;
     private final PlayerChunkMap manager;
     // private final Set<NextTickListEntry> nextTickListHash = Sets.newHashSet();
-    private final HashTreeSet<NextTickListEntry> nextTickList = new HashTreeSet<NextTickListEntry>(); // CraftBukkit - HashTreeSet
+    private final eu.minewars.cloudspigot.world.ScheduledTickList nextTickList = new eu.minewars.cloudspigot.world.ScheduledTickList(); // CraftBukkit - HashTreeSet // CloudSpigot - indexed by chunk and due time
     public final Map<UUID, Entity> entitiesByUUID = Maps.newHashMap(); // Paper
     public boolean savingDisabled;
     private boolean Q;
@@ -274,6 +273,32 @@ public class WorldServer extends World implements IAsyncTaskHandler {
     }
     // CraftBukkit end
 
+    // CloudSpigot start
+    public void flushLight() {
+        if (this.lightEngine != null && this.lightEngine.hasPending()) {
+            timings.lightEngine.startTiming();
+            this.lightEngine.flush();
+            timings.lightEngine.stopTiming();
+        }
+    }
+
+    private void flushLightBeforeSend() {
+        if (this.lightEngine != null && this.lightEngine.hasPending()) {
+            timings.lightEngine.startTiming();
+            this.lightEngine.flushBeforeSend();
+            timings.lightEngine.stopTiming();
+        }
+    }
+
+    public void flushLightFor(Chunk chunk) {
+        if (this.lightEngine != null && this.lightEngine.hasPending()) {
+            timings.lightEngine.startTiming();
+            this.lightEngine.flushFor(chunk);
+            timings.lightEngine.stopTiming();
+        }
+    }
+    // CloudSpigot end
+
     public void doTick() {
         super.doTick();
         if (this.getWorldData().isHardcore() && this.getDifficulty() != EnumDifficulty.HARD) {
@@ -304,6 +329,11 @@ public class WorldServer extends World implements IAsyncTaskHandler {
         timings.doChunkUnload.startTiming(); // Spigot
         //this.methodProfiler.c("chunkSource");
         this.chunkProvider.unloadChunks();
+        // CloudSpigot start - add the chunks generated since the last tick
+        if (this.getChunkProviderServer().asyncGenerator != null) {
+            this.getChunkProviderServer().asyncGenerator.processCompleted();
+        }
+        // CloudSpigot end
         int j = this.a(1.0F);
 
         if (j != this.ah()) {
@@ -325,6 +355,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
         this.j();
         timings.chunkTicks.stopTiming(); // Paper
         //this.methodProfiler.c("chunkMap");
+        this.flushLightBeforeSend(); // CloudSpigot - chunks are sent with settled light
         timings.doChunkMap.startTiming(); // Spigot
         this.manager.flush();
         timings.doChunkMap.stopTiming(); // Spigot
@@ -748,17 +779,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
 			timings.scheduledBlocksCleanup.startTiming(); // Paper
 			NextTickListEntry nextticklistentry;
 
-			for (int j = 0; j < i; ++j) {
-			    nextticklistentry = (NextTickListEntry) this.nextTickList.first();
-			    if (!flag && nextticklistentry.b > this.worldData.getTime()) {
-			        break;
-			    }
-
-			    // CraftBukkit - use nextTickList
-			    this.nextTickList.remove(nextticklistentry);
-			    // this.nextTickListHash.remove(nextticklistentry);
-			    this.W.add(nextticklistentry);
-			}
+			this.nextTickList.pollDue(flag ? Long.MAX_VALUE : this.worldData.getTime(), i, this.W); // CloudSpigot - poll the due buckets in order
 			timings.scheduledBlocksCleanup.stopTiming(); // Paper
 
 			//this.methodProfiler.b();
@@ -812,36 +833,23 @@ public class WorldServer extends World implements IAsyncTaskHandler {
 
     @Nullable
     public List<NextTickListEntry> a(StructureBoundingBox structureboundingbox, boolean flag) {
-        ArrayList arraylist = null;
+        List<NextTickListEntry> arraylist = this.nextTickList.getEntriesIn(structureboundingbox, flag); // CloudSpigot - only visit the chunks inside the box
+        Iterator iterator = this.W.iterator(); // CloudSpigot - only the ticks being executed are left to scan
 
-        for (int i = 0; i < 2; ++i) {
-            Iterator iterator;
-
-            if (i == 0) {
-                iterator = this.nextTickList.iterator();
-            } else {
-                iterator = this.W.iterator();
-            }
-
-            while (iterator.hasNext()) {
-                NextTickListEntry nextticklistentry = (NextTickListEntry) iterator.next();
-                BlockPosition blockposition = nextticklistentry.a;
-
-                if (blockposition.getX() >= structureboundingbox.a && blockposition.getX() < structureboundingbox.d && blockposition.getZ() >= structureboundingbox.c && blockposition.getZ() < structureboundingbox.f) {
-                    if (flag) {
-                        if (i == 0) {
-                            // this.nextTickListHash.remove(nextticklistentry); // CraftBukkit - removed
-                        }
-
-                        iterator.remove();
-                    }
+        while (iterator.hasNext()) {
+            NextTickListEntry nextticklistentry = (NextTickListEntry) iterator.next();
+            BlockPosition blockposition = nextticklistentry.a;
 
-                    if (arraylist == null) {
-                        arraylist = Lists.newArrayList();
-                    }
+            if (blockposition.getX() >= structureboundingbox.a && blockposition.getX() < structureboundingbox.d && blockposition.getZ() >= structureboundingbox.c && blockposition.getZ() < structureboundingbox.f) {
+                if (flag) {
+                    iterator.remove();
+                }
 
-                    arraylist.add(nextticklistentry);
+                if (arraylist == null) {
+                    arraylist = Lists.newArrayList();
                 }
+
+                arraylist.add(nextticklistentry);
             }
         }
 
@@ -193,7 +193,18 @@ public final class CraftServer implements Server {
     private final SimpleCommandMap commandMap = new SimpleCommandMap(this);
     private final SimpleHelpMap helpMap = new SimpleHelpMap(this);
     private final StandardMessenger messenger = new StandardMessenger();
-    private final SimplePluginManager pluginManager = new SimplePluginManager(this, commandMap);
+    // CloudSpigot start - serialize listeners invoked from parallel world tick threads
+    private final SimplePluginManager pluginManager = new SimplePluginManager(this, commandMap) {
+        @Override
+        public void callEvent(org.bukkit.event.Event event) {
+            if (eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread()) {
+                eu.minewars.cloudspigot.world.WorldTickExecutor.dispatchEvent(() -> super.callEvent(event));
+            } else {
+                super.callEvent(event);
+            }
+        }
+    };
+    // CloudSpigot end
     protected final MinecraftServer console;
     protected final DedicatedPlayerList playerList;
     private final Map<String, World> worlds = new LinkedHashMap<String, World>();
@@ -703,6 +714,14 @@ public final class CraftServer implements Server {
         Validate.notNull(sender, "Sender cannot be null");
         Validate.notNull(commandLine, "CommandLine cannot be null");
 
+        // CloudSpigot start - command blocks on a world tick thread, run the command under the plugin lock like events
+        if (eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread() && !eu.minewars.cloudspigot.world.WorldTickExecutor.isDispatchingEvent()) {
+            final boolean[] result = new boolean[1];
+            eu.minewars.cloudspigot.world.WorldTickExecutor.dispatchEvent(() -> result[0] = dispatchCommand(sender, commandLine));
+            return result[0];
+        }
+        // CloudSpigot end
+
         // Paper Start
         if (!org.spigotmc.AsyncCatcher.shuttingDown && !Bukkit.isPrimaryThread()) {
             final CommandSender fSender = sender;
@@ -822,6 +841,7 @@ public final class CraftServer implements Server {
         reloadData();
         org.spigotmc.SpigotConfig.registerCommands(); // Spigot
         com.destroystokyo.paper.PaperConfig.registerCommands(); // Paper
+        CloudSpigotConfig.registerCommands(); // CloudSpigot
         overrideAllCommandBlockCommands = commandsConfiguration.getStringList("command-block-overrides").contains("*");
 
         int pollCount = 0;
@@ -1047,6 +1067,7 @@ public final class CraftServer implements Server {
                 }
             }
         }
+        eu.minewars.cloudspigot.world.WorldPregenerator.resume(internal); // CloudSpigot
         pluginManager.callEvent(new WorldLoadEvent(internal.getWorld()));
         return internal.getWorld();
     }
@@ -1097,7 +1118,7 @@ public final class CraftServer implements Server {
 
         File parentFolder = world.getWorldFolder().getAbsoluteFile();
 
-        // Synchronized because access to RegionFileCache.a is guarded by this lock.
+        // RegionFileCache.a is concurrent, the lock only keeps two unloads from racing // CloudSpigot
         synchronized (RegionFileCache.class) {
             // RegionFileCache.a should be RegionFileCache.cache
             Iterator<Map.Entry<File, RegionFile>> i = RegionFileCache.a.entrySet().iterator();
@@ -1106,12 +1127,12 @@ public final class CraftServer implements Server {
                 File child = entry.getKey().getAbsoluteFile();
                 while (child != null) {
                     if (child.equals(parentFolder)) {
-                        i.remove();
                         try {
-                            entry.getValue().c(); // Should be RegionFile.close();
+                            entry.getValue().closeWhenUnused(); // Should be RegionFile.close(); // CloudSpigot - after the chunk I/O threads are done with it
                         } catch (IOException ex) {
                             getLogger().log(Level.SEVERE, null, ex);
                         }
+                        i.remove(); // CloudSpigot - once closed, a concurrent lookup waits instead of opening it twice
                         break;
                     }
                     child = child.getParentFile();
@@ -1690,7 +1711,7 @@ public final class CraftServer implements Server {
 
     @Override
     public boolean isPrimaryThread() {
-        return Thread.currentThread().equals(console.primaryThread);
+        return Thread.currentThread().equals(console.primaryThread) || eu.minewars.cloudspigot.world.WorldTickExecutor.isDispatchingEvent(); // CloudSpigot - listeners on world tick threads run under the plugin lock
     }
 
     @Override
@@ -38,7 +38,7 @@ public class ConsoleCommandCompleter implements Completer {
 
         if (event.isCancelled() || event.isHandled()) {
             // Still fire sync event with the provided completions, if someone is listening
-            if (!event.isCancelled() && TabCompleteEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            if (!event.isCancelled() && TabCompleteEvent.getHandlerList().hasListeners()) {
                 List<String> finalCompletions = completions;
                 Waitable<List<String>> syncCompletions = new Waitable<List<String>>() {
                     @Override
@@ -34,6 +34,7 @@ public abstract class CraftEntity implements org.bukkit.entity.Entity {
     protected final CraftServer server;
     protected Entity entity;
     private EntityDamageEvent lastDamageEvent;
+    private volatile eu.minewars.cloudspigot.metadata.MetadataHolder metadata; // CloudSpigot
 
     public CraftEntity(final CraftServer server, final Entity entity) {
         this.server = server;
@@ -521,6 +522,25 @@ public abstract class CraftEntity implements org.bukkit.entity.Entity {
         // Paper end
     }
 
+    // CloudSpigot start
+    /**
+     * @param create whether to create the holder if the entity has none yet
+     * @return the holder of the entity metadata, null if it has none
+     */
+    public eu.minewars.cloudspigot.metadata.MetadataHolder getMetadataHolder(boolean create) {
+        eu.minewars.cloudspigot.metadata.MetadataHolder metadata = this.metadata;
+        if (metadata == null && create) {
+            synchronized (this) {
+                metadata = this.metadata;
+                if (metadata == null) {
+                    this.metadata = metadata = new eu.minewars.cloudspigot.metadata.MetadataHolder();
+                }
+            }
+        }
+        return metadata;
+    }
+    // CloudSpigot end
+
     public void setMetadata(String metadataKey, MetadataValue newMetadataValue) {
         server.getEntityMetadata().setMetadata(this, metadataKey, newMetadataValue);
     }
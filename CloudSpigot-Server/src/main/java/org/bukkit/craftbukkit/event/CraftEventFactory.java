@@ -158,8 +158,18 @@ import net.minecraft.server.WorldServer;
 public class CraftEventFactory {
 	public static final DamageSource MELTING = CraftDamageSource.copyOf(DamageSource.BURN);
 	public static final DamageSource POISON = CraftDamageSource.copyOf(DamageSource.MAGIC);
-	public static org.bukkit.block.Block blockDamage; // For use in EntityDamageByBlockEvent
-	public static Entity entityDamage; // For use in EntityDamageByEntityEvent
+	// CloudSpigot start - thread confined, worlds may tick in parallel
+	private static final ThreadLocal<org.bukkit.block.Block> blockDamage = new ThreadLocal<org.bukkit.block.Block>(); // For use in EntityDamageByBlockEvent
+	private static final ThreadLocal<Entity> entityDamage = new ThreadLocal<Entity>(); // For use in EntityDamageByEntityEvent
+
+	public static void setBlockDamage(org.bukkit.block.Block block) {
+		blockDamage.set(block);
+	}
+
+	public static void setEntityDamage(Entity entity) {
+		entityDamage.set(entity);
+	}
+	// CloudSpigot end
 
 	// helper methods
 	private static boolean canBuild(CraftWorld world, Player player, int x, int z) {
@@ -602,8 +612,8 @@ public class CraftEventFactory {
 			Map<DamageModifier, Function<? super Double, Double>> modifierFunctions) {
 		if (source.isExplosion()) {
 			DamageCause damageCause;
-			Entity damager = entityDamage;
-			entityDamage = null;
+			Entity damager = entityDamage.get(); // CloudSpigot
+			entityDamage.remove(); // CloudSpigot
 			EntityDamageEvent event;
 			if (damager == null) {
 				event = new EntityDamageByBlockEvent(null, entity.getBukkitEntity(), DamageCause.BLOCK_EXPLOSION,
@@ -654,10 +664,10 @@ public class CraftEventFactory {
 				event.getEntity().setLastDamageCause(event);
 			}
 			return event;
-		} else if (blockDamage != null) {
+		} else if (blockDamage.get() != null) { // CloudSpigot
 			DamageCause cause = null;
-			Block damager = blockDamage;
-			blockDamage = null;
+			Block damager = blockDamage.get(); // CloudSpigot
+			blockDamage.remove(); // CloudSpigot
 			if (source == DamageSource.CACTUS) {
 				cause = DamageCause.CONTACT;
 			} else if (source == DamageSource.HOT_FLOOR) {
@@ -672,10 +682,10 @@ public class CraftEventFactory {
 				event.getEntity().setLastDamageCause(event);
 			}
 			return event;
-		} else if (entityDamage != null) {
+		} else if (entityDamage.get() != null) { // CloudSpigot
 			DamageCause cause = null;
-			CraftEntity damager = entityDamage.getBukkitEntity();
-			entityDamage = null;
+			CraftEntity damager = entityDamage.get().getBukkitEntity(); // CloudSpigot
+			entityDamage.remove(); // CloudSpigot
 			if (source == DamageSource.ANVIL || source == DamageSource.FALLING_BLOCK) {
 				cause = DamageCause.FALLING_BLOCK;
 			} else if (damager instanceof LightningStrike) {
@@ -1074,6 +1084,20 @@ public class CraftEventFactory {
 		return event;
 	}
 
+	// CloudSpigot start
+	/**
+	 * Calls the BlockRedstoneEvent if anybody listens to it.
+	 *
+	 * @return the new current, as changed by the listeners
+	 */
+	public static int handleRedstoneChange(World world, int x, int y, int z, int oldCurrent, int newCurrent) {
+		if (!BlockRedstoneEvent.getHandlerList().hasListeners()) {
+			return newCurrent;
+		}
+		return callRedstoneChange(world, x, y, z, oldCurrent, newCurrent).getNewCurrent();
+	}
+	// CloudSpigot end
+
 	public static NotePlayEvent callNotePlayEvent(World world, int x, int y, int z, byte instrument, byte note) {
 		NotePlayEvent event = new NotePlayEvent(world.getWorld().getBlockAt(x, y, z),
 				org.bukkit.Instrument.getByType(instrument), new org.bukkit.Note(note));
@@ -1358,6 +1382,17 @@ public class CraftEventFactory {
 		return event;
 	}
 
+	// CloudSpigot start
+	/**
+	 * Calls the BlockPhysicsEvent if anybody listens to it.
+	 *
+	 * @return false if the event was cancelled
+	 */
+	public static boolean handleBlockPhysicsEvent(World world, BlockPosition blockposition) {
+		return !BlockPhysicsEvent.getHandlerList().hasListeners() || !callBlockPhysicsEvent(world, blockposition).isCancelled();
+	}
+	// CloudSpigot end
+
 	public static boolean handleBlockFormEvent(World world, BlockPosition pos, IBlockData block,
 			@Nullable Entity entity) {
 		BlockState blockState = world.getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ()).getState();
@@ -16,6 +16,8 @@ public class NormalChunkGenerator extends InternalChunkGenerator {
         generator = world.worldProvider.getChunkGenerator();
     }
 
+    public ChunkGenerator getHandle() { return generator; } // CloudSpigot
+
     @Override
     public byte[] generate(org.bukkit.World world, Random random, int x, int z) {
         throw new UnsupportedOperationException("Not supported.");
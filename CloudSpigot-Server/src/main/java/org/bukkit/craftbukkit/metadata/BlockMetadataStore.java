@@ -2,19 +2,30 @@ package org.bukkit.craftbukkit.metadata;
 
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.craftbukkit.block.CraftBlock;
 import org.bukkit.metadata.MetadataStore;
 import org.bukkit.metadata.MetadataStoreBase;
 import org.bukkit.metadata.MetadataValue;
 import org.bukkit.plugin.Plugin;
 
+import java.util.Iterator;
 import java.util.List;
 
+import eu.minewars.cloudspigot.metadata.HolderMetadataStore;
+import eu.minewars.cloudspigot.metadata.MetadataHolder;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.ChunkCoordIntPair;
+
 /**
  * A BlockMetadataStore stores metadata values for {@link Block} objects.
  */
-public class BlockMetadataStore extends MetadataStoreBase<Block> implements MetadataStore<Block> {
+public class BlockMetadataStore extends HolderMetadataStore<Block> implements MetadataStore<Block> { // CloudSpigot - kept by chunk and position
 
     private final World owningWorld;
+    // CloudSpigot start - holders by chunk key and packed position within the chunk, guarded by this
+    private final Long2ObjectOpenHashMap<Int2ObjectOpenHashMap<MetadataHolder>> chunks = new Long2ObjectOpenHashMap<Int2ObjectOpenHashMap<MetadataHolder>>();
+    // CloudSpigot end
 
     /**
      * Initializes a BlockMetadataStore.
@@ -72,7 +83,9 @@ public class BlockMetadataStore extends MetadataStoreBase<Block> implements Meta
     @Override
     public void removeMetadata(Block block, String metadataKey, Plugin owningPlugin) {
         if(block.getWorld() == owningWorld) {
-            super.removeMetadata(block, metadataKey, owningPlugin);
+            synchronized (this) { // CloudSpigot - emptied holders are removed from the chunk
+                super.removeMetadata(block, metadataKey, owningPlugin);
+            }
         } else {
             throw new IllegalArgumentException("Block does not belong to world " + owningWorld.getName());
         }
@@ -86,9 +99,83 @@ public class BlockMetadataStore extends MetadataStoreBase<Block> implements Meta
     @Override
     public void setMetadata(Block block, String metadataKey, MetadataValue newMetadataValue) {
         if(block.getWorld() == owningWorld) {
-            super.setMetadata(block, metadataKey, newMetadataValue);
+            synchronized (this) { // CloudSpigot - an emptied holder must not be removed in between
+                super.setMetadata(block, metadataKey, newMetadataValue);
+            }
         } else {
             throw new IllegalArgumentException("Block does not belong to world " + owningWorld.getName());
         }
     }
+
+    // CloudSpigot start
+    private static int packPosition(Block block) {
+        return block.getY() << 8 | (block.getZ() & 15) << 4 | (block.getX() & 15);
+    }
+
+    @Override
+    protected boolean isHeld(Block block) {
+        return block instanceof CraftBlock;
+    }
+
+    @Override
+    protected synchronized MetadataHolder getHolder(Block block, boolean create) {
+        long chunkKey = ChunkCoordIntPair.a(block.getX() >> 4, block.getZ() >> 4);
+        Int2ObjectOpenHashMap<MetadataHolder> blocks = this.chunks.get(chunkKey);
+        if (blocks == null) {
+            if (!create) {
+                return null;
+            }
+            blocks = new Int2ObjectOpenHashMap<MetadataHolder>(4);
+            this.chunks.put(chunkKey, blocks);
+        }
+
+        int position = packPosition(block);
+        MetadataHolder holder = blocks.get(position);
+        if (holder == null && create) {
+            holder = new MetadataHolder();
+            blocks.put(position, holder);
+        }
+        return holder;
+    }
+
+    @Override
+    protected void emptied(Block block, MetadataHolder holder) {
+        long chunkKey = ChunkCoordIntPair.a(block.getX() >> 4, block.getZ() >> 4);
+        Int2ObjectOpenHashMap<MetadataHolder> blocks = this.chunks.get(chunkKey);
+        if (blocks != null && blocks.remove(packPosition(block)) != null && blocks.isEmpty()) {
+            this.chunks.remove(chunkKey);
+        }
+    }
+
+    @Override
+    public synchronized void removeAll(Plugin owningPlugin) {
+        super.removeAll(owningPlugin);
+        for (Iterator<Int2ObjectOpenHashMap<MetadataHolder>> chunks = this.chunks.values().iterator(); chunks.hasNext();) {
+            Int2ObjectOpenHashMap<MetadataHolder> blocks = chunks.next();
+            blocks.values().removeIf(MetadataHolder::isEmpty);
+            if (blocks.isEmpty()) {
+                chunks.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the metadata of every block in an unloaded chunk.
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     */
+    public synchronized void unloadChunk(int x, int z) {
+        if (this.chunks.isEmpty()) {
+            return;
+        }
+
+        Int2ObjectOpenHashMap<MetadataHolder> blocks = this.chunks.remove(ChunkCoordIntPair.a(x, z));
+        if (blocks != null) {
+            for (MetadataHolder holder : blocks.values()) {
+                discard(holder);
+            }
+        }
+    }
+    // CloudSpigot end
 }
@@ -1,13 +1,17 @@
 package org.bukkit.craftbukkit.metadata;
 
+import org.bukkit.craftbukkit.entity.CraftEntity;
 import org.bukkit.entity.Entity;
 import org.bukkit.metadata.MetadataStore;
 import org.bukkit.metadata.MetadataStoreBase;
 
+import eu.minewars.cloudspigot.metadata.HolderMetadataStore;
+import eu.minewars.cloudspigot.metadata.MetadataHolder;
+
 /**
  * An EntityMetadataStore stores metadata values for all {@link Entity} classes an their descendants.
  */
-public class EntityMetadataStore extends MetadataStoreBase<Entity> implements MetadataStore<Entity> {
+public class EntityMetadataStore extends HolderMetadataStore<Entity> implements MetadataStore<Entity> { // CloudSpigot - kept with the CraftEntity
     /**
      * Generates a unique metadata key for an {@link Entity} UUID.
      *
@@ -20,4 +24,28 @@ public class EntityMetadataStore extends MetadataStoreBase<Entity> implements Me
     protected String disambiguate(Entity entity, String metadataKey) {
         return entity.getUniqueId().toString() + ":" + metadataKey;
     }
+
+    // CloudSpigot start
+    @Override
+    protected boolean isHeld(Entity entity) {
+        return entity instanceof CraftEntity;
+    }
+
+    @Override
+    protected MetadataHolder getHolder(Entity entity, boolean create) {
+        return ((CraftEntity) entity).getMetadataHolder(create);
+    }
+
+    /**
+     * Drops the metadata of an entity that was removed from its world.
+     *
+     * @param entity the entity
+     */
+    public void discard(CraftEntity entity) {
+        MetadataHolder holder = entity.getMetadataHolder(false);
+        if (holder != null) {
+            discard(holder);
+        }
+    }
+    // CloudSpigot end
 }
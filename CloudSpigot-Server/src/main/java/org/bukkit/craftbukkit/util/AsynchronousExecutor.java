@@ -1,6 +1,5 @@
 package org.bukkit.craftbukkit.util;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -216,7 +215,7 @@ public final class AsynchronousExecutor<P, T, C, E extends Throwable> {
 
     final CallBackProvider<P, T, C, E> provider;
     final Queue<Task> finished = new ConcurrentLinkedQueue<Task>();
-    final Map<P, Task> tasks = new HashMap<P, Task>();
+    final Map<P, Task> tasks = new java.util.concurrent.ConcurrentHashMap<P, Task>(); // CloudSpigot - worlds may queue from their own tick thread
     final ThreadPoolExecutor pool;
 
     /**
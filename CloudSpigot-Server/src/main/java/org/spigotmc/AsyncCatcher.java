@@ -11,9 +11,20 @@ public class AsyncCatcher
     @SuppressWarnings("deprecation")
 	public static void catchOp(String reason)
     {
-        if ( enabled && Thread.currentThread() != MinecraftServer.getServer().primaryThread )
+        if ( enabled && Thread.currentThread() != MinecraftServer.getServer().primaryThread && !eu.minewars.cloudspigot.world.WorldTickExecutor.isWorldTickThread() ) // CloudSpigot
         {
             throw new IllegalStateException( "Asynchronous " + reason + "!" );
         }
     }
+
+    // CloudSpigot start - a world tick thread only owns the world it ticks
+    public static void catchOp(net.minecraft.server.World world, String reason)
+    {
+        if ( enabled && eu.minewars.cloudspigot.world.WorldTickExecutor.isForeignWorld( world ) )
+        {
+            throw new IllegalStateException( "Cross-world " + reason + " from a world tick thread, schedule it on the main thread!" );
+        }
+        catchOp( reason );
+    }
+    // CloudSpigot end
 }
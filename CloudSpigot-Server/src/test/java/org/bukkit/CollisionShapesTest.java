@@ -0,0 +1,111 @@
+package org.bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import eu.minewars.cloudspigot.world.CollisionShapes;
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Block;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.Blocks;
+import net.minecraft.server.Entity;
+import net.minecraft.server.IBlockData;
+import net.minecraft.server.MathHelper;
+import net.minecraft.server.World;
+import org.bukkit.support.AbstractTestingBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CollisionShapesTest extends AbstractTestingBase {
+
+    private static final int FLOOR = 64;
+
+    // a stone floor with a slab on top of every fourth floor block
+    private static IBlockData blockAt(int x, int y, int z) {
+        if (y == FLOOR) {
+            return Blocks.STONE.getBlockData();
+        }
+        if (y == FLOOR + 1 && ((x ^ z) & 3) == 0) {
+            return Blocks.WOODEN_SLAB.getBlockData();
+        }
+        return null;
+    }
+
+    // the block part of World.getCubes over a 32x32 pen, through the same block call
+    private static void collectBlocks(AxisAlignedBB box, List<AxisAlignedBB> list, boolean current) {
+        BlockPosition.MutableBlockPosition position = new BlockPosition.MutableBlockPosition();
+        for (int x = MathHelper.floor(box.a) - 1; x < MathHelper.f(box.d) + 1; ++x) {
+            for (int z = MathHelper.floor(box.c) - 1; z < MathHelper.f(box.f) + 1; ++z) {
+                for (int y = MathHelper.floor(box.b) - 1; y < MathHelper.f(box.e) + 1; ++y) {
+                    IBlockData data = blockAt(x, y, z);
+                    if (data == null) {
+                        continue;
+                    }
+                    position.c(x, y, z);
+                    if (current) {
+                        data.a((World) null, position, box, list, (Entity) null, false);
+                    } else {
+                        // what Block.a(BlockPosition, AxisAlignedBB, List, AxisAlignedBB) used to do
+                        AxisAlignedBB shape = data.d((World) null, position);
+                        if (shape != Block.k) {
+                            AxisAlignedBB moved = shape.a(position);
+                            if (box.c(moved)) {
+                                list.add(moved);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static AxisAlignedBB[] createMobs(Random random) {
+        AxisAlignedBB[] mobs = new AxisAlignedBB[500];
+        for (int i = 0; i < mobs.length; i++) {
+            double x = random.nextDouble() * 32.0D;
+            double z = random.nextDouble() * 32.0D;
+            double y = FLOOR + 1.0D - random.nextDouble() * 0.1D; // resting on or sinking into the floor
+            mobs[i] = new AxisAlignedBB(x - 0.3D, y, z - 0.3D, x + 0.3D, y + 1.95D, z + 0.3D);
+        }
+        return mobs;
+    }
+
+    @Test
+    public void testSameBoxesAsAllocating() {
+        AxisAlignedBB[] mobs = createMobs(new Random(1L));
+        List<AxisAlignedBB> expected = new ArrayList<AxisAlignedBB>();
+        List<AxisAlignedBB> actual = new ArrayList<AxisAlignedBB>();
+        for (AxisAlignedBB mob : mobs) {
+            AxisAlignedBB query = mob.b(0.2D, -0.08D, -0.2D);
+            expected.clear();
+            actual.clear();
+            collectBlocks(query, expected, false);
+            collectBlocks(query, actual, true);
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testFullCubesAreShared() {
+        Assert.assertSame(CollisionShapes.getFullCube(10, 64, -3), CollisionShapes.getFullCube(10, 64, -3));
+        Assert.assertEquals(new AxisAlignedBB(new BlockPosition(10, 64, -3)), CollisionShapes.getFullCube(10, 64, -3));
+    }
+
+    @Test
+    public void testRepeatedQueryReusesFloorBoxes() {
+        AxisAlignedBB mob = new AxisAlignedBB(4.7D, FLOOR + 0.95D, 6.7D, 5.3D, FLOOR + 2.9D, 7.3D);
+        List<AxisAlignedBB> first = new ArrayList<AxisAlignedBB>();
+        List<AxisAlignedBB> second = new ArrayList<AxisAlignedBB>();
+        collectBlocks(mob, first, true);
+        collectBlocks(mob, second, true);
+
+        Assert.assertFalse(first.isEmpty());
+        Assert.assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i).b == FLOOR && first.get(i).e == FLOOR + 1) {
+                Assert.assertSame(first.get(i), second.get(i));
+            }
+        }
+    }
+}
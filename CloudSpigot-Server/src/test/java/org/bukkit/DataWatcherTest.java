@@ -0,0 +1,103 @@
+package org.bukkit;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import net.minecraft.server.DataWatcher;
+import net.minecraft.server.DataWatcherObject;
+import net.minecraft.server.DataWatcherRegistry;
+import net.minecraft.server.Entity;
+import net.minecraft.server.NBTTagCompound;
+import org.bukkit.support.AbstractTestingBase;
+import org.junit.Test;
+
+public class DataWatcherTest extends AbstractTestingBase {
+
+    private static final DataWatcherObject<Float> HEALTH = DataWatcher.a(WatchedEntity.class, DataWatcherRegistry.c);
+    private static final DataWatcherObject<Integer> ARROWS = DataWatcher.a(WatchedEntity.class, DataWatcherRegistry.b);
+    private static final DataWatcherObject<Boolean> BABY = DataWatcher.a(WatchedEntity.class, DataWatcherRegistry.h);
+    private static final DataWatcherObject<Integer> VARIANT = DataWatcher.a(WatchedEntity.class, DataWatcherRegistry.b);
+    private static final DataWatcherObject<Boolean> ARMS_RAISED = DataWatcher.a(WatchedEntity.class, DataWatcherRegistry.h);
+    private static final DataWatcherObject<Byte> FLAGS = DataWatcher.a(WatchedEntity.class, DataWatcherRegistry.a);
+    private static final DataWatcherObject<?>[] OBJECTS = { HEALTH, ARROWS, BABY, VARIANT, ARMS_RAISED, FLAGS };
+
+    @Test
+    public void reportsOnlyChangedItems() {
+        DataWatcher watcher = new WatchedEntity().getDataWatcher();
+        assertFalse(watcher.d());
+        assertEquals(6 + OBJECTS.length, watcher.c().size());
+
+        watcher.e();
+        assertFalse(watcher.a());
+        assertNull(watcher.b());
+
+        watcher.set(HEALTH, 20.0F);
+        assertFalse(watcher.a());
+        watcher.set(HEALTH, 15.0F);
+        watcher.set(ARMS_RAISED, true);
+        assertTrue(watcher.a());
+        assertEquals(15.0F, watcher.get(HEALTH), 0.0F);
+
+        List<DataWatcher.Item<?>> changed = watcher.b();
+        assertEquals(2, changed.size());
+        assertEquals(HEALTH, changed.get(0).a());
+        assertEquals(ARMS_RAISED, changed.get(1).a());
+        assertFalse(watcher.a());
+        assertNull(watcher.b());
+
+        watcher.markDirty(BABY);
+        assertEquals(BABY, watcher.b().get(0).a());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateIds() {
+        new WatchedEntity().getDataWatcher().register(HEALTH, 1.0F);
+    }
+
+    @Test
+    public void reportsEachChangeOnce() {
+        DataWatcher watcher = new WatchedEntity().getDataWatcher();
+        watcher.e();
+        for (int tick = 1; tick <= 200; ++tick) {
+            for (DataWatcherObject<?> object : OBJECTS) {
+                assertNotNull(watcher.get(object));
+            }
+            if (tick % 20 == 0) {
+                watcher.set(ARROWS, tick);
+                List<DataWatcher.Item<?>> changed = watcher.b();
+                assertEquals(1, changed.size());
+                assertEquals(ARROWS, changed.get(0).a());
+                assertEquals(tick, changed.get(0).b());
+            }
+            assertFalse(watcher.a());
+            assertNull(watcher.b());
+        }
+        assertEquals(200, (int) watcher.get(ARROWS));
+    }
+
+    private static final class WatchedEntity extends Entity {
+
+        WatchedEntity() {
+            super(null);
+        }
+
+        @Override
+        protected void i() {
+            this.datawatcher.register(HEALTH, 20.0F);
+            this.datawatcher.register(ARROWS, 0);
+            this.datawatcher.register(BABY, false);
+            this.datawatcher.register(VARIANT, 0);
+            this.datawatcher.register(ARMS_RAISED, false);
+            this.datawatcher.register(FLAGS, (byte) 0);
+        }
+
+        @Override
+        protected void a(NBTTagCompound nbttagcompound) {
+        }
+
+        @Override
+        protected void b(NBTTagCompound nbttagcompound) {
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.bukkit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.minewars.cloudspigot.world.LightEngine;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.Blocks;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkSection;
+import net.minecraft.server.IBlockData;
+import org.bukkit.support.AbstractTestingBase;
+import org.junit.Test;
+
+public class LightEngineTest extends AbstractTestingBase {
+
+    private static final int SIZE = 48;
+    private static final int GROUND = 64;
+
+    @Test
+    public void tntCraterMatchesFullRelight() {
+        Terrain terrain = new Terrain();
+        terrain.setAll(crater(), Blocks.AIR.getBlockData(), false);
+        terrain.engine.flush();
+        terrain.assertSettled();
+    }
+
+    @Test
+    public void glowstoneMatchesFullRelight() {
+        Terrain terrain = new Terrain();
+        terrain.setAll(glowstone(), Blocks.GLOWSTONE.getBlockData(), false);
+        terrain.engine.flush();
+        terrain.assertSettled();
+
+        // and back, every position darkens again
+        terrain.setAll(glowstone(), Blocks.AIR.getBlockData(), false);
+        terrain.engine.flush();
+        terrain.assertSettled();
+    }
+
+    @Test
+    public void threadedMatchesFullRelight() {
+        Terrain terrain = new Terrain(true);
+        Chunk center = terrain.getChunkIfLoaded(1, 1);
+        terrain.setAll(crater(), Blocks.AIR.getBlockData(), false);
+        assertFalse(terrain.engine.isSettled(center));
+
+        terrain.engine.flush();
+        assertFalse(terrain.engine.isSettled(center));
+        terrain.engine.flushFor(center);
+        assertTrue(terrain.engine.isSettled(center));
+        assertFalse(terrain.engine.hasPending());
+        terrain.assertSettled();
+    }
+
+    @Test
+    public void unloadRelightsQueuedPositions() {
+        for (int pass = 0; pass < 2; ++pass) {
+            Terrain terrain = new Terrain(pass == 1);
+            terrain.setAll(crater(), Blocks.AIR.getBlockData(), false);
+            terrain.engine.flushFor(terrain.getChunkIfLoaded(1, 1));
+            assertFalse(terrain.engine.hasPending());
+            terrain.assertSettled();
+        }
+    }
+
+    @Test
+    public void flushEachMatchesFullRelight() {
+        Terrain terrain = new Terrain();
+        terrain.setAll(crater(), Blocks.AIR.getBlockData(), true);
+        terrain.assertSettled();
+
+        terrain.setAll(glowstone(), Blocks.GLOWSTONE.getBlockData(), true);
+        assertFalse(terrain.engine.hasPending());
+        terrain.assertSettled();
+    }
+
+    /**
+     * @return the blocks a tnt explosion in the ground of the middle chunk removes
+     */
+    private static List<BlockPosition> crater() {
+        List<BlockPosition> positions = new ArrayList<>();
+        for (int x = -4; x <= 4; ++x) {
+            for (int y = -4; y <= 4; ++y) {
+                for (int z = -4; z <= 4; ++z) {
+                    if (x * x + y * y + z * z <= 16 && GROUND - 2 + y < GROUND) {
+                        positions.add(new BlockPosition(24 + x, GROUND - 2 + y, 24 + z));
+                    }
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @return an 8x8x8 cube floating above the middle chunk
+     */
+    private static List<BlockPosition> glowstone() {
+        List<BlockPosition> positions = new ArrayList<>();
+        for (int x = 18; x < 26; ++x) {
+            for (int y = GROUND + 6; y < GROUND + 14; ++y) {
+                for (int z = 18; z < 26; ++z) {
+                    positions.add(new BlockPosition(x, y, z));
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * 3x3 chunks of stone up to {@link #GROUND}, correctly lit.
+     */
+    private static final class Terrain implements LightEngine.ChunkAccess {
+        private final Chunk[] chunks = new Chunk[9];
+        private final LightEngine engine;
+
+        Terrain() {
+            this(false);
+        }
+
+        Terrain(boolean threaded) {
+            engine = new LightEngine(this, threaded);
+            for (int i = 0; i < chunks.length; ++i) {
+                Chunk chunk = new Chunk(null, i % 3, i / 3);
+                ChunkSection[] sections = new ChunkSection[16];
+                for (int y = 0; y < sections.length; ++y) {
+                    sections[y] = new ChunkSection(y << 4, true);
+                }
+                chunk.a(sections);
+                chunks[i] = chunk;
+            }
+
+            for (int x = 0; x < SIZE; ++x) {
+                for (int z = 0; z < SIZE; ++z) {
+                    for (int y = 0; y < GROUND; ++y) {
+                        section(x, y, z).setType(x & 15, y & 15, z & 15, Blocks.STONE.getBlockData());
+                    }
+                    updateHeight(x, z);
+                }
+            }
+
+            write(true, relight(true));
+            write(false, relight(false));
+        }
+
+        @Override
+        public Chunk getChunkIfLoaded(int x, int z) {
+            return x >= 0 && x < 3 && z >= 0 && z < 3 ? chunks[z * 3 + x] : null;
+        }
+
+        @Override
+        public boolean hasSkyLight() {
+            return true;
+        }
+
+        /**
+         * Sets the blocks and queues what {@code World.setTypeAndData} and the
+         * height map updates of {@code Chunk.a(BlockPosition, IBlockData)} queue.
+         */
+        void setAll(List<BlockPosition> positions, IBlockData iblockdata, boolean flushEach) {
+            for (BlockPosition position : positions) {
+                int x = position.getX();
+                int y = position.getY();
+                int z = position.getZ();
+                section(x, y, z).setType(x & 15, y & 15, z & 15, iblockdata);
+
+                int before = height(x, z);
+                int after = updateHeight(x, z);
+                if (before != after) {
+                    int low = Math.min(before, after);
+                    int high = Math.max(before, after);
+                    for (int dx = -1; dx <= 1; ++dx) {
+                        for (int dz = -1; dz <= 1; ++dz) {
+                            if (dx * dz == 0) {
+                                for (int i = low; i < high; ++i) {
+                                    engine.queueSky(x + dx, i, z + dz);
+                                }
+                            }
+                        }
+                    }
+                }
+
+                engine.queue(position);
+                if (flushEach) {
+                    engine.flush();
+                }
+            }
+        }
+
+        void assertSettled() {
+            for (int pass = 0; pass < 2; ++pass) {
+                boolean sky = pass == 0;
+                int[] expected = relight(sky);
+                for (int y = 0; y < 256; ++y) {
+                    for (int z = 0; z < SIZE; ++z) {
+                        for (int x = 0; x < SIZE; ++x) {
+                            int light = sky ? section(x, y, z).b(x & 15, y & 15, z & 15) : section(x, y, z).c(x & 15, y & 15, z & 15);
+                            if (light != expected[index(x, y, z)]) {
+                                fail((sky ? "sky" : "block") + " light at " + x + " " + y + " " + z + " is " + light + ", expected " + expected[index(x, y, z)]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the light every position should have, spread from the sky
+         *         and emitting blocks until nothing changes
+         */
+        private int[] relight(boolean sky) {
+            int[] light = new int[SIZE * SIZE * 256];
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int y = 0; y < 256; ++y) {
+                    for (int z = 0; z < SIZE; ++z) {
+                        for (int x = 0; x < SIZE; ++x) {
+                            int value = expected(light, sky, x, y, z);
+                            if (value != light[index(x, y, z)]) {
+                                light[index(x, y, z)] = value;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+            return light;
+        }
+
+        private int expected(int[] light, boolean sky, int x, int y, int z) {
+            if (sky && y >= height(x, z)) {
+                return 15;
+            }
+
+            IBlockData iblockdata = section(x, y, z).getType(x & 15, y & 15, z & 15);
+            int opacity = iblockdata.c() >= 15 ? (iblockdata.d() > 0 ? 1 : 15) : Math.max(1, iblockdata.c());
+            if (opacity >= 15) {
+                return 0;
+            }
+
+            int value = sky ? 0 : iblockdata.d();
+            value = Math.max(value, neighbour(light, x - 1, y, z) - opacity);
+            value = Math.max(value, neighbour(light, x + 1, y, z) - opacity);
+            value = Math.max(value, neighbour(light, x, y - 1, z) - opacity);
+            value = Math.max(value, neighbour(light, x, y + 1, z) - opacity);
+            value = Math.max(value, neighbour(light, x, y, z - 1) - opacity);
+            value = Math.max(value, neighbour(light, x, y, z + 1) - opacity);
+            return value;
+        }
+
+        private static int neighbour(int[] light, int x, int y, int z) {
+            return x >= 0 && x < SIZE && z >= 0 && z < SIZE && y >= 0 && y < 256 ? light[index(x, y, z)] : 0;
+        }
+
+        private void write(boolean sky, int[] light) {
+            for (int y = 0; y < 256; ++y) {
+                for (int z = 0; z < SIZE; ++z) {
+                    for (int x = 0; x < SIZE; ++x) {
+                        if (sky) {
+                            section(x, y, z).a(x & 15, y & 15, z & 15, light[index(x, y, z)]);
+                        } else {
+                            section(x, y, z).b(x & 15, y & 15, z & 15, light[index(x, y, z)]);
+                        }
+                    }
+                }
+            }
+        }
+
+        private int updateHeight(int x, int z) {
+            int height = 256;
+            while (height > 0 && section(x, height - 1, z).getType(x & 15, (height - 1) & 15, z & 15).c() == 0) {
+                --height;
+            }
+
+            Chunk chunk = chunks[(z >> 4) * 3 + (x >> 4)];
+            int[] heightMap = chunk.r().clone();
+            heightMap[(z & 15) << 4 | x & 15] = height;
+            chunk.a(heightMap);
+            return height;
+        }
+
+        private int height(int x, int z) {
+            return chunks[(z >> 4) * 3 + (x >> 4)].b(x & 15, z & 15);
+        }
+
+        private ChunkSection section(int x, int y, int z) {
+            return chunks[(z >> 4) * 3 + (x >> 4)].getSections()[y >> 4];
+        }
+
+        private static int index(int x, int y, int z) {
+            return (y * SIZE + z) * SIZE + x;
+        }
+    }
+}
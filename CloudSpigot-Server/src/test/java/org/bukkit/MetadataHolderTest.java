@@ -0,0 +1,118 @@
+package org.bukkit;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.minewars.cloudspigot.metadata.HolderMetadataStore;
+import eu.minewars.cloudspigot.metadata.MetadataHolder;
+import org.bukkit.metadata.FixedMetadataValue;
+import org.bukkit.metadata.LazyMetadataValue;
+import org.bukkit.plugin.Plugin;
+import org.junit.Test;
+
+public class MetadataHolderTest {
+
+    private final Plugin pluginX = plugin();
+    private final Plugin pluginY = plugin();
+    private final SubjectStore store = new SubjectStore();
+
+    private static Plugin plugin() {
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] { Plugin.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void keepsValuesPerPlugin() {
+        Subject subject = new Subject();
+        store.setMetadata(subject, "key", new FixedMetadataValue(pluginX, 10));
+        store.setMetadata(subject, "key", new FixedMetadataValue(pluginY, 20));
+        store.setMetadata(subject, "key", new FixedMetadataValue(pluginX, 30));
+
+        assertTrue(store.hasMetadata(subject, "key"));
+        assertFalse(store.hasMetadata(subject, "other"));
+        assertFalse(store.hasMetadata(new Subject(), "key"));
+        assertEquals(2, store.getMetadata(subject, "key").size());
+        assertEquals(30, store.getMetadata(subject, "key").get(0).value());
+        assertEquals(20, store.getMetadata(subject, "key").get(1).value());
+
+        store.removeMetadata(subject, "key", pluginX);
+        assertEquals(1, store.getMetadata(subject, "key").size());
+        store.removeMetadata(subject, "key", pluginY);
+        assertFalse(store.hasMetadata(subject, "key"));
+        assertTrue(store.getMetadata(subject, "key").isEmpty());
+    }
+
+    @Test
+    public void findsKeysBuiltAtRuntime() {
+        Subject subject = new Subject();
+        store.setMetadata(subject, new StringBuilder("ke").append('y').toString(), new FixedMetadataValue(pluginX, 10));
+        assertTrue(store.hasMetadata(subject, "key"));
+        assertTrue(store.hasMetadata(subject, new StringBuilder("k").append("ey").toString()));
+    }
+
+    @Test
+    public void removesAndInvalidatesPerPlugin() {
+        AtomicInteger computed = new AtomicInteger();
+        Subject first = new Subject();
+        Subject second = new Subject();
+        store.setMetadata(first, "lazy", new LazyMetadataValue(pluginX, computed::incrementAndGet));
+        store.setMetadata(first, "fixed", new FixedMetadataValue(pluginY, 1));
+        store.setMetadata(second, "fixed", new FixedMetadataValue(pluginX, 2));
+
+        assertEquals(1, store.getMetadata(first, "lazy").get(0).value());
+        store.invalidateAll(pluginX);
+        assertEquals(2, store.getMetadata(first, "lazy").get(0).value());
+
+        store.removeAll(pluginX);
+        assertFalse(store.hasMetadata(first, "lazy"));
+        assertTrue(store.hasMetadata(first, "fixed"));
+        assertFalse(store.hasMetadata(second, "fixed"));
+    }
+
+    @Test
+    public void discardsHolders() {
+        Subject subject = new Subject();
+        store.setMetadata(subject, "key", new FixedMetadataValue(pluginX, 10));
+        store.discard(subject);
+        assertFalse(store.hasMetadata(subject, "key"));
+
+        store.setMetadata(subject, "key", new FixedMetadataValue(pluginX, 10));
+        assertTrue(store.hasMetadata(subject, "key"));
+    }
+
+    private static final class Subject {
+        private final MetadataHolder holder = new MetadataHolder();
+    }
+
+    private static final class SubjectStore extends HolderMetadataStore<Subject> {
+
+        @Override
+        protected boolean isHeld(Subject subject) {
+            return true;
+        }
+
+        @Override
+        protected MetadataHolder getHolder(Subject subject, boolean create) {
+            return subject.holder;
+        }
+
+        @Override
+        protected String disambiguate(Subject subject, String metadataKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        void discard(Subject subject) {
+            discard(subject.holder);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.bukkit;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.server.ChatComponentText;
+import net.minecraft.server.EnumProtocol;
+import net.minecraft.server.EnumProtocolDirection;
+import net.minecraft.server.ItemStack;
+import net.minecraft.server.Items;
+import net.minecraft.server.NetworkManager;
+import net.minecraft.server.NonNullList;
+import net.minecraft.server.Packet;
+import net.minecraft.server.PacketDataSerializer;
+import net.minecraft.server.PacketEncoder;
+import net.minecraft.server.PacketPlayOutChat;
+import net.minecraft.server.PacketPlayOutWindowItems;
+import net.minecraft.server.PacketPrepender;
+import org.bukkit.support.AbstractTestingBase;
+import org.junit.Test;
+
+public class PacketFramingTest extends AbstractTestingBase {
+
+    @Test
+    public void framesLikeThePrepender() {
+        NonNullList<ItemStack> items = NonNullList.a(45, ItemStack.a);
+        for (int i = 0; i < items.size(); i += 3) {
+            items.set(i, new ItemStack(Items.DIAMOND_SWORD));
+        }
+
+        assertSameFrames(new PacketPlayOutWindowItems(0, items));
+        assertSameFrames(new PacketPlayOutChat(new ChatComponentText("framed")));
+    }
+
+    private static void assertSameFrames(Packet<?> packet) {
+        byte[] prepended = encode(packet, false);
+        byte[] framed = encode(packet, true);
+
+        assertArrayEquals(prepended, framed);
+    }
+
+    /**
+     * @return the packet with its frame length checked and removed
+     */
+    private static byte[] encode(Packet<?> packet, boolean framing) {
+        PacketEncoder encoder = new PacketEncoder(EnumProtocolDirection.CLIENTBOUND);
+        encoder.setFraming(framing);
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketPrepender(encoder), encoder);
+        channel.attr(NetworkManager.c).set(EnumProtocol.PLAY);
+
+        assertTrue(channel.writeOutbound(packet));
+        ByteBuf buffer = channel.readOutbound();
+        assertNull(channel.readOutbound());
+        try {
+            PacketDataSerializer serializer = new PacketDataSerializer(buffer);
+            int length = serializer.g();
+            assertEquals(serializer.readableBytes(), length);
+
+            byte[] bytes = new byte[length];
+            serializer.readBytes(bytes);
+            return bytes;
+        } finally {
+            buffer.release();
+            channel.finishAndReleaseAll();
+        }
+    }
+}
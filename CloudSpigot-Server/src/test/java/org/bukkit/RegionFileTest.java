@@ -0,0 +1,202 @@
+package org.bukkit;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.destroystokyo.paper.PaperConfig;
+import net.minecraft.server.NBTTagCompound;
+import net.minecraft.server.RegionFile;
+import net.minecraft.server.RegionFileCache;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RegionFileTest {
+
+    private static final int THREADS = 8;
+    private static final int READS_PER_THREAD = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testConcurrentRandomReads() throws Exception {
+        RegionFile region = new RegionFile(new File(folder.getRoot(), "r.0.0.mca"));
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                DataOutputStream out = region.getWriteStream(x, z);
+                out.writeInt(x);
+                out.writeInt(z);
+                byte[] filler = new byte[(x * 32 + z) * 7]; // vary the sector count
+                new Random(x * 32 + z).nextBytes(filler);
+                out.write(filler);
+                out.close();
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < READS_PER_THREAD; i++) {
+                    int x = random.nextInt(32);
+                    int z = random.nextInt(32);
+                    try (DataInputStream in = region.getReadStream(x, z)) {
+                        Assert.assertNotNull("Missing chunk " + x + "," + z, in);
+                        Assert.assertEquals(x, in.readInt());
+                        Assert.assertEquals(z, in.readInt());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        region.c();
+    }
+
+    @Test
+    public void testMappedReadsAfterGrowth() throws Exception {
+        boolean oldMapped = PaperConfig.useMappedRegionFiles;
+        PaperConfig.useMappedRegionFiles = true;
+        try {
+            RegionFile region = new RegionFile(new File(folder.getRoot(), "r.0.0.mca"));
+            for (int x = 0; x < 32; x++) {
+                DataOutputStream out = region.getWriteStream(x, 0);
+                out.writeInt(x);
+                out.write(new byte[x * 1024]);
+                out.close();
+
+                // every write grows the file past the previous mapping
+                for (int i = 0; i <= x; i++) {
+                    try (DataInputStream in = region.getReadStream(i, 0)) {
+                        Assert.assertNotNull(in);
+                        Assert.assertEquals(i, in.readInt());
+                    }
+                }
+            }
+            region.c();
+        } finally {
+            PaperConfig.useMappedRegionFiles = oldMapped;
+        }
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        RegionFile region = new RegionFile(new File(folder.getRoot(), "r.0.0.mca"));
+        int[] types = { RegionFile.COMPRESSION_GZIP, RegionFile.COMPRESSION_ZLIB, RegionFile.COMPRESSION_NONE, RegionFile.COMPRESSION_SNAPPY };
+        for (int x = 0; x < types.length; x++) {
+            DataOutputStream out = region.getWriteStream(x, 0, types[x], 1);
+            out.writeInt(x);
+            out.write(new byte[10000]);
+            out.close();
+        }
+
+        for (int x = 0; x < types.length; x++) {
+            Assert.assertEquals(types[x], region.getCompressionType(x, 0));
+            try (DataInputStream in = region.getReadStream(x, 0)) {
+                Assert.assertEquals(x, in.readInt());
+            }
+
+            Assert.assertEquals(types[x] != RegionFile.COMPRESSION_SNAPPY, region.recompress(x, 0, RegionFile.COMPRESSION_SNAPPY, -1, false));
+            Assert.assertEquals(RegionFile.COMPRESSION_SNAPPY, region.getCompressionType(x, 0));
+            try (DataInputStream in = region.getReadStream(x, 0)) {
+                Assert.assertEquals(x, in.readInt());
+                in.readFully(new byte[10000]);
+            }
+        }
+        region.c();
+    }
+
+    @Test
+    public void testLargeSnappyRoundTrip() throws Exception {
+        RegionFile region = new RegionFile(new File(folder.getRoot(), "r.0.0.mca"));
+        // bigger than several snappy blocks, compressible like real chunk data
+        byte[] payload = new byte[200000];
+        Random random = new Random(3L);
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (random.nextInt(8) == 0 ? random.nextInt() : i / 64);
+        }
+        DataOutputStream out = region.getWriteStream(0, 0, RegionFile.COMPRESSION_SNAPPY, -1);
+        out.write(payload);
+        out.close();
+
+        Assert.assertEquals(RegionFile.COMPRESSION_SNAPPY, region.getCompressionType(0, 0));
+        byte[] read = new byte[payload.length];
+        try (DataInputStream in = region.getReadStream(0, 0)) {
+            in.readFully(read);
+            Assert.assertEquals(-1, in.read());
+        }
+        Assert.assertArrayEquals(payload, read);
+        region.c();
+    }
+
+    @Test
+    public void testLevelOnlyRecompressesWhenForced() throws Exception {
+        RegionFile region = new RegionFile(new File(folder.getRoot(), "r.0.0.mca"));
+        DataOutputStream out = region.getWriteStream(0, 0, RegionFile.COMPRESSION_ZLIB, 0);
+        out.writeInt(42);
+        out.write(new byte[10000]);
+        out.close();
+
+        Assert.assertFalse(region.recompress(0, 0, RegionFile.COMPRESSION_ZLIB, 9, false));
+        Assert.assertTrue(region.recompress(0, 0, RegionFile.COMPRESSION_ZLIB, 9, true));
+        Assert.assertEquals(RegionFile.COMPRESSION_ZLIB, region.getCompressionType(0, 0));
+        try (DataInputStream in = region.getReadStream(0, 0)) {
+            Assert.assertEquals(42, in.readInt());
+            in.readFully(new byte[10000]);
+        }
+        region.c();
+    }
+
+    @Test
+    public void testEvictionDuringReads() throws Exception {
+        int oldSize = PaperConfig.regionFileCacheSize;
+        PaperConfig.regionFileCacheSize = 2; // force constant trimming
+        try {
+            File world = folder.newFolder("world");
+            for (int region = 0; region < 8; region++) {
+                NBTTagCompound compound = new NBTTagCompound();
+                compound.setInt("region", region);
+                RegionFileCache.e(world, region * 32, 0, compound);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++) {
+                final long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        int region = random.nextInt(8);
+                        NBTTagCompound compound = RegionFileCache.d(world, region * 32, 0);
+                        Assert.assertNotNull(compound);
+                        Assert.assertEquals(region, compound.getInt("region"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            RegionFileCache.a();
+            PaperConfig.regionFileCacheSize = oldSize;
+        }
+    }
+}
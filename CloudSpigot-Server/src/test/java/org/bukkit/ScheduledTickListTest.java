@@ -0,0 +1,107 @@
+package org.bukkit;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import eu.minewars.cloudspigot.world.ScheduledTickList;
+import net.minecraft.server.Block;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.Blocks;
+import net.minecraft.server.NextTickListEntry;
+import net.minecraft.server.StructureBoundingBox;
+import org.bukkit.craftbukkit.util.HashTreeSet;
+import org.bukkit.support.AbstractTestingBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScheduledTickListTest extends AbstractTestingBase {
+
+    private static final int PENDING_TICKS = 100000;
+    private static final Block[] BLOCKS = { Blocks.REDSTONE_WIRE, Blocks.UNPOWERED_REPEATER, Blocks.FLOWING_WATER, Blocks.STONE_BUTTON };
+
+    private static NextTickListEntry createEntry(Random random, int radius) {
+        BlockPosition position = new BlockPosition(random.nextInt(radius * 2) - radius, random.nextInt(256), random.nextInt(radius * 2) - radius);
+        NextTickListEntry entry = new NextTickListEntry(position, BLOCKS[random.nextInt(BLOCKS.length)]);
+        entry.a((long) random.nextInt(200));
+        entry.a(random.nextInt(3) - 1);
+        return entry;
+    }
+
+    @Test
+    public void testExecutionOrderMatchesTreeSet() {
+        Random random = new Random(1L);
+        ScheduledTickList ticks = new ScheduledTickList();
+        HashTreeSet<NextTickListEntry> reference = new HashTreeSet<NextTickListEntry>();
+        for (int i = 0; i < 20000; i++) {
+            NextTickListEntry entry = createEntry(random, 64);
+            if (!reference.contains(entry)) {
+                reference.add(entry);
+                Assert.assertTrue(ticks.add(entry));
+            } else {
+                Assert.assertFalse(ticks.add(entry));
+            }
+        }
+        Assert.assertEquals(reference.size(), ticks.size());
+
+        // unload a chunk from both, then compare execution tick by tick
+        StructureBoundingBox box = new StructureBoundingBox(-2, 0, -2, 16, 256, 16);
+        List<NextTickListEntry> removed = ticks.getEntriesIn(box, true);
+        for (NextTickListEntry entry : removed) {
+            Assert.assertTrue(reference.remove(entry));
+        }
+
+        List<NextTickListEntry> polled = new ArrayList<NextTickListEntry>();
+        for (long time = 0; time < 200; time++) {
+            polled.clear();
+            ticks.pollDue(time, 100, polled);
+            for (NextTickListEntry entry : polled) {
+                NextTickListEntry expected = reference.first();
+                Assert.assertSame(expected, entry);
+                reference.remove(expected);
+            }
+            if (polled.size() < 100) {
+                Assert.assertTrue(reference.isEmpty() || reference.first().b > time);
+            }
+        }
+        ticks.pollDue(Long.MAX_VALUE, Integer.MAX_VALUE, polled);
+        Assert.assertTrue(ticks.isEmpty());
+    }
+
+    @Test
+    public void testChunkSaveWithPendingTicks() {
+        Random random = new Random(2L);
+        ScheduledTickList ticks = new ScheduledTickList();
+        HashTreeSet<NextTickListEntry> reference = new HashTreeSet<NextTickListEntry>();
+        while (ticks.size() < PENDING_TICKS) {
+            NextTickListEntry entry = createEntry(random, 2048);
+            if (ticks.add(entry)) {
+                reference.add(entry);
+            }
+        }
+
+        // the indexed lookup must find what WorldServer.a(StructureBoundingBox, boolean) used to find by scanning
+        StructureBoundingBox box = new StructureBoundingBox(-2, 0, -2, 16, 256, 16);
+        Set<NextTickListEntry> expected = new HashSet<NextTickListEntry>();
+        for (Iterator<NextTickListEntry> iterator = reference.iterator(); iterator.hasNext();) {
+            NextTickListEntry entry = iterator.next();
+            if (entry.a.getX() >= box.a && entry.a.getX() < box.d && entry.a.getZ() >= box.c && entry.a.getZ() < box.f) {
+                expected.add(entry);
+            }
+        }
+        List<NextTickListEntry> found = ticks.getEntriesIn(box, false);
+        Assert.assertEquals(expected.size(), found.size());
+        Assert.assertEquals(expected, new HashSet<NextTickListEntry>(found));
+        Assert.assertEquals(PENDING_TICKS, ticks.size());
+
+        List<NextTickListEntry> polled = new ArrayList<NextTickListEntry>(PENDING_TICKS);
+        for (long time = 0; time < 200; time++) {
+            ticks.pollDue(time, 65536, polled);
+        }
+        Assert.assertEquals(PENDING_TICKS, polled.size());
+        Assert.assertTrue(ticks.isEmpty());
+    }
+}